@@ -16,13 +16,21 @@ public class ConnectDatabase {
     private static final String DB_URL = "DB_URL";
     private static final String DB_USERNAME = "DB_USERNAME";
     private static final String DB_PASSWORD  = "DB_PASSWORD";
+    private static final String DB_POOL_MIN_SIZE = "DB_POOL_MIN_SIZE";
+    private static final String DB_POOL_MAX_SIZE = "DB_POOL_MAX_SIZE";
+    private static final String DB_POOL_IDLE_TIMEOUT_SECONDS = "DB_POOL_IDLE_TIMEOUT_SECONDS";
+    private static final String DB_POOL_LEAK_THRESHOLD_SECONDS = "DB_POOL_LEAK_THRESHOLD_SECONDS";
+    private static final String DB_POOL_BORROW_TIMEOUT_SECONDS = "DB_POOL_BORROW_TIMEOUT_SECONDS";
+    private static final String DB_POOL_VALIDATION_INTERVAL_MS = "DB_POOL_VALIDATION_INTERVAL_MS";
     private static Map<String, String> envCache = null;
+    private static boolean driverLoaded = false;
+    private static ConnectionPool pool = null;
 
     /**
      * Loads environment variables from .env file if it exists
      * @return Map of environment variables from .env file
      */
-    private static Map<String, String> loadEnvFile() {
+    private static synchronized Map<String, String> loadEnvFile() {
         if (envCache != null) {
             return envCache;
         }
@@ -137,14 +145,55 @@ public class ConnectDatabase {
         return value.trim();
     }
 
+    /**
+     * Gets an optional configuration value from environment variables (.env file or system env)
+     * @param envKey The env variable key
+     * @param defaultValue Value used when the variable is not set
+     * @return The env variable value, or the default value
+     * @throws SQLException If the variable is set but not a valid number
+     */
+    private static long getOptionalEnvLong(String envKey, long defaultValue) throws SQLException {
+        String value = loadEnvFile().get(envKey);
+        if (value == null || value.trim().isEmpty()) {
+            value = System.getenv(envKey);
+        }
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SQLException(String.format("Invalid value for %s: '%s' (expected a number).", envKey, value), e);
+        }
+    }
+
+    /**
+     * Loads the JDBC driver once
+     * @throws SQLException If the driver is not on the classpath
+     */
+    private static synchronized void loadDriver() throws SQLException {
+        if (driverLoaded) {
+            return;
+        }
+        try {
+            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+            driverLoaded = true;
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("JDBC Driver not found. Make sure mssql-jdbc is in your classpath.", e);
+        }
+    }
+
     /**
      * Creates and returns a secure database connection using environment variables 
+     * 
+     * This opens a new physical connection on every call. Prefer getDataSource() for
+     * anything that runs more than once.
      * @return Connection object to the database 
      * @throws SQLException If the environment variable is not set
      */
     public static Connection getConnection() throws SQLException{
         try{
-            Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+            loadDriver();
 
             String url = getEnvValue(DB_URL, "Database connection URL");
             String username = getEnvValue(DB_USERNAME, "Database username");
@@ -160,8 +209,6 @@ public class ConnectDatabase {
                 throw new SQLException("Failed to connect the database. Try again.");
             }
 
-        }catch(ClassNotFoundException e){
-            throw new SQLException("JDBC Driver not found. Make sure mssql-jdbc is in your classpath.", e);
         }catch(SQLException e){
             System.err.println("SQL Exception occurred:");
             System.err.println("  Message: " + e.getMessage());
@@ -175,6 +222,64 @@ public class ConnectDatabase {
         }
     }
 
+    /**
+     * Returns the shared pooled DataSource, creating it on first use
+     * 
+     * Pool settings (all optional, in the .env file or system environment):
+     * - DB_POOL_MIN_SIZE: connections kept open while idle (default 1)
+     * - DB_POOL_MAX_SIZE: maximum open connections (default 10)
+     * - DB_POOL_IDLE_TIMEOUT_SECONDS: idle connections above the minimum are closed after this (default 300)
+     * - DB_POOL_LEAK_THRESHOLD_SECONDS: connections held longer than this are reported as leaks, 0 disables (default 60)
+     * - DB_POOL_BORROW_TIMEOUT_SECONDS: how long to wait for a free connection (default 30)
+     * - DB_POOL_VALIDATION_INTERVAL_MS: connections idle longer than this are validated on borrow (default 500)
+     * @return Pooled DataSource for the database
+     * @throws SQLException If the environment variables are not set or the first connection fails
+     */
+    public static synchronized ConnectionPool getDataSource() throws SQLException {
+        if (pool != null) {
+            return pool;
+        }
+        loadDriver();
+
+        String url = getEnvValue(DB_URL, "Database connection URL");
+        String username = getEnvValue(DB_USERNAME, "Database username");
+        String password = getEnvValue(DB_PASSWORD, "Database password");
+
+        ConnectionPool newPool;
+        try {
+            newPool = new ConnectionPool(url, username, password,
+                (int) getOptionalEnvLong(DB_POOL_MIN_SIZE, 1),
+                (int) getOptionalEnvLong(DB_POOL_MAX_SIZE, 10),
+                getOptionalEnvLong(DB_POOL_IDLE_TIMEOUT_SECONDS, 300) * 1000,
+                getOptionalEnvLong(DB_POOL_LEAK_THRESHOLD_SECONDS, 60) * 1000,
+                getOptionalEnvLong(DB_POOL_BORROW_TIMEOUT_SECONDS, 30) * 1000,
+                getOptionalEnvLong(DB_POOL_VALIDATION_INTERVAL_MS, 500));
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Invalid connection pool configuration: " + e.getMessage(), e);
+        }
+
+        try {
+            newPool.warmUp();
+        } catch (SQLException e) {
+            newPool.close();
+            throw e;
+        }
+        pool = newPool;
+        return pool;
+    }
+
+    /**
+     * Closes the shared pooled DataSource (if it was created) and prints its statistics
+     */
+    public static synchronized void closeDataSource() {
+        if (pool != null) {
+            System.out.println("Connection pool stats: " + pool.getStats());
+            pool.close();
+            pool = null;
+            System.out.println("Database connection pool closed!");
+        }
+    }
+
     /**
      * Closes a database connection 
      * @param connection The connection to close 
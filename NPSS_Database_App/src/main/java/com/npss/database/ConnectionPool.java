@@ -0,0 +1,513 @@
+package com.npss.database;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Connection pool for the NPSS database
+ *
+ * Keeps physical connections open between queries so each menu choice does not pay for a
+ * new TLS handshake and login against Azure SQL. Connections handed out by the pool are
+ * proxies: calling close() returns the physical connection to the pool instead of closing it.
+ *
+ * Features:
+ * - Minimum/maximum pool size
+ * - Idle eviction (connections idle longer than the idle timeout are closed, down to the minimum size)
+ * - Validation on borrow (connections idle longer than the validation interval are checked with isValid)
+ * - Leak detection (connections held longer than the leak threshold are reported with the borrowing stack trace)
+ * - Pool statistics
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final long borrowTimeoutMillis;
+    private final long validationIntervalMillis;
+
+    // Idle connections, most recently returned first so warm connections are reused
+    private final Deque<PooledEntry> idle = new ArrayDeque<>();
+    private final Map<PooledEntry, Boolean> borrowed = new IdentityHashMap<>();
+    private final ScheduledExecutorService housekeeper;
+    private int totalConnections = 0;
+    private boolean closed = false;
+
+    // Statistics
+    private long borrowCount = 0;
+    private long createdCount = 0;
+    private long destroyedCount = 0;
+    private long validationFailures = 0;
+    private long leaksDetected = 0;
+    private long waitCount = 0;
+    private long totalWaitNanos = 0;
+    private long borrowTimeouts = 0;
+
+    /**
+     * Creates a connection pool
+     *
+     * @param url JDBC URL of the database
+     * @param username Database username
+     * @param password Database password
+     * @param minSize Number of connections kept open even when idle
+     * @param maxSize Maximum number of open connections
+     * @param idleTimeoutMillis Idle connections above minSize are closed after this long
+     * @param leakThresholdMillis Borrowed connections held longer than this are reported as leaks (0 disables)
+     * @param borrowTimeoutMillis How long getConnection() waits for a free connection
+     * @param validationIntervalMillis Connections idle longer than this are validated before being handed out
+     */
+    public ConnectionPool(String url, String username, String password,
+                          int minSize, int maxSize,
+                          long idleTimeoutMillis, long leakThresholdMillis,
+                          long borrowTimeoutMillis, long validationIntervalMillis) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size (min: " + minSize + ", max: " + maxSize + ")");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "npss-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, leakThresholdMillis > 0 ? leakThresholdMillis : idleTimeoutMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the minimum number of connections up front
+     *
+     * @throws SQLException if a connection cannot be opened
+     */
+    public void warmUp() throws SQLException {
+        List<Connection> warm = new ArrayList<>();
+        try {
+            for (int i = 0; i < minSize; i++) {
+                warm.add(getConnection());
+            }
+        } finally {
+            for (Connection connection : warm) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none is idle and the pool is not full
+     *
+     * @return Connection proxy; close() returns it to the pool
+     * @throws SQLException if no connection becomes available before the borrow timeout
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        long waitStart = System.nanoTime();
+        long deadline = waitStart + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        boolean waited = false;
+
+        while (true) {
+            PooledEntry entry;
+            boolean create = false;
+
+            synchronized (this) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed.");
+                }
+                entry = idle.pollFirst();
+                if (entry == null) {
+                    if (totalConnections < maxSize) {
+                        totalConnections++;
+                        create = true;
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            borrowTimeouts++;
+                            throw new SQLException("Timed out after " + borrowTimeoutMillis +
+                                " ms waiting for a database connection (pool size: " + maxSize + ").");
+                        }
+                        waited = true;
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a database connection.", e);
+                        }
+                        continue;
+                    }
+                }
+            }
+
+            if (create) {
+                try {
+                    entry = new PooledEntry(DriverManager.getConnection(url, username, password));
+                } catch (SQLException e) {
+                    synchronized (this) {
+                        totalConnections--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+                synchronized (this) {
+                    createdCount++;
+                }
+            } else if (System.currentTimeMillis() - entry.lastReturnedAt > validationIntervalMillis
+                       && !isUsable(entry.physical)) {
+                synchronized (this) {
+                    validationFailures++;
+                }
+                destroy(entry);
+                continue;
+            }
+
+            synchronized (this) {
+                if (waited) {
+                    waitCount++;
+                    totalWaitNanos += System.nanoTime() - waitStart;
+                }
+                borrowCount++;
+                entry.borrowedAt = System.currentTimeMillis();
+                entry.borrowTrace = leakThresholdMillis > 0
+                    ? new Throwable("Connection borrowed by thread " + Thread.currentThread().getName())
+                    : null;
+                entry.leakReported = false;
+                borrowed.put(entry, Boolean.TRUE);
+            }
+            return entry.newProxy();
+        }
+    }
+
+    /**
+     * Not supported: the pool always uses the credentials it was created with
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("ConnectionPool does not support per-call credentials.");
+    }
+
+    /**
+     * Returns a borrowed connection to the pool, resetting its transaction state
+     */
+    private void release(PooledEntry entry) {
+        boolean healthy = true;
+        try {
+            if (!entry.physical.getAutoCommit()) {
+                // Never hand out a connection with a half-finished transaction
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            healthy = !entry.physical.isClosed();
+        } catch (SQLException e) {
+            healthy = false;
+        }
+
+        synchronized (this) {
+            borrowed.remove(entry);
+            if (healthy && !closed) {
+                entry.lastReturnedAt = System.currentTimeMillis();
+                entry.borrowTrace = null;
+                idle.addFirst(entry);
+                notifyAll();
+                return;
+            }
+        }
+        destroy(entry);
+    }
+
+    /**
+     * Closes a physical connection and frees its slot in the pool
+     */
+    private void destroy(PooledEntry entry) {
+        try {
+            entry.physical.close();
+        } catch (SQLException e) {
+            // Connection is being discarded anyway
+        }
+        synchronized (this) {
+            totalConnections--;
+            destroyedCount++;
+            notifyAll();
+        }
+    }
+
+    private boolean isUsable(Connection connection) {
+        try {
+            return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Periodic maintenance: evicts idle connections and reports leaked connections
+     */
+    private void houseKeep() {
+        List<PooledEntry> evicted = new ArrayList<>();
+        List<PooledEntry> leaked = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            // Oldest idle connections are at the end of the deque
+            Iterator<PooledEntry> iterator = idle.descendingIterator();
+            while (iterator.hasNext() && totalConnections - evicted.size() > minSize) {
+                PooledEntry entry = iterator.next();
+                if (now - entry.lastReturnedAt > idleTimeoutMillis) {
+                    iterator.remove();
+                    evicted.add(entry);
+                }
+            }
+            if (leakThresholdMillis > 0) {
+                for (PooledEntry entry : borrowed.keySet()) {
+                    if (!entry.leakReported && now - entry.borrowedAt > leakThresholdMillis) {
+                        entry.leakReported = true;
+                        leaksDetected++;
+                        leaked.add(entry);
+                    }
+                }
+            }
+        }
+
+        for (PooledEntry entry : evicted) {
+            destroy(entry);
+        }
+        for (PooledEntry entry : leaked) {
+            System.err.println("WARNING: Possible connection leak - connection held for " +
+                (now - entry.borrowedAt) + " ms (threshold: " + leakThresholdMillis + " ms)");
+            Throwable trace = entry.borrowTrace;
+            if (trace != null) {
+                trace.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool statistics
+     *
+     * @return Current pool statistics
+     */
+    public synchronized Stats getStats() {
+        return new Stats(totalConnections, idle.size(), borrowed.size(), borrowCount, createdCount,
+            destroyedCount, validationFailures, leaksDetected, waitCount, totalWaitNanos, borrowTimeouts);
+    }
+
+    /**
+     * Closes all idle connections and stops the pool. Borrowed connections are closed when returned.
+     */
+    @Override
+    public void close() {
+        List<PooledEntry> toClose;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        housekeeper.shutdownNow();
+        for (PooledEntry entry : toClose) {
+            destroy(entry);
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        // Logging goes to System.err
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException("ConnectionPool does not use java.util.logging.");
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("ConnectionPool is not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * A physical connection owned by the pool together with its bookkeeping
+     */
+    private final class PooledEntry {
+        private final Connection physical;
+        private long lastReturnedAt = System.currentTimeMillis();
+        private long borrowedAt;
+        private Throwable borrowTrace;
+        private boolean leakReported;
+
+        private PooledEntry(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection newProxy() {
+            return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new LogicalConnection(this));
+        }
+    }
+
+    /**
+     * Handle given to callers; close() returns the physical connection to the pool exactly once
+     */
+    private final class LogicalConnection implements InvocationHandler {
+        private final PooledEntry entry;
+        private boolean logicallyClosed = false;
+
+        private LogicalConnection(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!logicallyClosed) {
+                        logicallyClosed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return logicallyClosed || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + entry.physical + "]";
+                default:
+                    break;
+            }
+            if (logicallyClosed) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Snapshot of pool statistics
+     */
+    public static final class Stats {
+        private final int totalConnections;
+        private final int idleConnections;
+        private final int activeConnections;
+        private final long borrowCount;
+        private final long createdCount;
+        private final long destroyedCount;
+        private final long validationFailures;
+        private final long leaksDetected;
+        private final long waitCount;
+        private final long totalWaitNanos;
+        private final long borrowTimeouts;
+
+        private Stats(int totalConnections, int idleConnections, int activeConnections,
+                      long borrowCount, long createdCount, long destroyedCount,
+                      long validationFailures, long leaksDetected, long waitCount,
+                      long totalWaitNanos, long borrowTimeouts) {
+            this.totalConnections = totalConnections;
+            this.idleConnections = idleConnections;
+            this.activeConnections = activeConnections;
+            this.borrowCount = borrowCount;
+            this.createdCount = createdCount;
+            this.destroyedCount = destroyedCount;
+            this.validationFailures = validationFailures;
+            this.leaksDetected = leaksDetected;
+            this.waitCount = waitCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.borrowTimeouts = borrowTimeouts;
+        }
+
+        public int getTotalConnections() { return totalConnections; }
+        public int getIdleConnections() { return idleConnections; }
+        public int getActiveConnections() { return activeConnections; }
+        public long getBorrowCount() { return borrowCount; }
+        public long getCreatedCount() { return createdCount; }
+        public long getDestroyedCount() { return destroyedCount; }
+        public long getValidationFailures() { return validationFailures; }
+        public long getLeaksDetected() { return leaksDetected; }
+        public long getWaitCount() { return waitCount; }
+        public long getBorrowTimeouts() { return borrowTimeouts; }
+
+        /**
+         * @return Average time spent waiting for a connection by borrowers that had to wait, in milliseconds
+         */
+        public double getAverageWaitMillis() {
+            return waitCount == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / waitCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "open=%d (active=%d, idle=%d), borrows=%d, created=%d, closed=%d, " +
+                "validation failures=%d, leaks=%d, waits=%d (avg %.1f ms), timeouts=%d",
+                totalConnections, activeConnections, idleConnections, borrowCount, createdCount,
+                destroyedCount, validationFailures, leaksDetected, waitCount, getAverageWaitMillis(),
+                borrowTimeouts);
+        }
+    }
+}
@@ -1,29 +1,43 @@
 package com.npss.database;
 import com.npss.database.NPSS_DBApp;
+import com.npss.database.commands.BatchRunner;
+import com.npss.database.queries.CommandRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import javax.sql.DataSource;
 
 /**
  * Main entry point for the National Park Service System (NPSS) Database Application
- * 
+ *
  * This application connects to Azure SQL Database and provides a menu-driven interface
  * for managing park data, visitors, rangers, researchers, donations, and programs.
- * 
+ *
+ * Usage:
+ *   (no arguments)                        Interactive menu
+ *   --batch <file> [--threads <n>]        Run a JSON-lines file of operations without prompting
+ *
  * @author Astra Nguyen
  * @version 1.0
  */
 public class Main {
     /**
-     * Main method 
-     * 
-     * @param args Command line arguments (not used)
+     * Main method
+     *
+     * @param args Command line arguments (see class documentation)
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(runBatch(args) ? 0 : 1);
+        }
+
         NPSS_DBApp npssApp = new NPSS_DBApp();
-        
+
         try {
             // Connect to database
             boolean connected = npssApp.connectToDatabase();
-            
+
             if (connected) {
                 // Start the application loop
                 npssApp.run();
@@ -34,7 +48,7 @@ public class Main {
                 System.err.println("  - DB_USERNAME");
                 System.err.println("  - DB_PASSWORD");
             }
-            
+
         } catch (SQLException e) {
             System.err.println("Database connection error:");
             System.err.println("  Message: " + e.getMessage());
@@ -52,4 +66,53 @@ public class Main {
             npssApp.closeConnection();
         }
     }
+
+    /**
+     * Runs a batch file of operations
+     *
+     * @param args Command line arguments
+     * @return true if every operation succeeded
+     */
+    private static boolean runBatch(String[] args) {
+        Path file = null;
+        int threads = 1;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch":
+                        file = Paths.get(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            System.err.println("Usage: --batch <file> [--threads <n>]");
+            return false;
+        }
+        if (file == null) {
+            System.err.println("Usage: --batch <file> [--threads <n>]");
+            return false;
+        }
+
+        try {
+            DataSource dataSource = ConnectDatabase.getDataSource();
+            BatchRunner runner = new BatchRunner(dataSource, CommandRegistry.all(dataSource), threads);
+            return runner.run(file);
+        } catch (SQLException e) {
+            System.err.println("Database connection error:");
+            System.err.println("  Message: " + e.getMessage());
+            return false;
+        } catch (IOException e) {
+            System.err.println("Error reading batch file: " + e.getMessage());
+            return false;
+        } finally {
+            ConnectDatabase.closeDataSource();
+        }
+    }
 }
@@ -2,7 +2,10 @@ package com.npss.database;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
 import com.npss.database.ConnectDatabase;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.TransactionMetrics;
 import com.npss.database.queries.*;
 
 
@@ -18,7 +21,7 @@ import com.npss.database.queries.*;
  */
 
 public class NPSS_DBApp {
-    private Connection connection; 
+    private DataSource dataSource; 
     private Scanner scanner;
 
     /*
@@ -35,10 +38,12 @@ public class NPSS_DBApp {
      */
     public boolean connectToDatabase()throws SQLException{
         try{
-            this.connection = ConnectDatabase.getConnection();
-            if (this.connection != null && !this.connection.isClosed()) {
-                System.out.println("Database connected successfully!");
-                return true;
+            this.dataSource = ConnectDatabase.getDataSource();
+            try (Connection connection = dataSource.getConnection()) {
+                if (connection != null && !connection.isClosed()) {
+                    System.out.println("Database connected successfully!");
+                    return true;
+                }
             }
         }catch(SQLException e){
             System.err.println("SQL Exception occurred:");
@@ -85,78 +90,62 @@ public class NPSS_DBApp {
 
     /**
      * Processes the user's menu choice and executes the corresponding action
+     * A pooled connection is only borrowed once all input has been collected (see runCommand)
      * @param choice The menu option selected by the user (1-18)
      */
     public void processMenuChoice(int choice){
         try {
             switch(choice){
                 case 1:
-                    Query1_InsertVisitor query1 = new Query1_InsertVisitor(connection, scanner);
-                    query1.execute();
+                    runCommand(new Query1_InsertVisitor());
                     break;
                 case 2:
-                    Query2_InsertRanger query2 = new Query2_InsertRanger(connection, scanner);
-                    query2.execute();
+                    runCommand(new Query2_InsertRanger());
                     break;
                 case 3:
-                    Query3_InsertRangerTeam query3 = new Query3_InsertRangerTeam(connection, scanner);
-                    query3.execute();
+                    runCommand(new Query3_InsertRangerTeam());
                     break;
                 case 4:
-                    Query4_InsertDonation query4 = new Query4_InsertDonation(connection, scanner);
-                    query4.execute();
+                    runCommand(new Query4_InsertDonation());
                     break;
                 case 5:
-                    Query5_InsertResearcher query5 = new Query5_InsertResearcher(connection, scanner);
-                    query5.execute();
+                    runCommand(new Query5_InsertResearcher());
                     break;
                 case 6:
-                    Query6_InsertReport query6 = new Query6_InsertReport(connection, scanner);
-                    query6.execute();
+                    runCommand(new Query6_InsertReport());
                     break;
                 case 7:
-                    Query7_InsertParkProgram query7 = new Query7_InsertParkProgram(connection, scanner);
-                    query7.execute();
+                    runCommand(new Query7_InsertParkProgram());
                     break;
                 case 8:
-                    Query8_RetrieveEmergencyContacts query8 = new Query8_RetrieveEmergencyContacts(connection, scanner);
-                    query8.execute();
+                    runCommand(new Query8_RetrieveEmergencyContacts());
                     break;
                 case 9:
-                    Query9_RetrieveVisitorsInProgram query9 = new Query9_RetrieveVisitorsInProgram(connection, scanner);
-                    query9.execute();
+                    runCommand(new Query9_RetrieveVisitorsInProgram());
                     break;
                 case 10:
-                    Query10_RetrieveParkPrograms query10 = new Query10_RetrieveParkPrograms(connection, scanner);
-                    query10.execute();
+                    runCommand(new Query10_RetrieveParkPrograms());
                     break;
                 case 11:
-                    Query11_RetrieveDonationStats query11 = new Query11_RetrieveDonationStats(connection, scanner);
-                    query11.execute();
+                    runCommand(new Query11_RetrieveDonationStats());
                     break;
                 case 12:
-                    Query12_RetrieveRangersInTeam query12 = new Query12_RetrieveRangersInTeam(connection, scanner);
-                    query12.execute();
+                    runCommand(new Query12_RetrieveRangersInTeam());
                     break;
                 case 13:
-                    Query13_RetrieveAllIndividuals query13 = new Query13_RetrieveAllIndividuals(connection, scanner);
-                    query13.execute();
+                    browseIndividuals();
                     break;
                 case 14:
-                    Query14_UpdateResearcherSalary query14 = new Query14_UpdateResearcherSalary(connection, scanner);
-                    query14.execute();
+                    runCommand(new Query14_UpdateResearcherSalary());
                     break;
                 case 15:
-                    Query15_DeleteExpiredVisitors query15 = new Query15_DeleteExpiredVisitors(connection, scanner);
-                    query15.execute();
+                    purgeExpiredVisitors();
                     break;
                 case 16:
-                    ImportService importService = new ImportService(connection, scanner);
-                    importService.execute();
+                    runCommand(new ImportService(dataSource));
                     break;
                 case 17:
-                    ExportService exportService = new ExportService(connection, scanner);
-                    exportService.execute();
+                    runCommand(new ExportService(dataSource));
                     break;
                 default:
                     System.out.println("\nInvalid choice! Please select an option between 1-18.");
@@ -171,6 +160,8 @@ public class NPSS_DBApp {
             if (e.getErrorCode() != 0) {
                 System.err.println("  Error Code: " + e.getErrorCode());
             }
+        } catch (IllegalArgumentException e) {
+            System.err.println("\nError: " + e.getMessage());
         } catch (Exception e) {
             System.err.println("\nAn unexpected error occurred: " + e.getMessage());
             e.printStackTrace();
@@ -182,12 +173,94 @@ public class NPSS_DBApp {
     }
 
     /**
-     * Close the database connection and close input scanner 
+     * Runs a command interactively: prompts for its parameters, then runs it
+     * The connection is borrowed after the prompts, so no transaction is ever open
+     * while waiting for the user to type
+     * @param command The command to run
+     * @throws SQLException If a database error occurs
+     */
+    private <P> void runCommand(Command<P> command) throws SQLException {
+        P params = command.readParams(scanner, dataSource);
+        try (Connection connection = dataSource.getConnection()) {
+            command.run(connection, params);
+        }
+    }
+
+    /**
+     * Runs Query 13 interactively; with a page size, shows one page at a time with next and
+     * previous navigation. A connection is only borrowed while a page is being fetched
+     * @throws SQLException If a database error occurs
+     */
+    private void browseIndividuals() throws SQLException {
+        Query13_RetrieveAllIndividuals query = new Query13_RetrieveAllIndividuals(dataSource);
+        Query13_RetrieveAllIndividuals.Params params = query.readParams(scanner, dataSource);
+        if (params.compare || params.pageSize == 0) {
+            try (Connection connection = dataSource.getConnection()) {
+                query.run(connection, params);
+            }
+            return;
+        }
+
+        while (true) {
+            Query13_RetrieveAllIndividuals.Page page;
+            try (Connection connection = dataSource.getConnection()) {
+                page = query.runPage(connection, params);
+            }
+            if (page.nextCursor == null && page.previousCursor == null) {
+                return;
+            }
+            System.out.print("\n" + (page.nextCursor != null ? "(n) Next page  " : "") +
+                             (page.previousCursor != null ? "(p) Previous page  " : "") + "(press Enter to stop): ");
+            String choice = scanner.nextLine().trim().toLowerCase();
+            if (choice.equals("n") && page.nextCursor != null) {
+                params.cursor = page.nextCursor;
+            } else if (choice.equals("p") && page.previousCursor != null) {
+                params.cursor = page.previousCursor;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs Query 15 interactively; a chunked purge runs in the background if asked to, and
+     * while one is running this shows its progress and offers to cancel it instead
+     * @throws SQLException If a database error occurs
+     */
+    private void purgeExpiredVisitors() throws SQLException {
+        VisitorPurge purge = VisitorPurge.getBackground();
+        if (purge != null) {
+            System.out.println("\n[Query 15] " + purge.status());
+            System.out.print("Cancel the purge? (y/N): ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                purge.cancel();
+                System.out.println("The purge will stop after its current chunk.");
+            }
+            return;
+        }
+
+        Query15_DeleteExpiredVisitors query = new Query15_DeleteExpiredVisitors();
+        Query15_DeleteExpiredVisitors.Params params = query.readParams(scanner, dataSource);
+        if (params.mode.equals("chunked") && params.background) {
+            VisitorPurge.startBackground(dataSource, params);
+            System.out.println("Purge started in the background. Select option 15 again to see its progress or cancel it.");
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            query.run(connection, params);
+        }
+    }
+
+    /**
+     * Close the database connection pool and close input scanner 
+     * A background purge is cancelled first, and its current chunk allowed to finish
      */
     public void closeConnection(){
-        if(connection != null){
-            ConnectDatabase.closeConnection(connection);
-            connection = null;
+        VisitorPurge.stopBackground();
+        if(dataSource != null){
+            TransactionMetrics.printSummary();
+            ConnectDatabase.closeDataSource();
+            dataSource = null;
         }
         if (scanner != null) {
             scanner.close();
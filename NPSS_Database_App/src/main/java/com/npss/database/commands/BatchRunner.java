@@ -0,0 +1,213 @@
+package com.npss.database.commands;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+/**
+ * Non-interactive runner: executes a JSON-lines file of operations without prompting
+ *
+ * Each non-empty line is one operation, e.g.
+ * {"op":"insertRangerTeam","team_id":"T100","formation_date":"2024-04-01"}
+ * Lines starting with # are comments.
+ *
+ * Every operation borrows a connection from the pool for its own duration. With more than
+ * one thread, operations run concurrently and may complete out of file order.
+ * Per-operation latency, total throughput and write transaction durations are reported at the end.
+ * Operations with an execution field ("inline" or "procedure") are reported per execution,
+ * so that a file running an operation both ways compares their latencies side by side.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class BatchRunner {
+    private final DataSource dataSource;
+    private final Map<String, Command<?>> commands = new HashMap<>();
+    private final int threads;
+
+    // Statistics per operation name, guarded by this
+    private final Map<String, OperationStats> stats = new TreeMap<>();
+
+    /**
+     * @param dataSource Pool to borrow connections from
+     * @param commands Operations that can appear in the file
+     * @param threads Number of operations run concurrently (1 runs them in file order)
+     */
+    public BatchRunner(DataSource dataSource, Collection<Command<?>> commands, int threads) {
+        this.dataSource = dataSource;
+        for (Command<?> command : commands) {
+            this.commands.put(command.getName(), command);
+        }
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Runs every operation in the file and prints a summary
+     *
+     * @param file JSON-lines file of operations
+     * @return true if every operation succeeded
+     * @throws IOException if the file cannot be read
+     */
+    public boolean run(Path file) throws IOException {
+        System.out.println("[Batch] Running operations from: " + file.toAbsolutePath() + " (threads: " + threads + ")");
+
+        ThreadPoolExecutor executor = null;
+        if (threads > 1) {
+            // Bounded queue: the reader runs operations itself when workers fall behind
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final int currentLine = lineNumber;
+                final String operation = line;
+                if (executor == null) {
+                    runOperation(currentLine, operation);
+                } else {
+                    executor.execute(() -> runOperation(currentLine, operation));
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+                try {
+                    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        return printSummary(elapsedNanos);
+    }
+
+    /**
+     * Parses and runs one operation, recording its latency
+     */
+    private void runOperation(int lineNumber, String line) {
+        String op = "(invalid)";
+        long start = System.nanoTime();
+        try {
+            OperationArgs args = new OperationArgs(JsonParser.parseObject(line));
+            op = args.getOp();
+            if (args.has("execution")) {
+                op += " (" + args.getString("execution").toLowerCase() + ")";
+            }
+            Command<?> command = commands.get(args.getOp());
+            if (command == null) {
+                throw new IllegalArgumentException("Unknown operation '" + args.getOp() + "'");
+            }
+            start = System.nanoTime();
+            execute(command, args);
+            record(op, System.nanoTime() - start, true);
+        } catch (SQLException | RuntimeException e) {
+            record(op, System.nanoTime() - start, false);
+            System.err.println("Line " + lineNumber + ": " + op + " failed: " + e.getMessage());
+        }
+    }
+
+    private <P> void execute(Command<P> command, OperationArgs args) throws SQLException {
+        P params = command.parseParams(args);
+        try (Connection connection = dataSource.getConnection()) {
+            command.run(connection, params);
+        }
+    }
+
+    private synchronized void record(String op, long nanos, boolean succeeded) {
+        stats.computeIfAbsent(op, key -> new OperationStats()).add(nanos, succeeded);
+    }
+
+    /**
+     * Prints per-operation latency and total throughput
+     *
+     * @return true if every operation succeeded
+     */
+    private synchronized boolean printSummary(long elapsedNanos) {
+        long total = 0;
+        long failed = 0;
+        for (OperationStats opStats : stats.values()) {
+            total += opStats.count;
+            failed += opStats.failures;
+        }
+        double seconds = elapsedNanos / 1_000_000_000.0;
+
+        System.out.println("\n" + "=".repeat(84));
+        System.out.println("Batch Summary");
+        System.out.println("=".repeat(84));
+        System.out.println(String.format("%-32s %8s %8s %9s %9s %9s %9s",
+            "Operation", "Count", "Failed", "Avg ms", "p50 ms", "p95 ms", "Max ms"));
+        for (Map.Entry<String, OperationStats> entry : stats.entrySet()) {
+            OperationStats opStats = entry.getValue();
+            System.out.println(String.format("%-32s %8d %8d %9.2f %9.2f %9.2f %9.2f",
+                entry.getKey(), opStats.count, opStats.failures, opStats.averageMillis(),
+                opStats.percentileMillis(50), opStats.percentileMillis(95), opStats.percentileMillis(100)));
+        }
+        System.out.println("-".repeat(84));
+        System.out.println("Total operations: " + total);
+        System.out.println("Succeeded: " + (total - failed));
+        System.out.println("Failed: " + failed);
+        System.out.println(String.format("Elapsed: %.2f s", seconds));
+        System.out.println(String.format("Throughput: %.1f operations/sec", seconds > 0 ? total / seconds : 0.0));
+        TransactionMetrics.printSummary();
+
+        return failed == 0;
+    }
+
+    /**
+     * Latencies of one operation type
+     */
+    private static final class OperationStats {
+        private long[] latencies = new long[64];
+        private int count = 0;
+        private int failures = 0;
+        private long totalNanos = 0;
+
+        private void add(long nanos, boolean succeeded) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            totalNanos += nanos;
+            if (!succeeded) {
+                failures++;
+            }
+        }
+
+        private double averageMillis() {
+            return count == 0 ? 0.0 : totalNanos / 1_000_000.0 / count;
+        }
+
+        private double percentileMillis(int percentile) {
+            if (count == 0) {
+                return 0.0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.npss.database.commands;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Scanner;
+import javax.sql.DataSource;
+
+/**
+ * Common interface for the NPSS queries, import and export
+ *
+ * Every operation is split into two steps:
+ * 1. Collecting its parameters into a typed parameter object, either interactively
+ *    (readParams) or from a batch operation (parseParams)
+ * 2. Running it against a connection (run), without any user input
+ *
+ * Write operations open their transaction inside run() only, after every input has been
+ * collected, and report its duration to TransactionMetrics.
+ *
+ * This lets the same operation be driven by the interactive menu or by the BatchRunner.
+ *
+ * @param <P> Type of the parameter object (Void for operations without parameters)
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public interface Command<P> {
+
+    /**
+     * @return Operation name used in batch files (e.g. "insertDonation")
+     */
+    String getName();
+
+    /**
+     * Prompts the user for the parameters of this operation
+     *
+     * @param scanner Scanner to read user input from
+     * @param dataSource Pool for read-only lookups that decide which questions to ask; a
+     *                   connection borrowed here must be returned before prompting again, so that
+     *                   no connection (and no transaction) is held while waiting for the user
+     * @return The collected parameters
+     * @throws SQLException if a lookup fails
+     * @throws IllegalArgumentException if the input is invalid
+     */
+    P readParams(Scanner scanner, DataSource dataSource) throws SQLException;
+
+    /**
+     * Builds the parameters of this operation from a batch operation
+     *
+     * @param args Fields of the batch operation
+     * @return The parameters
+     * @throws IllegalArgumentException if a field is missing or invalid
+     */
+    P parseParams(OperationArgs args);
+
+    /**
+     * Runs this operation
+     *
+     * @param connection Connection to run the operation on
+     * @param params Parameters collected by readParams or parseParams
+     * @throws SQLException if a database error occurs
+     */
+    void run(Connection connection, P params) throws SQLException;
+}
@@ -0,0 +1,233 @@
+package com.npss.database.commands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fields of one batch operation (one JSON object), with typed accessors
+ *
+ * Example operation:
+ * {"op":"insertDonation","donation_id":"D100","donor_id":"I001","date":"2024-05-01","amount":25.00,"payment_method":"check","check_number":"1042"}
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class OperationArgs {
+    private final Map<String, Object> values;
+
+    public OperationArgs(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * @return The operation name ("op" field)
+     */
+    public String getOp() {
+        return getString("op");
+    }
+
+    /**
+     * @return true if the field is present and not null
+     */
+    public boolean has(String key) {
+        return values.get(key) != null;
+    }
+
+    /**
+     * Gets a required text field
+     *
+     * @throws IllegalArgumentException if the field is missing or empty
+     */
+    public String getString(String key) {
+        String value = getOptionalString(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required field '" + key + "'");
+        }
+        return value;
+    }
+
+    /**
+     * Gets an optional text field
+     *
+     * @return The trimmed value, or null if the field is missing, null or empty
+     */
+    public String getOptionalString(String key) {
+        Object value = values.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Map || value instanceof List) {
+            throw new IllegalArgumentException("Field '" + key + "' must be a single value");
+        }
+        String text = value.toString().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * Gets a required date field (YYYY-MM-DD)
+     */
+    public java.sql.Date getDate(String key) {
+        return parseDate(getString(key), key);
+    }
+
+    /**
+     * Gets an optional date field (YYYY-MM-DD)
+     *
+     * @return The date, or null if the field is missing or empty
+     */
+    public java.sql.Date getOptionalDate(String key) {
+        return parseOptionalDate(getOptionalString(key), key);
+    }
+
+    /**
+     * Gets a required whole number field
+     */
+    public int getInt(String key) {
+        Object value = values.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return parseInt(getString(key), key);
+    }
+
+    /**
+     * Gets an optional whole number field
+     */
+    public int getInt(String key, int defaultValue) {
+        return values.get(key) == null ? defaultValue : getInt(key);
+    }
+
+    /**
+     * Gets a required decimal number field
+     */
+    public double getDouble(String key) {
+        Object value = values.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return parseDouble(getString(key), key);
+    }
+
+    /**
+     * Gets an optional true/false field
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return Boolean.parseBoolean(value.toString().trim());
+    }
+
+    /**
+     * Gets an optional list of text values
+     *
+     * @return The values, or an empty list if the field is missing
+     */
+    public List<String> getStringList(String key) {
+        Object value = values.get(key);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Field '" + key + "' must be a list");
+        }
+        List<String> result = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            if (item != null && !item.toString().trim().isEmpty()) {
+                result.add(item.toString().trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets an optional list of nested objects
+     *
+     * @return The nested objects, or an empty list if the field is missing
+     */
+    @SuppressWarnings("unchecked")
+    public List<OperationArgs> getObjectList(String key) {
+        Object value = values.get(key);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Field '" + key + "' must be a list");
+        }
+        List<OperationArgs> result = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            if (!(item instanceof Map)) {
+                throw new IllegalArgumentException("Field '" + key + "' must be a list of objects");
+            }
+            result.add(new OperationArgs((Map<String, Object>) item));
+        }
+        return result;
+    }
+
+    /**
+     * Parses a date in YYYY-MM-DD format
+     *
+     * @param text Date text
+     * @param fieldName Name of the field, used in the error message
+     * @throws IllegalArgumentException if the date is not valid
+     */
+    public static java.sql.Date parseDate(String text, String fieldName) {
+        try {
+            return java.sql.Date.valueOf(text.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid date for " + fieldName + ": '" + text +
+                "'. Please use YYYY-MM-DD format.", e);
+        }
+    }
+
+    /**
+     * Parses an optional date in YYYY-MM-DD format
+     *
+     * @return The date, or null if the text is null or empty
+     */
+    public static java.sql.Date parseOptionalDate(String text, String fieldName) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        return parseDate(text, fieldName);
+    }
+
+    /**
+     * Parses a whole number
+     *
+     * @throws IllegalArgumentException if the text is not a number
+     */
+    public static int parseInt(String text, String fieldName) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + fieldName + ": '" + text + "'", e);
+        }
+    }
+
+    /**
+     * Parses a decimal number
+     *
+     * @throws IllegalArgumentException if the text is not a number
+     */
+    public static double parseDouble(String text, String fieldName) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount for " + fieldName + ": '" + text + "'", e);
+        }
+    }
+
+    /**
+     * @return null for null or empty text, otherwise the text
+     */
+    public static String emptyToNull(String text) {
+        return (text == null || text.isEmpty()) ? null : text;
+    }
+}
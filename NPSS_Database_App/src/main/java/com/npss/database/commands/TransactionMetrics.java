@@ -0,0 +1,87 @@
+package com.npss.database.commands;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records how long each write transaction stays open, per operation
+ *
+ * Write operations call start() right after setAutoCommit(false) and record() once the
+ * transaction has been committed or rolled back. Because all input is collected before
+ * run() is called, these durations should only ever reflect database work: a maximum in
+ * the seconds range means a transaction is waiting on something it should not.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public final class TransactionMetrics {
+    // Transactions slower than this are counted separately
+    private static final long SLOW_TRANSACTION_MILLIS = 1000;
+
+    private static final Map<String, Entry> entries = new TreeMap<>();
+
+    private TransactionMetrics() {
+    }
+
+    /**
+     * Marks the start of a transaction
+     *
+     * @return Start time to pass to record()
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a finished (committed or rolled back) transaction
+     *
+     * @param operation Name of the operation that ran the transaction
+     * @param startNanos Value returned by start()
+     */
+    public static synchronized void record(String operation, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Entry entry = entries.computeIfAbsent(operation, key -> new Entry());
+        entry.count++;
+        entry.totalNanos += nanos;
+        entry.maxNanos = Math.max(entry.maxNanos, nanos);
+        if (nanos > SLOW_TRANSACTION_MILLIS * 1_000_000L) {
+            entry.slowCount++;
+        }
+    }
+
+    /**
+     * @return Longest transaction recorded so far, in milliseconds
+     */
+    public static synchronized double getMaxMillis() {
+        long max = 0;
+        for (Entry entry : entries.values()) {
+            max = Math.max(max, entry.maxNanos);
+        }
+        return max / 1_000_000.0;
+    }
+
+    /**
+     * Prints the transaction durations per operation (nothing if no transaction ran)
+     */
+    public static synchronized void printSummary() {
+        if (entries.isEmpty()) {
+            return;
+        }
+        System.out.println("\nWrite transaction durations:");
+        System.out.println(String.format("%-28s %8s %9s %9s %8s",
+            "Operation", "Count", "Avg ms", "Max ms", "> " + SLOW_TRANSACTION_MILLIS + " ms"));
+        for (Map.Entry<String, Entry> item : entries.entrySet()) {
+            Entry entry = item.getValue();
+            System.out.println(String.format("%-28s %8d %9.2f %9.2f %8d",
+                item.getKey(), entry.count, entry.totalNanos / 1_000_000.0 / entry.count,
+                entry.maxNanos / 1_000_000.0, entry.slowCount));
+        }
+    }
+
+    private static final class Entry {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+        private long slowCount;
+    }
+}
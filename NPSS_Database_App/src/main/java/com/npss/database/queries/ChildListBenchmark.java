@@ -0,0 +1,267 @@
+package com.npss.database.queries;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+
+/**
+ * Child List Benchmark: Compare the comma-separated list procedures of Queries 1, 2 and 5
+ * (sp_InsertVisitor, sp_InsertRanger, sp_InsertResearcher) with their table-valued parameter
+ * versions (sp_InsertVisitorTvp, ...) for 1, 10 and 100 child rows per call
+ *
+ * Each procedure is called through the same code as the queries with execution "procedure"
+ * and "tvp" (prepareProcedure/callProcedure): one warm-up call, then runs timed calls, each
+ * with a new individual. The programs and teams the child rows refer to are created first.
+ * Everything runs in one transaction that is rolled back at the end, so the benchmark leaves
+ * no rows behind.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class ChildListBenchmark implements Command<ChildListBenchmark.Params> {
+
+    // Child rows per call
+    private static final int[] CHILD_COUNTS = {1, 10, 100};
+
+    // Timed calls per procedure and child count when none is given
+    public static final int DEFAULT_RUNS = 5;
+
+    private static final String INSERT_PROGRAM_SQL =
+        "INSERT INTO Program(program_name, type, start_date, duration) " +
+        "VALUES (?, 'Benchmark', ?, 1)";
+
+    private static final String INSERT_TEAM_SQL =
+        "INSERT INTO Ranger_team(team_id, formation_date) " +
+        "VALUES (?, ?)";
+
+    /**
+     * Parameters of the benchmark
+     */
+    public static class Params {
+        public int runs = DEFAULT_RUNS;
+    }
+
+    /**
+     * The calls of one procedure pair, set up for a number of child rows
+     */
+    private interface Calls {
+        CallableStatement prepare(Connection connection, String execution) throws SQLException;
+
+        /**
+         * Calls the procedure once for the individual idNumber
+         */
+        void call(CallableStatement cstmt, String execution, String idNumber) throws SQLException;
+    }
+
+    @Override
+    public String getName() {
+        return "benchmarkChildLists";
+    }
+
+    /**
+     * Prompts for the number of timed calls
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Benchmark] Compare the list procedures with their table-valued parameter versions");
+        Params params = new Params();
+
+        System.out.print("Timed calls per procedure (press Enter for " + DEFAULT_RUNS + "): ");
+        String runs = scanner.nextLine().trim();
+        if (!runs.isEmpty()) {
+            params.runs = OperationArgs.parseInt(runs, "timed calls");
+        }
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: runs (optional, default 5)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.runs = args.getInt("runs", DEFAULT_RUNS);
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (params.runs < 1) {
+            throw new IllegalArgumentException("Timed calls must be at least 1.");
+        }
+    }
+
+    /**
+     * Executes the benchmark
+     *
+     * @throws SQLException if a database error occurs
+     */
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
+        // Prefix of every key the benchmark creates, unique per run
+        String tag = "BM" + Long.toString(System.currentTimeMillis(), 36).toUpperCase();
+        int maxChildren = CHILD_COUNTS[CHILD_COUNTS.length - 1];
+        java.sql.Date today = new java.sql.Date(System.currentTimeMillis());
+
+        boolean previousAutoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                List<String> programs = new ArrayList<>();
+                List<String> teams = new ArrayList<>();
+                try (PreparedStatement pstmtProgram = connection.prepareStatement(INSERT_PROGRAM_SQL);
+                     PreparedStatement pstmtTeam = connection.prepareStatement(INSERT_TEAM_SQL)) {
+                    for (int i = 1; i <= maxChildren; i++) {
+                        programs.add(tag + " program " + i);
+                        pstmtProgram.setString(1, programs.get(i - 1));
+                        pstmtProgram.setDate(2, today);
+                        pstmtProgram.addBatch();
+
+                        teams.add(tag + "-T" + i);
+                        pstmtTeam.setString(1, teams.get(i - 1));
+                        pstmtTeam.setDate(2, today);
+                        pstmtTeam.addBatch();
+                    }
+                    pstmtProgram.executeBatch();
+                    pstmtTeam.executeBatch();
+                }
+
+                System.out.println("List procedures vs table-valued parameters, average of " + params.runs +
+                                   " call(s) after one warm-up call (rolled back)");
+                System.out.println(String.format("%-22s %8s %12s %12s %8s", "Procedure", "Children", "List (ms)",
+                                                 "TVP (ms)", "Speedup"));
+
+                int[] counter = {0};
+                for (int children : CHILD_COUNTS) {
+                    List<String> childPrograms = programs.subList(0, children);
+                    List<String> childTeams = teams.subList(0, children);
+                    List<String> certifications = new ArrayList<>();
+                    for (int i = 1; i <= children; i++) {
+                        certifications.add("Certification " + i);
+                    }
+
+                    compare(connection, params.runs, "sp_InsertVisitor", children, new Calls() {
+                        @Override
+                        public CallableStatement prepare(Connection c, String execution) throws SQLException {
+                            return Query1_InsertVisitor.prepareProcedure(c, execution);
+                        }
+
+                        @Override
+                        public void call(CallableStatement cstmt, String execution, String idNumber) throws SQLException {
+                            Query1_InsertVisitor.Params visitor = new Query1_InsertVisitor.Params();
+                            visitor.individual = individual(idNumber);
+                            visitor.visitDate = today;
+                            visitor.programNames.addAll(childPrograms);
+                            visitor.execution = execution;
+                            Query1_InsertVisitor.callProcedure(cstmt, visitor);
+                        }
+                    }, tag, counter);
+
+                    compare(connection, params.runs, "sp_InsertRanger", children, new Calls() {
+                        @Override
+                        public CallableStatement prepare(Connection c, String execution) throws SQLException {
+                            return Query2_InsertRanger.prepareProcedure(c, execution);
+                        }
+
+                        @Override
+                        public void call(CallableStatement cstmt, String execution, String idNumber) throws SQLException {
+                            Query2_InsertRanger.Params ranger = new Query2_InsertRanger.Params();
+                            ranger.individual = individual(idNumber);
+                            ranger.teamId = teams.get(0);
+                            ranger.startDate = today;
+                            ranger.status = "active";
+                            ranger.certifications.addAll(certifications);
+                            ranger.execution = execution;
+                            Query2_InsertRanger.callProcedure(cstmt, ranger);
+                        }
+                    }, tag, counter);
+
+                    compare(connection, params.runs, "sp_InsertResearcher", children, new Calls() {
+                        @Override
+                        public CallableStatement prepare(Connection c, String execution) throws SQLException {
+                            return Query5_InsertResearcher.prepareProcedure(c, execution);
+                        }
+
+                        @Override
+                        public void call(CallableStatement cstmt, String execution, String idNumber) throws SQLException {
+                            Query5_InsertResearcher.Params researcher = new Query5_InsertResearcher.Params();
+                            researcher.individual = individual(idNumber);
+                            researcher.researchField = "Benchmark";
+                            researcher.hireDate = today;
+                            researcher.salary = 1;
+                            for (String teamId : childTeams) {
+                                Query5_InsertResearcher.TeamReport team = new Query5_InsertResearcher.TeamReport();
+                                team.teamId = teamId;
+                                team.reportDate = today;
+                                team.summary = "Benchmark";
+                                researcher.teams.add(team);
+                            }
+                            researcher.execution = execution;
+                            Query5_InsertResearcher.callProcedure(cstmt, researcher);
+                        }
+                    }, tag, counter);
+                }
+            } finally {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        } finally {
+            connection.setAutoCommit(previousAutoCommit);
+        }
+    }
+
+    /**
+     * Times the list and the table-valued parameter version of a procedure and prints one row
+     */
+    private static void compare(Connection connection, int runs, String procedure, int children, Calls calls,
+                                String tag, int[] counter) throws SQLException {
+        double listMillis = time(connection, runs, "procedure", calls, tag, counter);
+        double tvpMillis = time(connection, runs, "tvp", calls, tag, counter);
+        System.out.println(String.format("%-22s %8d %12.2f %12.2f %7.2fx", procedure, children, listMillis, tvpMillis,
+                                         tvpMillis > 0 ? listMillis / tvpMillis : 0.0));
+    }
+
+    /**
+     * @return The average time of a call, in milliseconds, after one warm-up call
+     */
+    private static double time(Connection connection, int runs, String execution, Calls calls, String tag,
+                               int[] counter) throws SQLException {
+        try (CallableStatement cstmt = calls.prepare(connection, execution)) {
+            calls.call(cstmt, execution, tag + "-" + (++counter[0]));
+
+            long start = System.nanoTime();
+            for (int run = 0; run < runs; run++) {
+                calls.call(cstmt, execution, tag + "-" + (++counter[0]));
+            }
+            return (System.nanoTime() - start) / 1_000_000.0 / runs;
+        }
+    }
+
+    private static IndividualDetails individual(String idNumber) {
+        IndividualDetails individual = new IndividualDetails();
+        individual.idNumber = idNumber;
+        individual.firstName = "Benchmark";
+        individual.lastName = "Benchmark";
+        individual.gender = "O";
+        individual.street = "1 Benchmark Way";
+        individual.city = "Benchmark";
+        individual.state = "OK";
+        individual.postalCode = "00000";
+        individual.dateOfBirth = java.sql.Date.valueOf("1990-01-01");
+        individual.newsletterStatus = false;
+        return individual;
+    }
+}
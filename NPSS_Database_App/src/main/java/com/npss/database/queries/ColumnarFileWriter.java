@@ -0,0 +1,263 @@
+package com.npss.database.queries;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes rows of strings to a compact binary columnar file
+ *
+ * Rows are buffered in row groups of ROW_GROUP_SIZE rows; each group is written column after
+ * column, so memory use only depends on the group size. Columns with many repeated values
+ * (city, state, postal code) are dictionary-encoded per row group; the others are stored
+ * plainly, and every column chunk is then deflated (zlib). The footer records, for each row
+ * group and column, where the column chunk is and the min/max of its values (in
+ * String.compareTo order), so a reader can skip row groups.
+ *
+ * Layout (numbers are unsigned LEB128 varints unless noted, strings are varint length +
+ * UTF-8 bytes):
+ * <pre>
+ * "NPSSCOL1"
+ * row group chunks, column after column, each zlib-compressed:
+ *   plain:      per row: length + 1 (0 = null), bytes
+ *   dictionary: entry count, entries; then per row: entry index + 1 (0 = null)
+ * footer:
+ *   column count; per column: name, encoding (0 = plain, 1 = dictionary)
+ *   row group count; per row group: row count; per column: chunk offset (8-byte long),
+ *     compressed chunk length, null count, has min/max (1 byte), [min, max]
+ *   per column: file min/max, same encoding as above
+ * footer length (4-byte int), "NPSSCOL1"
+ * </pre>
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class ColumnarFileWriter implements RowWriter {
+    static final int ROW_GROUP_SIZE = 64 * 1024;
+    private static final byte[] MAGIC = "NPSSCOL1".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final String[] names;
+    private final Column[] columns;
+    private final ByteArrayOutputStream footerGroups = new ByteArrayOutputStream();
+    private long offset = 0;
+    private int rowGroupCount = 0;
+    private int rowsInGroup = 0;
+    private int fieldIndex = 0;
+
+    /**
+     * Creates or replaces a file
+     *
+     * @param file The file to write
+     * @param names Column names
+     * @param dictionaryColumns Indexes of the columns to dictionary-encode
+     * @throws IOException if the file cannot be created
+     */
+    ColumnarFileWriter(Path file, String[] names, Set<Integer> dictionaryColumns) throws IOException {
+        this.out = new BufferedOutputStream(Files.newOutputStream(file), CsvChannelWriter.DEFAULT_BUFFER_SIZE);
+        this.names = names.clone();
+        this.columns = new Column[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = new Column(dictionaryColumns.contains(i));
+        }
+        write(MAGIC);
+    }
+
+    @Override
+    public void field(String value) throws IOException {
+        if (fieldIndex >= columns.length) {
+            throw new IOException("Row has more than " + columns.length + " fields");
+        }
+        columns[fieldIndex++].add(value);
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        // Missing trailing fields are nulls
+        while (fieldIndex < columns.length) {
+            columns[fieldIndex++].add(null);
+        }
+        fieldIndex = 0;
+        rowsInGroup++;
+        if (rowsInGroup == ROW_GROUP_SIZE) {
+            writeRowGroup();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowsInGroup > 0) {
+                writeRowGroup();
+            }
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            putVarint(footer, columns.length);
+            for (int i = 0; i < columns.length; i++) {
+                putString(footer, names[i]);
+                footer.write(columns[i].dictionary != null ? 1 : 0);
+            }
+            putVarint(footer, rowGroupCount);
+            footerGroups.writeTo(footer);
+            for (Column column : columns) {
+                putMinMax(footer, column.fileMin, column.fileMax);
+            }
+            write(footer.toByteArray());
+            write(new byte[] {(byte) (footer.size() >>> 24), (byte) (footer.size() >>> 16),
+                              (byte) (footer.size() >>> 8), (byte) footer.size()});
+            write(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the buffered rows as one row group and records it in the footer
+     */
+    private void writeRowGroup() throws IOException {
+        putVarint(footerGroups, rowsInGroup);
+        for (Column column : columns) {
+            long chunkOffset = offset;
+            column.writeChunk(this);
+            putLong(footerGroups, chunkOffset);
+            putVarint(footerGroups, offset - chunkOffset);
+            putVarint(footerGroups, column.nullCount);
+            putMinMax(footerGroups, column.min, column.max);
+            column.reset();
+        }
+        rowGroupCount++;
+        rowsInGroup = 0;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        offset += bytes.length;
+    }
+
+    private void write(ByteArrayOutputStream bytes) throws IOException {
+        bytes.writeTo(out);
+        offset += bytes.size();
+    }
+
+    private static void putMinMax(ByteArrayOutputStream out, String min, String max) {
+        if (min == null) {
+            out.write(0);
+        } else {
+            out.write(1);
+            putString(out, min);
+            putString(out, max);
+        }
+    }
+
+    private static void putString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void putVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void putLong(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    /**
+     * Values of one column in the current row group
+     */
+    private static final class Column {
+        private final Map<String, Integer> dictionary;
+        private final List<String> entries;
+        private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+        private int nullCount = 0;
+        private String min;
+        private String max;
+        private String fileMin;
+        private String fileMax;
+
+        private Column(boolean dictionaryEncoded) {
+            this.dictionary = dictionaryEncoded ? new HashMap<>() : null;
+            this.entries = dictionaryEncoded ? new ArrayList<>() : null;
+        }
+
+        private void add(String value) {
+            if (value == null) {
+                nullCount++;
+                putVarint(values, 0);
+                return;
+            }
+            if (min == null || value.compareTo(min) < 0) {
+                min = value;
+            }
+            if (max == null || value.compareTo(max) > 0) {
+                max = value;
+            }
+
+            if (dictionary == null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                putVarint(values, bytes.length + 1L);
+                values.write(bytes, 0, bytes.length);
+            } else {
+                Integer index = dictionary.get(value);
+                if (index == null) {
+                    index = entries.size();
+                    dictionary.put(value, index);
+                    entries.add(value);
+                }
+                putVarint(values, index + 1L);
+            }
+        }
+
+        private void writeChunk(ColumnarFileWriter writer) throws IOException {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(values.size() / 2 + 64);
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(chunk)) {
+                if (dictionary != null) {
+                    ByteArrayOutputStream header = new ByteArrayOutputStream();
+                    putVarint(header, entries.size());
+                    for (String entry : entries) {
+                        putString(header, entry);
+                    }
+                    header.writeTo(deflater);
+                }
+                values.writeTo(deflater);
+            }
+            writer.write(chunk);
+
+            if (min != null) {
+                if (fileMin == null || min.compareTo(fileMin) < 0) {
+                    fileMin = min;
+                }
+                if (fileMax == null || max.compareTo(fileMax) > 0) {
+                    fileMax = max;
+                }
+            }
+        }
+
+        private void reset() {
+            values.reset();
+            nullCount = 0;
+            min = null;
+            max = null;
+            if (dictionary != null) {
+                dictionary.clear();
+                entries.clear();
+            }
+        }
+    }
+}
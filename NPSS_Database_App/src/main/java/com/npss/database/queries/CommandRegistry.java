@@ -0,0 +1,52 @@
+package com.npss.database.queries;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+
+/**
+ * All NPSS operations that can be run from a batch file, in menu order
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public final class CommandRegistry {
+
+    private CommandRegistry() {
+    }
+
+    /**
+     * @return A new instance of every operation (queries 1-15, import, export, the
+     *         donation rollup rebuild, donation analytics, the donation, ranger and
+     *         visitor imports and the child list benchmark)
+     * @param dataSource Pool of the operations that open connections of their own (e.g. the
+     *                   parallel import)
+     */
+    public static List<Command<?>> all(DataSource dataSource) {
+        return Arrays.asList(
+            new Query1_InsertVisitor(),
+            new Query2_InsertRanger(),
+            new Query3_InsertRangerTeam(),
+            new Query4_InsertDonation(),
+            new Query5_InsertResearcher(),
+            new Query6_InsertReport(),
+            new Query7_InsertParkProgram(),
+            new Query8_RetrieveEmergencyContacts(),
+            new Query9_RetrieveVisitorsInProgram(),
+            new Query10_RetrieveParkPrograms(),
+            new Query11_RetrieveDonationStats(),
+            new Query12_RetrieveRangersInTeam(),
+            new Query13_RetrieveAllIndividuals(dataSource),
+            new Query14_UpdateResearcherSalary(),
+            new Query15_DeleteExpiredVisitors(),
+            new ImportService(dataSource),
+            new ExportService(dataSource),
+            new DonationRollupService(),
+            new DonationAnalyticsService(),
+            new DonationImportService(),
+            new RangerImportService(),
+            new VisitorImportService(),
+            new ChildListBenchmark());
+    }
+}
@@ -0,0 +1,200 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes CSV rows to a file as UTF-8, through one reusable ByteBuffer and a FileChannel
+ *
+ * Fields are encoded straight into the buffer (no String is built per row or per field) and
+ * the buffer is written to the channel whenever it fills up, so memory use does not depend on
+ * the number of rows. Fields containing a comma, quote or line break are quoted.
+ * The channel may also be a ParallelGzipChannel, which compresses each buffer as a block.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class CsvChannelWriter implements RowWriter {
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private boolean firstField = true;
+    private long bytesWritten = 0;
+
+    /**
+     * @param channel Channel to write to (closed by close())
+     * @param bufferSize Size of the encoding buffer in bytes
+     */
+    CsvChannelWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 16));
+    }
+
+    /**
+     * Creates or replaces a file
+     *
+     * @param file The file to write
+     * @param bufferSize Size of the encoding buffer in bytes
+     * @return The writer
+     * @throws IOException if the file cannot be created
+     */
+    static CsvChannelWriter create(Path file, int bufferSize) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+        return new CsvChannelWriter(channel, bufferSize);
+    }
+
+    /**
+     * Creates or replaces a gzip file, compressed one buffer at a time on several threads
+     *
+     * @param file The file to write
+     * @param bufferSize Size of the encoding buffer (and of each compressed block) in bytes
+     * @param threads Number of compression threads
+     * @return The writer
+     * @throws IOException if the file cannot be created
+     */
+    static CsvChannelWriter createGzip(Path file, int bufferSize, int threads) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+        return new CsvChannelWriter(new ParallelGzipChannel(channel, threads), bufferSize);
+    }
+
+    /**
+     * Writes one field of the current row
+     *
+     * @param value Field value (null is written as an empty field)
+     * @throws IOException if the buffer cannot be written out
+     */
+    @Override
+    public void field(String value) throws IOException {
+        if (!firstField) {
+            putAscii(',');
+        }
+        firstField = false;
+        if (value == null) {
+            return;
+        }
+
+        boolean quote = needsQuotes(value);
+        if (quote) {
+            putAscii('"');
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                putAscii('"');
+            }
+            if (c < 0x80) {
+                putAscii(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                putCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+            } else {
+                // A lone surrogate is written as '?' like String.getBytes does
+                putCodePoint(Character.isSurrogate(c) ? '?' : c);
+            }
+        }
+        if (quote) {
+            putAscii('"');
+        }
+    }
+
+    /**
+     * Ends the current row
+     *
+     * @throws IOException if the buffer cannot be written out
+     */
+    @Override
+    public void endRow() throws IOException {
+        for (int i = 0; i < LINE_SEPARATOR.length(); i++) {
+            putAscii(LINE_SEPARATOR.charAt(i));
+        }
+        firstField = true;
+    }
+
+    /**
+     * Writes a whole row
+     *
+     * @throws IOException if the buffer cannot be written out
+     */
+    void row(String... values) throws IOException {
+        for (String value : values) {
+            field(value);
+        }
+        endRow();
+    }
+
+    /**
+     * @return Number of CSV bytes written so far (including bytes still in the buffer,
+     *         before any compression)
+     */
+    long getBytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    /**
+     * Writes out the buffer
+     *
+     * @throws IOException if the channel cannot be written
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void putAscii(char c) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) c);
+    }
+
+    private void putCodePoint(int codePoint) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush();
+        }
+        if (codePoint < 0x80) {
+            buffer.put((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            buffer.put((byte) (0xC0 | (codePoint >> 6)));
+            buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+        } else if (codePoint < 0x10000) {
+            buffer.put((byte) (0xE0 | (codePoint >> 12)));
+            buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+        } else {
+            buffer.put((byte) (0xF0 | (codePoint >> 18)));
+            buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+        }
+    }
+}
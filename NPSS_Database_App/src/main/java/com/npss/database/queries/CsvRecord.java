@@ -0,0 +1,199 @@
+package com.npss.database.queries;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fields of one CSV record, stored as ranges of a single char buffer
+ *
+ * Field values are already unquoted and, outside quotes, trimmed. The tokenizer refills the
+ * same record for every row; copy() makes a compact independent copy when a record has to be
+ * kept (e.g. handed to another thread).
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class CsvRecord {
+    // Parsed dates by yyyymmdd; import files repeat the same dates on many rows
+    private static final int DATE_CACHE_LIMIT = 100_000;
+    private static final Map<Integer, java.sql.Date> dateCache = new ConcurrentHashMap<>();
+
+    char[] chars;
+    int length = 0;
+    int[] fieldStart;
+    int[] fieldEnd;
+    int fieldCount = 0;
+    int lineNumber = 0;     // Line of the file where the record starts
+
+    CsvRecord() {
+        this(256, 8);
+    }
+
+    private CsvRecord(int charCapacity, int fieldCapacity) {
+        chars = new char[charCapacity];
+        fieldStart = new int[fieldCapacity];
+        fieldEnd = new int[fieldCapacity];
+    }
+
+    /**
+     * @return Number of fields
+     */
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return true if the record has no field holding any value (e.g. an empty line)
+     */
+    boolean isBlank() {
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldEnd[i] > fieldStart[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the field is missing or empty
+     */
+    boolean isEmpty(int field) {
+        return field >= fieldCount || fieldEnd[field] == fieldStart[field];
+    }
+
+    /**
+     * @return The field value, or null if the field is missing or empty
+     */
+    String getString(int field) {
+        return isEmpty(field) ? null : new String(chars, fieldStart[field], fieldEnd[field] - fieldStart[field]);
+    }
+
+    /**
+     * @return true if the field starts with the given text, ignoring case
+     */
+    boolean startsWithIgnoreCase(int field, String prefix) {
+        if (field >= fieldCount || fieldEnd[field] - fieldStart[field] < prefix.length()) {
+            return false;
+        }
+        return new String(chars, fieldStart[field], prefix.length()).equalsIgnoreCase(prefix);
+    }
+
+    /**
+     * Parses a YYYY-MM-DD date (month and day may have one digit) straight from the buffer
+     * The returned Date may be shared with other rows and must not be modified.
+     *
+     * @return The date, or null if the field is missing or empty
+     * @throws IllegalArgumentException if the field is not a valid date
+     */
+    java.sql.Date getDate(int field) {
+        if (isEmpty(field)) {
+            return null;
+        }
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+
+        int pos = start;
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int digits = 0;
+        int part = 0;
+        for (; pos <= end; pos++) {
+            char c = pos < end ? chars[pos] : '-';
+            if (c >= '0' && c <= '9') {
+                int value = c - '0';
+                if (part == 0) {
+                    year = year * 10 + value;
+                } else if (part == 1) {
+                    month = month * 10 + value;
+                } else {
+                    day = day * 10 + value;
+                }
+                digits++;
+            } else if (c == '-' && digits > 0 && part < 3) {
+                if ((part == 0 && digits != 4) || (part > 0 && digits > 2)) {
+                    break;
+                }
+                part++;
+                digits = 0;
+            } else {
+                break;
+            }
+        }
+        if (part != 3 || pos != end + 1) {
+            throw new IllegalArgumentException(getText(field));
+        }
+        Integer key = (year * 100 + month) * 100 + day;
+        java.sql.Date date = dateCache.get(key);
+        if (date == null) {
+            try {
+                date = java.sql.Date.valueOf(LocalDate.of(year, month, day));
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException(getText(field), e);
+            }
+            if (dateCache.size() < DATE_CACHE_LIMIT) {
+                dateCache.put(key, date);
+            }
+        }
+        return date;
+    }
+
+    /**
+     * @return The fields joined with commas, for error messages
+     */
+    String getText() {
+        StringBuilder text = new StringBuilder(length + fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(chars, fieldStart[i], fieldEnd[i] - fieldStart[i]);
+        }
+        return text.toString();
+    }
+
+    private String getText(int field) {
+        return new String(chars, fieldStart[field], fieldEnd[field] - fieldStart[field]);
+    }
+
+    /**
+     * @return An independent copy sized to this record
+     */
+    CsvRecord copy() {
+        CsvRecord copy = new CsvRecord(length, fieldCount);
+        System.arraycopy(chars, 0, copy.chars, 0, length);
+        System.arraycopy(fieldStart, 0, copy.fieldStart, 0, fieldCount);
+        System.arraycopy(fieldEnd, 0, copy.fieldEnd, 0, fieldCount);
+        copy.length = length;
+        copy.fieldCount = fieldCount;
+        copy.lineNumber = lineNumber;
+        return copy;
+    }
+
+    // Used by the tokenizer while filling the record
+
+    void clear(int lineNumber) {
+        this.length = 0;
+        this.fieldCount = 0;
+        this.lineNumber = lineNumber;
+    }
+
+    void append(char c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, length * 2);
+        }
+        chars[length++] = c;
+    }
+
+    void addField(int start, int end) {
+        if (fieldCount == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+        }
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount++] = end;
+    }
+}
@@ -0,0 +1,59 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Writes every column of a result set to a CSV file, with the column labels as header row
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class CsvResultSink implements ResultSink {
+    private final Path file;
+    private CsvChannelWriter writer;
+    private int columnCount;
+
+    /**
+     * @param file The file to create or replace
+     */
+    CsvResultSink(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void start(ResultSetMetaData metaData) throws SQLException, IOException {
+        columnCount = metaData.getColumnCount();
+        String[] header = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            header[i] = metaData.getColumnLabel(i + 1);
+        }
+        writer = CsvChannelWriter.create(file, CsvChannelWriter.DEFAULT_BUFFER_SIZE);
+        writer.row(header);
+    }
+
+    @Override
+    public void row(ResultSet rs) throws SQLException, IOException {
+        for (int i = 1; i <= columnCount; i++) {
+            writer.field(rs.getString(i));
+        }
+        writer.endRow();
+    }
+
+    @Override
+    public void finish(long rows) throws IOException {
+        writer.flush();
+        System.out.println("File saved to: " + file.toAbsolutePath());
+        System.out.println("Total records exported: " + rows);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
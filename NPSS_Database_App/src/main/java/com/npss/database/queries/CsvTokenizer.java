@@ -0,0 +1,229 @@
+package com.npss.database.queries;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.CharacterCodingException;
+
+/**
+ * Streaming CSV tokenizer (RFC 4180)
+ *
+ * Reads records from a Reader through its own char buffer and fills one reusable CsvRecord,
+ * so no String is created per line or per field. Supports quoted fields containing commas,
+ * line breaks and escaped quotes (""). Records end at \n, \r\n or \r outside quotes.
+ * Whitespace around unquoted fields is trimmed, like the old split-and-trim parser did.
+ *
+ * The tokenizer also keeps the UTF-8 byte offset of the end of the last record, so a reader
+ * can later be positioned right after it (see ImportCheckpoint). The offset is computed from
+ * the decoded chars, so it is only exact if the Reader reports malformed input instead of
+ * replacing it (a replacement char does not have the length of the bytes it replaces); such
+ * input is reported as an IOException.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class CsvTokenizer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    private final CsvRecord record = new CsvRecord();
+    private int linesRead;
+    private long bytesRead;
+
+    CsvTokenizer(Reader reader) {
+        this(reader, 0, 0);
+    }
+
+    /**
+     * @param reader Input, already positioned at startOffset
+     * @param startOffset UTF-8 byte offset of the input in the file
+     * @param startLine Number of lines of the file before the input
+     */
+    CsvTokenizer(Reader reader, long startOffset, int startLine) {
+        this.reader = reader;
+        this.bytesRead = startOffset;
+        this.linesRead = startLine;
+    }
+
+    /**
+     * Reads the next record
+     *
+     * @return false at the end of the input
+     * @throws IOException if the input cannot be read
+     */
+    boolean next() throws IOException {
+        record.clear(linesRead + 1);
+
+        boolean inQuotes = false;
+        boolean quoted = false;
+        int fieldStart = 0;
+        int quoteEnd = 0;
+        boolean sawAnything = false;
+
+        while (true) {
+            if (position == limit && !fill()) {
+                // End of input: the last line may have no line break
+                if (!sawAnything) {
+                    return false;
+                }
+                linesRead++;
+                endField(fieldStart, quoted, quoteEnd);
+                return true;
+            }
+
+            char c = buffer[position++];
+            bytesRead += utf8Length(c);
+            sawAnything = true;
+
+            if (inQuotes) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        // Escaped quote
+                        position++;
+                        bytesRead++;
+                        record.append('"');
+                    } else {
+                        inQuotes = false;
+                        quoteEnd = record.length;
+                    }
+                } else {
+                    if (c == '\r' && peek() == '\n') {
+                        position++;
+                        bytesRead++;
+                        record.append(c);
+                        c = '\n';
+                    }
+                    if (c == '\n' || c == '\r') {
+                        linesRead++;
+                    }
+                    record.append(c);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case ',':
+                    endField(fieldStart, quoted, quoteEnd);
+                    fieldStart = record.length;
+                    quoted = false;
+                    break;
+                case '\r':
+                case '\n':
+                    // Consume the \n of \r\n now, so the offset after this record is a line start
+                    if (c == '\r' && peek() == '\n') {
+                        position++;
+                        bytesRead++;
+                    }
+                    linesRead++;
+                    endField(fieldStart, quoted, quoteEnd);
+                    return true;
+                case '"':
+                    if (!quoted && isBlank(fieldStart, record.length)) {
+                        // Opening quote: drop the whitespace before it
+                        record.length = fieldStart;
+                        inQuotes = true;
+                        quoted = true;
+                        break;
+                    }
+                    record.append(c);
+                    break;
+                default:
+                    record.append(c);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return The record read by the last call to next() (refilled by the next call)
+     */
+    CsvRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * @return Number of lines read so far (including the lines before startOffset)
+     */
+    int getLinesRead() {
+        return linesRead;
+    }
+
+    /**
+     * @return UTF-8 byte offset in the file right after the last record read
+     */
+    long getBytePosition() {
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Adds the field [start, record.length), trimming whitespace outside quotes
+     */
+    private void endField(int start, boolean quoted, int quoteEnd) {
+        int end = record.length;
+        while (end > start && (!quoted || end > quoteEnd) && Character.isWhitespace(record.chars[end - 1])) {
+            end--;
+        }
+        if (!quoted) {
+            while (start < end && Character.isWhitespace(record.chars[start])) {
+                start++;
+            }
+        }
+        record.addField(start, end);
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(record.chars[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The next char without consuming it, or -1 at the end of the input
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Number of bytes of c in UTF-8 (a surrogate pair is 4 bytes, 2 per half)
+     */
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800 || Character.isSurrogate(c)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private boolean fill() throws IOException {
+        int count;
+        try {
+            count = reader.read(buffer, 0, buffer.length);
+        } catch (CharacterCodingException e) {
+            throw new IOException("Invalid UTF-8 in the file (" + e.getMessage() + ")", e);
+        }
+        if (count <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        return true;
+    }
+}
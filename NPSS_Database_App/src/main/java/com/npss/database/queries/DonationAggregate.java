@@ -0,0 +1,159 @@
+package com.npss.database.queries;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Donation statistics per group (e.g. per campaign, or per campaign and payment method),
+ * for a current period and the same period one year earlier
+ *
+ * Each group gets a slot when its first donation is added; the statistics of a slot are
+ * entries of primitive arrays that double in size when full, so adding a donation does not
+ * box or allocate anything once its group exists. The current period also keeps a
+ * QuantileSketch per group for the median and p90.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class DonationAggregate {
+    private static final int INITIAL_GROUPS = 64;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[][] groupValues = new String[INITIAL_GROUPS][];
+    private long[] count = new long[INITIAL_GROUPS];
+    private double[] total = new double[INITIAL_GROUPS];
+    private double[] min = new double[INITIAL_GROUPS];
+    private double[] max = new double[INITIAL_GROUPS];
+    private QuantileSketch[] sketches = new QuantileSketch[INITIAL_GROUPS];
+    private long[] previousCount = new long[INITIAL_GROUPS];
+    private double[] previousTotal = new double[INITIAL_GROUPS];
+    private int size = 0;
+
+    /**
+     * Finds or creates the slot of a group
+     *
+     * @param key Key of the group (its values joined)
+     * @param values The values of the group, one per dimension (kept for a new group only)
+     * @return The slot
+     */
+    int slot(String key, String[] values) {
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        if (size == count.length) {
+            grow();
+        }
+        groupValues[size] = values.clone();
+        min[size] = Double.POSITIVE_INFINITY;
+        max[size] = Double.NEGATIVE_INFINITY;
+        slots.put(key, size);
+        return size++;
+    }
+
+    /**
+     * Adds a donation of the current period
+     */
+    void add(int slot, double amount) {
+        count[slot]++;
+        total[slot] += amount;
+        if (amount < min[slot]) {
+            min[slot] = amount;
+        }
+        if (amount > max[slot]) {
+            max[slot] = amount;
+        }
+        if (sketches[slot] == null) {
+            sketches[slot] = new QuantileSketch();
+        }
+        sketches[slot].add(amount);
+    }
+
+    /**
+     * Adds a donation of the previous year's period
+     */
+    void addPrevious(int slot, double amount) {
+        previousCount[slot]++;
+        previousTotal[slot] += amount;
+    }
+
+    /**
+     * @return Number of groups
+     */
+    int size() {
+        return size;
+    }
+
+    String[] values(int slot) {
+        return groupValues[slot];
+    }
+
+    long count(int slot) {
+        return count[slot];
+    }
+
+    double total(int slot) {
+        return total[slot];
+    }
+
+    /**
+     * @return The average amount, or NaN if the group has no donation in the current period
+     */
+    double average(int slot) {
+        return count[slot] == 0 ? Double.NaN : total[slot] / count[slot];
+    }
+
+    double min(int slot) {
+        return count[slot] == 0 ? Double.NaN : min[slot];
+    }
+
+    double max(int slot) {
+        return count[slot] == 0 ? Double.NaN : max[slot];
+    }
+
+    /**
+     * @return The estimated quantile of the current period (see QuantileSketch), or NaN
+     */
+    double quantile(int slot, double q) {
+        return sketches[slot] == null ? Double.NaN : sketches[slot].quantile(q);
+    }
+
+    long previousCount(int slot) {
+        return previousCount[slot];
+    }
+
+    double previousTotal(int slot) {
+        return previousTotal[slot];
+    }
+
+    /**
+     * @return The slots ordered by current total, largest first
+     */
+    int[] byTotalDescending() {
+        // Sorted once per report, not per donation, so boxing the slot numbers here is fine
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        double[] totals = total;
+        Arrays.sort(order, (a, b) -> Double.compare(totals[b], totals[a]));
+        int[] slots = new int[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = order[i];
+        }
+        return slots;
+    }
+
+    private void grow() {
+        int length = count.length * 2;
+        groupValues = Arrays.copyOf(groupValues, length);
+        count = Arrays.copyOf(count, length);
+        total = Arrays.copyOf(total, length);
+        min = Arrays.copyOf(min, length);
+        max = Arrays.copyOf(max, length);
+        sketches = Arrays.copyOf(sketches, length);
+        previousCount = Arrays.copyOf(previousCount, length);
+        previousTotal = Arrays.copyOf(previousTotal, length);
+    }
+}
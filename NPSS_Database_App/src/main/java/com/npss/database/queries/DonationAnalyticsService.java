@@ -0,0 +1,338 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+
+/**
+ * Donation analytics: count, total, average, median, p90, minimum and maximum of the
+ * donations of any date range, grouped by donor, campaign and/or payment method, with the
+ * change from the same range one year earlier
+ *
+ * The range and, for the year-over-year change, the range one year earlier are read in one
+ * query of Donation ordered by date, which seeks IX_donation_date for each range (the gap
+ * between them is not read), streamed ExportService.DEFAULT_FETCH_SIZE rows at a time,
+ * and aggregated as it is read (see DonationAggregate), so a multi-year range costs one query
+ * and memory in proportion to the number of groups, not of donations. Medians and
+ * percentiles are estimated within 1% (see QuantileSketch).
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class DonationAnalyticsService implements Command<DonationAnalyticsService.Params> {
+
+    public static final List<String> DIMENSIONS = Arrays.asList("donor", "campaign", "payment_method");
+
+    // Shown for a donation without a campaign or payment details
+    private static final String NONE = "(none)";
+
+    // Columns by position: date, amount, donor, campaign, payment method. Parameters: the
+    // current range, then the range one year earlier (the current range again without it)
+    private static final String DONATIONS_SQL =
+        "SELECT d.date, d.amount, d.donor_id_number, d.campaign_name, " +
+        "       CASE WHEN EXISTS (SELECT 1 FROM Check_donation cd WHERE cd.donation_id = d.donation_id) THEN 'check' " +
+        "            WHEN EXISTS (SELECT 1 FROM Card_number cn WHERE cn.donation_id = d.donation_id) THEN 'card' " +
+        "       END AS payment_method " +
+        "FROM Donation d " +
+        "WHERE (d.date >= ? AND d.date < ?) OR (d.date >= ? AND d.date < ?) " +
+        "ORDER BY d.date";
+
+    /**
+     * Parameters of the analytics
+     * to is inclusive; groupBy holds DIMENSIONS in display order; top limits the groups
+     * shown (0 for all); fileName, if set, also writes every group to a CSV file
+     */
+    public static class Params {
+        public java.sql.Date from;
+        public java.sql.Date to;
+        public List<String> groupBy = new ArrayList<>(Arrays.asList("campaign"));
+        public boolean yearOverYear = true;
+        public int top = 0;
+        public String fileName;
+    }
+
+    @Override
+    public String getName() {
+        return "donationAnalytics";
+    }
+
+    /**
+     * Prompts for the date range, the grouping, the year-over-year change and the CSV file
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Analytics] Donation statistics for a date range");
+
+        Params params = new Params();
+        System.out.print("Enter the first date (YYYY-MM-DD): ");
+        params.from = OperationArgs.parseDate(scanner.nextLine().trim(), "first date");
+        System.out.print("Enter the last date (YYYY-MM-DD): ");
+        params.to = OperationArgs.parseDate(scanner.nextLine().trim(), "last date");
+
+        System.out.print("Group by - any of donor, campaign, payment_method, comma separated (press Enter for campaign): ");
+        String groupBy = scanner.nextLine().trim().toLowerCase();
+        if (!groupBy.isEmpty()) {
+            params.groupBy = new ArrayList<>();
+            for (String dimension : groupBy.split(",")) {
+                if (!dimension.trim().isEmpty()) {
+                    params.groupBy.add(dimension.trim());
+                }
+            }
+        }
+
+        System.out.print("Compare with the same dates one year earlier? (Y/n): ");
+        params.yearOverYear = !scanner.nextLine().trim().equalsIgnoreCase("n");
+
+        System.out.print("Also save to a CSV file (press Enter to skip): ");
+        params.fileName = OperationArgs.emptyToNull(scanner.nextLine().trim());
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: from, to (inclusive), optional group_by (list of "donor", "campaign" and
+     * "payment_method", default ["campaign"]), year_over_year (default true), top (groups
+     * shown, default 0 for all) and file (CSV file with every group)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.from = args.getDate("from");
+        params.to = args.getDate("to");
+        if (args.has("group_by")) {
+            params.groupBy = new ArrayList<>();
+            for (String dimension : args.getStringList("group_by")) {
+                params.groupBy.add(dimension.toLowerCase());
+            }
+        }
+        params.yearOverYear = args.getBoolean("year_over_year", true);
+        params.top = args.getInt("top", 0);
+        params.fileName = args.getOptionalString("file");
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (params.to.before(params.from)) {
+            throw new IllegalArgumentException("The last date cannot be before the first date.");
+        }
+        if (params.groupBy.isEmpty()) {
+            throw new IllegalArgumentException("Please group by at least one of " + DIMENSIONS + ".");
+        }
+        for (String dimension : params.groupBy) {
+            if (!DIMENSIONS.contains(dimension)) {
+                throw new IllegalArgumentException("Invalid dimension '" + dimension + "'. Please use one of " + DIMENSIONS + ".");
+            }
+        }
+        if (params.top < 0) {
+            throw new IllegalArgumentException("top cannot be negative.");
+        }
+    }
+
+    /**
+     * Reads the donations of the range in one scan and prints the statistics of each group
+     *
+     * @throws SQLException if a database error occurs
+     */
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
+        try {
+            LocalDate from = params.from.toLocalDate();
+            LocalDate to = params.to.toLocalDate().plusDays(1);
+            // Epoch days of the current range and of the same range one year earlier
+            long currentFrom = from.toEpochDay();
+            long currentTo = to.toEpochDay();
+            long previousFrom = from.minusYears(1).toEpochDay();
+            long previousTo = to.minusYears(1).toEpochDay();
+
+            // Result column of each grouping dimension
+            int[] columns = new int[params.groupBy.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = DIMENSIONS.indexOf(params.groupBy.get(i)) + 3;
+            }
+
+            DonationAggregate groups = new DonationAggregate();
+            DonationAggregate all = new DonationAggregate();
+            int allSlot = all.slot("", new String[0]);
+            String[] values = new String[columns.length];
+            StringBuilder key = new StringBuilder();
+            long rowsRead = 0;
+            long start = System.nanoTime();
+
+            try (PreparedStatement pstmt = ExportService.prepareStreaming(connection, DONATIONS_SQL,
+                                                                         ExportService.DEFAULT_FETCH_SIZE)) {
+                pstmt.setDate(1, java.sql.Date.valueOf(from));
+                pstmt.setDate(2, java.sql.Date.valueOf(to));
+                pstmt.setDate(3, java.sql.Date.valueOf(params.yearOverYear ? from.minusYears(1) : from));
+                pstmt.setDate(4, java.sql.Date.valueOf(params.yearOverYear ? to.minusYears(1) : to));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        rowsRead++;
+                        long day = rs.getDate(1).toLocalDate().toEpochDay();
+                        boolean current = day >= currentFrom && day < currentTo;
+                        boolean previous = params.yearOverYear && day >= previousFrom && day < previousTo;
+                        double amount = rs.getDouble(2);
+
+                        key.setLength(0);
+                        for (int i = 0; i < columns.length; i++) {
+                            String value = rs.getString(columns[i]);
+                            values[i] = value == null ? NONE : value;
+                            if (i > 0) {
+                                key.append('\u001f');
+                            }
+                            key.append(values[i]);
+                        }
+                        int slot = groups.slot(key.toString(), values);
+
+                        if (current) {
+                            groups.add(slot, amount);
+                            all.add(allSlot, amount);
+                        }
+                        if (previous) {
+                            groups.addPrevious(slot, amount);
+                            all.addPrevious(allSlot, amount);
+                        }
+                    }
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            print(params, groups, all, allSlot);
+            System.out.println(String.format("Donations read: %d in one query (%.2f s)", rowsRead, seconds));
+
+            if (params.fileName != null) {
+                writeCsv(ExportService.findFile(params.fileName), params, groups);
+            }
+
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Prints one line for all donations and one per group, largest total first
+     */
+    private void print(Params params, DonationAggregate groups, DonationAggregate all, int allSlot) {
+        int[] order = groups.byTotalDescending();
+        int shown = params.top == 0 ? order.length : Math.min(params.top, order.length);
+
+        // Width of each dimension column
+        int[] widths = new int[params.groupBy.size()];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = Math.max(params.groupBy.get(i).length(), "All donations".length());
+            for (int n = 0; n < shown; n++) {
+                widths[i] = Math.max(widths[i], groups.values(order[n])[i].length());
+            }
+        }
+
+        System.out.println("Donation statistics from " + params.from + " to " + params.to +
+                           " by " + String.join(", ", params.groupBy) +
+                           " (median and p90 within " + Math.round(QuantileSketch.RELATIVE_ACCURACY * 100) + "%)");
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; i < widths.length; i++) {
+            header.append(pad(params.groupBy.get(i), widths[i])).append("  ");
+        }
+        header.append(String.format("%8s %14s %10s %10s %10s %10s %10s", "Count", "Total", "Average", "Median",
+                                    "P90", "Min", "Max"));
+        if (params.yearOverYear) {
+            header.append(String.format(" %14s %8s", "Prior total", "YoY"));
+        }
+        System.out.println(header);
+
+        String[] allValues = new String[widths.length];
+        Arrays.fill(allValues, "");
+        allValues[0] = "All donations";
+        System.out.println(line(params, widths, allValues, all, allSlot));
+        for (int n = 0; n < shown; n++) {
+            System.out.println(line(params, widths, groups.values(order[n]), groups, order[n]));
+        }
+        if (shown < order.length) {
+            System.out.println("... " + (order.length - shown) + " more group(s)");
+        }
+    }
+
+    private static String line(Params params, int[] widths, String[] values, DonationAggregate aggregate, int slot) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < widths.length; i++) {
+            line.append(pad(values[i], widths[i])).append("  ");
+        }
+        line.append(String.format("%8d %14s %10s %10s %10s %10s %10s", aggregate.count(slot),
+                                  money(aggregate.total(slot)), money(aggregate.average(slot)),
+                                  money(aggregate.quantile(slot, 0.5)), money(aggregate.quantile(slot, 0.9)),
+                                  money(aggregate.min(slot)), money(aggregate.max(slot))));
+        if (params.yearOverYear) {
+            line.append(String.format(" %14s %8s", money(aggregate.previousTotal(slot)),
+                                      change(aggregate.total(slot), aggregate.previousTotal(slot),
+                                             aggregate.previousCount(slot))));
+        }
+        return line.toString();
+    }
+
+    /**
+     * Writes every group to a CSV file, largest total first
+     */
+    private void writeCsv(Path file, Params params, DonationAggregate groups) throws IOException {
+        int[] order = groups.byTotalDescending();
+        try (CsvChannelWriter writer = CsvChannelWriter.create(file, CsvChannelWriter.DEFAULT_BUFFER_SIZE)) {
+            for (String dimension : params.groupBy) {
+                writer.field(dimension);
+            }
+            writer.row("count", "total", "average", "median", "p90", "min", "max", "prior_count", "prior_total");
+            for (int slot : order) {
+                for (String value : groups.values(slot)) {
+                    writer.field(value);
+                }
+                writer.row(String.valueOf(groups.count(slot)), number(groups.total(slot)),
+                           number(groups.average(slot)), number(groups.quantile(slot, 0.5)),
+                           number(groups.quantile(slot, 0.9)), number(groups.min(slot)),
+                           number(groups.max(slot)), String.valueOf(groups.previousCount(slot)),
+                           number(groups.previousTotal(slot)));
+            }
+        }
+        System.out.println("File saved to: " + file.toAbsolutePath());
+        System.out.println("Total records exported: " + order.length);
+    }
+
+    private static String pad(String value, int width) {
+        return String.format("%-" + width + "s", value);
+    }
+
+    private static String money(double value) {
+        return Double.isNaN(value) ? "-" : String.format("$%.2f", value);
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) ? "" : String.format("%.2f", value);
+    }
+
+    /**
+     * @return The change from the prior total in percent, "new" if there was no prior donation
+     */
+    private static String change(double total, double previousTotal, long previousCount) {
+        if (previousCount == 0) {
+            return "new";
+        }
+        if (previousTotal == 0) {
+            return "-";
+        }
+        return String.format("%+.1f%%", (total - previousTotal) / previousTotal * 100);
+    }
+}
@@ -0,0 +1,330 @@
+package com.npss.database.queries;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.npss.database.commands.TransactionMetrics;
+
+/**
+ * Inserts donations, with their payment rows and any missing donors and individuals, in
+ * multi-table JDBC batches committed once per chunk
+ *
+ * One PreparedStatement per table is reused for the whole import. A chunk sends at most one
+ * batch per table (Individual, Donor, Donation, Check_donation, Card_number and the monthly
+ * rollup with one entry per donor and month, which the server skips if the rollup does not
+ * exist), in foreign key order, in one transaction.
+ *
+ * The existing donation, donor and individual keys are loaded up front (see KeySet), so
+ * donations that are already in the database are skipped without a round trip: importing
+ * the same file again only reads it. Which donors and individuals a chunk creates is decided
+ * when the chunk is written, from the keys committed so far and those created earlier in the
+ * chunk, so a donor that appears on many lines of the file is created once, by its first
+ * line. When a chunk fails it is rolled back and split in two halves that are retried
+ * separately, down to single rows, like TeamBatchWriter.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class DonationBatchWriter implements AutoCloseable {
+    private final Connection connection;
+    private final int batchSize;
+    private final String operation;
+    private final ImportErrors errors;
+    private final List<DonationRow> pending;
+    private final boolean previousAutoCommit;
+    private final ResourceGroup resources = new ResourceGroup();
+
+    private final KeySet donations;
+    private final KeySet donors;
+    private final KeySet individuals;
+
+    private final PreparedStatement individualStmt;
+    private final PreparedStatement donorStmt;
+    private final PreparedStatement donationStmt;
+    private final PreparedStatement checkStmt;
+    private final PreparedStatement cardStmt;
+    private final PreparedStatement rollupStmt;
+
+    private int successCount = 0;
+    private int skippedCount = 0;
+    private int donorCount = 0;
+    private int individualCount = 0;
+
+    /**
+     * Totals of one donor and month in a chunk
+     */
+    private static class RollupTotal {
+        String donorId;
+        java.sql.Date monthStart;
+        BigDecimal total = BigDecimal.ZERO;
+        int count = 0;
+    }
+
+    /**
+     * @param connection Connection to insert on; auto-commit is turned off until close()
+     *                   restores its previous value
+     * @param batchSize Number of rows per chunk
+     * @param operation Operation name used for the transaction metrics
+     * @param errors Where failing rows are reported
+     * @throws SQLException if the keys cannot be loaded or the statements cannot be prepared
+     */
+    DonationBatchWriter(Connection connection, int batchSize, String operation, ImportErrors errors) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.operation = operation;
+        this.errors = errors;
+        this.pending = new ArrayList<>(batchSize);
+        this.previousAutoCommit = connection.getAutoCommit();
+
+        try {
+            this.donations = resources.add(KeySet.load(connection, "Donation", "donation_id", TeamKeyScreen.EXACT_KEY_LIMIT));
+            this.donors = resources.add(KeySet.load(connection, "Donor", "id_number", TeamKeyScreen.EXACT_KEY_LIMIT));
+            this.individuals = resources.add(KeySet.load(connection, "Individual", "id_number", TeamKeyScreen.EXACT_KEY_LIMIT));
+
+            this.individualStmt = resources.add(connection.prepareStatement(IndividualDetails.INSERT_SQL));
+            this.donorStmt = resources.add(connection.prepareStatement(DonationRow.INSERT_DONOR_SQL));
+            this.donationStmt = resources.add(connection.prepareStatement(DonationRow.INSERT_SQL));
+            this.checkStmt = resources.add(connection.prepareStatement(DonationRow.INSERT_CHECK_SQL));
+            this.cardStmt = resources.add(connection.prepareStatement(DonationRow.INSERT_CARD_SQL));
+            this.rollupStmt = resources.add(connection.prepareStatement(DonationRollupService.ADD_SQL));
+
+            connection.setAutoCommit(false);
+        } catch (SQLException | RuntimeException e) {
+            // Nothing opened so far outlives a writer that could not be created
+            resources.closeAfter(e);
+            try {
+                connection.setAutoCommit(previousAutoCommit);
+            } catch (SQLException restoreError) {
+                e.addSuppressed(restoreError);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a row, inserting the current chunk once it is full
+     *
+     * @return true if this row completed a chunk, which has now been committed
+     * @throws SQLException if the connection fails (failing rows are reported, not thrown)
+     */
+    boolean add(DonationRow row) throws SQLException {
+        pending.add(row);
+        if (pending.size() >= batchSize) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Inserts and commits the rows added since the last chunk
+     *
+     * @throws SQLException if the connection fails
+     */
+    void flush() throws SQLException {
+        if (!pending.isEmpty()) {
+            insertChunk(pending, 0, pending.size());
+            pending.clear();
+        }
+    }
+
+    /**
+     * @return Number of imported donations
+     */
+    int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * @return Number of donations skipped because they were already in the database (or
+     *         earlier in the file)
+     */
+    int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return Number of donors created
+     */
+    int getDonorCount() {
+        return donorCount;
+    }
+
+    /**
+     * @return Number of individuals created
+     */
+    int getIndividualCount() {
+        return individualCount;
+    }
+
+    /**
+     * @return Whether the existing donation keys are held in a Bloom filter (see KeySet)
+     */
+    boolean isApproximate() {
+        return donations.isApproximate();
+    }
+
+    /**
+     * Inserts rows[from, to) in one transaction; on failure, bisects
+     */
+    private void insertChunk(List<DonationRow> rows, int from, int to) throws SQLException {
+        // Keys created by this chunk, committed to the key sets only if the chunk commits
+        Set<String> newDonations = new HashSet<>();
+        Set<String> newDonors = new HashSet<>();
+        Set<String> newIndividuals = new HashSet<>();
+        List<DonationRow> inserted = new ArrayList<>(to - from);
+        Map<String, RollupTotal> rollup = new LinkedHashMap<>();
+        int skipped = 0;
+        int checks = 0;
+        int cards = 0;
+
+        SQLException failure = null;
+        long transactionStart = TransactionMetrics.start();
+        try {
+            for (int i = from; i < to; i++) {
+                DonationRow row = rows.get(i);
+                if (row.rejected) {
+                    continue;
+                }
+                String donationKey = KeySet.normalize(row.donationId);
+                if (newDonations.contains(donationKey) || donations.contains(row.donationId)) {
+                    skipped++;
+                    continue;
+                }
+
+                String donorKey = KeySet.normalize(row.donorId);
+                boolean donorNeeded = !newDonors.contains(donorKey) && !donors.contains(row.donorId);
+                boolean individualNeeded = donorNeeded && !newIndividuals.contains(donorKey) &&
+                                           !individuals.contains(row.donorId);
+                if (individualNeeded && row.individual == null) {
+                    row.rejected = true;
+                    errors.report(row.lineNumber, "Failed to import donation '" + row.donationId + "': Individual '" +
+                                  row.donorId + "' does not exist and no individual details were provided.");
+                    continue;
+                }
+
+                if (individualNeeded) {
+                    row.individual.bind(individualStmt);
+                    individualStmt.addBatch();
+                    newIndividuals.add(donorKey);
+                }
+                if (donorNeeded) {
+                    row.bindDonor(donorStmt);
+                    donorStmt.addBatch();
+                    newDonors.add(donorKey);
+                }
+                row.bind(donationStmt);
+                donationStmt.addBatch();
+                if (row.paymentMethod.equals("check")) {
+                    row.bindPayment(checkStmt);
+                    checkStmt.addBatch();
+                    checks++;
+                } else {
+                    row.bindPayment(cardStmt);
+                    cardStmt.addBatch();
+                    cards++;
+                }
+                newDonations.add(donationKey);
+                inserted.add(row);
+
+                java.sql.Date monthStart = DonationRollupService.monthStart(row.date);
+                RollupTotal total = rollup.computeIfAbsent(monthStart + "|" + donorKey, key -> new RollupTotal());
+                total.donorId = row.donorId;
+                total.monthStart = monthStart;
+                total.total = total.total.add(row.amount);
+                total.count++;
+            }
+
+            if (!inserted.isEmpty()) {
+                if (!newIndividuals.isEmpty()) {
+                    individualStmt.executeBatch();
+                }
+                if (!newDonors.isEmpty()) {
+                    donorStmt.executeBatch();
+                }
+                donationStmt.executeBatch();
+                if (checks > 0) {
+                    checkStmt.executeBatch();
+                }
+                if (cards > 0) {
+                    cardStmt.executeBatch();
+                }
+                for (RollupTotal total : rollup.values()) {
+                    DonationRollupService.bindAdd(rollupStmt, total.donorId, total.monthStart, total.total, total.count);
+                    rollupStmt.addBatch();
+                }
+                if (!rollup.isEmpty()) {
+                    rollupStmt.executeBatch();
+                }
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            failure = e;
+            clearBatches();
+            connection.rollback();
+        } finally {
+            TransactionMetrics.record(operation, transactionStart);
+        }
+
+        if (failure == null) {
+            for (DonationRow row : inserted) {
+                donations.add(row.donationId);
+                donors.add(row.donorId);
+                individuals.add(row.donorId);
+            }
+            successCount += inserted.size();
+            skippedCount += skipped;
+            donorCount += newDonors.size();
+            individualCount += newIndividuals.size();
+            return;
+        }
+        if (connection.isClosed()) {
+            throw failure;
+        }
+        if (to - from == 1) {
+            DonationRow row = rows.get(from);
+            row.rejected = true;
+            errors.report(row.lineNumber, "Failed to import donation '" + row.donationId + "': " + failure.getMessage());
+        } else {
+            // Retry each half on its own so the good rows still get in
+            int middle = (from + to) >>> 1;
+            insertChunk(rows, from, middle);
+            insertChunk(rows, middle, to);
+        }
+    }
+
+    private void clearBatches() throws SQLException {
+        individualStmt.clearBatch();
+        donorStmt.clearBatch();
+        donationStmt.clearBatch();
+        checkStmt.clearBatch();
+        cardStmt.clearBatch();
+        rollupStmt.clearBatch();
+    }
+
+    /**
+     * Inserts the remaining rows, closes the statements and key sets and restores auto-commit
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            try {
+                resources.close();
+            } finally {
+                connection.setAutoCommit(previousAutoCommit);
+            }
+        }
+    }
+}
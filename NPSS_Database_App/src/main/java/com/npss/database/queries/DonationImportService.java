@@ -0,0 +1,180 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+
+/**
+ * Donation Import: Enter the donations of a payment-processor file until the file is empty
+ *
+ * Expected file format (CSV, one donation per line, optional header):
+ * donation_id,donor_id,date,amount,campaign_name,payment_method,check_number,card_type,
+ * last_four_digits,expiration_date,first_name,last_name,gender,street,city,state,postal_code,
+ * date_of_birth,newsletter_status,preference
+ *
+ * Note: check_number is required for check donations, card_type, last_four_digits and
+ * expiration_date for card donations. The individual fields (first_name to newsletter_status)
+ * and preference are only used for donors that do not exist yet and may be left empty
+ * otherwise. Empty values for campaign_name or preference will be treated as NULL.
+ *
+ * Donations, payment rows and missing donors and individuals are inserted in multi-table JDBC
+ * batches committed once per chunk (see DonationBatchWriter). The import is idempotent on
+ * donation_id: donations that already exist are skipped, so a file can simply be imported
+ * again after an interruption, and a donor listed on many lines is only created once.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class DonationImportService implements Command<DonationImportService.Params> {
+
+    // Donations per chunk when none is given
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Parameters of the donation import
+     */
+    public static class Params {
+        public String fileName;
+        public int batchSize = DEFAULT_BATCH_SIZE;
+    }
+
+    @Override
+    public String getName() {
+        return "importDonations";
+    }
+
+    /**
+     * Prompts for the input file name and the batch size
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Import] Enter the donations of a payment-processor file until the file is empty");
+        System.out.print("Please enter the input file name: ");
+
+        Params params = new Params();
+        params.fileName = scanner.nextLine().trim();
+
+        System.out.print("Batch size (press Enter for " + DEFAULT_BATCH_SIZE + "): ");
+        String batchSize = scanner.nextLine().trim();
+        if (!batchSize.isEmpty()) {
+            params.batchSize = OperationArgs.parseInt(batchSize, "batch size");
+        }
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: file, optional batch_size (default 1000)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.fileName = args.getString("file");
+        params.batchSize = args.getInt("batch_size", DEFAULT_BATCH_SIZE);
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (params.fileName.isEmpty()) {
+            throw new IllegalArgumentException("File name cannot be empty.");
+        }
+        if (params.batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+    }
+
+    /**
+     * Executes the donation import
+     *
+     * @throws SQLException if a database error occurs
+     */
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
+        Path filePath = ExportService.findFile(params.fileName);
+
+        if (filePath == null || !Files.exists(filePath)) {
+            System.err.println("Error: File '" + params.fileName + "' not found.");
+            System.err.println("Please ensure the file exists in the current directory or project root.");
+            return;
+        }
+
+        System.out.println("Reading from file: " + filePath.toAbsolutePath());
+        System.out.println("Batch mode: " + params.batchSize + " donations per chunk");
+
+        long start = System.nanoTime();
+        int totalLines;
+        ImportErrors errors = ImportErrors.immediate();
+        DonationBatchWriter writer = null;
+
+        try (CsvTokenizer tokenizer = new CsvTokenizer(Files.newBufferedReader(filePath, StandardCharsets.UTF_8))) {
+            writer = new DonationBatchWriter(connection, params.batchSize, getName(), errors);
+            if (writer.isApproximate()) {
+                System.out.println("Existing donations checked with a Bloom filter (see KeySet)");
+            }
+            try {
+                boolean isFirstLine = true;
+                while (tokenizer.next()) {
+                    CsvRecord record = tokenizer.getRecord();
+
+                    // Skip empty lines
+                    if (record.isBlank()) {
+                        continue;
+                    }
+
+                    // Skip header line if present
+                    if (isFirstLine && record.startsWithIgnoreCase(0, "donation_id")) {
+                        isFirstLine = false;
+                        continue;
+                    }
+                    isFirstLine = false;
+
+                    DonationRow row = DonationRow.parse(record, errors);
+                    if (row != null) {
+                        writer.add(row);
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+            totalLines = tokenizer.getLinesRead();
+
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            if (writer != null) {
+                System.err.println("Import stopped after " + writer.getSuccessCount() + " donation(s); " +
+                                   "run it again to import the rest (imported donations are skipped).");
+            }
+            throw e;
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        int successCount = writer.getSuccessCount();
+
+        // Display summary result
+        System.out.println("Total lines processed: " + totalLines);
+        System.out.println("Successfully imported: " + successCount);
+        System.out.println("Already imported (skipped): " + writer.getSkippedCount());
+        System.out.println("Donors created: " + writer.getDonorCount() +
+                           " (new individuals: " + writer.getIndividualCount() + ")");
+        System.out.println("Errors: " + errors.getCount());
+        System.out.println(String.format("Elapsed: %.2f s (%.1f rows/sec)", seconds,
+            seconds > 0 ? successCount / seconds : 0.0));
+
+        if (successCount > 0) {
+            System.out.println("\nImport completed successfully!");
+        }
+    }
+}
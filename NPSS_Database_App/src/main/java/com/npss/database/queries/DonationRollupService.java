@@ -0,0 +1,178 @@
+package com.npss.database.queries;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
+
+/**
+ * Monthly donation rollup: the total and number of donations per donor and month, kept in
+ * Donation_monthly_rollup so that Query 11 can answer a month from its donors' rows instead of
+ * scanning Donation
+ *
+ * The rollup is optional: it is enabled by creating the table (see the donation rollup section
+ * of Nguyen_Astra_IP_Task5a.sql, which also fills it). Once it exists, Query 4, the donation
+ * import and sp_InsertDonation add every new donation to it in the same transaction as the
+ * donation. All of them check that the table exists on every write (ADD_SQL does it on the
+ * server, like sp_InsertDonation), so none of them can miss donations after the table is
+ * created or dropped. This command rebuilds it from Donation, e.g. after donations were
+ * loaded another way.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class DonationRollupService implements Command<Void> {
+
+    static final String TABLE = "Donation_monthly_rollup";
+
+    // Adds donations (their total and count) to a donor and month if the rollup exists; the
+    // locks keep two first donations of the same donor and month from both inserting. See bindAdd().
+    static final String ADD_SQL =
+        "IF OBJECT_ID('Donation_monthly_rollup', 'U') IS NOT NULL " +
+        "BEGIN " +
+        "    UPDATE Donation_monthly_rollup WITH (UPDLOCK, SERIALIZABLE) " +
+        "    SET total_amount = total_amount + ?, donation_count = donation_count + ? " +
+        "    WHERE month_start = ? AND donor_id_number = ?; " +
+        "    IF @@ROWCOUNT = 0 " +
+        "        INSERT INTO Donation_monthly_rollup(month_start, donor_id_number, total_amount, donation_count) " +
+        "        VALUES (?, ?, ?, ?); " +
+        "END";
+
+    private static final String REBUILD_SQL =
+        "INSERT INTO Donation_monthly_rollup(month_start, donor_id_number, total_amount, donation_count) " +
+        "SELECT DATEFROMPARTS(YEAR(d.date), MONTH(d.date), 1), d.donor_id_number, SUM(d.amount), COUNT(*) " +
+        "FROM Donation d " +
+        "GROUP BY DATEFROMPARTS(YEAR(d.date), MONTH(d.date), 1), d.donor_id_number";
+
+    @Override
+    public String getName() {
+        return "rebuildDonationRollup";
+    }
+
+    /**
+     * The rebuild has no parameters
+     */
+    @Override
+    public Void readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Rollup] Rebuild the monthly donation rollup from all donations");
+        return null;
+    }
+
+    /**
+     * The rebuild has no parameters
+     */
+    @Override
+    public Void parseParams(OperationArgs args) {
+        return null;
+    }
+
+    /**
+     * Replaces the content of the rollup with the totals of every donation, in one transaction
+     *
+     * @throws SQLException if a database error occurs or the rollup table does not exist
+     */
+    @Override
+    public void run(Connection connection, Void params) throws SQLException {
+        try {
+            if (!tableExists(connection)) {
+                throw new SQLException("The table " + TABLE + " does not exist. " +
+                                       "Run the donation rollup section of Nguyen_Astra_IP_Task5a.sql first.");
+            }
+
+            connection.setAutoCommit(false);
+            long transactionStart = TransactionMetrics.start();
+
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("DELETE FROM " + TABLE);
+                int rows = stmt.executeUpdate(REBUILD_SQL);
+                connection.commit();
+                System.out.println("Donation rollup rebuilt successfully! (Donor-month rows: " + rows + ")");
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+                TransactionMetrics.record(getName(), transactionStart);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return Whether the rollup table exists (looked up on every call, one round trip)
+     */
+    static boolean isEnabled(Connection connection) throws SQLException {
+        return tableExists(connection);
+    }
+
+    /**
+     * Adds a donation to the rollup if it exists, in the caller's transaction
+     */
+    static void add(Connection connection, String donorId, java.sql.Date date, double amount) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(ADD_SQL)) {
+            bindAdd(pstmt, donorId, monthStart(date), BigDecimal.valueOf(amount), 1);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Sets the parameters of ADD_SQL
+     *
+     * @param pstmt Statement prepared from ADD_SQL
+     * @param donorId The donor
+     * @param monthStart First day of the month
+     * @param total Total amount of the donations to add
+     * @param count Number of donations to add
+     * @throws SQLException if a parameter cannot be set
+     */
+    static void bindAdd(PreparedStatement pstmt, String donorId, java.sql.Date monthStart, BigDecimal total, int count)
+            throws SQLException {
+        pstmt.setBigDecimal(1, total);
+        pstmt.setInt(2, count);
+        pstmt.setDate(3, monthStart);
+        pstmt.setString(4, donorId);
+        pstmt.setDate(5, monthStart);
+        pstmt.setString(6, donorId);
+        pstmt.setBigDecimal(7, total);
+        pstmt.setInt(8, count);
+    }
+
+    /**
+     * @return The first day of the month of a date
+     */
+    static java.sql.Date monthStart(java.sql.Date date) {
+        return java.sql.Date.valueOf(date.toLocalDate().withDayOfMonth(1));
+    }
+
+    /**
+     * @return The first day of a month
+     */
+    static java.sql.Date monthStart(int year, int month) {
+        return java.sql.Date.valueOf(LocalDate.of(year, month, 1));
+    }
+
+    private static boolean tableExists(Connection connection) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement("SELECT OBJECT_ID(?, 'U')")) {
+            pstmt.setString(1, TABLE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                rs.getInt(1);
+                return !rs.wasNull();
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.npss.database.queries;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * One donation read from a payment-processor file (see DonationImportService)
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class DonationRow {
+    static final String INSERT_DONOR_SQL = "INSERT INTO Donor(id_number, preference) VALUES (?, ?)";
+
+    static final String INSERT_SQL =
+        "INSERT INTO Donation(donation_id, donor_id_number, date, amount, campaign_name) " +
+        "VALUES (?, ?, ?, ?, ?)";
+
+    static final String INSERT_CHECK_SQL =
+        "INSERT INTO Check_donation(donation_id, check_number) VALUES (?, ?)";
+
+    static final String INSERT_CARD_SQL =
+        "INSERT INTO Card_number(donation_id, card_type, last_four_digits, expiration_date) " +
+        "VALUES (?, ?, ?, ?)";
+
+    int lineNumber;
+    String donationId;
+    String donorId;
+    java.sql.Date date;
+    BigDecimal amount;
+    String campaignName;          // null when empty in the file
+    String paymentMethod;         // "check" or "card"
+    String checkNumber;
+    String cardType;
+    String lastFourDigits;
+    java.sql.Date expirationDate;
+    IndividualDetails individual; // null when the file has no first_name for the row
+    String preference;
+    boolean rejected;             // reported by DonationBatchWriter, not to be retried
+
+    /**
+     * Validates one record
+     *
+     * @return The row, or null if the record is invalid (the error has been reported)
+     */
+    static DonationRow parse(CsvRecord record, ImportErrors errors) {
+        int lineNumber = record.lineNumber;
+        DonationRow row = new DonationRow();
+        row.lineNumber = lineNumber;
+        row.donationId = record.getString(0);
+        row.donorId = record.getString(1);
+        row.campaignName = record.getString(4);
+        row.paymentMethod = record.isEmpty(5) ? null : record.getString(5).toLowerCase();
+
+        if (row.donationId == null || row.donorId == null || record.isEmpty(2) || record.isEmpty(3) ||
+                row.paymentMethod == null) {
+            errors.report(lineNumber, "Missing required fields (donation_id, donor_id, date, amount or payment_method). " +
+                                      "Skipping: " + record.getText());
+            return null;
+        }
+
+        try {
+            row.date = record.getDate(2);
+            row.expirationDate = record.getDate(9);
+        } catch (IllegalArgumentException e) {
+            errors.report(lineNumber, "Invalid date format for donation '" + row.donationId + "': " + e.getMessage(),
+                          "   Expected format: YYYY-MM-DD");
+            return null;
+        }
+
+        try {
+            row.amount = new BigDecimal(record.getString(3));
+        } catch (NumberFormatException e) {
+            errors.report(lineNumber, "Invalid amount for donation '" + row.donationId + "': " + record.getString(3));
+            return null;
+        }
+        if (row.amount.signum() <= 0) {
+            errors.report(lineNumber, "Donation amount must be greater than 0 for donation '" + row.donationId + "'.");
+            return null;
+        }
+
+        if (row.paymentMethod.equals("check")) {
+            row.checkNumber = record.getString(6);
+            if (row.checkNumber == null) {
+                errors.report(lineNumber, "Check number is required for check donation '" + row.donationId + "'.");
+                return null;
+            }
+        } else if (row.paymentMethod.equals("card")) {
+            row.cardType = record.getString(7);
+            row.lastFourDigits = record.getString(8);
+            if (row.cardType == null || row.lastFourDigits == null || row.expirationDate == null) {
+                errors.report(lineNumber, "Card type, last four digits and expiration date are required for card donation '" +
+                                          row.donationId + "'.");
+                return null;
+            }
+        } else {
+            errors.report(lineNumber, "Invalid payment method '" + row.paymentMethod + "' for donation '" +
+                                      row.donationId + "'. Must be 'check' or 'card'.");
+            return null;
+        }
+
+        if (!record.isEmpty(10)) {
+            IndividualDetails individual = new IndividualDetails();
+            individual.idNumber = row.donorId;
+            individual.firstName = record.getString(10);
+            individual.lastName = record.getString(11);
+            individual.gender = record.getString(12);
+            individual.street = record.getString(13);
+            individual.city = record.getString(14);
+            individual.state = record.getString(15);
+            individual.postalCode = record.getString(16);
+            try {
+                individual.dateOfBirth = record.getDate(17);
+            } catch (IllegalArgumentException e) {
+                errors.report(lineNumber, "Invalid date of birth for donor '" + row.donorId + "': " + e.getMessage(),
+                              "   Expected format: YYYY-MM-DD");
+                return null;
+            }
+            String newsletter = record.getString(18);
+            individual.newsletterStatus = newsletter != null &&
+                (newsletter.equalsIgnoreCase("true") || newsletter.equals("1") || newsletter.equalsIgnoreCase("y"));
+            row.individual = individual;
+        }
+        row.preference = record.getString(19);
+        return row;
+    }
+
+    /**
+     * Binds the donation to the 5 parameters of INSERT_SQL
+     */
+    void bind(PreparedStatement pstmt) throws SQLException {
+        pstmt.setString(1, donationId);
+        pstmt.setString(2, donorId);
+        pstmt.setDate(3, date);
+        pstmt.setBigDecimal(4, amount);
+        if (campaignName != null) {
+            pstmt.setString(5, campaignName);
+        } else {
+            pstmt.setNull(5, java.sql.Types.VARCHAR);
+        }
+    }
+
+    /**
+     * Binds the payment details to INSERT_CHECK_SQL or INSERT_CARD_SQL
+     */
+    void bindPayment(PreparedStatement pstmt) throws SQLException {
+        pstmt.setString(1, donationId);
+        if (paymentMethod.equals("check")) {
+            pstmt.setString(2, checkNumber);
+        } else {
+            pstmt.setString(2, cardType);
+            pstmt.setString(3, lastFourDigits);
+            pstmt.setDate(4, expirationDate);
+        }
+    }
+
+    /**
+     * Binds the donor to the 2 parameters of INSERT_DONOR_SQL
+     */
+    void bindDonor(PreparedStatement pstmt) throws SQLException {
+        pstmt.setString(1, donorId);
+        if (preference != null) {
+            pstmt.setString(2, preference);
+        } else {
+            pstmt.setNull(2, java.sql.Types.VARCHAR);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Output formats of the streaming exports
+ *
+ * - csv: UTF-8 CSV with a header row (CsvChannelWriter)
+ * - gzip: the same CSV, gzip-compressed in blocks on several threads (ParallelGzipChannel)
+ * - columnar: binary columnar file with dictionary-encoded columns and min/max footers
+ *   (ColumnarFileWriter)
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+final class ExportFormat {
+    static final List<String> FORMATS = Arrays.asList("csv", "gzip", "columnar");
+
+    private ExportFormat() {
+    }
+
+    /**
+     * Creates or replaces an export file
+     *
+     * @param format "csv", "gzip" or "columnar"
+     * @param file The file to write
+     * @param header Column names (the CSV header row)
+     * @param dictionaryColumns Columns with many repeated values (dictionary-encoded in columnar)
+     * @param compressionThreads Number of compression threads (gzip)
+     * @return The writer, positioned at the first row
+     * @throws IOException if the file cannot be created
+     */
+    static RowWriter open(String format, Path file, String[] header, Set<Integer> dictionaryColumns,
+                          int compressionThreads) throws IOException {
+        if (format.equals("columnar")) {
+            return new ColumnarFileWriter(file, header, dictionaryColumns);
+        }
+        CsvChannelWriter writer = format.equals("gzip")
+            ? CsvChannelWriter.createGzip(file, CsvChannelWriter.DEFAULT_BUFFER_SIZE, compressionThreads)
+            : CsvChannelWriter.create(file, CsvChannelWriter.DEFAULT_BUFFER_SIZE);
+        try {
+            writer.row(header);
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+        return writer;
+    }
+}
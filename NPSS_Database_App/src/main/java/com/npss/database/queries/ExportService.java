@@ -10,7 +10,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import javax.sql.DataSource;
+import com.microsoft.sqlserver.jdbc.SQLServerStatement;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
 
 /**
  * Export Service: Retrieve names and mailing addresses of all people on the mailing list
@@ -18,16 +26,206 @@ import java.util.Scanner;
  * 
  * The mailing list consists of all individuals with newsletter_status = true
  * 
+ * Modes:
+ * - standard: rows are written through a BufferedWriter
+ * - stream: for very long lists; the rows are fetched fetchSize at a time with adaptive
+ *   response buffering and encoded into one reusable buffer written through a FileChannel
+ *   (see CsvChannelWriter), so memory use stays the same whatever the size of the list
+ * - parallel: stream mode split into partitions by last_name range or by state, fetched
+ *   at the same time over separate connections into one file each, optionally merged into
+ *   the single ordered file (see MailingListPartitionExport)
+ * - incremental: only the people added, changed or unsubscribed since the last export of the
+ *   same file, as an upsert/delete delta file (see MailingListDeltaExport)
+ * 
+ * Stream, parallel and incremental mode write one of the formats of ExportFormat: csv, gzip (CSV
+ * compressed in blocks on several threads) or columnar (binary, with city, state and postal
+ * code dictionary-encoded and min/max footers).
+ * 
  * @author Astra Nguyen
  * @version 1.0
  */
-public class ExportService {
-    private Connection connection;
-    private Scanner scanner;
+public class ExportService implements Command<ExportService.Params> {
+
+    public static final List<String> MODES = Arrays.asList("standard", "stream", "parallel", "incremental");
+
+    // Rows per round trip in stream mode when none is given
+    public static final int DEFAULT_FETCH_SIZE = 10000;
+    // Partitions (and connections) in parallel mode when none is given
+    public static final int DEFAULT_PARTITIONS = 4;
+
+    // All people on the mailing list (newsletter_status = true); a partition adds " AND ..."
+    static final String MAILING_LIST_SELECT =
+        "SELECT " +
+        "    CONCAT(i.first_name, ' ', i.last_name) AS full_name, " +
+        "    i.street, " +
+        "    i.city, " +
+        "    i.state, " +
+        "    i.postal_code " +
+        "FROM Individual i " +
+        "WHERE i.newsletter_status = 1";
+    static final String MAILING_LIST_ORDER = " ORDER BY i.last_name, i.first_name";
+    private static final String MAILING_LIST_SQL = MAILING_LIST_SELECT + MAILING_LIST_ORDER;
+
+    static final String HEADER = "Name,Street,City,State,Postal Code";
+    // City, state and postal code: few distinct values repeated on many rows
+    private static final Set<Integer> DICTIONARY_COLUMNS = new HashSet<>(Arrays.asList(2, 3, 4));
+
+    private final DataSource dataSource;
+
+    /**
+     * Parameters of the export
+     * mode is "standard", "stream" or "parallel"; fetchSize applies to stream and parallel,
+     * partitions, partitionBy ("last_name" or "state") and merge only to parallel;
+     * format ("csv", "gzip" or "columnar") and compressionThreads apply to all but standard;
+     * full (ignore the last export and write everything) only applies to incremental
+     */
+    public static class Params {
+        public String fileName;
+        public String mode = "standard";
+        public int fetchSize = DEFAULT_FETCH_SIZE;
+        public int partitions = DEFAULT_PARTITIONS;
+        public String partitionBy = "last_name";
+        public boolean merge = true;
+        public String format = "csv";
+        public int compressionThreads = Runtime.getRuntime().availableProcessors();
+        public boolean full = false;
+    }
+
+    /**
+     * @param dataSource Pool the partitions of parallel mode borrow their connections from
+     */
+    public ExportService(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public String getName() {
+        return "exportMailingList";
+    }
+
+    /**
+     * Prompts for the output file name and the export mode
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Export] Retrieve names and mailing addresses of all people on the mailing list");
+        System.out.print("Please enter the output file name: ");
+
+        Params params = new Params();
+        params.fileName = scanner.nextLine().trim();
+
+        if (params.fileName.isEmpty()) {
+            throw new IllegalArgumentException("File name cannot be empty.");
+        }
+
+        System.out.print("Export mode - standard, stream, parallel or incremental (press Enter for standard): ");
+        String mode = scanner.nextLine().trim().toLowerCase();
+        if (!mode.isEmpty()) {
+            params.mode = mode;
+        }
+        validate(params);
+
+        if (!params.mode.equals("standard")) {
+            System.out.print("Fetch size (press Enter for " + DEFAULT_FETCH_SIZE + "): ");
+            String fetchSize = scanner.nextLine().trim();
+            if (!fetchSize.isEmpty()) {
+                params.fetchSize = OperationArgs.parseInt(fetchSize, "fetch size");
+            }
+
+            System.out.print("Format - csv, gzip or columnar (press Enter for csv): ");
+            String format = scanner.nextLine().trim().toLowerCase();
+            if (!format.isEmpty()) {
+                params.format = format;
+            }
+        }
+
+        if (params.mode.equals("parallel")) {
+            System.out.print("Number of partitions (press Enter for " + DEFAULT_PARTITIONS + "): ");
+            String partitions = scanner.nextLine().trim();
+            if (!partitions.isEmpty()) {
+                params.partitions = OperationArgs.parseInt(partitions, "number of partitions");
+            }
+
+            System.out.print("Partition by last_name or state (press Enter for last_name): ");
+            String partitionBy = scanner.nextLine().trim().toLowerCase();
+            if (!partitionBy.isEmpty()) {
+                params.partitionBy = partitionBy;
+            }
+
+            if (params.partitionBy.equals("last_name") && params.format.equals("csv")) {
+                System.out.print("Merge the partitions into one ordered file? (Y/n): ");
+                params.merge = !scanner.nextLine().trim().equalsIgnoreCase("n");
+            } else {
+                params.merge = false;
+            }
+        }
+
+        if (params.mode.equals("incremental")) {
+            System.out.print("Full export instead of the changes since the last export? (y/N): ");
+            params.full = scanner.nextLine().trim().equalsIgnoreCase("y");
+        }
+        validate(params);
+        return params;
+    }
 
-    public ExportService(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Fields: file, optional mode ("standard", "stream", "parallel" or "incremental", default "standard"),
+     * fetch_size, partitions, partition_by ("last_name" or "state", default "last_name") and
+     * merge (default true for last_name csv, false otherwise), format ("csv", "gzip" or
+     * "columnar", default "csv"), compression_threads and full (default false)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.fileName = args.getString("file");
+        if (args.has("mode")) {
+            params.mode = args.getString("mode").toLowerCase();
+        }
+        params.fetchSize = args.getInt("fetch_size", DEFAULT_FETCH_SIZE);
+        params.partitions = args.getInt("partitions", DEFAULT_PARTITIONS);
+        if (args.has("partition_by")) {
+            params.partitionBy = args.getString("partition_by").toLowerCase();
+        }
+        if (args.has("format")) {
+            params.format = args.getString("format").toLowerCase();
+        }
+        params.compressionThreads = args.getInt("compression_threads", params.compressionThreads);
+        params.merge = args.getBoolean("merge", params.partitionBy.equals("last_name") && params.format.equals("csv"));
+        params.full = args.getBoolean("full", false);
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (!MODES.contains(params.mode)) {
+            throw new IllegalArgumentException("Invalid export mode '" + params.mode + "'. Please use one of " + MODES + ".");
+        }
+        if (params.fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be at least 1.");
+        }
+        if (params.partitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be at least 1.");
+        }
+        if (!MailingListPartitionExport.PARTITION_COLUMNS.contains(params.partitionBy)) {
+            throw new IllegalArgumentException("Invalid partition column '" + params.partitionBy + "'. Please use one of " +
+                                               MailingListPartitionExport.PARTITION_COLUMNS + ".");
+        }
+        if (params.merge && params.mode.equals("parallel") && !params.partitionBy.equals("last_name")) {
+            throw new IllegalArgumentException("Only last_name partitions can be merged into one ordered file.");
+        }
+        if (!ExportFormat.FORMATS.contains(params.format)) {
+            throw new IllegalArgumentException("Invalid export format '" + params.format + "'. Please use one of " +
+                                               ExportFormat.FORMATS + ".");
+        }
+        if (!params.format.equals("csv") && params.mode.equals("standard")) {
+            throw new IllegalArgumentException("The " + params.format + " format needs stream, parallel or incremental mode.");
+        }
+        if (params.merge && params.mode.equals("parallel") && !params.format.equals("csv")) {
+            throw new IllegalArgumentException("Only csv partitions can be merged into one file.");
+        }
+        if (params.compressionThreads < 1) {
+            throw new IllegalArgumentException("Number of compression threads must be at least 1.");
+        }
     }
 
     /**
@@ -36,39 +234,50 @@ public class ExportService {
      * 
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Export] Retrieve names and mailing addresses of all people on the mailing list");
-        System.out.print("Please enter the output file name: ");
-        String outputFileName = scanner.nextLine().trim();
-        
-        if (outputFileName.isEmpty()) {
-            System.out.println("Error: File name cannot be empty.");
-            return;
-        }
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
+        String outputFileName = params.fileName;
         
         // Determine file path (current directory or project root)
         Path filePath = findFile(outputFileName);
         
-        // SQL query to retrieve all people on the mailing list (newsletter_status = true)
-        String SQL = 
-            "SELECT " +
-            "    CONCAT(i.first_name, ' ', i.last_name) AS full_name, " +
-            "    i.street, " +
-            "    i.city, " +
-            "    i.state, " +
-            "    i.postal_code " +
-            "FROM Individual i " +
-            "WHERE i.newsletter_status = 1 " +
-            "ORDER BY i.last_name, i.first_name";
+        if (params.mode.equals("stream")) {
+            exportStream(connection, filePath, params);
+            return;
+        }
+        if (params.mode.equals("incremental")) {
+            MailingListDeltaExport export = new MailingListDeltaExport(connection, params.fetchSize, params.format,
+                params.compressionThreads);
+            try {
+                export.run(filePath, params.full);
+            } catch (IOException e) {
+                System.err.println("Error writing to file: " + e.getMessage());
+                throw new SQLException("File I/O error: " + e.getMessage(), e);
+            }
+            System.out.println("Export completed successfully!");
+            return;
+        }
+        if (params.mode.equals("parallel")) {
+            MailingListPartitionExport export = new MailingListPartitionExport(connection, dataSource,
+                params.partitions, params.partitionBy, params.fetchSize, params.format, params.compressionThreads);
+            try {
+                export.run(filePath, params.merge);
+            } catch (IOException e) {
+                System.err.println("Error writing to file: " + e.getMessage());
+                throw new SQLException("File I/O error: " + e.getMessage(), e);
+            }
+            System.out.println("Export completed successfully!");
+            return;
+        }
         
         int recordCount = 0;
         
-        try (PreparedStatement pstmt = connection.prepareStatement(SQL);
+        try (PreparedStatement pstmt = connection.prepareStatement(MAILING_LIST_SQL);
              ResultSet rs = pstmt.executeQuery();
              BufferedWriter writer = new BufferedWriter(new FileWriter(filePath.toFile()))) {
             
             // Write header line
-            writer.write("Name,Street,City,State,Postal Code");
+            writer.write(HEADER);
             writer.newLine();
             
             // Write each record
@@ -106,10 +315,96 @@ public class ExportService {
         }
     }
     
+    /**
+     * Streams the mailing list to the file with a fixed-size fetch and output buffer
+     */
+    private void exportStream(Connection connection, Path filePath, Params params) throws SQLException {
+        long start = System.nanoTime();
+        long recordCount = 0;
+        long bytes;
+        
+        try (PreparedStatement pstmt = prepareStreaming(connection, MAILING_LIST_SQL, params.fetchSize)) {
+            try (ResultSet rs = pstmt.executeQuery();
+                 RowWriter writer = openFile(filePath, params.format, params.compressionThreads)) {
+                recordCount = writeRows(rs, writer);
+            }
+            bytes = Files.size(filePath);
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        
+        System.out.println("Export completed successfully!");
+        System.out.println("File saved to: " + filePath.toAbsolutePath());
+        System.out.println("Total records exported: " + recordCount);
+        printThroughput(recordCount, bytes, seconds);
+    }
+    
+    /**
+     * Prepares a forward-only query that fetches fetchSize rows per round trip and reads the
+     * response as it arrives instead of buffering it in the driver
+     */
+    static PreparedStatement prepareStreaming(Connection connection, String sql, int fetchSize) throws SQLException {
+        PreparedStatement pstmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            pstmt.setFetchSize(fetchSize);
+            if (pstmt.isWrapperFor(SQLServerStatement.class)) {
+                pstmt.unwrap(SQLServerStatement.class).setResponseBuffering("adaptive");
+            }
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
+        }
+        return pstmt;
+    }
+    
+    /**
+     * Creates a mailing-list file in the given format (with the header for CSV)
+     */
+    static RowWriter openFile(Path file, String format, int compressionThreads) throws IOException {
+        return ExportFormat.open(format, file, HEADER.split(","), DICTIONARY_COLUMNS, compressionThreads);
+    }
+    
+    /**
+     * Writes the rows of a mailing-list query
+     * 
+     * @return Number of rows written
+     */
+    static long writeRows(ResultSet rs, RowWriter writer) throws SQLException, IOException {
+        long count = 0;
+        // Columns by position: full_name, street, city, state, postal_code
+        while (rs.next()) {
+            writer.field(rs.getString(1));
+            writer.field(rs.getString(2));
+            writer.field(rs.getString(3));
+            writer.field(rs.getString(4));
+            writer.field(rs.getString(5));
+            writer.endRow();
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Prints the elapsed time, rows/sec and bytes/sec of an export
+     */
+    static void printThroughput(long rows, long bytes, double seconds) {
+        System.out.println(String.format("Elapsed: %.2f s (%.1f rows/sec, %.2f MB written, %.2f MB/sec)",
+            seconds, seconds > 0 ? rows / seconds : 0.0, bytes / 1048576.0,
+            seconds > 0 ? bytes / 1048576.0 / seconds : 0.0));
+    }
+    
     /**
      * Finds the file path in current directory or project root
      */
-    private Path findFile(String fileName) {
+    static Path findFile(String fileName) {
         // Try current directory first
         Path currentDir = Paths.get(System.getProperty("user.dir"));
         Path filePath = currentDir.resolve(fileName);
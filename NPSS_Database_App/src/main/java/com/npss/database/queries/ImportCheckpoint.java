@@ -0,0 +1,110 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Sidecar file (&lt;import file&gt;.checkpoint) recording how far an import has committed
+ *
+ * After each committed chunk the byte offset and line number right after the last handled
+ * line are written (to a temporary file that then replaces the checkpoint, so a crash never
+ * leaves a half-written checkpoint). A resumed import seeks straight to that offset.
+ * The checkpoint is deleted once the whole file has been imported.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class ImportCheckpoint {
+    private final Path file;
+    private final Path checkpointFile;
+    private final Path tempFile;
+    private long offset = 0;
+    private int line = 0;
+
+    /**
+     * @param file The file being imported
+     */
+    ImportCheckpoint(Path file) {
+        this.file = file;
+        this.checkpointFile = Paths.get(file.toString() + ".checkpoint");
+        this.tempFile = Paths.get(file.toString() + ".checkpoint.tmp");
+    }
+
+    /**
+     * @return true if a checkpoint exists for the file
+     */
+    boolean exists() {
+        return Files.exists(checkpointFile);
+    }
+
+    /**
+     * Reads the saved position
+     *
+     * @throws IOException if the checkpoint cannot be read or does not match the file
+     */
+    void load() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            offset = Long.parseLong(properties.getProperty("offset"));
+            line = Integer.parseInt(properties.getProperty("line"));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid checkpoint file " + checkpointFile + ": " + e.getMessage(), e);
+        }
+        if (offset < 0 || offset > Files.size(file)) {
+            throw new IOException("Checkpoint " + checkpointFile + " does not match " + file +
+                                  " (offset " + offset + " is beyond the end of the file)");
+        }
+    }
+
+    /**
+     * Records that everything before offset has been committed (or rejected)
+     *
+     * @param offset UTF-8 byte offset right after the last handled line
+     * @param line Number of lines before offset
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void save(long offset, int line) throws IOException {
+        this.offset = offset;
+        this.line = line;
+
+        Properties properties = new Properties();
+        properties.setProperty("offset", Long.toString(offset));
+        properties.setProperty("line", Integer.toString(line));
+        StringWriter text = new StringWriter();
+        properties.store(text, "NPSS import checkpoint for " + file.getFileName());
+
+        Files.write(tempFile, text.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Removes the checkpoint once the import has completed
+     *
+     * @throws IOException if the checkpoint cannot be deleted
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    Path getPath() {
+        return checkpointFile;
+    }
+}
@@ -0,0 +1,96 @@
+package com.npss.database.queries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the rejected lines of an import
+ *
+ * Immediate errors are printed as soon as they are reported. Ordered errors are kept until
+ * print() and then printed sorted by line number, for imports that process lines out of order.
+ * Discarded errors are only counted, for a pass whose lines are reported again later.
+ * Safe to use from several threads.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class ImportErrors {
+    private final boolean ordered;
+    private final boolean discarded;
+    private final Map<Integer, List<String>> pending = new TreeMap<>();
+    private int count = 0;
+
+    private ImportErrors(boolean ordered, boolean discarded) {
+        this.ordered = ordered;
+        this.discarded = discarded;
+    }
+
+    /**
+     * @return Errors printed as they are reported
+     */
+    static ImportErrors immediate() {
+        return new ImportErrors(false, false);
+    }
+
+    /**
+     * @return Errors printed in line order by print()
+     */
+    static ImportErrors ordered() {
+        return new ImportErrors(true, false);
+    }
+
+    /**
+     * @return Errors that are counted but never printed
+     */
+    static ImportErrors discarded() {
+        return new ImportErrors(false, true);
+    }
+
+    /**
+     * Reports a rejected line
+     *
+     * @param lineNumber Line number in the file
+     * @param message Reason, printed as "Line N: message"
+     * @param details Further lines printed after the message
+     */
+    synchronized void report(int lineNumber, String message, String... details) {
+        count++;
+        if (discarded) {
+            return;
+        }
+        List<String> lines = new ArrayList<>(1 + details.length);
+        lines.add("Line " + lineNumber + ": " + message);
+        for (String detail : details) {
+            lines.add(detail);
+        }
+
+        if (ordered) {
+            pending.computeIfAbsent(lineNumber, key -> new ArrayList<>()).addAll(lines);
+        } else {
+            for (String line : lines) {
+                System.err.println(line);
+            }
+        }
+    }
+
+    /**
+     * @return Number of rejected lines reported so far
+     */
+    synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Prints the errors held back so far, in line order
+     */
+    synchronized void print() {
+        for (List<String> lines : pending.values()) {
+            for (String line : lines) {
+                System.err.println(line);
+            }
+        }
+        pending.clear();
+    }
+}
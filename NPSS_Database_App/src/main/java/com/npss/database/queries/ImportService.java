@@ -1,7 +1,5 @@
 package com.npss.database.queries;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -9,7 +7,14 @@ import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 
 /**
  * Import Service: Enter new teams from a data file until the file is empty
@@ -19,33 +24,180 @@ import java.util.Scanner;
  * 
  * Note: Empty values for focus_date or team_leader will be treated as NULL
  * 
+ * Modes:
+ * - row: one INSERT and one commit per line
+ * - batch: a single PreparedStatement with addBatch/executeBatch, committed once per chunk;
+ *   failing chunks are bisected so only the bad rows are rejected
+ * - bulk: rows are streamed through SQLServerBulkCopy, one bulk copy per chunk; a rejected
+ *   chunk is retried in batch mode to report the bad rows
+ * - parallel: batch mode spread over a reader thread, parser workers and several writer
+ *   workers with their own connection (see TeamImportPipeline); errors are printed in line
+ *   order at the end
+ * 
+ * Before writing, a pre-flight check (see TeamKeyScreen) compares every row with the existing
+ * team and ranger keys; duplicate team_ids and unknown team leaders are reported up front and
+ * never sent to the server.
+ * 
+ * The chunked modes (batch, bulk, parallel) keep a checkpoint next to the file
+ * (&lt;file&gt;.checkpoint, see ImportCheckpoint) with the position of the last committed chunk.
+ * If an import stops halfway, running it again with resume continues from that position
+ * instead of from the start of the file.
+ * 
  * @author Astra Nguyen
  * @version 1.0
  */
-public class ImportService {
-    private Connection connection;
-    private Scanner scanner;
+public class ImportService implements Command<ImportService.Params> {
+
+    public static final List<String> MODES = Arrays.asList("row", "batch", "bulk", "parallel");
 
-    public ImportService(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    // Rows per chunk when none is given
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_BULK_BATCH_SIZE = 10000;
+    // Writer workers in parallel mode when none is given
+    public static final int DEFAULT_WRITERS = 4;
+
+    private final DataSource dataSource;
+
+    /**
+     * Parameters of the import
+     * mode is "row" (one insert and commit per line), "batch" (JDBC batches committed per chunk)
+     * "bulk" (SQLServerBulkCopy per chunk) or "parallel" (batch mode with several writers);
+     * tableLock and checkConstraints only apply to bulk, writers only to parallel;
+     * resume continues from the checkpoint of an earlier run (not available in row mode);
+     * precheck screens the rows against the existing keys before writing
+     */
+    public static class Params {
+        public String fileName;
+        public String mode = "row";
+        public int batchSize = 0;   // 0 = default of the mode
+        public boolean tableLock = false;
+        public boolean checkConstraints = true;
+        public int writers = DEFAULT_WRITERS;
+        public boolean resume = false;
+        public boolean precheck = true;
     }
 
     /**
-     * Executes the import functionality: Enter new teams from a data file until the file is empty
-     * 
-     * @throws SQLException if a database error occurs
+     * @param dataSource Pool the writer workers of parallel mode borrow their connections from
      */
-    public void execute() throws SQLException {
+    public ImportService(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public String getName() {
+        return "importTeams";
+    }
+
+    /**
+     * Prompts for the input file name and the import mode
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
         System.out.println("\n[Import] Enter new teams from a data file until the file is empty");
         System.out.print("Please enter the input file name: ");
-        String inputFileName = scanner.nextLine().trim();
-        
-        if (inputFileName.isEmpty()) {
-            System.out.println("Error: File name cannot be empty.");
-            return;
+
+        Params params = new Params();
+        params.fileName = scanner.nextLine().trim();
+
+        if (params.fileName.isEmpty()) {
+            throw new IllegalArgumentException("File name cannot be empty.");
         }
 
+        System.out.print("Import mode - row, batch, bulk or parallel (press Enter for row): ");
+        String mode = scanner.nextLine().trim().toLowerCase();
+        if (!mode.isEmpty()) {
+            params.mode = mode;
+        }
+        validate(params);
+
+        if (!params.mode.equals("row")) {
+            System.out.print("Batch size (press Enter for " + defaultBatchSize(params.mode) + "): ");
+            String batchSize = scanner.nextLine().trim();
+            if (!batchSize.isEmpty()) {
+                params.batchSize = OperationArgs.parseInt(batchSize, "batch size");
+            }
+        }
+
+        if (params.mode.equals("bulk")) {
+            System.out.print("Lock the table during the load? (y/N): ");
+            params.tableLock = scanner.nextLine().trim().equalsIgnoreCase("y");
+
+            System.out.print("Check constraints during the load? (Y/n): ");
+            params.checkConstraints = !scanner.nextLine().trim().equalsIgnoreCase("n");
+        }
+
+        if (params.mode.equals("parallel")) {
+            System.out.print("Number of writers (press Enter for " + DEFAULT_WRITERS + "): ");
+            String writers = scanner.nextLine().trim();
+            if (!writers.isEmpty()) {
+                params.writers = OperationArgs.parseInt(writers, "number of writers");
+            }
+        }
+
+        if (!params.mode.equals("row")) {
+            Path filePath = findFile(params.fileName);
+            ImportCheckpoint checkpoint = new ImportCheckpoint(filePath);
+            if (checkpoint.exists()) {
+                System.out.print("Found checkpoint " + checkpoint.getPath().getFileName() +
+                                 " from an earlier import. Resume from it? (Y/n): ");
+                params.resume = !scanner.nextLine().trim().equalsIgnoreCase("n");
+            }
+        }
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: file, optional mode ("row", "batch", "bulk" or "parallel", default "row"),
+     * batch_size, table_lock (default false), check_constraints (default true), writers
+     * resume (default false) and precheck (default true)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.fileName = args.getString("file");
+        if (args.has("mode")) {
+            params.mode = args.getString("mode").toLowerCase();
+        }
+        params.batchSize = args.getInt("batch_size", 0);
+        params.tableLock = args.getBoolean("table_lock", false);
+        params.checkConstraints = args.getBoolean("check_constraints", true);
+        params.writers = args.getInt("writers", DEFAULT_WRITERS);
+        params.resume = args.getBoolean("resume", false);
+        params.precheck = args.getBoolean("precheck", true);
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (!MODES.contains(params.mode)) {
+            throw new IllegalArgumentException("Invalid import mode '" + params.mode + "'. Please use one of " + MODES + ".");
+        }
+        if (params.batchSize < 0) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        if (params.writers < 1) {
+            throw new IllegalArgumentException("Number of writers must be at least 1.");
+        }
+        if (params.resume && params.mode.equals("row")) {
+            throw new IllegalArgumentException("Row mode does not keep a checkpoint; use batch, bulk or parallel to resume.");
+        }
+    }
+
+    private static int defaultBatchSize(String mode) {
+        return mode.equals("bulk") ? DEFAULT_BULK_BATCH_SIZE : DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Executes the import functionality: Enter new teams from a data file until the file is empty
+     * 
+     * @throws SQLException if a database error occurs
+     */
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
+        String inputFileName = params.fileName;
+
         // Try to find the file in current directory or project root 
         Path filePath = findFile(inputFileName);
         
@@ -57,110 +209,151 @@ public class ImportService {
         
         System.out.println("Reading from file: " + filePath.toAbsolutePath());
         
-        // SQL query for inserting teams
-        String insertTeamSQL = 
-            "INSERT INTO Ranger_team(team_id, formation_date, focus_date, team_leader) " +
-            "VALUES (?, ?, ?, ?)";
-        
-        int totalLines = 0;
-        int successCount = 0;
-        int errorCount = 0;
+        int batchSize = params.batchSize > 0 ? params.batchSize : defaultBatchSize(params.mode);
+        long start = System.nanoTime();
+        int totalLines;
+        int successCount;
+        ImportErrors errors = params.mode.equals("parallel") ? ImportErrors.ordered() : ImportErrors.immediate();
+        ImportCheckpoint checkpoint = params.mode.equals("row") ? null : new ImportCheckpoint(filePath);
+        boolean completed = false;
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath.toFile()))) {
-            String line;
-            boolean isFirstLine = true;
-            
-            while ((line = reader.readLine()) != null) {
-                totalLines++;
-                line = line.trim();
-                
-                // Skip empty lines
-                if (line.isEmpty()) {
-                    continue;
-                }
-                
-                // Skip header line if present
-                if (isFirstLine && line.toLowerCase().startsWith("team_id")) {
-                    isFirstLine = false;
-                    continue;
-                }
-                isFirstLine = false;
-                
-                // Parse CSV line
-                String[] parts = parseCSVLine(line);
-                
-                if (parts.length < 2) {
-                    System.err.println("Line " + totalLines + ": Invalid format (expected at least 2 fields). Skipping: " + line);
-                    errorCount++;
-                    continue;
-                }
-                
-                String teamId = parts[0].trim();
-                String formationDateStr = parts[1].trim();
-                String focusDateStr = (parts.length > 2 && !parts[2].trim().isEmpty()) ? parts[2].trim() : null;
-                String teamLeader = (parts.length > 3 && !parts[3].trim().isEmpty()) ? parts[3].trim() : null;
-                
-                // Validate required fields
-                if (teamId.isEmpty() || formationDateStr.isEmpty()) {
-                    System.err.println("Line " + totalLines + ": Missing required fields (team_id or formation_date). Skipping: " + line);
-                    errorCount++;
-                    continue;
+        try {
+            if (params.resume) {
+                if (!checkpoint.exists()) {
+                    System.err.println("Error: No checkpoint found for '" + inputFileName + "'; nothing to resume.");
+                    return;
                 }
-                
-                // Insert team
-                try {
-                    connection.setAutoCommit(false);
-                    
-                    try (PreparedStatement pstmt = connection.prepareStatement(insertTeamSQL)) {
-                        pstmt.setString(1, teamId);
-                        pstmt.setDate(2, java.sql.Date.valueOf(formationDateStr));
-                        
-                        if (focusDateStr != null && !focusDateStr.isEmpty()) {
-                            pstmt.setDate(3, java.sql.Date.valueOf(focusDateStr));
-                        } else {
-                            pstmt.setNull(3, java.sql.Types.DATE);
-                        }
-                        
-                        if (teamLeader != null && !teamLeader.isEmpty()) {
-                            pstmt.setString(4, teamLeader);
-                        } else {
-                            pstmt.setNull(4, java.sql.Types.VARCHAR);
+                checkpoint.load();
+                System.out.println("Resuming after line " + checkpoint.getLine() +
+                                   " (byte offset " + checkpoint.getOffset() + ")");
+            } else if (checkpoint != null) {
+                // A new import starts over; an old checkpoint would resume at the wrong place
+                checkpoint.delete();
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading checkpoint: " + e.getMessage());
+            throw new SQLException("Checkpoint error: " + e.getMessage(), e);
+        }
+        long startOffset = params.resume ? checkpoint.getOffset() : 0;
+        int startLine = params.resume ? checkpoint.getLine() : 0;
+        BitSet rejectedLines = params.precheck ? precheck(connection, filePath, startOffset, startLine, errors) : null;
+        
+        try (TeamFileReader reader = TeamFileReader.open(filePath, startOffset, startLine, errors)) {
+            reader.skipLines(rejectedLines);
+            if (params.mode.equals("parallel")) {
+                TeamImportPipeline pipeline = new TeamImportPipeline(connection, dataSource,
+                                                                     params.writers, batchSize, getName(), errors,
+                                                                     checkpoint);
+                successCount = pipeline.run(reader);
+            } else if (params.mode.equals("bulk")) {
+                System.out.println("Bulk mode: " + batchSize + " rows per chunk (table lock: " +
+                                   (params.tableLock ? "yes" : "no") + ", check constraints: " +
+                                   (params.checkConstraints ? "yes" : "no") + ")");
+                TeamBulkLoader loader = new TeamBulkLoader(connection, batchSize, params.tableLock,
+                                                           params.checkConstraints, getName(), errors);
+                loader.load(reader, checkpoint);
+                successCount = loader.getSuccessCount();
+            } else if (params.mode.equals("batch")) {
+                System.out.println("Batch mode: " + batchSize + " rows per chunk");
+                try (TeamBatchWriter writer = new TeamBatchWriter(connection, batchSize, getName(), errors)) {
+                    TeamRow row;
+                    while ((row = reader.next()) != null) {
+                        if (writer.add(row)) {
+                            checkpoint.save(reader.getBytePosition(), reader.getLinePosition());
                         }
-                        
-                        pstmt.executeUpdate();
-                        connection.commit();
-                        
-                        System.out.println("Imported team: " + teamId + " (formation: " + formationDateStr + ")");
-                        successCount++;
                     }
-                } catch (SQLException e) {
-                    connection.rollback();
-                    System.err.println("Line " + totalLines + ": Failed to import team '" + teamId + "': " + e.getMessage());
-                    errorCount++;
-                } catch (IllegalArgumentException e) {
-                    connection.rollback();
-                    System.err.println("Line " + totalLines + ": Invalid date format for team '" + teamId + "': " + e.getMessage());
-                    System.err.println("   Expected format: YYYY-MM-DD");
-                    errorCount++;
-                } finally {
-                    connection.setAutoCommit(true);
+                    writer.flush();
+                    successCount = writer.getSuccessCount();
                 }
+            } else {
+                successCount = importRowByRow(connection, reader, errors);
             }
-            
-            // Display summary result 
-            System.out.println("Total lines processed: " + totalLines);
-            System.out.println("Successfully imported: " + successCount);
-            System.out.println("Errors: " + errorCount);
-            
-            if (successCount > 0) {
-                System.out.println("\nImport completed successfully!");
+            totalLines = reader.getTotalLines();
+            if (checkpoint != null) {
+                checkpoint.delete();
             }
+            completed = true;
             
         } catch (IOException e) {
             System.err.println("Error reading file: " + e.getMessage());
             throw new SQLException("File I/O error: " + e.getMessage(), e);
+        } finally {
+            errors.print();
+            if (!completed && checkpoint != null && checkpoint.exists()) {
+                System.err.println("Import stopped after line " + checkpoint.getLine() + ". Checkpoint saved to " +
+                                   checkpoint.getPath() + "; run the import again with resume to continue.");
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        
+        // Display summary result 
+        System.out.println("Total lines processed: " + totalLines);
+        System.out.println("Successfully imported: " + successCount);
+        System.out.println("Errors: " + errors.getCount());
+        System.out.println(String.format("Elapsed: %.2f s (%.1f rows/sec)", seconds,
+            seconds > 0 ? successCount / seconds : 0.0));
+        
+        if (successCount > 0) {
+            System.out.println("\nImport completed successfully!");
         }
     }
+
+    /**
+     * Classifies the rows of the file against the existing keys before anything is written
+     *
+     * @return Lines of the rows that would be rejected by the server (already reported)
+     */
+    private BitSet precheck(Connection connection, Path filePath, long offset, int line, ImportErrors errors)
+            throws SQLException {
+        long start = System.nanoTime();
+        // Format errors are reported by the import itself, so this pass does not print them
+        try (TeamKeyScreen screen = TeamKeyScreen.load(connection);
+             TeamFileReader reader = TeamFileReader.open(filePath, offset, line, ImportErrors.discarded())) {
+            screen.screen(reader, errors);
+            screen.printSummary();
+            System.out.println(String.format("  Checked in %.2f s", (System.nanoTime() - start) / 1_000_000_000.0));
+            return screen.getRejectedLines();
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Inserts and commits one row at a time
+     *
+     * @return Number of imported rows
+     */
+    private int importRowByRow(Connection connection, TeamFileReader reader, ImportErrors errors)
+            throws IOException, SQLException {
+        int successCount = 0;
+        TeamRow row;
+        
+        while ((row = reader.next()) != null) {
+            // Insert team
+            connection.setAutoCommit(false);
+            long transactionStart = TransactionMetrics.start();
+            try {
+                
+                try (PreparedStatement pstmt = connection.prepareStatement(TeamRow.INSERT_SQL)) {
+                    row.bind(pstmt);
+                    
+                    pstmt.executeUpdate();
+                    connection.commit();
+                    
+                    System.out.println("Imported team: " + row.teamId + " (formation: " + row.formationDate + ")");
+                    successCount++;
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                errors.report(row.lineNumber, "Failed to import team '" + row.teamId + "': " + e.getMessage());
+            } finally {
+                connection.setAutoCommit(true);
+                TransactionMetrics.record(getName(), transactionStart);
+            }
+        }
+        return successCount;
+    }
     
     /**
      * Finds the file in current directory or project root
@@ -189,15 +382,4 @@ public class ImportService {
         }
         return filePath;
     }
-    
-    /**
-     * Parses a CSV line, handling quoted fields
-     */
-    private String[] parseCSVLine(String line) {
-        // Simple CSV parser - splits by comma, trims whitespace
-        // For more complex CSV (with quoted fields containing commas), use a CSV library
-        return line.split(",");
-    }
 }
-
-
@@ -0,0 +1,141 @@
+package com.npss.database.queries;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * Reads every individual with its phone numbers and email addresses as three separate
+ * streams (Individual, Individual_phone_numbers, Individual_email_addresses) and merge-joins
+ * them on id_number, so each phone number and email is transferred once instead of once per
+ * combination as in a double LEFT JOIN
+ *
+ * All three streams are ordered by id_number in binary collation, which is the order of
+ * String.compareTo, so the merge can tell a child row of a later individual from one of an
+ * individual deleted since the first stream was read (skipped). The child streams are read
+ * over their own pooled connections so that all three can stream at the same time.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class IndividualContactMerge {
+    private static final String INDIVIDUALS_SQL =
+        "SELECT i.id_number, CONCAT(i.first_name, ' ', i.last_name) AS full_name, i.newsletter_status " +
+        "FROM Individual i " +
+        "ORDER BY i.id_number COLLATE Latin1_General_BIN2";
+    private static final String PHONES_SQL =
+        "SELECT ipn.id_number, ipn.phone_number " +
+        "FROM Individual_phone_numbers ipn " +
+        "ORDER BY ipn.id_number COLLATE Latin1_General_BIN2, ipn.phone_number";
+    private static final String EMAILS_SQL =
+        "SELECT iea.id_number, iea.email_address " +
+        "FROM Individual_email_addresses iea " +
+        "ORDER BY iea.id_number COLLATE Latin1_General_BIN2, iea.email_address";
+
+    /**
+     * Receives the merged individuals, in id_number order
+     */
+    interface Listener {
+        void individual(String idNumber, String fullName, boolean subscribed,
+                        List<String> phoneNumbers, List<String> emailAddresses);
+    }
+
+    private final Connection connection;
+    private final DataSource dataSource;
+    private final int fetchSize;
+    private long rowsTransferred = 0;
+
+    /**
+     * @param connection Connection to read Individual with
+     * @param dataSource Pool the two child streams borrow their connection from
+     * @param fetchSize Rows per round trip of each stream
+     */
+    IndividualContactMerge(Connection connection, DataSource dataSource, int fetchSize) {
+        this.connection = connection;
+        this.dataSource = dataSource;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Reads and merges the three streams
+     *
+     * @param listener Receives each individual
+     * @return Number of individuals
+     * @throws SQLException if a stream cannot be read
+     */
+    long run(Listener listener) throws SQLException {
+        long individuals = 0;
+        try (Connection phoneConnection = dataSource.getConnection();
+             Connection emailConnection = dataSource.getConnection();
+             PreparedStatement individualStmt = ExportService.prepareStreaming(connection, INDIVIDUALS_SQL, fetchSize);
+             PreparedStatement phoneStmt = ExportService.prepareStreaming(phoneConnection, PHONES_SQL, fetchSize);
+             PreparedStatement emailStmt = ExportService.prepareStreaming(emailConnection, EMAILS_SQL, fetchSize);
+             ResultSet individualRs = individualStmt.executeQuery();
+             ResultSet phoneRs = phoneStmt.executeQuery();
+             ResultSet emailRs = emailStmt.executeQuery()) {
+            ChildStream phones = new ChildStream(phoneRs);
+            ChildStream emails = new ChildStream(emailRs);
+            // Columns by position: id_number, full_name, newsletter_status
+            while (individualRs.next()) {
+                String idNumber = individualRs.getString(1);
+                listener.individual(idNumber, individualRs.getString(2), individualRs.getBoolean(3),
+                                    phones.take(idNumber), emails.take(idNumber));
+                individuals++;
+            }
+            rowsTransferred = individuals + phones.rows + emails.rows;
+        }
+        return individuals;
+    }
+
+    /**
+     * @return Number of rows read from the three streams by the last run
+     */
+    long getRowsTransferred() {
+        return rowsTransferred;
+    }
+
+    /**
+     * One child stream (id_number, value), positioned on its next unread row
+     */
+    private static final class ChildStream {
+        private final ResultSet rs;
+        private String idNumber;
+        private String value;
+        private long rows = 0;
+
+        private ChildStream(ResultSet rs) throws SQLException {
+            this.rs = rs;
+            advance();
+        }
+
+        /**
+         * @return The values of the individual (empty if none), skipping the rows of
+         *         individuals that come before it
+         */
+        private List<String> take(String individualId) throws SQLException {
+            while (idNumber != null && idNumber.compareTo(individualId) < 0) {
+                advance();
+            }
+            List<String> values = new ArrayList<>();
+            while (idNumber != null && idNumber.equals(individualId)) {
+                values.add(value);
+                advance();
+            }
+            return values;
+        }
+
+        private void advance() throws SQLException {
+            if (rs.next()) {
+                idNumber = rs.getString(1);
+                value = rs.getString(2);
+                rows++;
+            } else {
+                idNumber = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.npss.database.queries;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Scanner;
+import com.npss.database.commands.OperationArgs;
+
+/**
+ * Personal details of an Individual, shared by the queries that create visitors, rangers,
+ * researchers and donors
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class IndividualDetails {
+    public static final String INSERT_SQL =
+        "INSERT INTO Individual(id_number, first_name, last_name, gender, street, city, state, " +
+        "postal_code, date_of_birth, newsletter_status) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"; // ? prevents SQL injection, handles types safely like null
+
+    public String idNumber;
+    public String firstName;
+    public String lastName;
+    public String gender;
+    public String street;
+    public String city;
+    public String state;
+    public String postalCode;
+    public java.sql.Date dateOfBirth;
+    public boolean newsletterStatus;
+
+    /**
+     * Prompts the user for everything except the ID number
+     *
+     * @param scanner Scanner to read user input from
+     * @param idNumber ID number already entered by the user
+     * @return The entered details
+     */
+    public static IndividualDetails prompt(Scanner scanner, String idNumber) {
+        IndividualDetails details = new IndividualDetails();
+        details.idNumber = idNumber;
+
+        System.out.print("Enter first name: ");
+        details.firstName = scanner.nextLine().trim();
+
+        System.out.print("Enter last name: ");
+        details.lastName = scanner.nextLine().trim();
+
+        System.out.print("Enter gender (M/F/O): ");
+        details.gender = scanner.nextLine().trim();
+
+        System.out.print("Enter street address: ");
+        details.street = scanner.nextLine().trim();
+
+        System.out.print("Enter city: ");
+        details.city = scanner.nextLine().trim();
+
+        System.out.print("Enter state: ");
+        details.state = scanner.nextLine().trim();
+
+        System.out.print("Enter postal code: ");
+        details.postalCode = scanner.nextLine().trim();
+
+        System.out.print("Enter date of birth (YYYY-MM-DD): ");
+        details.dateOfBirth = OperationArgs.parseDate(scanner.nextLine().trim(), "date of birth");
+
+        System.out.print("Subscribe to newsletter? (true/false): ");
+        details.newsletterStatus = Boolean.parseBoolean(scanner.nextLine().trim());
+
+        return details;
+    }
+
+    /**
+     * Reads the details from a batch operation
+     *
+     * Fields: first_name, last_name, gender, street, city, state, postal_code,
+     * date_of_birth (YYYY-MM-DD), newsletter_status (optional, default false)
+     *
+     * @param args Fields of the batch operation
+     * @param idNumber ID number of the individual
+     * @return The details
+     */
+    public static IndividualDetails fromArgs(OperationArgs args, String idNumber) {
+        IndividualDetails details = new IndividualDetails();
+        details.idNumber = idNumber;
+        details.firstName = args.getString("first_name");
+        details.lastName = args.getString("last_name");
+        details.gender = args.getString("gender");
+        details.street = args.getString("street");
+        details.city = args.getString("city");
+        details.state = args.getString("state");
+        details.postalCode = args.getString("postal_code");
+        details.dateOfBirth = args.getDate("date_of_birth");
+        details.newsletterStatus = args.getBoolean("newsletter_status", false);
+        return details;
+    }
+
+    /**
+     * Sets the parameters of INSERT_SQL
+     *
+     * @param pstmt Statement prepared from INSERT_SQL
+     * @throws SQLException if a parameter cannot be set
+     */
+    public void bind(PreparedStatement pstmt) throws SQLException {
+        bind(pstmt, 1);
+    }
+
+    /**
+     * Sets the ten Individual columns, in the order of INSERT_SQL, as consecutive parameters
+     * of a larger statement
+     *
+     * @param pstmt The statement
+     * @param first Index of the id_number parameter
+     * @throws SQLException if a parameter cannot be set
+     */
+    public void bind(PreparedStatement pstmt, int first) throws SQLException {
+        pstmt.setString(first, idNumber);
+        pstmt.setString(first + 1, firstName);
+        pstmt.setString(first + 2, lastName);
+        pstmt.setString(first + 3, gender);
+        pstmt.setString(first + 4, street);
+        pstmt.setString(first + 5, city);
+        pstmt.setString(first + 6, state);
+        pstmt.setString(first + 7, postalCode);
+        pstmt.setDate(first + 8, dateOfBirth);
+        pstmt.setBoolean(first + 9, newsletterStatus);
+    }
+}
@@ -0,0 +1,212 @@
+package com.npss.database.queries;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * Keyset pagination of Query 13 (aggregate strategy) on (last_name, first_name, id_number)
+ *
+ * A page starts right after (or ends right before) the key of the row a cursor was taken
+ * from, so every page is one seek on IX_individual_last_name_first_name followed by at most
+ * pageSize rows, however deep it is. A cursor token is the direction and the key, base64url
+ * encoded; it stays valid when rows are added or deleted.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class IndividualPager {
+    private static final String ORDER = " ORDER BY i.last_name, i.first_name, i.id_number";
+    // Rows after (last_name, first_name, id_number); the leading >= lets the optimizer seek
+    private static final String AFTER =
+        "i.last_name >= ? AND (i.last_name > ? OR i.first_name > ? OR (i.first_name = ? AND i.id_number > ?))";
+    private static final String BEFORE =
+        "i.last_name <= ? AND (i.last_name < ? OR i.first_name < ? OR (i.first_name = ? AND i.id_number < ?))";
+
+    private static final String FIRST_PAGE_SQL =
+        Query13_RetrieveAllIndividuals.AGGREGATE_SELECT.replaceFirst("SELECT ", "SELECT TOP (?) ") + ORDER;
+    private static final String NEXT_PAGE_SQL =
+        Query13_RetrieveAllIndividuals.AGGREGATE_SELECT.replaceFirst("SELECT ", "SELECT TOP (?) ") +
+        " WHERE " + AFTER + ORDER;
+    // The pageSize rows just before the key, read backwards and put back in order
+    private static final String PREVIOUS_PAGE_SQL =
+        "SELECT * FROM (" +
+        Query13_RetrieveAllIndividuals.AGGREGATE_SELECT.replaceFirst("SELECT ", "SELECT TOP (?) ") +
+        " WHERE " + BEFORE + " ORDER BY i.last_name DESC, i.first_name DESC, i.id_number DESC) page " +
+        "ORDER BY page.last_name, page.first_name, page.id_number";
+    private static final String MORE_SQL =
+        "SELECT CASE WHEN EXISTS (SELECT 1 FROM Individual i WHERE " + BEFORE + ") THEN 1 ELSE 0 END, " +
+        "       CASE WHEN EXISTS (SELECT 1 FROM Individual i WHERE " + AFTER + ") THEN 1 ELSE 0 END";
+
+    private final Connection connection;
+    private final int pageSize;
+
+    /**
+     * @param connection Connection to read the pages with
+     * @param pageSize Individuals per page
+     */
+    IndividualPager(Connection connection, int pageSize) {
+        this.connection = connection;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Writes one page to a sink
+     *
+     * @param cursor Cursor token of the page, or null for the first page
+     * @param sink Receives the rows of the page
+     * @return The cursors of the pages before and after it
+     * @throws SQLException if the page cannot be read
+     * @throws IOException if the sink cannot be written
+     */
+    Query13_RetrieveAllIndividuals.Page fetch(String cursor, ResultSink sink) throws SQLException, IOException {
+        Cursor position = cursor == null ? null : decode(cursor);
+        String sql = position == null ? FIRST_PAGE_SQL : position.after ? NEXT_PAGE_SQL : PREVIOUS_PAGE_SQL;
+
+        KeyCapture capture = new KeyCapture(sink);
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setInt(1, pageSize);
+            if (position != null) {
+                setKey(pstmt, 2, position.key);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                ResultSink.copy(rs, capture);
+            }
+        }
+
+        Query13_RetrieveAllIndividuals.Page page = new Query13_RetrieveAllIndividuals.Page();
+        page.rows = capture.rows;
+        if (capture.rows == 0) {
+            return page;
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(MORE_SQL)) {
+            setKey(pstmt, 1, capture.firstKey);
+            setKey(pstmt, 6, capture.lastKey);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                if (rs.getInt(1) == 1) {
+                    page.previousCursor = encode(new Cursor(false, capture.firstKey));
+                }
+                if (rs.getInt(2) == 1) {
+                    page.nextCursor = encode(new Cursor(true, capture.lastKey));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Checks that a cursor token can be decoded
+     *
+     * @throws IllegalArgumentException if it cannot
+     */
+    static void validate(String cursor) {
+        decode(cursor);
+    }
+
+    /**
+     * Sets the five parameters of AFTER or BEFORE
+     *
+     * @param key last_name, first_name, id_number
+     */
+    private static void setKey(PreparedStatement pstmt, int index, String[] key) throws SQLException {
+        pstmt.setString(index, key[0]);
+        pstmt.setString(index + 1, key[0]);
+        pstmt.setString(index + 2, key[1]);
+        pstmt.setString(index + 3, key[1]);
+        pstmt.setString(index + 4, key[2]);
+    }
+
+    private static String encode(Cursor cursor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeBoolean(cursor.after);
+            for (String value : cursor.key) {
+                out.writeUTF(value);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // a ByteArrayOutputStream does not fail
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private static Cursor decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            boolean after = in.readBoolean();
+            String[] key = {in.readUTF(), in.readUTF(), in.readUTF()};
+            if (in.read() != -1) {
+                throw new IOException("trailing data");
+            }
+            return new Cursor(after, key);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor '" + token + "'.");
+        }
+    }
+
+    /**
+     * Direction and key of a cursor
+     */
+    private static final class Cursor {
+        private final boolean after;
+        private final String[] key;
+
+        private Cursor(boolean after, String[] key) {
+            this.after = after;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Passes the rows on to a sink and keeps the keys of the first and last row
+     */
+    private static final class KeyCapture implements ResultSink {
+        private final ResultSink sink;
+        private int lastName;
+        private int firstName;
+        private int idNumber;
+        private String[] firstKey;
+        private String[] lastKey;
+        private long rows = 0;
+
+        private KeyCapture(ResultSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException, IOException {
+            lastName = ResultSink.column(metaData, "last_name");
+            firstName = ResultSink.column(metaData, "first_name");
+            idNumber = ResultSink.column(metaData, "id_number");
+            sink.start(metaData);
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException, IOException {
+            // Names are required; a NULL one would be keyed as the empty string
+            lastKey = new String[] {valueOf(rs.getString(lastName)), valueOf(rs.getString(firstName)),
+                                    rs.getString(idNumber)};
+            if (firstKey == null) {
+                firstKey = lastKey;
+            }
+            sink.row(rs);
+        }
+
+        @Override
+        public void finish(long rows) throws IOException {
+            this.rows = rows;
+            sink.finish(rows);
+        }
+
+        private static String valueOf(String value) {
+            return value == null ? "" : value;
+        }
+    }
+}
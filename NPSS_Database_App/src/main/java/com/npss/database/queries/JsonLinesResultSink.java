@@ -0,0 +1,149 @@
+package com.npss.database.queries;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Writes every row of a result set as one JSON object per line (JSON Lines), keyed by the
+ * column labels
+ *
+ * Numeric columns are written as JSON numbers, BIT columns as true/false, SQL NULL as null
+ * and everything else as strings. The "key": prefixes and the value kind of each column are
+ * worked out once in start().
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class JsonLinesResultSink implements ResultSink {
+    private static final int STRING = 0;
+    private static final int NUMBER = 1;
+    private static final int BOOLEAN = 2;
+
+    private final Path file;
+    private Writer writer;
+    private String[] prefixes;
+    private int[] kinds;
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * @param file The file to create or replace
+     */
+    JsonLinesResultSink(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void start(ResultSetMetaData metaData) throws SQLException, IOException {
+        int columnCount = metaData.getColumnCount();
+        prefixes = new String[columnCount];
+        kinds = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            StringBuilder prefix = new StringBuilder(i == 0 ? "{" : ",");
+            appendString(prefix, metaData.getColumnLabel(i + 1));
+            prefixes[i] = prefix.append(':').toString();
+            kinds[i] = kindOf(metaData.getColumnType(i + 1));
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8),
+                                    CsvChannelWriter.DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public void row(ResultSet rs) throws SQLException, IOException {
+        line.setLength(0);
+        for (int i = 0; i < kinds.length; i++) {
+            line.append(prefixes[i]);
+            if (kinds[i] == BOOLEAN) {
+                boolean value = rs.getBoolean(i + 1);
+                line.append(rs.wasNull() ? "null" : Boolean.toString(value));
+                continue;
+            }
+            String value = rs.getString(i + 1);
+            if (value == null) {
+                line.append("null");
+            } else if (kinds[i] == NUMBER) {
+                line.append(value);
+            } else {
+                appendString(line, value);
+            }
+        }
+        line.append(kinds.length == 0 ? "{}" : "}").append('\n');
+        writer.write(line.toString());
+    }
+
+    @Override
+    public void finish(long rows) throws IOException {
+        writer.flush();
+        System.out.println("File saved to: " + file.toAbsolutePath());
+        System.out.println("Total records exported: " + rows);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private static int kindOf(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return NUMBER;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            default:
+                return STRING;
+        }
+    }
+
+    /**
+     * Appends a quoted JSON string
+     */
+    private static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,190 @@
+package com.npss.database.queries;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * In-memory copy of the values of one key column, for checking keys without a round trip
+ *
+ * Up to exactLimit keys are held in a HashSet. Larger tables are loaded into a Bloom filter
+ * (about 10 bits per key, ~1% false positives) instead: a key the filter has never seen is
+ * certainly absent, and a "maybe" is confirmed with a lookup on the server. Confirmed keys
+ * are remembered, so a key that repeats (e.g. the same team leader) is only looked up once.
+ *
+ * Keys are compared like the database's default case-insensitive collation: case and
+ * trailing spaces are ignored.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class KeySet implements AutoCloseable {
+    private static final int FETCH_SIZE = 10000;
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final Connection connection;
+    private final String table;
+    private final String column;
+
+    // Exact mode: every key. Bloom mode: the keys added by the caller or confirmed by a lookup.
+    private final Set<String> keys = new HashSet<>();
+    private final long[] bloom;
+    private final long bloomBits;
+    private PreparedStatement lookup;
+    private int loadedCount = 0;
+
+    private KeySet(Connection connection, String table, String column, long expectedKeys, boolean exact) {
+        this.connection = connection;
+        this.table = table;
+        this.column = column;
+        if (exact) {
+            bloom = null;
+            bloomBits = 0;
+        } else {
+            long words = Math.max(1, (expectedKeys * BITS_PER_KEY + 63) / 64);
+            bloom = new long[(int) Math.min(words, Integer.MAX_VALUE - 8)];
+            bloomBits = bloom.length * 64L;
+        }
+    }
+
+    /**
+     * Loads every value of a key column
+     *
+     * @param connection Connection to read with (also used to confirm Bloom filter hits)
+     * @param table Table name (a constant of the caller, not user input)
+     * @param column Key column of the table
+     * @param exactLimit Largest number of keys held exactly in memory
+     * @return The loaded key set
+     * @throws SQLException if the keys cannot be read
+     */
+    static KeySet load(Connection connection, String table, String column, int exactLimit) throws SQLException {
+        long count;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT_BIG(*) FROM " + table)) {
+            rs.next();
+            count = rs.getLong(1);
+        }
+
+        KeySet keySet = new KeySet(connection, table, column, count, count <= exactLimit);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery("SELECT " + column + " FROM " + table)) {
+                while (rs.next()) {
+                    String key = rs.getString(1);
+                    if (key != null) {
+                        keySet.put(normalize(key));
+                        keySet.loadedCount++;
+                    }
+                }
+            }
+        }
+        return keySet;
+    }
+
+    /**
+     * @return true if the key exists in the table or has been added
+     * @throws SQLException if a Bloom filter hit cannot be confirmed
+     */
+    boolean contains(String key) throws SQLException {
+        String normalized = normalize(key);
+        if (keys.contains(normalized)) {
+            return true;
+        }
+        if (bloom == null || !mightContain(normalized)) {
+            return false;
+        }
+        if (lookup == null) {
+            lookup = connection.prepareStatement("SELECT 1 FROM " + table + " WHERE " + column + " = ?");
+        }
+        lookup.setString(1, key);
+        try (ResultSet rs = lookup.executeQuery()) {
+            if (!rs.next()) {
+                return false;
+            }
+        }
+        keys.add(normalized);
+        return true;
+    }
+
+    /**
+     * Adds a key that will exist once the caller's rows are written
+     */
+    void add(String key) {
+        keys.add(normalize(key));
+    }
+
+    /**
+     * @return Number of keys loaded from the table
+     */
+    int getLoadedCount() {
+        return loadedCount;
+    }
+
+    /**
+     * @return true if the keys are held in a Bloom filter rather than exactly
+     */
+    boolean isApproximate() {
+        return bloom != null;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (lookup != null) {
+            lookup.close();
+        }
+    }
+
+    private void put(String normalized) {
+        if (bloom == null) {
+            keys.add(normalized);
+            return;
+        }
+        long h1 = normalized.hashCode();
+        long h2 = secondHash(normalized);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bloomBits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(String normalized) {
+        long h1 = normalized.hashCode();
+        long h2 = secondHash(normalized);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bloomBits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * FNV-1a over the chars, independent of String.hashCode()
+     */
+    private static long secondHash(String s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash | 1;
+    }
+
+    /**
+     * @return The key as it is compared: lower case, without trailing spaces
+     */
+    static String normalize(String key) {
+        int end = key.length();
+        while (end > 0 && key.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return key.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,175 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Incremental mailing-list export based on SQL Server change tracking on Individual
+ *
+ * Each target file has a high-water mark (&lt;file&gt;.hwm) holding the change-tracking version
+ * its last export was taken at. The next run only reads the rows changed since that version
+ * and writes a delta file: "upsert" for people added or changed while subscribed, "delete"
+ * for people deleted or unsubscribed. The first run, a run with full, or a run whose mark is
+ * older than the change-tracking retention writes every subscriber as an upsert instead.
+ *
+ * The version is read before the rows, so a row changed during the export may be sent again
+ * by the next run; upserts and deletes are idempotent, so that is harmless.
+ *
+ * Change tracking must be enabled on Individual (see the end of Nguyen_Astra_IP_Task5a.sql).
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class MailingListDeltaExport {
+    static final String[] HEADER = {"Action", "Id", "Name", "Street", "City", "State", "Postal Code"};
+    private static final Set<Integer> DICTIONARY_COLUMNS = new HashSet<>(Arrays.asList(0, 4, 5, 6));
+
+    private static final String FULL_SQL =
+        "SELECT i.id_number, CONCAT(i.first_name, ' ', i.last_name), i.street, i.city, i.state, i.postal_code " +
+        "FROM Individual i " +
+        "WHERE i.newsletter_status = 1 " +
+        "ORDER BY i.id_number";
+
+    // Current values of every row changed since the version (NULLs for deleted rows)
+    private static final String CHANGES_SQL =
+        "SELECT ct.id_number, CONCAT(i.first_name, ' ', i.last_name), i.street, i.city, i.state, i.postal_code, " +
+        "       i.newsletter_status " +
+        "FROM CHANGETABLE(CHANGES Individual, ?) AS ct " +
+        "LEFT JOIN Individual i ON i.id_number = ct.id_number " +
+        "ORDER BY ct.id_number";
+
+    private final Connection connection;
+    private final int fetchSize;
+    private final String format;
+    private final int compressionThreads;
+
+    /**
+     * @param connection Connection to read with
+     * @param fetchSize Rows per round trip
+     * @param format Format of the delta file (see ExportFormat)
+     * @param compressionThreads Number of compression threads (gzip)
+     */
+    MailingListDeltaExport(Connection connection, int fetchSize, String format, int compressionThreads) {
+        this.connection = connection;
+        this.fetchSize = fetchSize;
+        this.format = format;
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Writes the changes since the last export of the file (or everything)
+     *
+     * @param file Delta file to write
+     * @param full Export every subscriber even if a high-water mark exists
+     * @throws SQLException if change tracking is not available or the rows cannot be read
+     * @throws IOException if the file or the high-water mark cannot be written
+     */
+    void run(Path file, boolean full) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Path markFile = Paths.get(file.toString() + ".hwm");
+        Long lastVersion = full ? null : loadMark(markFile);
+
+        long currentVersion;
+        long minValidVersion;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT CHANGE_TRACKING_CURRENT_VERSION(), " +
+                                              "CHANGE_TRACKING_MIN_VALID_VERSION(OBJECT_ID('Individual'))")) {
+            rs.next();
+            currentVersion = rs.getLong(1);
+            minValidVersion = rs.getLong(2);
+            if (rs.wasNull()) {
+                throw new SQLException("Change tracking is not enabled on Individual. " +
+                                       "Run the change tracking section of Nguyen_Astra_IP_Task5a.sql first.");
+            }
+        }
+        if (lastVersion != null && lastVersion < minValidVersion) {
+            System.out.println("Changes since version " + lastVersion + " are no longer retained; exporting everything.");
+            lastVersion = null;
+        }
+
+        long upserts = 0;
+        long deletes = 0;
+        try (PreparedStatement pstmt = ExportService.prepareStreaming(connection,
+                 lastVersion == null ? FULL_SQL : CHANGES_SQL, fetchSize)) {
+            if (lastVersion != null) {
+                pstmt.setLong(1, lastVersion);
+            }
+            try (ResultSet rs = pstmt.executeQuery();
+                 RowWriter writer = ExportFormat.open(format, file, HEADER, DICTIONARY_COLUMNS, compressionThreads)) {
+                // Columns by position: id_number, full_name, street, city, state, postal_code[, newsletter_status]
+                while (rs.next()) {
+                    boolean subscribed = lastVersion == null || rs.getBoolean(7);
+                    writer.field(subscribed ? "upsert" : "delete");
+                    writer.field(rs.getString(1));
+                    if (subscribed) {
+                        writer.field(rs.getString(2));
+                        writer.field(rs.getString(3));
+                        writer.field(rs.getString(4));
+                        writer.field(rs.getString(5));
+                        writer.field(rs.getString(6));
+                        upserts++;
+                    } else {
+                        deletes++;
+                    }
+                    writer.endRow();
+                }
+            }
+        }
+        // Only move the mark once the delta file is complete
+        saveMark(markFile, currentVersion);
+
+        System.out.println((lastVersion == null ? "Full export" : "Changes since version " + lastVersion) +
+                           " (now at version " + currentVersion + ")");
+        System.out.println("File saved to: " + file.toAbsolutePath());
+        System.out.println("Upserts: " + upserts);
+        System.out.println("Deletes: " + deletes);
+        ExportService.printThroughput(upserts + deletes, Files.size(file), (System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    /**
+     * @return The version of the last export, or null if the file has never been exported
+     */
+    private static Long loadMark(Path markFile) throws IOException {
+        if (!Files.exists(markFile)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(markFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        try {
+            return Long.parseLong(properties.getProperty("version"));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid high-water mark file " + markFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replaces the high-water mark (through a temporary file, so it is never half-written)
+     */
+    private static void saveMark(Path markFile, long version) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", Long.toString(version));
+        StringWriter text = new StringWriter();
+        properties.store(text, "NPSS mailing-list export high-water mark");
+
+        Path tempFile = Paths.get(markFile.toString() + ".tmp");
+        Files.write(tempFile, text.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, markFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,339 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sql.DataSource;
+
+/**
+ * Parallel mailing-list export: the list is split into partitions that are fetched at the
+ * same time over separate connections, each into its own file
+ *
+ * Partitions are computed from a histogram query:
+ * - last_name: contiguous last_name ranges holding about the same number of rows. The ranges
+ *   follow the server's sort order, so the partition files in order are the globally ordered
+ *   list and merging them is a plain concatenation.
+ * - state: whole states, spread over the partitions by row count (largest state first). Each
+ *   file is ordered by name within its states; there is no single ordered merge.
+ *
+ * The partition files are written in any ExportFormat; only CSV partitions can be merged.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class MailingListPartitionExport {
+    static final List<String> PARTITION_COLUMNS = Arrays.asList("last_name", "state");
+
+    private final Connection connection;
+    private final DataSource dataSource;
+    private final int partitionCount;
+    private final String partitionBy;
+    private final int fetchSize;
+    private final String format;
+    private final int compressionThreads;
+
+    /**
+     * @param connection Connection used for the histogram and the first partition
+     * @param dataSource Pool the other partitions borrow their connection from
+     * @param partitionCount Number of partitions (and connections)
+     * @param partitionBy "last_name" or "state"
+     * @param fetchSize Rows per round trip
+     * @param format Format of the partition files (see ExportFormat)
+     * @param compressionThreads Compression threads shared by all partitions (gzip)
+     */
+    MailingListPartitionExport(Connection connection, DataSource dataSource, int partitionCount,
+                               String partitionBy, int fetchSize, String format, int compressionThreads) {
+        this.connection = connection;
+        this.dataSource = dataSource;
+        this.partitionCount = Math.max(1, partitionCount);
+        this.partitionBy = partitionBy;
+        this.fetchSize = fetchSize;
+        this.format = format;
+        this.compressionThreads = compressionThreads;
+    }
+
+    /**
+     * Exports the mailing list
+     *
+     * @param file Output file; partition N is written to &lt;file&gt;.partN
+     * @param merge Concatenate the partitions into file (last_name partitions only)
+     * @throws SQLException if a partition cannot be read
+     * @throws IOException if a file cannot be written
+     */
+    void run(Path file, boolean merge) throws SQLException, IOException {
+        long start = System.nanoTime();
+        List<Partition> partitions = partitionBy.equals("state") ? byState() : byLastName();
+        for (Partition partition : partitions) {
+            partition.file = file.resolveSibling(file.getFileName() + ".part" + partition.number);
+        }
+        System.out.println("Exporting " + partitions.size() + " partition(s) by " + partitionBy +
+                           " over " + partitions.size() + " connection(s)");
+
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < partitions.size(); i++) {
+                Partition partition = partitions.get(i);
+                boolean ownsConnection = i > 0;
+                futures.add(executor.submit(() -> {
+                    export(partition, ownsConnection);
+                    return null;
+                }));
+            }
+            // Every partition is waited for, so no connection is still in use after a failure
+            Exception failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    waitFor(future);
+                } catch (SQLException | IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure != null) {
+                throw (SQLException) failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long rows = 0;
+        long bytes = 0;
+        for (Partition partition : partitions) {
+            System.out.println(String.format("  Part %d (%s): %d rows in %.2f s -> %s", partition.number,
+                partition.description, partition.rows, partition.seconds, partition.file.getFileName()));
+            rows += partition.rows;
+            bytes += partition.bytes;
+        }
+
+        if (merge) {
+            bytes = concatenate(partitions, file);
+            System.out.println("File saved to: " + file.toAbsolutePath());
+        }
+        System.out.println("Total records exported: " + rows);
+        ExportService.printThroughput(rows, bytes, (System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    /**
+     * Splits the last names into ranges of about the same number of rows
+     */
+    private List<Partition> byLastName() throws SQLException {
+        List<String> names = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        long total = histogram("last_name", names, counts);
+
+        // Partition k starts at the first name where the running count reaches k * total / n
+        List<String> boundaries = new ArrayList<>();
+        long running = 0;
+        for (int i = 0; i < names.size() && boundaries.size() < partitionCount - 1; i++) {
+            long target = (boundaries.size() + 1) * total / partitionCount;
+            if (running >= target && running > 0 && names.get(i) != null) {
+                boundaries.add(names.get(i));
+            }
+            running += counts.get(i);
+        }
+
+        List<Partition> partitions = new ArrayList<>();
+        for (int i = 0; i <= boundaries.size(); i++) {
+            Partition partition = new Partition(i + 1);
+            String from = i > 0 ? boundaries.get(i - 1) : null;
+            String to = i < boundaries.size() ? boundaries.get(i) : null;
+            // NULL last names sort first, so they belong to the first range
+            if (from == null && to == null) {
+                partition.predicate = "";
+            } else if (from == null) {
+                partition.predicate = " AND (i.last_name IS NULL OR i.last_name < ?)";
+                partition.values.add(to);
+            } else if (to == null) {
+                partition.predicate = " AND i.last_name >= ?";
+                partition.values.add(from);
+            } else {
+                partition.predicate = " AND i.last_name >= ? AND i.last_name < ?";
+                partition.values.add(from);
+                partition.values.add(to);
+            }
+            partition.description = (from == null ? "start" : "'" + from + "'") + " to " +
+                                    (to == null ? "end" : "'" + to + "'");
+            partitions.add(partition);
+        }
+        return partitions;
+    }
+
+    /**
+     * Spreads whole states over the partitions, largest state first into the smallest partition
+     */
+    private List<Partition> byState() throws SQLException {
+        List<String> states = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        histogram("state", states, counts);
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < states.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Long.compare(counts.get(b), counts.get(a)));
+
+        int size = Math.max(1, Math.min(partitionCount, states.size()));
+        List<Partition> partitions = new ArrayList<>();
+        long[] load = new long[size];
+        for (int i = 0; i < size; i++) {
+            partitions.add(new Partition(i + 1));
+        }
+        for (int index : order) {
+            int smallest = 0;
+            for (int i = 1; i < size; i++) {
+                if (load[i] < load[smallest]) {
+                    smallest = i;
+                }
+            }
+            load[smallest] += counts.get(index);
+            Partition partition = partitions.get(smallest);
+            if (states.get(index) == null) {
+                partition.includesNull = true;
+            } else {
+                partition.values.add(states.get(index));
+            }
+        }
+
+        for (Partition partition : partitions) {
+            List<String> conditions = new ArrayList<>();
+            if (!partition.values.isEmpty()) {
+                conditions.add("i.state IN (" + String.join(", ", Collections.nCopies(partition.values.size(), "?")) + ")");
+            }
+            if (partition.includesNull) {
+                conditions.add("i.state IS NULL");
+            }
+            // An empty list (no subscribers at all) still gets one, empty, partition
+            partition.predicate = conditions.isEmpty() ? " AND 1 = 0" : " AND (" + String.join(" OR ", conditions) + ")";
+            partition.description = partition.values.size() + (partition.includesNull ? 1 : 0) + " state(s)";
+        }
+        return partitions;
+    }
+
+    /**
+     * Reads the number of mailing-list rows per value of a column, in the server's sort order
+     *
+     * @return Total number of rows
+     */
+    private long histogram(String column, List<String> values, List<Long> counts) throws SQLException {
+        String sql = "SELECT i." + column + ", COUNT(*) FROM Individual i WHERE i.newsletter_status = 1 " +
+                     "GROUP BY i." + column + " ORDER BY i." + column;
+        long total = 0;
+        try (PreparedStatement pstmt = ExportService.prepareStreaming(connection, sql, fetchSize);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+                counts.add(rs.getLong(2));
+                total += rs.getLong(2);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Writes one partition to its file
+     */
+    private void export(Partition partition, boolean ownsConnection) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Connection partitionConnection = ownsConnection ? dataSource.getConnection() : connection;
+        try (PreparedStatement pstmt = ExportService.prepareStreaming(partitionConnection,
+                 ExportService.MAILING_LIST_SELECT + partition.predicate + ExportService.MAILING_LIST_ORDER, fetchSize)) {
+            for (int i = 0; i < partition.values.size(); i++) {
+                pstmt.setString(i + 1, partition.values.get(i));
+            }
+            // The partitions compress at the same time, so they share the compression threads
+            int threads = Math.max(1, compressionThreads / partitionCount);
+            try (ResultSet rs = pstmt.executeQuery();
+                 RowWriter writer = ExportService.openFile(partition.file, format, threads)) {
+                partition.rows = ExportService.writeRows(rs, writer);
+            }
+            partition.bytes = Files.size(partition.file);
+        } finally {
+            if (ownsConnection) {
+                partitionConnection.close();
+            }
+        }
+        partition.seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+    }
+
+    /**
+     * Appends the partition files (minus their header) to one file and deletes them
+     *
+     * @return Size of the merged file
+     */
+    private static long concatenate(List<Partition> partitions, Path file) throws IOException {
+        long headerLength = (ExportService.HEADER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8).length;
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < partitions.size(); i++) {
+                try (FileChannel in = FileChannel.open(partitions.get(i).file, StandardOpenOption.READ)) {
+                    long position = i == 0 ? 0 : headerLength;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
+        for (Partition partition : partitions) {
+            Files.delete(partition.file);
+        }
+        return Files.size(file);
+    }
+
+    private static void waitFor(Future<?> future) throws SQLException, IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new SQLException("Partition export failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * One slice of the mailing list: extra WHERE condition with its parameter values
+     */
+    private static final class Partition {
+        private final int number;
+        private String predicate;
+        private final List<String> values = new ArrayList<>();
+        private boolean includesNull = false;
+        private String description;
+        private Path file;
+        private long rows;
+        private long bytes;
+        private double seconds;
+
+        private Partition(int number) {
+            this.number = number;
+        }
+    }
+}
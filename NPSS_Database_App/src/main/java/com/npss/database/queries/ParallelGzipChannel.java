@@ -0,0 +1,108 @@
+package com.npss.database.queries;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Channel that gzips what is written to it on several threads
+ *
+ * Every write() is one block, compressed on its own into a complete gzip member. The members
+ * are written to the file in order; concatenated members form a valid gzip file that gzip,
+ * zcat and GZIPInputStream read as one stream. At most two blocks per thread are in flight,
+ * so memory use is bounded by the block size.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class ParallelGzipChannel implements WritableByteChannel {
+    private final FileChannel out;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private boolean open = true;
+
+    /**
+     * @param out File to write the compressed blocks to (closed by close())
+     * @param threads Number of compression threads
+     */
+    ParallelGzipChannel(FileChannel out, int threads) {
+        this.out = out;
+        int count = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(count, task -> {
+            Thread thread = new Thread(task, "npss-export-gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxPending = count * 2;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int length = src.remaining();
+        byte[] block = new byte[length];
+        src.get(block);
+        pending.add(executor.submit(() -> compress(block)));
+        while (pending.size() > maxPending) {
+            writeNext();
+        }
+        return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            while (!pending.isEmpty()) {
+                writeNext();
+            }
+        } finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Waits for the oldest block and writes it out
+     */
+    private void writeNext() throws IOException {
+        byte[] compressed;
+        try {
+            compressed = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compression interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(compressed);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static byte[] compress(byte[] block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(block.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes, 64 * 1024)) {
+            gzip.write(block);
+        }
+        return bytes.toByteArray();
+    }
+}
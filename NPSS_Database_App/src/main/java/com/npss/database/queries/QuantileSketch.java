@@ -0,0 +1,90 @@
+package com.npss.database.queries;
+
+/**
+ * Streaming quantile sketch with 1% relative accuracy, for medians and percentiles of
+ * donation amounts without keeping the amounts
+ *
+ * Positive values are counted in logarithmic buckets: bucket i holds the values in
+ * (GAMMA^(i-1), GAMMA^i], and a quantile is reported as the middle of its bucket, which is
+ * within RELATIVE_ACCURACY of the exact value. The buckets are one int array covering the
+ * range of indexes seen so far, so a sketch of amounts from $1 to $1,000,000 is at most
+ * ~700 ints however many values it counts. Zero and negative values are counted as zero.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+final class QuantileSketch {
+    static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final int INITIAL_BUCKETS = 8;
+
+    private int[] counts;
+    // Bucket index of counts[0]
+    private int offset;
+    private long zeroCount = 0;
+    private long count = 0;
+
+    /**
+     * Counts one value
+     */
+    void add(double value) {
+        count++;
+        if (!(value > 0)) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+        if (counts == null) {
+            counts = new int[INITIAL_BUCKETS];
+            offset = index - INITIAL_BUCKETS / 2;
+        } else if (index < offset || index >= offset + counts.length) {
+            grow(index);
+        }
+        counts[index - offset]++;
+    }
+
+    /**
+     * @param q Quantile between 0 and 1 (0.5 for the median)
+     * @return The estimated value, or NaN if no value was counted
+     */
+    double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                return 2 * Math.pow(GAMMA, i + offset) / (GAMMA + 1);
+            }
+        }
+        return 2 * Math.pow(GAMMA, counts.length - 1 + offset) / (GAMMA + 1);
+    }
+
+    /**
+     * @return Number of values counted
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Widens the bucket array (at least doubling it) so that it covers an index
+     */
+    private void grow(int index) {
+        int low = Math.min(offset, index);
+        int high = Math.max(offset + counts.length - 1, index);
+        int length = Math.max(high - low + 1, counts.length * 2);
+        // Keep the spare room on the side that grew
+        int newOffset = index < offset ? high - length + 1 : low;
+        int[] grown = new int[length];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+}
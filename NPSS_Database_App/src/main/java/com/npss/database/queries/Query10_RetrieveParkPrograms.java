@@ -1,10 +1,15 @@
 package com.npss.database.queries;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
 
 /**
  * Query 10: Retrieve all park programs for a specific park that started after a given date
@@ -17,13 +22,61 @@ import java.util.Scanner;
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query10_RetrieveParkPrograms {
-    private Connection connection;
-    private Scanner scanner;
+public class Query10_RetrieveParkPrograms implements Command<Query10_RetrieveParkPrograms.Params> {
 
-    public Query10_RetrieveParkPrograms(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Parameters of Query 10
+     */
+    public static class Params {
+        public String parkName;
+        public java.sql.Date startDate;
+        public QueryOutput output = new QueryOutput();
+    }
+
+    @Override
+    public String getName() {
+        return "retrieveParkPrograms";
+    }
+
+    /**
+     * Prompts for the park name, start date and output
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 10] Retrieve all park programs for a specific park that started after a given date");
+
+        Params params = new Params();
+
+        // Get user input
+        System.out.print("Enter the park name: ");
+        params.parkName = scanner.nextLine().trim();
+
+        if (params.parkName.isEmpty()) {
+            throw new IllegalArgumentException("Park name cannot be empty.");
+        }
+
+        System.out.print("Enter the start date (YYYY-MM-DD) - programs starting after this date will be shown: ");
+        String startDateStr = scanner.nextLine().trim();
+
+        if (startDateStr.isEmpty()) {
+            throw new IllegalArgumentException("Start date cannot be empty.");
+        }
+        params.startDate = OperationArgs.parseDate(startDateStr, "start date");
+
+        params.output = QueryOutput.prompt(scanner);
+        return params;
+    }
+
+    /**
+     * Fields: park_name, start_date and the output fields (see QueryOutput)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.parkName = args.getString("park_name");
+        params.startDate = args.getDate("start_date");
+        params.output = QueryOutput.fromArgs(args);
+        return params;
     }
 
     /**
@@ -31,34 +84,11 @@ public class Query10_RetrieveParkPrograms {
      * 
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 10] Retrieve all park programs for a specific park that started after a given date");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // Get user input
-            System.out.print("Enter the park name: ");
-            String parkName = scanner.nextLine().trim();
-            
-            if (parkName.isEmpty()) {
-                System.out.println("Error: Park name cannot be empty.");
-                return;
-            }
-            
-            System.out.print("Enter the start date (YYYY-MM-DD) - programs starting after this date will be shown: ");
-            String startDateStr = scanner.nextLine().trim();
-            
-            if (startDateStr.isEmpty()) {
-                System.out.println("Error: Start date cannot be empty.");
-                return;
-            }
-            
-            java.sql.Date startDate;
-            try {
-                startDate = java.sql.Date.valueOf(startDateStr);
-            } catch (IllegalArgumentException e) {
-                System.out.println("Error: Invalid date format. Please use YYYY-MM-DD format.");
-                return;
-            }
+            String parkName = params.parkName;
+            java.sql.Date startDate = params.startDate;
             
             // SQL query - leverages indexes on National_parks_offers_program and Program
             // Uses range query on start_date which benefits from IX_program_start_date index
@@ -74,43 +104,70 @@ public class Query10_RetrieveParkPrograms {
                 "ORDER BY p.start_date, p.program_name";
             
             // Fill in the variables 
-            PreparedStatement pstmt = connection.prepareStatement(SQL);
+            PreparedStatement pstmt = params.output.prepare(connection, SQL);
             pstmt.setString(1, parkName);
             pstmt.setDate(2, startDate);
             
             ResultSet rs = pstmt.executeQuery();
             
-            // Display results
-            boolean hasResults = false;
-            System.out.println("Park Programs for: " + parkName);
-            System.out.println("Programs starting after: " + startDate.toString());
-
-            while (rs.next()) {
-                if (!hasResults) {
-                    hasResults = true;
-                }
-                
-                System.out.println("Program Name: " + rs.getString("program_name"));
-                System.out.println("Type: " + rs.getString("type"));
-                System.out.println("Start Date: " + rs.getDate("start_date").toString());
-                System.out.println("Duration: " + rs.getInt("duration") + " days");
-            }
-            
-            if (!hasResults) {
-                System.out.println("No programs found for park '" + parkName + "' starting after " + startDate.toString());
+            try (ResultSink sink = params.output.open(new ConsoleSink(parkName, startDate))) {
+                ResultSink.copy(rs, sink);
             }
             rs.close();
             pstmt.close();
             
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
         }
     }
-}
 
+    /**
+     * Console display of Query 10
+     */
+    private static class ConsoleSink implements ResultSink {
+        private final String parkName;
+        private final java.sql.Date startDate;
+        private int programName;
+        private int type;
+        private int programStartDate;
+        private int duration;
+
+        private ConsoleSink(String parkName, java.sql.Date startDate) {
+            this.parkName = parkName;
+            this.startDate = startDate;
+        }
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException {
+            programName = ResultSink.column(metaData, "program_name");
+            type = ResultSink.column(metaData, "type");
+            programStartDate = ResultSink.column(metaData, "start_date");
+            duration = ResultSink.column(metaData, "duration");
+
+            System.out.println("Park Programs for: " + parkName);
+            System.out.println("Programs starting after: " + startDate.toString());
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            System.out.println("Program Name: " + rs.getString(programName));
+            System.out.println("Type: " + rs.getString(type));
+            System.out.println("Start Date: " + rs.getDate(programStartDate).toString());
+            System.out.println("Duration: " + rs.getInt(duration) + " days");
+        }
+
+        @Override
+        public void finish(long rows) {
+            if (rows == 0) {
+                System.out.println("No programs found for park '" + parkName + "' starting after " + startDate.toString());
+            }
+        }
+    }
+}
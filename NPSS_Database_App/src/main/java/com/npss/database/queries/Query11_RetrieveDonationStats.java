@@ -1,30 +1,148 @@
 package com.npss.database.queries;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
 
 /**
  * Query 11: Retrieve the total and average donation amount received in a month from all anonymous donors
  * 
  * This query leverages the following indexes for optimal performance:
- * - IX_donation_date (for filtering by month/year)
+ * - IX_donation_date (for the half-open date range of the month)
  * - IX_donation_donor_id_number (for joining with Donor)
  * - IX_donor_preference (for filtering anonymous donors)
  * - Clustered index on Donor.id_number (for grouping by donor)
  * 
+ * With source "rollup" the month is read from Donation_monthly_rollup instead, one row per
+ * donor of the month (see DonationRollupService). compare prints the plan and time of the
+ * original YEAR()/MONTH() filter, the date range and the rollup.
+ * 
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query11_RetrieveDonationStats {
-    private Connection connection;
-    private Scanner scanner;
+public class Query11_RetrieveDonationStats implements Command<Query11_RetrieveDonationStats.Params> {
+
+    public static final List<String> SOURCES = Arrays.asList("donations", "rollup");
+
+    // Runs of each query timed by compare
+    private static final int COMPARE_RUNS = 5;
+
+    // SQL query - Retrieve the total and average donation amount received in a 
+    // month from all anonymous donors
+    // The month is a half-open date range, which IX_donation_date can seek
+    private static final String RANGE_SQL = "SELECT "  +
+        "dr.id_number AS donor_id, " + 
+        "SUM(d.amount) AS total_amount, " + 
+        "AVG(d.amount) AS average_amount, " + 
+        "COUNT(d.donation_id) AS donation_count " + 
+        "FROM Donation d " + 
+        "INNER JOIN Donor dr ON d.donor_id_number = dr.id_number " +
+        "WHERE d.date >= ? " + 
+        "AND d.date < ? " + 
+        "AND (dr.preference IS NULL OR dr.preference = 'Anonymous') " +
+        "GROUP BY dr.id_number " + "ORDER BY SUM(d.amount) DESC"; 
+
+    // The same statistics from the donor-month rows of the rollup
+    private static final String ROLLUP_SQL = "SELECT " +
+        "r.donor_id_number AS donor_id, " +
+        "r.total_amount, " +
+        "r.total_amount / r.donation_count AS average_amount, " +
+        "r.donation_count " +
+        "FROM Donation_monthly_rollup r " +
+        "INNER JOIN Donor dr ON r.donor_id_number = dr.id_number " +
+        "WHERE r.month_start = ? " +
+        "AND (dr.preference IS NULL OR dr.preference = 'Anonymous') " +
+        "ORDER BY r.total_amount DESC";
+
+    // The original filter, only run by compare: functions of d.date cannot use IX_donation_date
+    private static final String FUNCTION_SQL = RANGE_SQL.replace("WHERE d.date >= ? AND d.date < ? ",
+                                                                  "WHERE YEAR(d.date) = ? AND MONTH(d.date) = ? ");
+
+    /**
+     * Parameters of Query 11
+     */
+    public static class Params {
+        public int month;
+        public int year;
+        public QueryOutput output = new QueryOutput();
+        public String source = "donations";
+        public boolean compare = false;
+    }
+
+    @Override
+    public String getName() {
+        return "retrieveDonationStats";
+    }
+
+    /**
+     * Prompts for the month, year, source and output
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 11] Retrieve the total and average donation amount received in a month from all anonymous donors");
+
+        // Get user input
+        System.out.println("Enter the month (MM)");
+        String month = scanner.nextLine().trim();
+        System.out.print("Enter the year (YYYY): ");
+        String year = scanner.nextLine().trim();
+
+        if(month.isEmpty() || year.isEmpty()){
+            throw new IllegalArgumentException("Month and year cannot be empty.");
+        }
+
+        Params params = new Params();
+        params.month = OperationArgs.parseInt(month, "month");
+        params.year = OperationArgs.parseInt(year, "year");
+
+        System.out.print("Compare the plans of the date filters and the rollup instead? (y/N): ");
+        params.compare = scanner.nextLine().trim().equalsIgnoreCase("y");
+        if (params.compare) {
+            return params;
+        }
+
+        System.out.print("Source - donations or rollup (press Enter for donations): ");
+        String source = scanner.nextLine().trim().toLowerCase();
+        if (!source.isEmpty()) {
+            params.source = source;
+        }
+        validate(params);
+
+        params.output = QueryOutput.prompt(scanner);
+        return params;
+    }
+
+    /**
+     * Fields: month, year, optional source ("donations" or "rollup", default "donations"),
+     * compare (default false) and the output fields (see QueryOutput)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.month = args.getInt("month");
+        params.year = args.getInt("year");
+        if (args.has("source")) {
+            params.source = args.getString("source").toLowerCase();
+        }
+        params.compare = args.getBoolean("compare", false);
+        params.output = QueryOutput.fromArgs(args);
+        validate(params);
+        return params;
+    }
 
-    public Query11_RetrieveDonationStats(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    private static void validate(Params params) {
+        if (!SOURCES.contains(params.source)) {
+            throw new IllegalArgumentException("Invalid source '" + params.source + "'. Please use one of " + SOURCES + ".");
+        }
     }
 
     /**
@@ -32,88 +150,150 @@ public class Query11_RetrieveDonationStats {
      * 
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 11] Retrieve the total and average donation amount received in a month from all anonymous donors");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try{
-            // Get user input
-            System.out.println("Enter the month (MM)");
-            String month = scanner.nextLine().trim();
-            System.out.print("Enter the year (YYYY): ");
-            String year = scanner.nextLine().trim();
-
-            if(month.isEmpty() || year.isEmpty()){
-                System.out.println("Error: Month and year cannot be empty.");
+            // Logic check 
+            int monthInt = params.month;
+            int yearInt = params.year;
+            String month = String.format("%02d", monthInt);
+            String year = String.valueOf(yearInt);
+
+            if (monthInt < 1 || monthInt > 12) {
+                System.out.println("Error: Month must be between 01 and 12.");
                 return;
             }
 
-            // Logic check 
-            int monthInt, yearInt; 
-            try {
-                monthInt = Integer.parseInt(month);
-                yearInt = Integer.parseInt(year);
-                
-                if (monthInt < 1 || monthInt > 12) {
-                    System.out.println("Error: Month must be between 01 and 12.");
-                    return;
-                }
-            } catch (NumberFormatException e) {
-                System.out.println("Error: Invalid number format.");
+            // First day of the month and of the next month
+            java.sql.Date from = DonationRollupService.monthStart(yearInt, monthInt);
+            java.sql.Date to = java.sql.Date.valueOf(from.toLocalDate().plusMonths(1));
+
+            if (params.compare) {
+                compare(connection, yearInt, monthInt, from, to);
                 return;
             }
 
-            // SQL query - Retrieve the total and average donation amount received in a 
-            // month from all anonymous donors
-            String SQL = "SELECT "  +
-            "dr.id_number AS donor_id, " + 
-            "SUM(d.amount) AS total_amount, " + 
-            "AVG(d.amount) AS average_amount, " + 
-            "COUNT(d.donation_id) AS donation_count " + 
-            "FROM Donation d " + 
-            "INNER JOIN Donor dr ON d.donor_id_number = dr.id_number " +
-            "WHERE YEAR(d.date) = ? " + 
-            "AND MONTH(d.date) = ? " + 
-            "AND (dr.preference IS NULL OR dr.preference = 'Anonymous') " +
-            "GROUP BY dr.id_number " + "ORDER BY SUM(d.amount) DESC"; 
+            boolean rollup = params.source.equals("rollup");
+            if (rollup && !DonationRollupService.isEnabled(connection)) {
+                throw new SQLException("The donation rollup is not enabled. " +
+                                       "Run the donation rollup section of Nguyen_Astra_IP_Task5a.sql first.");
+            }
 
             // Fill in the variables 
-            PreparedStatement pstmt = connection.prepareStatement(SQL);
-            pstmt.setInt(1, yearInt);
-            pstmt.setInt(2, monthInt);
+            PreparedStatement pstmt = params.output.prepare(connection, rollup ? ROLLUP_SQL : RANGE_SQL);
+            pstmt.setDate(1, from);
+            if (!rollup) {
+                pstmt.setDate(2, to);
+            }
 
             ResultSet rs = pstmt.executeQuery(); 
 
-            // Display results 
-            boolean hasResults = false;
-
-            System.out.println("Anonymous Donor Statistics for " + month + "/" + year);
-            System.out.println("Sorted by Total Amount (Descending)");
-
-            while (rs.next()) {
-                hasResults = true;
-                
-                System.out.println("Donor ID: " + rs.getString("donor_id"));
-                System.out.println("Total Amount: $" + String.format("%.2f", rs.getDouble("total_amount")));
-                System.out.println("Average Amount: $" + String.format("%.2f", rs.getDouble("average_amount")));
-                System.out.println("Number of Donations: " + rs.getInt("donation_count"));
-            }
-
-            if (!hasResults) {
-                System.out.println("No anonymous donations found for " + month + "/" + year);
+            try (ResultSink sink = params.output.open(new ConsoleSink(month + "/" + year))) {
+                ResultSink.copy(rs, sink);
             }
             
             rs.close();
             pstmt.close();
 
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
         }catch(SQLException e){
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        }catch(Exception e){
-            System.err.println("Error: " + e.getMessage());
         }
     }
-}
 
+    /**
+     * Prints the estimated plan and the average time of the month with the YEAR()/MONTH()
+     * filter, with the date range and (if enabled) from the rollup
+     */
+    private void compare(Connection connection, int year, int month, java.sql.Date from, java.sql.Date to)
+            throws SQLException {
+        List<String> names = Arrays.asList("functions", "range", "rollup");
+        List<String> queries = Arrays.asList(FUNCTION_SQL, RANGE_SQL, ROLLUP_SQL);
+        List<Object[]> values = Arrays.asList(new Object[] {year, month}, new Object[] {from, to}, new Object[] {from});
+        boolean rollupEnabled = DonationRollupService.isEnabled(connection);
+
+        System.out.println("Anonymous donor statistics for " + String.format("%02d/%d", month, year) +
+                           ", average of " + COMPARE_RUNS + " runs");
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equals("rollup") && !rollupEnabled) {
+                System.out.println("rollup: not enabled (see DonationRollupService)");
+                continue;
+            }
+            // The plan is compiled for the literal values; they are numbers and dates only
+            String literalSql = queries.get(i);
+            for (Object value : values.get(i)) {
+                literalSql = literalSql.replaceFirst("\\?", value instanceof java.sql.Date ? "'" + value + "'" : value.toString());
+            }
+            List<String> plan = QueryPlan.operators(connection, literalSql);
+
+            long rows = 0;
+            long start = System.nanoTime();
+            try (PreparedStatement pstmt = connection.prepareStatement(queries.get(i))) {
+                for (int run = 0; run < COMPARE_RUNS; run++) {
+                    for (int v = 0; v < values.get(i).length; v++) {
+                        pstmt.setObject(v + 1, values.get(i)[v]);
+                    }
+                    rows = 0;
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            rows++;
+                        }
+                    }
+                }
+            }
+            double millis = (System.nanoTime() - start) / 1_000_000.0 / COMPARE_RUNS;
+            System.out.println(String.format("%-10s %9.2f ms  %d donor(s)", names.get(i), millis, rows));
+            System.out.println("  Plan: " + String.join(" <- ", plan));
+        }
+    }
+
+    /**
+     * Console display of Query 11
+     */
+    private static class ConsoleSink implements ResultSink {
+        private final String period;
+        private int donorId;
+        private int totalAmount;
+        private int averageAmount;
+        private int donationCount;
+
+        /**
+         * @param period The month as MM/YYYY
+         */
+        private ConsoleSink(String period) {
+            this.period = period;
+        }
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException {
+            donorId = ResultSink.column(metaData, "donor_id");
+            totalAmount = ResultSink.column(metaData, "total_amount");
+            averageAmount = ResultSink.column(metaData, "average_amount");
+            donationCount = ResultSink.column(metaData, "donation_count");
+
+            System.out.println("Anonymous Donor Statistics for " + period);
+            System.out.println("Sorted by Total Amount (Descending)");
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            System.out.println("Donor ID: " + rs.getString(donorId));
+            System.out.println("Total Amount: $" + String.format("%.2f", rs.getDouble(totalAmount)));
+            System.out.println("Average Amount: $" + String.format("%.2f", rs.getDouble(averageAmount)));
+            System.out.println("Number of Donations: " + rs.getInt(donationCount));
+        }
+
+        @Override
+        public void finish(long rows) {
+            if (rows == 0) {
+                System.out.println("No anonymous donations found for " + period);
+            }
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package com.npss.database.queries;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
 
 /**
  * Query 12: Retrieve the list of rangers in a team, including their certifications, years of service and their role in the team
@@ -18,13 +23,50 @@ import java.util.Scanner;
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query12_RetrieveRangersInTeam {
-    private Connection connection;
-    private Scanner scanner;
+public class Query12_RetrieveRangersInTeam implements Command<Query12_RetrieveRangersInTeam.Params> {
 
-    public Query12_RetrieveRangersInTeam(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Parameters of Query 12
+     */
+    public static class Params {
+        public String teamId;
+        public QueryOutput output = new QueryOutput();
+    }
+
+    @Override
+    public String getName() {
+        return "retrieveRangersInTeam";
+    }
+
+    /**
+     * Prompts for the team ID and the output
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 12] Retrieve the list of rangers in a team, including their certifications, years of service and their role in the team");
+
+        Params params = new Params();
+
+        // Get user input
+        System.out.print("Enter the team ID: ");
+        params.teamId = scanner.nextLine().trim();
+
+        if (params.teamId.isEmpty()) {
+            throw new IllegalArgumentException("Team ID cannot be empty.");
+        }
+        params.output = QueryOutput.prompt(scanner);
+        return params;
+    }
+
+    /**
+     * Fields: team_id and the output fields (see QueryOutput)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.teamId = args.getString("team_id");
+        params.output = QueryOutput.fromArgs(args);
+        return params;
     }
 
     /**
@@ -32,18 +74,10 @@ public class Query12_RetrieveRangersInTeam {
      * 
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 12] Retrieve the list of rangers in a team, including their certifications, years of service and their role in the team");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // Get user input
-            System.out.print("Enter the team ID: ");
-            String teamId = scanner.nextLine().trim();
-            
-            if (teamId.isEmpty()) {
-                System.out.println("Error: Team ID cannot be empty.");
-                return;
-            }
+            String teamId = params.teamId;
             
             // SQL query - Retrieve rangers in team with certifications, years of service, and status
             // Uses LEFT JOIN for certifications since a ranger may have no certifications
@@ -64,84 +98,106 @@ public class Query12_RetrieveRangersInTeam {
                 "ORDER BY i.last_name, i.first_name, rc.certification";
             
             // Fill in the variables
-            PreparedStatement pstmt = connection.prepareStatement(SQL);
+            PreparedStatement pstmt = params.output.prepare(connection, SQL);
             pstmt.setString(1, teamId);
             
             ResultSet rs = pstmt.executeQuery();
             
-            // Display results
-            boolean hasResults = false;
-            String currentRangerId = null;
-            String currentRangerName = null;
-            String currentStatus = null;
-            Integer currentYearsOfService = null;
-            boolean firstRanger = true;
-            boolean firstCertification = true;
-    
-            System.out.println("Rangers in Team: " + teamId);
-            while (rs.next()) {
-                String rangerId = rs.getString("id_number");
-                
-                // If this is a new ranger, display ranger info
-                if (currentRangerId == null || !rangerId.equals(currentRangerId)) {
-                    if (!firstRanger) {
-                        System.out.println(); // New line after certifications
-                    }
-                    firstRanger = false;
-                    firstCertification = true;
-                    hasResults = true;
-                    
-                    currentRangerId = rangerId;
-                    currentRangerName = rs.getString("full_name");
-                    currentStatus = rs.getString("status");
-                    currentYearsOfService = rs.getInt("years_of_service");
-                    
-                    System.out.println("ID Number: " + currentRangerId);
-                    System.out.println("Name: " + currentRangerName);
-                    System.out.println("Status (Role): " + currentStatus);
-                    System.out.println("Years of Service: " + currentYearsOfService);
-                    System.out.print("Certifications: ");
-                }
-                
-                // Display certification 
-                // May not have any certifications 
-                String certification = rs.getString("certification");
-                if (certification != null && !certification.isEmpty()) {
-                    if (firstCertification) {
-                        // First certification for this ranger
-                        System.out.print(certification);
-                        firstCertification = false;
-                    } else {
-                        // Additional certification 
-                        System.out.print(", " + certification);
-                    }
-                } else {
-                    // No certifications found 
-                    if (firstCertification) {
-                        System.out.print("None");
-                        firstCertification = false;
-                    }
-                }
-            }
-            
-            if (hasResults) {
-                System.out.println(); // New line after last certification
-            } else {
-                System.out.println("No rangers found in team: " + teamId);
+            try (ResultSink sink = params.output.open(new ConsoleSink(teamId))) {
+                ResultSink.copy(rs, sink);
             }
             
             rs.close();
             pstmt.close();
             
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
         }
     }
-}
 
+    /**
+     * Console display of Query 12: one entry per ranger, with the certifications of its rows
+     * joined on one line
+     */
+    private static class ConsoleSink implements ResultSink {
+        private final String teamId;
+        private int idNumber;
+        private int fullName;
+        private int status;
+        private int yearsOfService;
+        private int certificationColumn;
+        private String currentRangerId = null;
+        private boolean firstCertification = true;
+
+        private ConsoleSink(String teamId) {
+            this.teamId = teamId;
+        }
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException {
+            idNumber = ResultSink.column(metaData, "id_number");
+            fullName = ResultSink.column(metaData, "full_name");
+            status = ResultSink.column(metaData, "status");
+            yearsOfService = ResultSink.column(metaData, "years_of_service");
+            certificationColumn = ResultSink.column(metaData, "certification");
+
+            System.out.println("Rangers in Team: " + teamId);
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            String rangerId = rs.getString(idNumber);
+
+            // If this is a new ranger, display ranger info
+            if (currentRangerId == null || !rangerId.equals(currentRangerId)) {
+                if (currentRangerId != null) {
+                    System.out.println(); // New line after certifications
+                }
+                firstCertification = true;
+                currentRangerId = rangerId;
+
+                System.out.println("ID Number: " + currentRangerId);
+                System.out.println("Name: " + rs.getString(fullName));
+                System.out.println("Status (Role): " + rs.getString(status));
+                System.out.println("Years of Service: " + rs.getInt(yearsOfService));
+                System.out.print("Certifications: ");
+            }
+
+            // Display certification 
+            // May not have any certifications 
+            String certification = rs.getString(certificationColumn);
+            if (certification != null && !certification.isEmpty()) {
+                if (firstCertification) {
+                    // First certification for this ranger
+                    System.out.print(certification);
+                    firstCertification = false;
+                } else {
+                    // Additional certification 
+                    System.out.print(", " + certification);
+                }
+            } else {
+                // No certifications found 
+                if (firstCertification) {
+                    System.out.print("None");
+                    firstCertification = false;
+                }
+            }
+        }
+
+        @Override
+        public void finish(long rows) {
+            if (rows > 0) {
+                System.out.println(); // New line after last certification
+            } else {
+                System.out.println("No rangers found in team: " + teamId);
+            }
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.npss.database.queries;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
 
 /**
  * Query 13: Retrieve the names, IDs, contact information, and newsletter subscription status of all individuals in the database
@@ -13,17 +20,172 @@ import java.util.Scanner;
  * - Clustered index on Individual.id_number (primary key)
  * - IX_individual_phone_numbers_id_number (for retrieving phone numbers)
  * - IX_individual_email_addresses_id_number (for retrieving email addresses)
+ * - IX_individual_last_name_first_name (for keyset pagination, see IndividualPager)
+ * 
+ * Strategies:
+ * - aggregate (default): one row per individual, the phone numbers and emails joined by
+ *   STRING_AGG in correlated subqueries on the server
+ * - join: LEFT JOINs of both phone numbers and emails, which returns one row per phone number
+ *   and email combination (3 phone numbers and 3 emails are 9 rows)
+ * - merge: the three tables read as separate streams ordered by id_number and merge-joined
+ *   here (see IndividualContactMerge); listed by ID instead of name, console only
+ * 
+ * With a pageSize the aggregate strategy lists one page of individuals at a time, starting
+ * from a cursor token printed with the previous page (see IndividualPager).
+ * 
+ * compare runs every strategy without displaying anything and prints the rows each one
+ * transferred and its elapsed time.
  * 
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query13_RetrieveAllIndividuals {
-    private Connection connection;
-    private Scanner scanner;
+public class Query13_RetrieveAllIndividuals implements Command<Query13_RetrieveAllIndividuals.Params> {
+
+    public static final List<String> STRATEGIES = Arrays.asList("aggregate", "join", "merge");
+
+    // SQL query - Retrieve all individuals with their contact information
+    // Uses LEFT JOIN for phone numbers and emails since they are multi-valued attributes
+    private static final String JOIN_SQL = 
+        "SELECT " +
+        "    i.id_number, " +
+        "    i.first_name, " +
+        "    i.last_name, " +
+        "    CONCAT(i.first_name, ' ', i.last_name) AS full_name, " +
+        "    i.newsletter_status, " +
+        "    ipn.phone_number, " +
+        "    iea.email_address " +
+        "FROM Individual i " +
+        "LEFT JOIN Individual_phone_numbers ipn ON i.id_number = ipn.id_number " +
+        "LEFT JOIN Individual_email_addresses iea ON i.id_number = iea.id_number " +
+        "ORDER BY i.last_name, i.first_name, i.id_number, ipn.phone_number, iea.email_address";
+
+    // One row per individual; each subquery seeks the id_number index of its child table
+    static final String AGGREGATE_SELECT = 
+        "SELECT " +
+        "    i.id_number, " +
+        "    i.first_name, " +
+        "    i.last_name, " +
+        "    CONCAT(i.first_name, ' ', i.last_name) AS full_name, " +
+        "    i.newsletter_status, " +
+        "    (SELECT STRING_AGG(ipn.phone_number, ', ') WITHIN GROUP (ORDER BY ipn.phone_number) " +
+        "     FROM Individual_phone_numbers ipn WHERE ipn.id_number = i.id_number) AS phone_numbers, " +
+        "    (SELECT STRING_AGG(iea.email_address, ', ') WITHIN GROUP (ORDER BY iea.email_address) " +
+        "     FROM Individual_email_addresses iea WHERE iea.id_number = i.id_number) AS email_addresses " +
+        "FROM Individual i";
+    private static final String AGGREGATE_SQL = AGGREGATE_SELECT + " ORDER BY i.last_name, i.first_name, i.id_number";
+
+    private final DataSource dataSource;
+
+    /**
+     * Parameters of Query 13
+     * strategy is "aggregate", "join" or "merge"; compare runs all of them instead;
+     * pageSize (0 for everyone) and cursor (null for the first page) only apply to aggregate
+     */
+    public static class Params {
+        public QueryOutput output = new QueryOutput();
+        public String strategy = "aggregate";
+        public boolean compare = false;
+        public int pageSize = 0;
+        public String cursor;
+    }
+
+    /**
+     * Cursor tokens of the pages around a page (null at either end)
+     */
+    public static class Page {
+        public long rows;
+        public String previousCursor;
+        public String nextCursor;
+    }
+
+    /**
+     * @param dataSource Pool the merge strategy borrows its extra connections from
+     */
+    public Query13_RetrieveAllIndividuals(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public String getName() {
+        return "retrieveAllIndividuals";
+    }
 
-    public Query13_RetrieveAllIndividuals(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Prompts for the strategy and the output
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 13] Retrieve the names, IDs, contact information, and newsletter subscription status of all individuals in the database");
+
+        Params params = new Params();
+        System.out.print("Compare the rows transferred by each strategy instead? (y/N): ");
+        params.compare = scanner.nextLine().trim().equalsIgnoreCase("y");
+        if (params.compare) {
+            return params;
+        }
+
+        System.out.print("Strategy - aggregate, join or merge (press Enter for aggregate): ");
+        String strategy = scanner.nextLine().trim().toLowerCase();
+        if (!strategy.isEmpty()) {
+            params.strategy = strategy;
+        }
+        validate(params);
+
+        if (params.strategy.equals("aggregate")) {
+            System.out.print("Individuals per page (press Enter to list everyone): ");
+            String pageSize = scanner.nextLine().trim();
+            if (!pageSize.isEmpty()) {
+                params.pageSize = OperationArgs.parseInt(pageSize, "page size");
+            }
+        }
+        if (!params.strategy.equals("merge")) {
+            params.output = QueryOutput.prompt(scanner);
+        }
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: optional strategy ("aggregate", "join" or "merge", default "aggregate"),
+     * compare (default false), page_size (default 0: everyone), cursor (the next or previous
+     * page cursor printed with a page; default: the first page) and the output fields
+     * (see QueryOutput)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        if (args.has("strategy")) {
+            params.strategy = args.getString("strategy").toLowerCase();
+        }
+        params.compare = args.getBoolean("compare", false);
+        params.pageSize = args.getInt("page_size", 0);
+        if (args.has("cursor")) {
+            params.cursor = args.getString("cursor");
+        }
+        params.output = QueryOutput.fromArgs(args);
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (!STRATEGIES.contains(params.strategy)) {
+            throw new IllegalArgumentException("Invalid strategy '" + params.strategy + "'. Please use one of " + STRATEGIES + ".");
+        }
+        if (params.strategy.equals("merge") && !params.output.output.equals("console")) {
+            throw new IllegalArgumentException("The merge strategy only writes to the console.");
+        }
+        if (params.pageSize < 0) {
+            throw new IllegalArgumentException("Page size cannot be negative.");
+        }
+        if (params.pageSize > 0 && !params.strategy.equals("aggregate")) {
+            throw new IllegalArgumentException("Only the aggregate strategy can be paged.");
+        }
+        if (params.cursor != null) {
+            if (params.pageSize == 0) {
+                throw new IllegalArgumentException("A cursor needs a page size.");
+            }
+            IndividualPager.validate(params.cursor);
+        }
     }
 
     /**
@@ -31,121 +193,286 @@ public class Query13_RetrieveAllIndividuals {
      * 
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 13] Retrieve the names, IDs, contact information, and newsletter subscription status of all individuals in the database");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
+        if (params.compare) {
+            compare(connection);
+            return;
+        }
+        if (params.strategy.equals("merge")) {
+            runMerge(connection);
+            return;
+        }
+        if (params.pageSize > 0) {
+            Page page = runPage(connection, params);
+            if (page.previousCursor != null) {
+                System.out.println("Previous page cursor: " + page.previousCursor);
+            }
+            if (page.nextCursor != null) {
+                System.out.println("Next page cursor: " + page.nextCursor);
+            }
+            return;
+        }
+        boolean join = params.strategy.equals("join");
+        String SQL = join ? JOIN_SQL : AGGREGATE_SQL;
+
         try {
-            // SQL query - Retrieve all individuals with their contact information
-            // Uses LEFT JOIN for phone numbers and emails since they are multi-valued attributes
-            String SQL = 
-                "SELECT " +
-                "    i.id_number, " +
-                "    i.first_name, " +
-                "    i.last_name, " +
-                "    CONCAT(i.first_name, ' ', i.last_name) AS full_name, " +
-                "    i.newsletter_status, " +
-                "    ipn.phone_number, " +
-                "    iea.email_address " +
-                "FROM Individual i " +
-                "LEFT JOIN Individual_phone_numbers ipn ON i.id_number = ipn.id_number " +
-                "LEFT JOIN Individual_email_addresses iea ON i.id_number = iea.id_number " +
-                "ORDER BY i.last_name, i.first_name, ipn.phone_number, iea.email_address";
-            
             // Fill in the variables
-            PreparedStatement pstmt = connection.prepareStatement(SQL);
+            PreparedStatement pstmt = params.output.prepare(connection, SQL);
             
             ResultSet rs = pstmt.executeQuery();
             
-            // Display results
-            boolean hasResults = false;
-            String currentIndividualId = null;
-            String currentIndividualName = null;
-            Boolean currentNewsletterStatus = null;
-            boolean firstIndividual = true;
-            boolean firstPhone = true;
-            boolean firstEmail = true;
-        
-            System.out.println("All Individuals in Database");
+            try (ResultSink sink = params.output.open(join ? new ConsoleSink() : new AggregateConsoleSink())) {
+                ResultSink.copy(rs, sink);
+            }
+            
+            rs.close();
+            pstmt.close();
             
-            while (rs.next()) {
-                String individualId = rs.getString("id_number");
-                
-                if (currentIndividualId == null || !individualId.equals(currentIndividualId)) {
-                    if (!firstIndividual) {
-                        System.out.println(); // New line after contact info
-                        System.out.println("-".repeat(80));
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Executes Query 13 for one page of params.pageSize individuals, starting at params.cursor
+     * 
+     * @return The cursors of the pages around it
+     * @throws SQLException if a database error occurs
+     */
+    public Page runPage(Connection connection, Params params) throws SQLException {
+        try (ResultSink sink = params.output.open(new AggregateConsoleSink())) {
+            return new IndividualPager(connection, params.pageSize).fetch(params.cursor, sink);
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Displays every individual merged from three separate streams
+     */
+    private void runMerge(Connection connection) throws SQLException {
+        try {
+            IndividualContactMerge merge = new IndividualContactMerge(connection, dataSource,
+                ExportService.DEFAULT_FETCH_SIZE);
+            boolean[] first = {true};
+            System.out.println("All Individuals in Database");
+            long individuals = merge.run((idNumber, fullName, subscribed, phoneNumbers, emailAddresses) -> {
+                printIndividual(first[0], idNumber, fullName, subscribed,
+                                String.join(", ", phoneNumbers), String.join(", ", emailAddresses));
+                first[0] = false;
+            });
+            if (individuals == 0) {
+                System.out.println("No individuals found in the database.");
+            }
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs every strategy without displaying the rows and prints the rows each one transferred
+     */
+    private void compare(Connection connection) throws SQLException {
+        System.out.println(String.format("%-10s %17s %12s %10s", "Strategy", "Rows transferred", "Individuals", "Time (ms)"));
+        try {
+            for (String strategy : STRATEGIES) {
+                long start = System.nanoTime();
+                long rows = 0;
+                long individuals = 0;
+                if (strategy.equals("merge")) {
+                    IndividualContactMerge merge = new IndividualContactMerge(connection, dataSource,
+                        ExportService.DEFAULT_FETCH_SIZE);
+                    individuals = merge.run((idNumber, fullName, subscribed, phoneNumbers, emailAddresses) -> { });
+                    rows = merge.getRowsTransferred();
+                } else {
+                    try (PreparedStatement pstmt = ExportService.prepareStreaming(connection,
+                             strategy.equals("join") ? JOIN_SQL : AGGREGATE_SQL, ExportService.DEFAULT_FETCH_SIZE);
+                         ResultSet rs = pstmt.executeQuery()) {
+                        String currentId = null;
+                        while (rs.next()) {
+                            String idNumber = rs.getString(1);
+                            if (!idNumber.equals(currentId)) {
+                                individuals++;
+                                currentId = idNumber;
+                            }
+                            rows++;
+                        }
                     }
-                    firstIndividual = false;
-                    firstPhone = true;
-                    firstEmail = true;
-                    hasResults = true;
-                    
-                    currentIndividualId = individualId;
-                    currentIndividualName = rs.getString("full_name");
-                    currentNewsletterStatus = rs.getBoolean("newsletter_status");
-                    
-                    System.out.println("ID Number: " + currentIndividualId);
-                    System.out.println("Name: " + currentIndividualName);
-                    System.out.println("Newsletter Status: " + (currentNewsletterStatus ? "Subscribed" : "Not Subscribed"));
-                    System.out.print("Phone Numbers: ");
                 }
-                
-                // Display phone number, may be null 
-                String phoneNumber = rs.getString("phone_number");
-                if (phoneNumber != null && !phoneNumber.isEmpty()) {
-                    if (firstPhone) {
-                        // First phone number for this individual
-                        System.out.print(phoneNumber);
-                        firstPhone = false;
-                    } else {
-                        // Additional phone number
-                        System.out.print(", " + phoneNumber);
-                    }
+                System.out.println(String.format("%-10s %17d %12d %10.1f", strategy, rows, individuals,
+                    (System.nanoTime() - start) / 1_000_000.0));
+            }
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Displays one individual with its phone numbers and emails (each joined by ", ")
+     *
+     * @param first Whether this is the first individual displayed
+     */
+    private static void printIndividual(boolean first, String idNumber, String fullName, boolean subscribed,
+                                        String phoneNumbers, String emailAddresses) {
+        if (!first) {
+            System.out.println("-".repeat(80));
+        }
+        System.out.println("ID Number: " + idNumber);
+        System.out.println("Name: " + fullName);
+        System.out.println("Newsletter Status: " + (subscribed ? "Subscribed" : "Not Subscribed"));
+        System.out.println("Phone Numbers: " + (phoneNumbers == null || phoneNumbers.isEmpty() ? "None" : phoneNumbers) +
+                           " | Email: " + (emailAddresses == null || emailAddresses.isEmpty() ? "None" : emailAddresses));
+    }
+
+    /**
+     * Console display of Query 13 for the aggregate strategy (one row per individual)
+     */
+    private static class AggregateConsoleSink implements ResultSink {
+        private int idNumber;
+        private int fullName;
+        private int newsletterStatus;
+        private int phoneNumbers;
+        private int emailAddresses;
+        private boolean first = true;
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException {
+            idNumber = ResultSink.column(metaData, "id_number");
+            fullName = ResultSink.column(metaData, "full_name");
+            newsletterStatus = ResultSink.column(metaData, "newsletter_status");
+            phoneNumbers = ResultSink.column(metaData, "phone_numbers");
+            emailAddresses = ResultSink.column(metaData, "email_addresses");
+
+            System.out.println("All Individuals in Database");
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            printIndividual(first, rs.getString(idNumber), rs.getString(fullName), rs.getBoolean(newsletterStatus),
+                            rs.getString(phoneNumbers), rs.getString(emailAddresses));
+            first = false;
+        }
+
+        @Override
+        public void finish(long rows) {
+            if (rows == 0) {
+                System.out.println("No individuals found in the database.");
+            }
+        }
+    }
+
+    /**
+     * Console display of Query 13 for the join strategy: one entry per individual, with the phone numbers and emails
+     * of its rows joined on one line
+     */
+    private static class ConsoleSink implements ResultSink {
+        private int idNumber;
+        private int fullName;
+        private int newsletterStatus;
+        private int phoneNumberColumn;
+        private int emailAddressColumn;
+        private String currentIndividualId = null;
+        private boolean firstPhone = true;
+        private boolean firstEmail = true;
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException {
+            idNumber = ResultSink.column(metaData, "id_number");
+            fullName = ResultSink.column(metaData, "full_name");
+            newsletterStatus = ResultSink.column(metaData, "newsletter_status");
+            phoneNumberColumn = ResultSink.column(metaData, "phone_number");
+            emailAddressColumn = ResultSink.column(metaData, "email_address");
+
+            System.out.println("All Individuals in Database");
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            String individualId = rs.getString(idNumber);
+
+            if (currentIndividualId == null || !individualId.equals(currentIndividualId)) {
+                if (currentIndividualId != null) {
+                    System.out.println(); // New line after contact info
+                    System.out.println("-".repeat(80));
+                }
+                firstPhone = true;
+                firstEmail = true;
+                currentIndividualId = individualId;
+
+                System.out.println("ID Number: " + currentIndividualId);
+                System.out.println("Name: " + rs.getString(fullName));
+                System.out.println("Newsletter Status: " + (rs.getBoolean(newsletterStatus) ? "Subscribed" : "Not Subscribed"));
+                System.out.print("Phone Numbers: ");
+            }
+
+            // Display phone number, may be null 
+            String phoneNumber = rs.getString(phoneNumberColumn);
+            if (phoneNumber != null && !phoneNumber.isEmpty()) {
+                if (firstPhone) {
+                    // First phone number for this individual
+                    System.out.print(phoneNumber);
+                    firstPhone = false;
                 } else {
-                    // No phone numbers found
-                    if (firstPhone) {
-                        System.out.print("None");
-                        firstPhone = false;
-                    }
+                    // Additional phone number
+                    System.out.print(", " + phoneNumber);
                 }
-                
-                // Display email address 
-                String emailAddress = rs.getString("email_address");
-                if (emailAddress != null && !emailAddress.isEmpty()) {
-                    if (firstEmail) {
-                        System.out.print(" | Email: " + emailAddress);
-                        firstEmail = false;
-                    } else {
-                        // Additional email 
-                        System.out.print(", " + emailAddress);
-                    }
+            } else {
+                // No phone numbers found
+                if (firstPhone) {
+                    System.out.print("None");
+                    firstPhone = false;
+                }
+            }
+
+            // Display email address 
+            String emailAddress = rs.getString(emailAddressColumn);
+            if (emailAddress != null && !emailAddress.isEmpty()) {
+                if (firstEmail) {
+                    System.out.print(" | Email: " + emailAddress);
+                    firstEmail = false;
                 } else {
-                    // No email found 
-                    if (firstEmail) {
-                        System.out.print(" | Email: None");
-                        firstEmail = false;
-                    }
+                    // Additional email 
+                    System.out.print(", " + emailAddress);
+                }
+            } else {
+                // No email found 
+                if (firstEmail) {
+                    System.out.print(" | Email: None");
+                    firstEmail = false;
                 }
             }
-            
-            if (hasResults) {
+        }
+
+        @Override
+        public void finish(long rows) {
+            if (rows > 0) {
                 System.out.println(); // New line after last contact info
             } else {
                 System.out.println("No individuals found in the database.");
             }
-            
-            rs.close();
-            pstmt.close();
-            
-        } catch (SQLException e) {
-            System.err.println("Database error: " + e.getMessage());
-            if (e.getSQLState() != null) {
-                System.err.println("SQL State: " + e.getSQLState());
-            }
-            throw e;
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
         }
     }
 }
-
@@ -4,6 +4,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 
 /**
  * Query 14: Update the salary of researchers overseeing more than one ranger team by a 3% increase
@@ -16,13 +20,28 @@ import java.util.Scanner;
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query14_UpdateResearcherSalary {
-    private Connection connection;
-    private Scanner scanner;
+public class Query14_UpdateResearcherSalary implements Command<Void> {
 
-    public Query14_UpdateResearcherSalary(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    @Override
+    public String getName() {
+        return "updateResearcherSalary";
+    }
+
+    /**
+     * Query 14 has no parameters
+     */
+    @Override
+    public Void readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 14] Update the salary of researchers overseeing more than one ranger team by a 3% increase");
+        return null;
+    }
+
+    /**
+     * Query 14 has no parameters
+     */
+    @Override
+    public Void parseParams(OperationArgs args) {
+        return null;
     }
 
     /**
@@ -30,9 +49,8 @@ public class Query14_UpdateResearcherSalary {
      * 
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 14] Update the salary of researchers overseeing more than one ranger team by a 3% increase");
-        
+    @Override
+    public void run(Connection connection, Void params) throws SQLException {
         try {
             // SQL query - Update salary by 3% for researchers overseeing more than one team
             // Uses subquery to find researchers with COUNT(team_id) > 1
@@ -48,6 +66,7 @@ public class Query14_UpdateResearcherSalary {
             
             // Executing
             connection.setAutoCommit(false);
+            long transactionStart = TransactionMetrics.start();
             
             PreparedStatement pstmt = connection.prepareStatement(SQL);
             
@@ -67,6 +86,7 @@ public class Query14_UpdateResearcherSalary {
                 throw e;
             } finally {
                 connection.setAutoCommit(true);
+                TransactionMetrics.record(getName(), transactionStart);
                 pstmt.close();
             }
             
@@ -76,8 +96,6 @@ public class Query14_UpdateResearcherSalary {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
         }
     }
 }
@@ -1,9 +1,18 @@
 package com.npss.database.queries;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 
 /**
  * Query 15: Delete visitors who have not enrolled in any park programs and whose park passes have expired
@@ -15,16 +24,134 @@ import java.util.Scanner;
  * - IX_visitor_enrolls_program_visitor_id_number (for checking program enrollment)
  * - Clustered index on Visitor.id_number (for deletion)
  * 
+ * Mode "single" deletes every expired visitor in one statement and transaction. Mode
+ * "chunked" purges them a chunk at a time, optionally in an off-hours window, without
+ * blocking other sessions (see VisitorPurge).
+ * 
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query15_DeleteExpiredVisitors {
-    private Connection connection;
-    private Scanner scanner;
+public class Query15_DeleteExpiredVisitors implements Command<Query15_DeleteExpiredVisitors.Params> {
+
+    public static final List<String> MODES = Arrays.asList("single", "chunked");
+    // Well below the 5000 locks at which SQL Server escalates to a table lock
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    // Largest chunk that still stays below that threshold, with room for the other locks of the statement
+    public static final int MAX_CHUNK_SIZE = 4000;
+    public static final int DEFAULT_PAUSE_MILLIS = 500;
+
+    /**
+     * Parameters of Query 15
+     * The chunk size, pause, window (startAt, stopAt), audit file (IDs of the deleted
+     * visitors) and background only apply to mode "chunked"; background is menu only
+     */
+    public static class Params {
+        public String mode = "single";
+        public int chunkSize = DEFAULT_CHUNK_SIZE;
+        public int pauseMillis = DEFAULT_PAUSE_MILLIS;
+        public LocalTime startAt;
+        public LocalTime stopAt;
+        public String fileName;
+        public boolean background = false;
+    }
+
+    @Override
+    public String getName() {
+        return "deleteExpiredVisitors";
+    }
+
+    /**
+     * Prompts for the mode and, for a chunked purge, its chunk size, pause, window, audit
+     * file and whether to run it in the background
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 15] Delete visitors who have not enrolled in any park programs and whose park passes have expired");
+
+        Params params = new Params();
+        System.out.print("Mode - single or chunked (press Enter for single): ");
+        String mode = scanner.nextLine().trim().toLowerCase();
+        if (!mode.isEmpty()) {
+            params.mode = mode;
+        }
+        validate(params);
+        if (params.mode.equals("single")) {
+            return params;
+        }
 
-    public Query15_DeleteExpiredVisitors(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+        System.out.print("Visitors per chunk (press Enter for " + DEFAULT_CHUNK_SIZE + "): ");
+        String chunkSize = scanner.nextLine().trim();
+        if (!chunkSize.isEmpty()) {
+            params.chunkSize = OperationArgs.parseInt(chunkSize, "chunk size");
+        }
+        System.out.print("Pause between chunks in ms (press Enter for " + DEFAULT_PAUSE_MILLIS + "): ");
+        String pause = scanner.nextLine().trim();
+        if (!pause.isEmpty()) {
+            params.pauseMillis = OperationArgs.parseInt(pause, "pause");
+        }
+        System.out.print("Start at (HH:mm, press Enter for now): ");
+        params.startAt = parseTime(scanner.nextLine().trim(), "start time");
+        System.out.print("Stop at (HH:mm, press Enter to run until done): ");
+        params.stopAt = parseTime(scanner.nextLine().trim(), "stop time");
+        System.out.print("Save the IDs of the deleted visitors to a file (press Enter to skip): ");
+        params.fileName = OperationArgs.emptyToNull(scanner.nextLine().trim());
+        System.out.print("Run in the background? (Y/n): ");
+        params.background = !scanner.nextLine().trim().equalsIgnoreCase("n");
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: optional mode ("single" or "chunked", default "single") and, for chunked,
+     * chunk_size (default 1000, at most 4000), pause_ms (default 500), start_at and stop_at (HH:mm, the
+     * purge waits for start_at and stops at stop_at) and file (IDs of the deleted visitors)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        if (args.has("mode")) {
+            params.mode = args.getString("mode").toLowerCase();
+        }
+        params.chunkSize = args.getInt("chunk_size", DEFAULT_CHUNK_SIZE);
+        params.pauseMillis = args.getInt("pause_ms", DEFAULT_PAUSE_MILLIS);
+        params.startAt = parseTime(args.getOptionalString("start_at"), "start_at");
+        params.stopAt = parseTime(args.getOptionalString("stop_at"), "stop_at");
+        params.fileName = args.getOptionalString("file");
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (!MODES.contains(params.mode)) {
+            throw new IllegalArgumentException("Invalid mode '" + params.mode + "'. Please use one of " + MODES + ".");
+        }
+        if (params.chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1.");
+        }
+        if (params.chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size cannot be more than " + MAX_CHUNK_SIZE +
+                                               ", so that chunks stay below the lock escalation threshold.");
+        }
+        if (params.pauseMillis < 0) {
+            throw new IllegalArgumentException("Pause cannot be negative.");
+        }
+        if (params.stopAt != null && params.stopAt.equals(params.startAt)) {
+            throw new IllegalArgumentException("Start and stop time cannot be the same.");
+        }
+    }
+
+    /**
+     * @return The time of day, or null if the text is empty
+     */
+    private static LocalTime parseTime(String text, String fieldName) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalTime.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + fieldName + " '" + text + "'. Please use HH:mm.");
+        }
     }
 
     /**
@@ -32,27 +159,23 @@ public class Query15_DeleteExpiredVisitors {
      * 
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 15] Delete visitors who have not enrolled in any park programs and whose park passes have expired");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
+            if (params.mode.equals("chunked")) {
+                VisitorPurge.runForeground(connection, params);
+                return;
+            }
+
             // SQL query - Delete visitors with expired passes who are not enrolled in programs
-            // Uses subquery to find eligible visitors for deletion
+            // NOT EXISTS instead of NOT IN, which deletes nothing if a visitor_id_number is NULL
             String SQL = 
                 "DELETE FROM Visitor " +
-                "WHERE id_number IN (" +
-                    "SELECT DISTINCT v.id_number " +
-                    "FROM Visitor v " +
-                    "INNER JOIN Visitor_holds_park_passes vhpp ON v.id_number = vhpp.visitor_id_number " +
-                    "INNER JOIN Park_passes pp ON vhpp.pass_id = pp.pass_id " +
-                    "WHERE pp.expiration_date < GETDATE() " +
-                    "AND v.id_number NOT IN (" +
-                        "SELECT visitor_id_number FROM Visitor_enrolls_program" +
-                    ")" +
-                ")";
+                "WHERE " + VisitorPurge.ELIGIBLE;
             
             // Executing
             connection.setAutoCommit(false);
+            long transactionStart = TransactionMetrics.start();
             
             PreparedStatement pstmt = connection.prepareStatement(SQL);
             
@@ -71,17 +194,19 @@ public class Query15_DeleteExpiredVisitors {
                 throw e;
             } finally {
                 connection.setAutoCommit(true);
+                TransactionMetrics.record(getName(), transactionStart);
                 pstmt.close();
             }
             
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
         }
     }
 }
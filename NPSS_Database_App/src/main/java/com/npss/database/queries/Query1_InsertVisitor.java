@@ -1,23 +1,107 @@
 package com.npss.database.queries;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 /**
 * Query 1: Insert a new visitor into the database and associate them with one or more park programs
 *
+* With execution "procedure" the visitor is inserted by one call of sp_InsertVisitor
+* (see StoredProcedure); with execution "tvp" by one call of sp_InsertVisitorTvp, which
+* takes the program names as a dbo.ProgramNameList table-valued parameter
+*
 * @author Astra Nguyen
 * @version 1.0
 */
 
-public class Query1_InsertVisitor {
-   private Connection connection;
-   private Scanner scanner;
+public class Query1_InsertVisitor implements Command<Query1_InsertVisitor.Params> {
+   static final String INSERT_VISITOR_SQL =
+       "INSERT INTO Visitor(id_number, visit_date, accessibility_needs) " +
+       "VALUES (?, ?, ?)";
+
+   static final String ENROLL_PROGRAM_SQL =
+       "INSERT INTO Visitor_enrolls_program(visitor_id_number, program_name) " +
+       "VALUES (?, ?)";
+
+   /**
+    * Parameters of Query 1
+    */
+   public static class Params {
+       public IndividualDetails individual;
+       public java.sql.Date visitDate;
+       public String accessibilityNeeds;
+       public List<String> programNames = new ArrayList<>();
+       public String execution = "inline";
+   }
+
+   @Override
+   public String getName() {
+       return "insertVisitor";
+   }
+
+   /**
+    * Prompts for the visitor's details and the park programs to enroll in
+    */
+   @Override
+   public Params readParams(Scanner scanner, DataSource dataSource) {
+       System.out.println("\n[Query 1] Insert a new visitor into the database and associate them with one or more park programs");
+
+       Params params = new Params();
 
-   public Query1_InsertVisitor(Connection connection, Scanner scanner) {
-       this.connection = connection;
-       this.scanner = scanner;
+       // Get user input
+       System.out.print("Enter visitor ID number: ");
+       String idNumber = scanner.nextLine().trim();
+       params.individual = IndividualDetails.prompt(scanner, idNumber);
+
+       System.out.print("Enter visit date (YYYY-MM-DD) or press Enter for NULL: ");
+       params.visitDate = OperationArgs.parseOptionalDate(scanner.nextLine().trim(), "visit date");
+
+       System.out.print("Enter accessibility needs (or press Enter for NULL): ");
+       params.accessibilityNeeds = OperationArgs.emptyToNull(scanner.nextLine().trim());
+
+       // Park programs to enroll in
+       System.out.print("How many park programs to enroll? (0 or more): ");
+       int programCount = OperationArgs.parseInt(scanner.nextLine().trim(), "number of programs");
+
+       for (int i = 0; i < programCount; i++) {
+           System.out.print("Enter program name " + (i + 1) + ": ");
+           params.programNames.add(scanner.nextLine().trim());
+       }
+
+       params.execution = StoredProcedure.prompt(scanner, StoredProcedure.TVP_EXECUTIONS);
+       validate(params);
+       return params;
+   }
+
+   /**
+    * Fields: id_number, the Individual fields (see IndividualDetails), visit_date (optional),
+    * accessibility_needs (optional), program_names (optional list), execution ("inline",
+    * "procedure" or "tvp", default "inline")
+    */
+   @Override
+   public Params parseParams(OperationArgs args) {
+       Params params = new Params();
+       params.individual = IndividualDetails.fromArgs(args, args.getString("id_number"));
+       params.visitDate = args.getOptionalDate("visit_date");
+       params.accessibilityNeeds = args.getOptionalString("accessibility_needs");
+       params.programNames.addAll(args.getStringList("program_names"));
+       params.execution = StoredProcedure.fromArgs(args, StoredProcedure.TVP_EXECUTIONS);
+       validate(params);
+       return params;
+   }
+
+   private static void validate(Params params) {
+       if (params.execution.equals("procedure")) {
+           StoredProcedure.join(params.programNames, "program names");
+       }
    }
 
    /**
@@ -26,117 +110,58 @@ public class Query1_InsertVisitor {
     *
     * @throws SQLException if a database error occurs
     */
-   public void execute() throws SQLException {
-       System.out.println("\n[Query 1] Insert a new visitor into the database and associate them with one or more park programs");
-
+   @Override
+   public void run(Connection connection, Params params) throws SQLException {
        try{
-           // Get user input
-           System.out.print("Enter visitor ID number: ");
-           String idNumber = scanner.nextLine().trim();
-      
-           System.out.print("Enter first name: ");
-           String firstName = scanner.nextLine().trim();
-      
-           System.out.print("Enter last name: ");
-           String lastName = scanner.nextLine().trim();
-
-           System.out.print("Enter gender (M/F/O): ");
-           String gender = scanner.nextLine().trim();
-      
-           System.out.print("Enter street address: ");
-           String street = scanner.nextLine().trim();
-      
-           System.out.print("Enter city: ");
-           String city = scanner.nextLine().trim();
-      
-           System.out.print("Enter state: ");
-           String state = scanner.nextLine().trim();
-      
-           System.out.print("Enter postal code: ");
-           String postalCode = scanner.nextLine().trim();
-      
-           System.out.print("Enter date of birth (YYYY-MM-DD): ");
-           String dateOfBirth = scanner.nextLine().trim();
-      
-           System.out.print("Subscribe to newsletter? (true/false): ");
-           boolean newsletterStatus = Boolean.parseBoolean(scanner.nextLine().trim());
-      
-           System.out.print("Enter visit date (YYYY-MM-DD) or press Enter for NULL: ");
-           String visitDate = scanner.nextLine().trim();
-           if (visitDate.isEmpty()) visitDate = null;
-      
-           System.out.print("Enter accessibility needs (or press Enter for NULL): ");
-           String accessibilityNeeds = scanner.nextLine().trim();
-           if (accessibilityNeeds.isEmpty()) accessibilityNeeds = null;
-
-           // SQL queries
-           String insertIndividualSQL =
-               "INSERT INTO Individual(id_number, first_name, last_name, gender, street, city, state, " +
-               "postal_code, date_of_birth, newsletter_status) " +
-               "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"; // ? prevents SQL injection, handles types safely like null
-
-           String insertVisitorSQL =
-               "INSERT INTO Visitor(id_number, visit_date, accessibility_needs) " +
-               "VALUES (?, ?, ?)";
+           if (!params.execution.equals("inline")) {
+               runProcedure(connection, params);
+               return;
+           }
+
+           String idNumber = params.individual.idNumber;
 
            // Set parameters
-           PreparedStatement parameterIndividual = connection.prepareStatement(insertIndividualSQL);
-           parameterIndividual.setString(1, idNumber);
-           parameterIndividual.setString(2, firstName);
-           parameterIndividual.setString(3, lastName);
-           parameterIndividual.setString(4, gender);
-           parameterIndividual.setString(5, street);
-           parameterIndividual.setString(6, city);
-           parameterIndividual.setString(7, state);
-           parameterIndividual.setString(8, postalCode);
-           parameterIndividual.setDate(9, java.sql.Date.valueOf(dateOfBirth));
-           parameterIndividual.setBoolean(10, newsletterStatus);
-
-           PreparedStatement parameterVisitor = connection.prepareStatement(insertVisitorSQL);
+           PreparedStatement parameterIndividual = connection.prepareStatement(IndividualDetails.INSERT_SQL);
+           params.individual.bind(parameterIndividual);
+
+           PreparedStatement parameterVisitor = connection.prepareStatement(INSERT_VISITOR_SQL);
            parameterVisitor.setString(1, idNumber);
-           if (visitDate != null) {
-               parameterVisitor.setDate(2, java.sql.Date.valueOf(visitDate));
+           if (params.visitDate != null) {
+               parameterVisitor.setDate(2, params.visitDate);
            } else {
                parameterVisitor.setNull(2, java.sql.Types.DATE);
-           }  
-           parameterVisitor.setString(3, accessibilityNeeds);
+           }
+           parameterVisitor.setString(3, params.accessibilityNeeds);
 
            // Execute
            connection.setAutoCommit(false); // Start transaction
-          
+           long transactionStart = TransactionMetrics.start();
+
            try {
-               // Execute inserts 
+               // Execute inserts
                parameterIndividual.executeUpdate();
                parameterVisitor.executeUpdate();
-              
+
                // Associate with park programs
-               System.out.print("How many park programs to enroll? (0 or more): ");
-               int programCount = Integer.parseInt(scanner.nextLine().trim());
-              
-               if (programCount > 0) {
-                   String enrollProgramSQL =
-                       "INSERT INTO Visitor_enrolls_program(visitor_id_number, program_name) " +
-                       "VALUES (?, ?)";
-                   PreparedStatement pstmtEnroll = connection.prepareStatement(enrollProgramSQL);
-                  
-                   for (int i = 0; i < programCount; i++) {
-                       System.out.print("Enter program name " + (i + 1) + ": ");
-                       String programName = scanner.nextLine().trim();
-                       pstmtEnroll.setString(1, idNumber);
-                       pstmtEnroll.setString(2, programName);
-                       pstmtEnroll.executeUpdate();
+               if (!params.programNames.isEmpty()) {
+                   try (PreparedStatement pstmtEnroll = connection.prepareStatement(ENROLL_PROGRAM_SQL)) {
+                       for (String programName : params.programNames) {
+                           pstmtEnroll.setString(1, idNumber);
+                           pstmtEnroll.setString(2, programName);
+                           pstmtEnroll.executeUpdate();
+                       }
                    }
-                   pstmtEnroll.close();
                }
-              
+
                connection.commit(); // Commit transaction
                System.out.println("Visitor inserted successfully!");
-              
+
            } catch (SQLException e) {
                connection.rollback(); // Rollback on error
                throw e;
            } finally {
                connection.setAutoCommit(true); // Reset auto-commit
+               TransactionMetrics.record(getName(), transactionStart);
                parameterIndividual.close();
                parameterVisitor.close();
            }
@@ -147,8 +172,44 @@ public class Query1_InsertVisitor {
                System.err.println("SQL State: " + e.getSQLState());
            }
            throw e;
-       } catch (Exception e) {
-           System.err.println("Error: " + e.getMessage());
        }
    }
+
+   /**
+    * Executes Query 1 as one call of sp_InsertVisitor (or sp_InsertVisitorTvp)
+    */
+   private void runProcedure(Connection connection, Params params) throws SQLException {
+       long transactionStart = TransactionMetrics.start();
+       try (CallableStatement cstmt = prepareProcedure(connection, params.execution)) {
+           int rows = callProcedure(cstmt, params);
+           System.out.println("Visitor inserted successfully! (Rows affected: " + rows + ")");
+       } finally {
+           TransactionMetrics.record(getName(), transactionStart);
+       }
+   }
+
+   /**
+    * Prepares the call of sp_InsertVisitor, or of sp_InsertVisitorTvp for execution "tvp"
+    */
+   static CallableStatement prepareProcedure(Connection connection, String execution) throws SQLException {
+       return StoredProcedure.prepare(connection, execution.equals("tvp") ? "sp_InsertVisitorTvp" : "sp_InsertVisitor", 13);
+   }
+
+   /**
+    * Runs a call prepared by prepareProcedure for the same execution with the given visitor
+    *
+    * @return The procedure's @rows_affected
+    */
+   static int callProcedure(CallableStatement cstmt, Params params) throws SQLException {
+       params.individual.bind(cstmt);
+       cstmt.setDate(11, params.visitDate);
+       cstmt.setString(12, params.accessibilityNeeds);
+       if (params.execution.equals("tvp")) {
+           StoredProcedure.setTable(cstmt, 13, "dbo.ProgramNameList",
+                                    StoredProcedure.table("program_name", params.programNames));
+       } else {
+           cstmt.setString(13, StoredProcedure.join(params.programNames, "program names"));
+       }
+       return StoredProcedure.execute(cstmt, 13);
+   }
 }
@@ -1,161 +1,225 @@
 package com.npss.database.queries;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 
 /**
  * Query 2: Insert a new ranger into the database and assign them to a ranger team
- * 
+ *
+ * With execution "procedure" the ranger is inserted by one call of sp_InsertRanger
+ * (see StoredProcedure); with execution "tvp" by one call of sp_InsertRangerTvp, which
+ * takes the certifications as a dbo.CertificationList table-valued parameter
+ *
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query2_InsertRanger {
-    private Connection connection;
-    private Scanner scanner;
+public class Query2_InsertRanger implements Command<Query2_InsertRanger.Params> {
+    static final String INSERT_RANGER_SQL =
+        "INSERT INTO Ranger(id_number) " +
+        "VALUES (?)";
 
-    public Query2_InsertRanger(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    static final String ASSIGN_TEAM_SQL =
+        "INSERT INTO Ranger_assigned_ranger_team(ranger_id_number, team_id, start_date, status) " +
+        "VALUES (?, ?, ?, ?)";
+
+    static final String INSERT_CERT_SQL =
+        "INSERT INTO Ranger_certifications(id_number, certification) " +
+        "VALUES (?, ?)";
+
+    /**
+     * Parameters of Query 2
+     */
+    public static class Params {
+        public IndividualDetails individual;
+        public String teamId;
+        public java.sql.Date startDate;
+        public String status;
+        public List<String> certifications = new ArrayList<>();
+        public String execution = "inline";
+    }
+
+    @Override
+    public String getName() {
+        return "insertRanger";
+    }
+
+    /**
+     * Prompts for the ranger's details, team assignment and certifications
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 2] Insert a new ranger into the database and assign them to a ranger team");
+
+        Params params = new Params();
+
+        // User's input
+        System.out.print("Enter ranger ID number: ");
+        String idNumber = scanner.nextLine().trim();
+        params.individual = IndividualDetails.prompt(scanner, idNumber);
+
+        // Team assignment information
+        System.out.print("Enter team ID to assign ranger to: ");
+        params.teamId = scanner.nextLine().trim();
+
+        System.out.print("Enter start date (YYYY-MM-DD): ");
+        params.startDate = OperationArgs.parseDate(scanner.nextLine().trim(), "start date");
+
+        System.out.print("Enter status (e.g., Active, On Leave, etc.): ");
+        params.status = scanner.nextLine().trim();
+
+        // Optional certifications
+        System.out.print("How many certifications? (0 or more): ");
+        int certCount = OperationArgs.parseInt(scanner.nextLine().trim(), "number of certifications");
+
+        for (int i = 0; i < certCount; i++) {
+            System.out.print("Enter certification " + (i + 1) + ": ");
+            params.certifications.add(scanner.nextLine().trim());
+        }
+
+        params.execution = StoredProcedure.prompt(scanner, StoredProcedure.TVP_EXECUTIONS);
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: id_number, the Individual fields (see IndividualDetails), team_id, start_date,
+     * status, certifications (optional list), execution ("inline", "procedure" or "tvp",
+     * default "inline")
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.individual = IndividualDetails.fromArgs(args, args.getString("id_number"));
+        params.teamId = args.getString("team_id");
+        params.startDate = args.getDate("start_date");
+        params.status = args.getString("status");
+        params.certifications.addAll(args.getStringList("certifications"));
+        params.execution = StoredProcedure.fromArgs(args, StoredProcedure.TVP_EXECUTIONS);
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (params.execution.equals("procedure")) {
+            StoredProcedure.join(params.certifications, "certifications");
+        }
     }
 
     /**
      * Executes Query 2: Insert a new ranger into the database and assign them to a ranger team
-     * 
+     *
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 2] Insert a new ranger into the database and assign them to a ranger team");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // User's input 
-            System.out.print("Enter ranger ID number: ");
-            String idNumber = scanner.nextLine().trim();
-            
-            System.out.print("Enter first name: ");
-            String firstName = scanner.nextLine().trim();
-            
-            System.out.print("Enter last name: ");
-            String lastName = scanner.nextLine().trim();
-            
-            System.out.print("Enter gender (M/F/O): ");
-            String gender = scanner.nextLine().trim();
-            
-            System.out.print("Enter street address: ");
-            String street = scanner.nextLine().trim();
-            
-            System.out.print("Enter city: ");
-            String city = scanner.nextLine().trim();
-            
-            System.out.print("Enter state: ");
-            String state = scanner.nextLine().trim();
-            
-            System.out.print("Enter postal code: ");
-            String postalCode = scanner.nextLine().trim();
-            
-            System.out.print("Enter date of birth (YYYY-MM-DD): ");
-            String dateOfBirth = scanner.nextLine().trim();
-            
-            System.out.print("Subscribe to newsletter? (true/false): ");
-            boolean newsletterStatus = Boolean.parseBoolean(scanner.nextLine().trim());
-            
-            // Team assignment information
-            System.out.print("Enter team ID to assign ranger to: ");
-            String teamId = scanner.nextLine().trim();
-            
-            System.out.print("Enter start date (YYYY-MM-DD): ");
-            String startDate = scanner.nextLine().trim();
-            
-            System.out.print("Enter status (e.g., Active, On Leave, etc.): ");
-            String status = scanner.nextLine().trim();
-            
-            // Optional certifications
-            System.out.print("How many certifications? (0 or more): ");
-            int certCount = Integer.parseInt(scanner.nextLine().trim());
-            
-            // SQL queries 
-            String insertIndividualSQL = 
-                "INSERT INTO Individual(id_number, first_name, last_name, gender, street, city, state, " +
-                "postal_code, date_of_birth, newsletter_status) " + 
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            String insertRangerSQL = 
-                "INSERT INTO Ranger(id_number) " + 
-                "VALUES (?)";
-            
-            String assignTeamSQL = 
-                "INSERT INTO Ranger_assigned_ranger_team(ranger_id_number, team_id, start_date, status) " +
-                "VALUES (?, ?, ?, ?)";
-            
-            PreparedStatement pstmtIndividual = connection.prepareStatement(insertIndividualSQL);
-            pstmtIndividual.setString(1, idNumber);
-            pstmtIndividual.setString(2, firstName);
-            pstmtIndividual.setString(3, lastName);
-            pstmtIndividual.setString(4, gender);
-            pstmtIndividual.setString(5, street);
-            pstmtIndividual.setString(6, city);
-            pstmtIndividual.setString(7, state);
-            pstmtIndividual.setString(8, postalCode);
-            pstmtIndividual.setDate(9, java.sql.Date.valueOf(dateOfBirth));
-            pstmtIndividual.setBoolean(10, newsletterStatus);
-            
-            PreparedStatement pstmtRanger = connection.prepareStatement(insertRangerSQL);
+            if (!params.execution.equals("inline")) {
+                runProcedure(connection, params);
+                return;
+            }
+
+            String idNumber = params.individual.idNumber;
+
+            PreparedStatement pstmtIndividual = connection.prepareStatement(IndividualDetails.INSERT_SQL);
+            params.individual.bind(pstmtIndividual);
+
+            PreparedStatement pstmtRanger = connection.prepareStatement(INSERT_RANGER_SQL);
             pstmtRanger.setString(1, idNumber);
-            
-            PreparedStatement pstmtAssignTeam = connection.prepareStatement(assignTeamSQL);
+
+            PreparedStatement pstmtAssignTeam = connection.prepareStatement(ASSIGN_TEAM_SQL);
             pstmtAssignTeam.setString(1, idNumber);
-            pstmtAssignTeam.setString(2, teamId);
-            pstmtAssignTeam.setDate(3, java.sql.Date.valueOf(startDate));
-            pstmtAssignTeam.setString(4, status);
-            
-            // Excuting 
+            pstmtAssignTeam.setString(2, params.teamId);
+            pstmtAssignTeam.setDate(3, params.startDate);
+            pstmtAssignTeam.setString(4, params.status);
+
+            // Excuting
             connection.setAutoCommit(false); // Start transaction
-            
+            long transactionStart = TransactionMetrics.start();
+
             try {
                 pstmtIndividual.executeUpdate();
                 pstmtRanger.executeUpdate();
                 pstmtAssignTeam.executeUpdate();
-                
+
                 // Add certifications if any
-                if (certCount > 0) {
-                    String insertCertSQL = 
-                        "INSERT INTO Ranger_certifications(id_number, certification) " +
-                        "VALUES (?, ?)";
-                    PreparedStatement pstmtCert = connection.prepareStatement(insertCertSQL);
-                    
-                    for (int i = 0; i < certCount; i++) {
-                        System.out.print("Enter certification " + (i + 1) + ": ");
-                        String certification = scanner.nextLine().trim();
-                        pstmtCert.setString(1, idNumber);
-                        pstmtCert.setString(2, certification);
-                        pstmtCert.executeUpdate();
+                if (!params.certifications.isEmpty()) {
+                    try (PreparedStatement pstmtCert = connection.prepareStatement(INSERT_CERT_SQL)) {
+                        for (String certification : params.certifications) {
+                            pstmtCert.setString(1, idNumber);
+                            pstmtCert.setString(2, certification);
+                            pstmtCert.executeUpdate();
+                        }
                     }
-                    pstmtCert.close();
                 }
-                
+
                 connection.commit(); // Commit transaction
                 System.out.println("Ranger inserted and assigned to team successfully!");
-                
+
             } catch (SQLException e) {
                 connection.rollback(); // Rollback on error
                 throw e; // Re-throw to be caught by outer catch
             } finally {
                 connection.setAutoCommit(true); // Reset auto-commit
+                TransactionMetrics.record(getName(), transactionStart);
                 pstmtIndividual.close();
                 pstmtRanger.close();
                 pstmtAssignTeam.close();
             }
-            
+
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
         }
     }
-}
 
+    /**
+     * Executes Query 2 as one call of sp_InsertRanger (or sp_InsertRangerTvp)
+     */
+    private void runProcedure(Connection connection, Params params) throws SQLException {
+        long transactionStart = TransactionMetrics.start();
+        try (CallableStatement cstmt = prepareProcedure(connection, params.execution)) {
+            int rows = callProcedure(cstmt, params);
+            System.out.println("Ranger inserted and assigned to team successfully! (Rows affected: " + rows + ")");
+        } finally {
+            TransactionMetrics.record(getName(), transactionStart);
+        }
+    }
+
+    /**
+     * Prepares the call of sp_InsertRanger, or of sp_InsertRangerTvp for execution "tvp"
+     */
+    static CallableStatement prepareProcedure(Connection connection, String execution) throws SQLException {
+        return StoredProcedure.prepare(connection, execution.equals("tvp") ? "sp_InsertRangerTvp" : "sp_InsertRanger", 14);
+    }
+
+    /**
+     * Runs a call prepared by prepareProcedure for the same execution with the given ranger
+     *
+     * @return The procedure's @rows_affected
+     */
+    static int callProcedure(CallableStatement cstmt, Params params) throws SQLException {
+        params.individual.bind(cstmt);
+        cstmt.setString(11, params.teamId);
+        cstmt.setDate(12, params.startDate);
+        cstmt.setString(13, params.status);
+        if (params.execution.equals("tvp")) {
+            StoredProcedure.setTable(cstmt, 14, "dbo.CertificationList",
+                                     StoredProcedure.table("certification", params.certifications));
+        } else {
+            cstmt.setString(14, StoredProcedure.join(params.certifications, "certifications"));
+        }
+        return StoredProcedure.execute(cstmt, 14);
+    }
+}
@@ -1,78 +1,128 @@
 package com.npss.database.queries;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 
 /**
  * Query 3: Insert a new ranger team into the database and set its leader
- * 
+ *
+ * With execution "procedure" the team is inserted by one call of sp_InsertRangerTeam
+ * (see StoredProcedure)
+ *
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query3_InsertRangerTeam {
-    private Connection connection;
-    private Scanner scanner;
+public class Query3_InsertRangerTeam implements Command<Query3_InsertRangerTeam.Params> {
 
-    public Query3_InsertRangerTeam(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Parameters of Query 3
+     */
+    public static class Params {
+        public String teamId;
+        public java.sql.Date formationDate;
+        public java.sql.Date focusDate;
+        public String teamLeader;
+        public String execution = "inline";
+    }
+
+    @Override
+    public String getName() {
+        return "insertRangerTeam";
+    }
+
+    /**
+     * Prompts for the team's details
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 3] Insert a new ranger team into the database and set its leader");
+
+        Params params = new Params();
+
+        // User's input
+        System.out.print("Enter team ID: ");
+        params.teamId = scanner.nextLine().trim();
+
+        System.out.print("Enter formation date (YYYY-MM-DD): ");
+        params.formationDate = OperationArgs.parseDate(scanner.nextLine().trim(), "formation date");
+
+        System.out.print("Enter focus date (YYYY-MM-DD) or press Enter for NULL: ");
+        params.focusDate = OperationArgs.parseOptionalDate(scanner.nextLine().trim(), "focus date");
+
+        System.out.print("Enter team leader ID (ranger ID) or press Enter for NULL: ");
+        params.teamLeader = OperationArgs.emptyToNull(scanner.nextLine().trim());
+
+        params.execution = StoredProcedure.prompt(scanner);
+        return params;
+    }
+
+    /**
+     * Fields: team_id, formation_date, focus_date (optional), team_leader (optional),
+     * execution ("inline" or "procedure", default "inline")
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.teamId = args.getString("team_id");
+        params.formationDate = args.getDate("formation_date");
+        params.focusDate = args.getOptionalDate("focus_date");
+        params.teamLeader = args.getOptionalString("team_leader");
+        params.execution = StoredProcedure.fromArgs(args);
+        return params;
     }
 
     /**
      * Executes Query 3: Insert a new ranger team into the database and set its leader
-     * 
+     *
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 3] Insert a new ranger team into the database and set its leader");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // User's input
-            System.out.print("Enter team ID: ");
-            String teamId = scanner.nextLine().trim();
-            
-            System.out.print("Enter formation date (YYYY-MM-DD): ");
-            String formationDate = scanner.nextLine().trim();
-            
-            System.out.print("Enter focus date (YYYY-MM-DD) or press Enter for NULL: ");
-            String focusDate = scanner.nextLine().trim();
-            if (focusDate.isEmpty()) focusDate = null;
-            
-            System.out.print("Enter team leader ID (ranger ID) or press Enter for NULL: ");
-            String teamLeader = scanner.nextLine().trim();
-            if (teamLeader.isEmpty()) teamLeader = null;
-            
+            if (params.execution.equals("procedure")) {
+                runProcedure(connection, params);
+                return;
+            }
+
+            String teamId = params.teamId;
+
             // SQL queries
-            String insertTeamSQL = 
+            String insertTeamSQL =
                 "INSERT INTO Ranger_team(team_id, formation_date, focus_date, team_leader) " +
                 "VALUES (?, ?, ?, ?)";
-            
+
             // Set parameters
             PreparedStatement pstmtTeam = connection.prepareStatement(insertTeamSQL);
             pstmtTeam.setString(1, teamId);
-            pstmtTeam.setDate(2, java.sql.Date.valueOf(formationDate));
-            if (focusDate != null) {
-                pstmtTeam.setDate(3, java.sql.Date.valueOf(focusDate));
+            pstmtTeam.setDate(2, params.formationDate);
+            if (params.focusDate != null) {
+                pstmtTeam.setDate(3, params.focusDate);
             } else {
                 pstmtTeam.setNull(3, java.sql.Types.DATE);
             }
-            if (teamLeader != null) {
-                pstmtTeam.setString(4, teamLeader);
+            if (params.teamLeader != null) {
+                pstmtTeam.setString(4, params.teamLeader);
             } else {
                 pstmtTeam.setNull(4, java.sql.Types.VARCHAR);
             }
-            
+
             // Executing
             connection.setAutoCommit(false);
-            
+            long transactionStart = TransactionMetrics.start();
+
             try {
                 int rowsAffected = pstmtTeam.executeUpdate();
                 connection.commit();
                 System.out.println("Ranger team inserted successfully! (Rows affected: " + rowsAffected + ")");
-                
+
                 // Verify the insert
                 String verifySQL = "SELECT team_id FROM Ranger_team WHERE team_id = ?";
                 try (PreparedStatement verifyStmt = connection.prepareStatement(verifySQL)) {
@@ -85,30 +135,43 @@ public class Query3_InsertRangerTeam {
                         }
                     }
                 }
-                
+
             } catch (SQLException e) {
                 connection.rollback();
                 throw e;
             } finally {
                 connection.setAutoCommit(true);
+                TransactionMetrics.record(getName(), transactionStart);
                 pstmtTeam.close();
             }
-            
+
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (IllegalArgumentException e) {
-            System.err.println("Invalid date format: " + e.getMessage());
-            System.err.println("Please use YYYY-MM-DD format for dates.");
-            throw new SQLException("Invalid input: " + e.getMessage(), e);
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
             throw new SQLException("Unexpected error: " + e.getMessage(), e);
         }
     }
-}
 
+    /**
+     * Executes Query 3 as one call of sp_InsertRangerTeam, which also checks the team leader
+     */
+    private void runProcedure(Connection connection, Params params) throws SQLException {
+        long transactionStart = TransactionMetrics.start();
+        try (CallableStatement cstmt = StoredProcedure.prepare(connection, "sp_InsertRangerTeam", 4)) {
+            cstmt.setString(1, params.teamId);
+            cstmt.setDate(2, params.formationDate);
+            cstmt.setDate(3, params.focusDate);
+            cstmt.setString(4, params.teamLeader);
+            int rows = StoredProcedure.execute(cstmt, 4);
+            System.out.println("Ranger team inserted successfully! (Rows affected: " + rows + ")");
+        } finally {
+            TransactionMetrics.record(getName(), transactionStart);
+        }
+    }
+}
@@ -1,29 +1,116 @@
 package com.npss.database.queries;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 
 /**
  * Query 4: Insert a new donation from a donor
  * If the donor doesn't exist, it will be created automatically
- * 
+ * If the monthly donation rollup is enabled, the donation is added to it in the same
+ * transaction (see DonationRollupService)
+ * With execution "procedure" the donation (and donor) are inserted by one call of
+ * sp_InsertDonation, which does its own donor checks (see StoredProcedure)
+ * With execution "upsert" the donor checks and every insert are sent as one parameterized
+ * batch (UPSERT_SQL) that runs its own transaction, also one round trip without needing the
+ * procedures of Nguyen_Astra_IP_Task5a.sql
+ * Every execution reports the number of round trips it took
+ *
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query4_InsertDonation {
-    private Connection connection;
-    private Scanner scanner;
+public class Query4_InsertDonation implements Command<Query4_InsertDonation.Params> {
+    public static final List<String> EXECUTIONS = Arrays.asList("inline", "upsert", "procedure");
 
-    public Query4_InsertDonation(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    // Creates the individual and donor if they do not exist, then inserts the donation and
+    // updates the monthly rollup if it exists; the payment insert is appended by upsertSql().
+    // The key-range locks of the existence checks keep a concurrent first donation of the
+    // same donor from inserting it twice, and XACT_ABORT rolls everything back on any error.
+    // Parameters: 1-4 the donation, 5 whether individual details are given, 6-15 the
+    // individual (IndividualDetails.bind), 16 the preference, 17 the campaign, 18- the payment
+    private static final String UPSERT_SQL =
+        "SET NOCOUNT ON; SET XACT_ABORT ON; " +
+        "DECLARE @donation_id VARCHAR(50) = ?, @donor_id VARCHAR(50) = ?, @date DATE = ?, " +
+        "        @amount DECIMAL(18, 2) = ?, @has_individual BIT = ?; " +
+        "DECLARE @individual_rows INT = 0, @donor_rows INT = 0, @donation_rows INT, @payment_rows INT = 0; " +
+        "BEGIN TRANSACTION; " +
+        "IF NOT EXISTS (SELECT 1 FROM Individual WITH (UPDLOCK, HOLDLOCK) WHERE id_number = @donor_id) " +
+        "BEGIN " +
+        "    IF @has_individual = 0 " +
+        "        THROW 50000, 'The individual does not exist and no individual details were provided.', 1; " +
+        "    INSERT INTO Individual(id_number, first_name, last_name, gender, street, city, state, postal_code, date_of_birth, newsletter_status) " +
+        "    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?); " +
+        "    SET @individual_rows = @@ROWCOUNT; " +
+        "END " +
+        "IF NOT EXISTS (SELECT 1 FROM Donor WITH (UPDLOCK, HOLDLOCK) WHERE id_number = @donor_id) " +
+        "BEGIN " +
+        "    INSERT INTO Donor(id_number, preference) VALUES (@donor_id, ?); " +
+        "    SET @donor_rows = @@ROWCOUNT; " +
+        "END " +
+        "INSERT INTO Donation(donation_id, donor_id_number, date, amount, campaign_name) " +
+        "VALUES (@donation_id, @donor_id, @date, @amount, ?); " +
+        "SET @donation_rows = @@ROWCOUNT; " +
+        "IF OBJECT_ID('Donation_monthly_rollup', 'U') IS NOT NULL " +
+        "BEGIN " +
+        "    DECLARE @month_start DATE = DATEFROMPARTS(YEAR(@date), MONTH(@date), 1); " +
+        "    UPDATE Donation_monthly_rollup WITH (UPDLOCK, SERIALIZABLE) " +
+        "    SET total_amount = total_amount + @amount, donation_count = donation_count + 1 " +
+        "    WHERE month_start = @month_start AND donor_id_number = @donor_id; " +
+        "    IF @@ROWCOUNT = 0 " +
+        "        INSERT INTO Donation_monthly_rollup(month_start, donor_id_number, total_amount, donation_count) " +
+        "        VALUES (@month_start, @donor_id, @amount, 1); " +
+        "END ";
+
+    private static final String UPSERT_CHECK_SQL =
+        "INSERT INTO Check_donation(donation_id, check_number) VALUES (@donation_id, ?); " +
+        "SET @payment_rows = @@ROWCOUNT; ";
+
+    private static final String UPSERT_CARD_SQL =
+        "INSERT INTO Card_number(donation_id, card_type, last_four_digits, expiration_date) " +
+        "VALUES (@donation_id, ?, ?, ?); " +
+        "SET @payment_rows = @@ROWCOUNT; ";
+
+    private static final String UPSERT_END_SQL =
+        "COMMIT TRANSACTION; " +
+        "SELECT @individual_rows AS individual_rows, @donor_rows AS donor_rows, " +
+        "       @donation_rows AS donation_rows, @payment_rows AS payment_rows;";
+
+    /**
+     * Parameters of Query 4
+     * individual and preference are only used when the donor does not exist yet
+     */
+    public static class Params {
+        public String donationId;
+        public String donorId;
+        public IndividualDetails individual;
+        public String preference;
+        public java.sql.Date donationDate;
+        public double amount;
+        public String campaignName;
+        public String paymentMethod;
+        public String checkNumber;
+        public String cardType;
+        public String lastFourDigits;
+        public java.sql.Date expirationDate;
+        public String execution = "inline";
+    }
+
+    @Override
+    public String getName() {
+        return "insertDonation";
     }
 
     // Check if donor exists
-    private boolean donorExists(String donorId) throws SQLException {
+    private boolean donorExists(Connection connection, String donorId) throws SQLException {
         String checkSQL = "SELECT id_number FROM Donor WHERE id_number = ?";
         try (PreparedStatement pstmt = connection.prepareStatement(checkSQL)) {
             pstmt.setString(1, donorId);
@@ -34,7 +121,7 @@ public class Query4_InsertDonation {
     }
 
     // Check if individual exists first
-    private boolean individualExists(String idNumber) throws SQLException {
+    private boolean individualExists(Connection connection, String idNumber) throws SQLException {
         String checkSQL = "SELECT id_number FROM Individual WHERE id_number = ?";
         try (PreparedStatement pstmt = connection.prepareStatement(checkSQL)) {
             pstmt.setString(1, idNumber);
@@ -44,200 +131,238 @@ public class Query4_InsertDonation {
         }
     }
 
+    /**
+     * Prompts for the donation details, and for the donor's details if the donor does not exist yet
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) throws SQLException {
+        System.out.println("\n[Query 4] Insert a new donation from a donor");
+
+        Params params = new Params();
+
+        // User's input
+        System.out.print("Enter donation ID: ");
+        params.donationId = scanner.nextLine().trim();
+
+        System.out.print("Enter donor ID number: ");
+        params.donorId = scanner.nextLine().trim();
+
+        // Look up the donor on a short-lived connection, returned before any further prompts
+        boolean donorFound;
+        boolean individualFound = false;
+        try (Connection connection = dataSource.getConnection()) {
+            donorFound = donorExists(connection, params.donorId);
+            if (!donorFound) {
+                individualFound = individualExists(connection, params.donorId);
+            }
+        }
+
+        // Check if donor exists, if not, collect information to create it
+        if (!donorFound) {
+            System.out.println("\nDonor '" + params.donorId + "' does not exist. Creating new donor...");
+            System.out.println("Please provide the following information:");
+
+            // Check if Individual exists
+            if (!individualFound) {
+                System.out.println("Individual record not found. Creating Individual first...");
+                params.individual = IndividualDetails.prompt(scanner, params.donorId);
+            } else {
+                System.out.println("Individual record found for ID: " + params.donorId);
+            }
+
+            // Get donor preference
+            System.out.print("Enter donor preference (or press Enter for NULL): ");
+            params.preference = OperationArgs.emptyToNull(scanner.nextLine().trim());
+        } else {
+            System.out.println("Donor '" + params.donorId + "' found in database.");
+        }
+
+        System.out.print("Enter donation date (YYYY-MM-DD): ");
+        params.donationDate = OperationArgs.parseDate(scanner.nextLine().trim(), "donation date");
+
+        System.out.print("Enter donation amount: ");
+        params.amount = OperationArgs.parseDouble(scanner.nextLine().trim(), "donation amount");
+
+        System.out.print("Enter campaign name (or press Enter for NULL): ");
+        params.campaignName = OperationArgs.emptyToNull(scanner.nextLine().trim());
+
+        System.out.print("Enter payment method (check/card): ");
+        params.paymentMethod = scanner.nextLine().trim().toLowerCase();
+
+        // Payment method details
+        if (params.paymentMethod.equals("check")) {
+            System.out.print("Enter check number: ");
+            params.checkNumber = scanner.nextLine().trim();
+        } else if (params.paymentMethod.equals("card")) {
+            System.out.print("Enter card type: ");
+            params.cardType = scanner.nextLine().trim();
+
+            System.out.print("Enter last four digits: ");
+            params.lastFourDigits = scanner.nextLine().trim();
+
+            System.out.print("Enter expiration date (YYYY-MM-DD): ");
+            params.expirationDate = OperationArgs.parseDate(scanner.nextLine().trim(), "expiration date");
+        }
+
+        params.execution = StoredProcedure.prompt(scanner, EXECUTIONS);
+        return params;
+    }
+
+    /**
+     * Fields: donation_id, donor_id, date, amount, campaign_name (optional),
+     * payment_method (check/card), check_number (check) or card_type, last_four_digits,
+     * expiration_date (card), preference (optional, new donors only) and the Individual
+     * fields (see IndividualDetails, only needed if the individual does not exist yet),
+     * execution ("inline", "upsert" or "procedure", default "inline")
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.donationId = args.getString("donation_id");
+        params.donorId = args.getString("donor_id");
+        if (args.has("first_name")) {
+            params.individual = IndividualDetails.fromArgs(args, params.donorId);
+        }
+        params.preference = args.getOptionalString("preference");
+        params.donationDate = args.getDate("date");
+        params.amount = args.getDouble("amount");
+        params.campaignName = args.getOptionalString("campaign_name");
+        params.paymentMethod = args.getString("payment_method").toLowerCase();
+        if (params.paymentMethod.equals("check")) {
+            params.checkNumber = args.getString("check_number");
+        } else if (params.paymentMethod.equals("card")) {
+            params.cardType = args.getString("card_type");
+            params.lastFourDigits = args.getString("last_four_digits");
+            params.expirationDate = args.getDate("expiration_date");
+        }
+        params.execution = StoredProcedure.fromArgs(args, EXECUTIONS);
+        return params;
+    }
+
     /**
      * Executes Query 4: Insert a new donation from a donor
      * If the donor doesn't exist, it will be created automatically
-     * 
+     *
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 4] Insert a new donation from a donor");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // User's input
-            System.out.print("Enter donation ID: ");
-            String donationId = scanner.nextLine().trim();
-            
-            System.out.print("Enter donor ID number: ");
-            String donorId = scanner.nextLine().trim();
-            
-            // Check if donor exists, if not, collect information to create it
-            boolean donorNeedsCreation = !donorExists(donorId);
-            boolean individualNeedsCreation = false;
-            
-            // Variables to store donor/individual information if needed
-            String firstName = null, lastName = null, gender = null;
-            String street = null, city = null, state = null, postalCode = null;
-            String dateOfBirth = null;
-            boolean newsletterStatus = false;
-            String preference = null;
-            
-            if (donorNeedsCreation) {
-                System.out.println("\nDonor '" + donorId + "' does not exist. Creating new donor...");
-                System.out.println("Please provide the following information:");
-                
-                // Check if Individual exists
-                individualNeedsCreation = !individualExists(donorId);
-                
-                if (individualNeedsCreation) {
-                    System.out.println("Individual record not found. Creating Individual first...");
-                    
-                    System.out.print("Enter first name: ");
-                    firstName = scanner.nextLine().trim();
-                    
-                    System.out.print("Enter last name: ");
-                    lastName = scanner.nextLine().trim();
-                    
-                    System.out.print("Enter gender (M/F/O): ");
-                    gender = scanner.nextLine().trim();
-                    
-                    System.out.print("Enter street address: ");
-                    street = scanner.nextLine().trim();
-                    
-                    System.out.print("Enter city: ");
-                    city = scanner.nextLine().trim();
-                    
-                    System.out.print("Enter state: ");
-                    state = scanner.nextLine().trim();
-                    
-                    System.out.print("Enter postal code: ");
-                    postalCode = scanner.nextLine().trim();
-                    
-                    System.out.print("Enter date of birth (YYYY-MM-DD): ");
-                    dateOfBirth = scanner.nextLine().trim();
-                    
-                    System.out.print("Subscribe to newsletter? (true/false): ");
-                    newsletterStatus = Boolean.parseBoolean(scanner.nextLine().trim());
-                } else {
-                    System.out.println("Individual record found for ID: " + donorId);
-                }
-                
-                // Get donor preference
-                System.out.print("Enter donor preference (or press Enter for NULL): ");
-                preference = scanner.nextLine().trim();
-                if (preference.isEmpty()) preference = null;
-            } else {
-                System.out.println("Donor '" + donorId + "' found in database.");
+            if (params.execution.equals("procedure")) {
+                runProcedure(connection, params);
+                return;
+            }
+            if (params.execution.equals("upsert")) {
+                runUpsert(connection, params);
+                return;
             }
-            
-            System.out.print("Enter donation date (YYYY-MM-DD): ");
-            String donationDate = scanner.nextLine().trim();
-            
-            System.out.print("Enter donation amount: ");
-            String amountStr = scanner.nextLine().trim();
-            double amount = Double.parseDouble(amountStr);
-            
-            System.out.print("Enter campaign name (or press Enter for NULL): ");
-            String campaignName = scanner.nextLine().trim();
-            if (campaignName.isEmpty()) campaignName = null;
-            
-            System.out.print("Enter payment method (check/card): ");
-            String paymentMethod = scanner.nextLine().trim().toLowerCase();
-            
+
+            String donationId = params.donationId;
+            String donorId = params.donorId;
+
+            // Check if donor exists, if not, it needs to be created
+            boolean donorNeedsCreation = !donorExists(connection, donorId);
+            boolean individualNeedsCreation = donorNeedsCreation && !individualExists(connection, donorId);
+            // The checks, and every statement, commit and auto-commit switch below
+            int roundTrips = donorNeedsCreation ? 2 : 1;
+
+            if (individualNeedsCreation && params.individual == null) {
+                throw new SQLException("Individual '" + donorId + "' does not exist and no individual details were provided.");
+            }
+
             // SQL queries
-            String insertIndividualSQL = 
-                "INSERT INTO Individual(id_number, first_name, last_name, gender, street, city, state, " +
-                "postal_code, date_of_birth, newsletter_status) " + 
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            
             String insertDonorSQL = "INSERT INTO Donor(id_number, preference) VALUES (?, ?)";
-            
-            String insertDonationSQL = 
+
+            String insertDonationSQL =
                 "INSERT INTO Donation(donation_id, donor_id_number, date, amount, campaign_name) " +
                 "VALUES (?, ?, ?, ?, ?)";
-            
+
+            String insertCheckSQL =
+                "INSERT INTO Check_donation(donation_id, check_number) " +
+                "VALUES (?, ?)";
+
+            String insertCardSQL =
+                "INSERT INTO Card_number(donation_id, card_type, last_four_digits, expiration_date) " +
+                "VALUES (?, ?, ?, ?)";
+
             // Executing
             connection.setAutoCommit(false);
-            
+            roundTrips++;
+            long transactionStart = TransactionMetrics.start();
+
             try {
                 // Create Individual if needed
                 if (individualNeedsCreation) {
-                    try (PreparedStatement pstmt = connection.prepareStatement(insertIndividualSQL)) {
-                        pstmt.setString(1, donorId);
-                        pstmt.setString(2, firstName);
-                        pstmt.setString(3, lastName);
-                        pstmt.setString(4, gender);
-                        pstmt.setString(5, street);
-                        pstmt.setString(6, city);
-                        pstmt.setString(7, state);
-                        pstmt.setString(8, postalCode);
-                        pstmt.setDate(9, java.sql.Date.valueOf(dateOfBirth));
-                        pstmt.setBoolean(10, newsletterStatus);
-                        
+                    try (PreparedStatement pstmt = connection.prepareStatement(IndividualDetails.INSERT_SQL)) {
+                        params.individual.bind(pstmt);
+
                         int rowsAffected = pstmt.executeUpdate();
+                        roundTrips++;
                         System.out.println("Individual record created successfully! (Rows affected: " + rowsAffected + ")");
                     }
                 }
-                
+
                 // Create Donor if needed
                 if (donorNeedsCreation) {
                     try (PreparedStatement pstmt = connection.prepareStatement(insertDonorSQL)) {
                         pstmt.setString(1, donorId);
-                        if (preference != null) {
-                            pstmt.setString(2, preference);
+                        if (params.preference != null) {
+                            pstmt.setString(2, params.preference);
                         } else {
                             pstmt.setNull(2, java.sql.Types.VARCHAR);
                         }
-                        
+
                         int rowsAffected = pstmt.executeUpdate();
+                        roundTrips++;
                         System.out.println("Donor '" + donorId + "' created successfully! (Rows affected: " + rowsAffected + ")");
                     }
                 }
-                
+
                 // Create donation
                 try (PreparedStatement pstmtDonation = connection.prepareStatement(insertDonationSQL)) {
                     pstmtDonation.setString(1, donationId);
                     pstmtDonation.setString(2, donorId);
-                    pstmtDonation.setDate(3, java.sql.Date.valueOf(donationDate));
-                    pstmtDonation.setDouble(4, amount);
-                    if (campaignName != null) {
-                        pstmtDonation.setString(5, campaignName);
+                    pstmtDonation.setDate(3, params.donationDate);
+                    pstmtDonation.setDouble(4, params.amount);
+                    if (params.campaignName != null) {
+                        pstmtDonation.setString(5, params.campaignName);
                     } else {
                         pstmtDonation.setNull(5, java.sql.Types.VARCHAR);
                     }
-                    
+
                     int rows1 = pstmtDonation.executeUpdate();
-                    
+                    roundTrips++;
+
                     // Insert payment method details
                     int rows2 = 0;
-                    if (paymentMethod.equals("check")) {
-                        System.out.print("Enter check number: ");
-                        String checkNumber = scanner.nextLine().trim();
-                        
-                        String insertCheckSQL = 
-                            "INSERT INTO Check_donation(donation_id, check_number) " +
-                            "VALUES (?, ?)";
+                    if (params.paymentMethod.equals("check")) {
                         try (PreparedStatement pstmtCheck = connection.prepareStatement(insertCheckSQL)) {
                             pstmtCheck.setString(1, donationId);
-                            pstmtCheck.setString(2, checkNumber);
+                            pstmtCheck.setString(2, params.checkNumber);
                             rows2 = pstmtCheck.executeUpdate();
+                            roundTrips++;
                         }
-                        
-                    } else if (paymentMethod.equals("card")) {
-                        System.out.print("Enter card type: ");
-                        String cardType = scanner.nextLine().trim();
-                        
-                        System.out.print("Enter last four digits: ");
-                        String lastFour = scanner.nextLine().trim();
-                        
-                        System.out.print("Enter expiration date (YYYY-MM-DD): ");
-                        String expDate = scanner.nextLine().trim();
-                        
-                        String insertCardSQL = 
-                            "INSERT INTO Card_number(donation_id, card_type, last_four_digits, expiration_date) " +
-                            "VALUES (?, ?, ?, ?)";
+
+                    } else if (params.paymentMethod.equals("card")) {
                         try (PreparedStatement pstmtCard = connection.prepareStatement(insertCardSQL)) {
                             pstmtCard.setString(1, donationId);
-                            pstmtCard.setString(2, cardType);
-                            pstmtCard.setString(3, lastFour);
-                            pstmtCard.setDate(4, java.sql.Date.valueOf(expDate));
+                            pstmtCard.setString(2, params.cardType);
+                            pstmtCard.setString(3, params.lastFourDigits);
+                            pstmtCard.setDate(4, params.expirationDate);
                             rows2 = pstmtCard.executeUpdate();
+                            roundTrips++;
                         }
                     }
-                    
+
+                    // Keep the monthly rollup of Query 11 up to date; the statement checks on the
+                    // server that the rollup exists, so no separate lookup is needed
+                    DonationRollupService.add(connection, donorId, params.donationDate, params.amount);
+                    roundTrips++;
+
                     connection.commit();
+                    roundTrips++;
                     System.out.println("Donation inserted successfully! (Donation rows: " + rows1 + ", Payment rows: " + rows2 + ")");
-                    
+
                     // Verify the insert
                     String verifySQL = "SELECT d.donation_id, d.amount, dr.id_number as donor_id " +
                                       "FROM Donation d " +
@@ -246,39 +371,128 @@ public class Query4_InsertDonation {
                     try (PreparedStatement verifyStmt = connection.prepareStatement(verifySQL)) {
                         verifyStmt.setString(1, donationId);
                         try (ResultSet rs = verifyStmt.executeQuery()) {
+                            roundTrips++;
                             if (rs.next()) {
-                                System.out.println("VERIFIED: Donation " + donationId + " ($" + 
-                                                 String.format("%.2f", rs.getDouble("amount")) + 
+                                System.out.println("VERIFIED: Donation " + donationId + " ($" +
+                                                 String.format("%.2f", rs.getDouble("amount")) +
                                                  ") from donor " + rs.getString("donor_id") + " is in the database");
                             } else {
                                 System.out.println("WARNING: Donation " + donationId + " not found after insert!");
                             }
                         }
                     }
+                    // Including the switch back to auto-commit in the finally block
+                    System.out.println("Round trips: " + (roundTrips + 1));
                 }
-                
+
             } catch (SQLException e) {
                 connection.rollback();
                 throw e;
             } finally {
                 connection.setAutoCommit(true);
+                TransactionMetrics.record(getName(), transactionStart);
             }
-            
+
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (IllegalArgumentException e) {
-            System.err.println("Invalid date format: " + e.getMessage());
-            System.err.println("Please use YYYY-MM-DD format for dates.");
-            throw new SQLException("Invalid input: " + e.getMessage(), e);
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
             throw new SQLException("Unexpected error: " + e.getMessage(), e);
         }
     }
-}
 
+    /**
+     * Executes Query 4 as one call of sp_InsertDonation
+     */
+    private void runProcedure(Connection connection, Params params) throws SQLException {
+        long transactionStart = TransactionMetrics.start();
+        try (CallableStatement cstmt = StoredProcedure.prepare(connection, "sp_InsertDonation", 20)) {
+            cstmt.setString(1, params.donationId);
+            cstmt.setString(2, params.donorId);
+            cstmt.setDate(3, params.donationDate);
+            cstmt.setDouble(4, params.amount);
+            cstmt.setString(5, params.campaignName);
+            cstmt.setString(6, params.paymentMethod);
+            cstmt.setString(7, params.checkNumber);
+            cstmt.setString(8, params.cardType);
+            cstmt.setString(9, params.lastFourDigits);
+            cstmt.setDate(10, params.expirationDate);
+            // Individual fields (11-19), only used by the procedure if the individual does not exist
+            IndividualDetails individual = params.individual != null ? params.individual : new IndividualDetails();
+            cstmt.setString(11, individual.firstName);
+            cstmt.setString(12, individual.lastName);
+            cstmt.setString(13, individual.gender);
+            cstmt.setString(14, individual.street);
+            cstmt.setString(15, individual.city);
+            cstmt.setString(16, individual.state);
+            cstmt.setString(17, individual.postalCode);
+            cstmt.setDate(18, individual.dateOfBirth);
+            cstmt.setBoolean(19, individual.newsletterStatus);
+            cstmt.setString(20, params.preference);
+            int rows = StoredProcedure.execute(cstmt, 20);
+            System.out.println("Donation inserted successfully! (Rows affected: " + rows + ")");
+            System.out.println("Round trips: 1");
+        } finally {
+            TransactionMetrics.record(getName(), transactionStart);
+        }
+    }
+
+    /**
+     * @return UPSERT_SQL with the insert of the donation's payment method
+     */
+    private static String upsertSql(String paymentMethod) {
+        if (paymentMethod.equals("check")) {
+            return UPSERT_SQL + UPSERT_CHECK_SQL + UPSERT_END_SQL;
+        } else if (paymentMethod.equals("card")) {
+            return UPSERT_SQL + UPSERT_CARD_SQL + UPSERT_END_SQL;
+        }
+        return UPSERT_SQL + UPSERT_END_SQL;
+    }
+
+    /**
+     * Executes Query 4 as one parameterized batch (see UPSERT_SQL)
+     * The batch commits its own transaction, so it runs in auto-commit mode.
+     */
+    private void runUpsert(Connection connection, Params params) throws SQLException {
+        long transactionStart = TransactionMetrics.start();
+        try (PreparedStatement pstmt = connection.prepareStatement(upsertSql(params.paymentMethod))) {
+            pstmt.setString(1, params.donationId);
+            pstmt.setString(2, params.donorId);
+            pstmt.setDate(3, params.donationDate);
+            pstmt.setDouble(4, params.amount);
+            pstmt.setBoolean(5, params.individual != null);
+            // Unused by the batch when no details are given, but every parameter must be set
+            IndividualDetails individual = params.individual != null ? params.individual : new IndividualDetails();
+            individual.bind(pstmt, 6);
+            pstmt.setString(16, params.preference);
+            pstmt.setString(17, params.campaignName);
+            if (params.paymentMethod.equals("check")) {
+                pstmt.setString(18, params.checkNumber);
+            } else if (params.paymentMethod.equals("card")) {
+                pstmt.setString(18, params.cardType);
+                pstmt.setString(19, params.lastFourDigits);
+                pstmt.setDate(20, params.expirationDate);
+            }
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                if (rs.getInt("individual_rows") > 0) {
+                    System.out.println("Individual record created successfully! (Rows affected: " + rs.getInt("individual_rows") + ")");
+                }
+                if (rs.getInt("donor_rows") > 0) {
+                    System.out.println("Donor '" + params.donorId + "' created successfully! (Rows affected: " + rs.getInt("donor_rows") + ")");
+                }
+                System.out.println("Donation inserted successfully! (Donation rows: " + rs.getInt("donation_rows") +
+                                   ", Payment rows: " + rs.getInt("payment_rows") + ")");
+            }
+            System.out.println("Round trips: 1");
+        } finally {
+            TransactionMetrics.record(getName(), transactionStart);
+        }
+    }
+}
@@ -1,165 +1,284 @@
 package com.npss.database.queries;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.microsoft.sqlserver.jdbc.SQLServerDataTable;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 
 /**
  * Query 5: Insert a new researcher into the database and associate them with one or more ranger teams
- * 
+ *
+ * With execution "procedure" the researcher is inserted by one call of sp_InsertResearcher,
+ * which takes the teams, report dates and summaries as comma-separated lists (see
+ * StoredProcedure); with execution "tvp" by one call of sp_InsertResearcherTvp, which takes
+ * them as one dbo.ResearcherTeamList table-valued parameter
+ *
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query5_InsertResearcher {
-    private Connection connection;
-    private Scanner scanner;
+public class Query5_InsertResearcher implements Command<Query5_InsertResearcher.Params> {
 
-    public Query5_InsertResearcher(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Parameters of Query 5
+     */
+    public static class Params {
+        public IndividualDetails individual;
+        public String researchField;
+        public java.sql.Date hireDate;
+        public double salary;
+        public List<TeamReport> teams = new ArrayList<>();
+        public String execution = "inline";
+    }
+
+    /**
+     * A ranger team the researcher is associated with
+     */
+    public static class TeamReport {
+        public String teamId;
+        public java.sql.Date reportDate;
+        public String summary;
+    }
+
+    @Override
+    public String getName() {
+        return "insertResearcher";
+    }
+
+    /**
+     * Prompts for the researcher's details and the ranger teams to associate
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 5] Insert a new researcher into the database and associate them with one or more ranger teams");
+
+        Params params = new Params();
+
+        // User's input
+        System.out.print("Enter researcher ID number: ");
+        String idNumber = scanner.nextLine().trim();
+        params.individual = IndividualDetails.prompt(scanner, idNumber);
+
+        System.out.print("Enter research field: ");
+        params.researchField = scanner.nextLine().trim();
+
+        System.out.print("Enter hire date (YYYY-MM-DD): ");
+        params.hireDate = OperationArgs.parseDate(scanner.nextLine().trim(), "hire date");
+
+        System.out.print("Enter salary: ");
+        params.salary = OperationArgs.parseDouble(scanner.nextLine().trim(), "salary");
+
+        System.out.print("How many ranger teams to associate? (1 or more): ");
+        int teamCount = OperationArgs.parseInt(scanner.nextLine().trim(), "number of teams");
+
+        for (int i = 0; i < teamCount; i++) {
+            TeamReport team = new TeamReport();
+
+            System.out.print("Enter team ID " + (i + 1) + ": ");
+            team.teamId = scanner.nextLine().trim();
+
+            System.out.print("Enter report date (YYYY-MM-DD): ");
+            team.reportDate = OperationArgs.parseDate(scanner.nextLine().trim(), "report date");
+
+            System.out.print("Enter summary (or press Enter for NULL): ");
+            team.summary = OperationArgs.emptyToNull(scanner.nextLine().trim());
+
+            params.teams.add(team);
+        }
+
+        params.execution = StoredProcedure.prompt(scanner, StoredProcedure.TVP_EXECUTIONS);
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: id_number, the Individual fields (see IndividualDetails), research_field,
+     * hire_date, salary, teams (list of {team_id, date, summary}), execution ("inline",
+     * "procedure" or "tvp", default "inline")
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.individual = IndividualDetails.fromArgs(args, args.getString("id_number"));
+        params.researchField = args.getString("research_field");
+        params.hireDate = args.getDate("hire_date");
+        params.salary = args.getDouble("salary");
+        for (OperationArgs teamArgs : args.getObjectList("teams")) {
+            TeamReport team = new TeamReport();
+            team.teamId = teamArgs.getString("team_id");
+            team.reportDate = teamArgs.getDate("date");
+            team.summary = teamArgs.getOptionalString("summary");
+            params.teams.add(team);
+        }
+        params.execution = StoredProcedure.fromArgs(args, StoredProcedure.TVP_EXECUTIONS);
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (params.execution.equals("procedure")) {
+            teamLists(params);
+        }
+    }
+
+    /**
+     * @return The team IDs, report dates and summaries as the comma-separated lists of
+     *         sp_InsertResearcher (an empty summary is NULL)
+     */
+    private static String[] teamLists(Params params) {
+        List<String> teamIds = new ArrayList<>();
+        List<String> reportDates = new ArrayList<>();
+        List<String> summaries = new ArrayList<>();
+        for (TeamReport team : params.teams) {
+            teamIds.add(team.teamId);
+            reportDates.add(team.reportDate.toString());
+            summaries.add(team.summary == null ? "" : team.summary);
+        }
+        return new String[] {StoredProcedure.join(teamIds, "team IDs"),
+                             StoredProcedure.join(reportDates, "report dates"),
+                             StoredProcedure.join(summaries, "summaries")};
     }
 
     /**
      * Executes Query 5: Insert a new researcher into the database and associate them with one or more ranger teams
-     * 
+     *
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 5] Insert a new researcher into the database and associate them with one or more ranger teams");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // User's input
-            System.out.print("Enter researcher ID number: ");
-            String idNumber = scanner.nextLine().trim();
-            
-            System.out.print("Enter first name: ");
-            String firstName = scanner.nextLine().trim();
-            
-            System.out.print("Enter last name: ");
-            String lastName = scanner.nextLine().trim();
-            
-            System.out.print("Enter gender (M/F/O): ");
-            String gender = scanner.nextLine().trim();
-            
-            System.out.print("Enter street address: ");
-            String street = scanner.nextLine().trim();
-            
-            System.out.print("Enter city: ");
-            String city = scanner.nextLine().trim();
-            
-            System.out.print("Enter state: ");
-            String state = scanner.nextLine().trim();
-            
-            System.out.print("Enter postal code: ");
-            String postalCode = scanner.nextLine().trim();
-            
-            System.out.print("Enter date of birth (YYYY-MM-DD): ");
-            String dateOfBirth = scanner.nextLine().trim();
-            
-            System.out.print("Subscribe to newsletter? (true/false): ");
-            boolean newsletterStatus = Boolean.parseBoolean(scanner.nextLine().trim());
-            
-            System.out.print("Enter research field: ");
-            String researchField = scanner.nextLine().trim();
-            
-            System.out.print("Enter hire date (YYYY-MM-DD): ");
-            String hireDate = scanner.nextLine().trim();
-            
-            System.out.print("Enter salary: ");
-            String salaryStr = scanner.nextLine().trim();
-            double salary = Double.parseDouble(salaryStr);
-            
-            System.out.print("How many ranger teams to associate? (1 or more): ");
-            int teamCount = Integer.parseInt(scanner.nextLine().trim());
-            
+            if (!params.execution.equals("inline")) {
+                runProcedure(connection, params);
+                return;
+            }
+
+            String idNumber = params.individual.idNumber;
+
             // SQL queries
-            String insertIndividualSQL = 
-                "INSERT INTO Individual(id_number, first_name, last_name, gender, street, city, state, " +
-                "postal_code, date_of_birth, newsletter_status) " + 
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            
-            String insertResearcherSQL = 
+            String insertResearcherSQL =
                 "INSERT INTO Researcher(id_number, research_field, hire_date, salary) " +
                 "VALUES (?, ?, ?, ?)";
-            
+
+            String associateTeamSQL =
+                "INSERT INTO Researcher_reports_ranger_team(researcher_id_number, team_id, date, summary) " +
+                "VALUES (?, ?, ?, ?)";
+
             // Set parameters
-            PreparedStatement pstmtIndividual = connection.prepareStatement(insertIndividualSQL);
-            pstmtIndividual.setString(1, idNumber);
-            pstmtIndividual.setString(2, firstName);
-            pstmtIndividual.setString(3, lastName);
-            pstmtIndividual.setString(4, gender);
-            pstmtIndividual.setString(5, street);
-            pstmtIndividual.setString(6, city);
-            pstmtIndividual.setString(7, state);
-            pstmtIndividual.setString(8, postalCode);
-            pstmtIndividual.setDate(9, java.sql.Date.valueOf(dateOfBirth));
-            pstmtIndividual.setBoolean(10, newsletterStatus);
-            
+            PreparedStatement pstmtIndividual = connection.prepareStatement(IndividualDetails.INSERT_SQL);
+            params.individual.bind(pstmtIndividual);
+
             PreparedStatement pstmtResearcher = connection.prepareStatement(insertResearcherSQL);
             pstmtResearcher.setString(1, idNumber);
-            pstmtResearcher.setString(2, researchField);
-            pstmtResearcher.setDate(3, java.sql.Date.valueOf(hireDate));
-            pstmtResearcher.setDouble(4, salary);
-            
+            pstmtResearcher.setString(2, params.researchField);
+            pstmtResearcher.setDate(3, params.hireDate);
+            pstmtResearcher.setDouble(4, params.salary);
+
             // Executing
             connection.setAutoCommit(false);
-            
+            long transactionStart = TransactionMetrics.start();
+
             try {
                 pstmtIndividual.executeUpdate();
                 pstmtResearcher.executeUpdate();
-                
+
                 // Associate with ranger teams
-                String associateTeamSQL = 
-                    "INSERT INTO Researcher_reports_ranger_team(researcher_id_number, team_id, date, summary) " +
-                    "VALUES (?, ?, ?, ?)";
-                PreparedStatement pstmtAssociate = connection.prepareStatement(associateTeamSQL);
-                
-                for (int i = 0; i < teamCount; i++) {
-                    System.out.print("Enter team ID " + (i + 1) + ": ");
-                    String teamId = scanner.nextLine().trim();
-                    
-                    System.out.print("Enter report date (YYYY-MM-DD): ");
-                    String reportDate = scanner.nextLine().trim();
-                    
-                    System.out.print("Enter summary (or press Enter for NULL): ");
-                    String summary = scanner.nextLine().trim();
-                    if (summary.isEmpty()) summary = null;
-                    
-                    pstmtAssociate.setString(1, idNumber);
-                    pstmtAssociate.setString(2, teamId);
-                    pstmtAssociate.setDate(3, java.sql.Date.valueOf(reportDate));
-                    if (summary != null) {
-                        pstmtAssociate.setString(4, summary);
-                    } else {
-                        pstmtAssociate.setNull(4, java.sql.Types.VARCHAR);
+                try (PreparedStatement pstmtAssociate = connection.prepareStatement(associateTeamSQL)) {
+                    for (TeamReport team : params.teams) {
+                        pstmtAssociate.setString(1, idNumber);
+                        pstmtAssociate.setString(2, team.teamId);
+                        pstmtAssociate.setDate(3, team.reportDate);
+                        if (team.summary != null) {
+                            pstmtAssociate.setString(4, team.summary);
+                        } else {
+                            pstmtAssociate.setNull(4, java.sql.Types.VARCHAR);
+                        }
+                        pstmtAssociate.executeUpdate();
                     }
-                    pstmtAssociate.executeUpdate();
                 }
-                pstmtAssociate.close();
-                
+
                 connection.commit();
                 System.out.println("Researcher inserted and associated with teams successfully!");
-                
+
             } catch (SQLException e) {
                 connection.rollback();
                 throw e;
             } finally {
                 connection.setAutoCommit(true);
+                TransactionMetrics.record(getName(), transactionStart);
                 pstmtIndividual.close();
                 pstmtResearcher.close();
             }
-            
+
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
         }
     }
-}
 
+    /**
+     * @return The teams as the dbo.ResearcherTeamList of sp_InsertResearcherTvp
+     */
+    private static SQLServerDataTable teamTable(Params params) throws SQLException {
+        SQLServerDataTable table = new SQLServerDataTable();
+        table.addColumnMetadata("team_id", Types.VARCHAR);
+        table.addColumnMetadata("report_date", Types.DATE);
+        table.addColumnMetadata("summary", Types.VARCHAR);
+        for (TeamReport team : params.teams) {
+            table.addRow(team.teamId, team.reportDate, team.summary);
+        }
+        return table;
+    }
+
+    /**
+     * Executes Query 5 as one call of sp_InsertResearcher (or sp_InsertResearcherTvp)
+     */
+    private void runProcedure(Connection connection, Params params) throws SQLException {
+        long transactionStart = TransactionMetrics.start();
+        try (CallableStatement cstmt = prepareProcedure(connection, params.execution)) {
+            int rows = callProcedure(cstmt, params);
+            System.out.println("Researcher inserted and associated with teams successfully! (Rows affected: " + rows + ")");
+        } finally {
+            TransactionMetrics.record(getName(), transactionStart);
+        }
+    }
 
+    /**
+     * Prepares the call of sp_InsertResearcher, or of sp_InsertResearcherTvp for execution "tvp"
+     */
+    static CallableStatement prepareProcedure(Connection connection, String execution) throws SQLException {
+        return execution.equals("tvp") ? StoredProcedure.prepare(connection, "sp_InsertResearcherTvp", 14)
+                                       : StoredProcedure.prepare(connection, "sp_InsertResearcher", 16);
+    }
+
+    /**
+     * Runs a call prepared by prepareProcedure for the same execution with the given researcher
+     *
+     * @return The procedure's @rows_affected
+     */
+    static int callProcedure(CallableStatement cstmt, Params params) throws SQLException {
+        params.individual.bind(cstmt);
+        cstmt.setString(11, params.researchField);
+        cstmt.setDate(12, params.hireDate);
+        cstmt.setDouble(13, params.salary);
+        if (params.execution.equals("tvp")) {
+            StoredProcedure.setTable(cstmt, 14, "dbo.ResearcherTeamList", teamTable(params));
+            return StoredProcedure.execute(cstmt, 14);
+        }
+        String[] teamLists = teamLists(params);
+        cstmt.setString(14, teamLists[0]);
+        cstmt.setString(15, teamLists[1]);
+        cstmt.setString(16, teamLists[2]);
+        return StoredProcedure.execute(cstmt, 16);
+    }
+}
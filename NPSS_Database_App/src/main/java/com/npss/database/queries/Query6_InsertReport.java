@@ -1,54 +1,105 @@
 package com.npss.database.queries;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 
 /**
  * Query 6: Insert a new report submitted by a ranger team to a researcher
  * If a report already exists for this researcher-team pair, it will be updated
- * 
+ * With execution "procedure" the report is inserted or updated by one call of
+ * sp_InsertReport (see StoredProcedure)
+ *
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query6_InsertReport {
-    private Connection connection;
-    private Scanner scanner;
+public class Query6_InsertReport implements Command<Query6_InsertReport.Params> {
 
-    public Query6_InsertReport(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Parameters of Query 6
+     */
+    public static class Params {
+        public String researcherId;
+        public String teamId;
+        public java.sql.Date reportDate;
+        public String summary;
+        public String execution = "inline";
+    }
+
+    @Override
+    public String getName() {
+        return "insertReport";
+    }
+
+    /**
+     * Prompts for the report details
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 6] Insert a report submitted by a ranger team to a researcher");
+
+        Params params = new Params();
+
+        // User's input
+        System.out.print("Enter researcher ID number: ");
+        params.researcherId = scanner.nextLine().trim();
+
+        System.out.print("Enter ranger team ID: ");
+        params.teamId = scanner.nextLine().trim();
+
+        System.out.print("Enter report date (YYYY-MM-DD): ");
+        params.reportDate = OperationArgs.parseDate(scanner.nextLine().trim(), "report date");
+
+        System.out.print("Enter summary (or press Enter for NULL): ");
+        params.summary = OperationArgs.emptyToNull(scanner.nextLine().trim());
+
+        params.execution = StoredProcedure.prompt(scanner);
+        return params;
+    }
+
+    /**
+     * Fields: researcher_id, team_id, date, summary (optional), execution ("inline" or
+     * "procedure", default "inline")
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.researcherId = args.getString("researcher_id");
+        params.teamId = args.getString("team_id");
+        params.reportDate = args.getDate("date");
+        params.summary = args.getOptionalString("summary");
+        params.execution = StoredProcedure.fromArgs(args);
+        return params;
     }
 
     /**
      * Executes Query 6: Insert a report submitted by a ranger team to a researcher
      * Uses UPDATE if report exists, INSERT if it doesn't (UPSERT pattern)
-     * 
+     *
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 6] Insert a report submitted by a ranger team to a researcher");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // User's input
-            System.out.print("Enter researcher ID number: ");
-            String researcherId = scanner.nextLine().trim();
-            
-            System.out.print("Enter ranger team ID: ");
-            String teamId = scanner.nextLine().trim();
-            
-            System.out.print("Enter report date (YYYY-MM-DD): ");
-            String reportDate = scanner.nextLine().trim();
-            
-            System.out.print("Enter summary (or press Enter for NULL): ");
-            String summary = scanner.nextLine().trim();
-            if (summary.isEmpty()) summary = null;
-            
-            // SQL queries 
+            if (params.execution.equals("procedure")) {
+                runProcedure(connection, params);
+                return;
+            }
+
+            String researcherId = params.researcherId;
+            String teamId = params.teamId;
+            String summary = params.summary;
+
+            // SQL queries
             // SQL Server MERGE statement
-            String mergeReportSQL = 
+            String mergeReportSQL =
                 "MERGE Researcher_reports_ranger_team AS target " +
                 "USING (SELECT ? AS researcher_id_number, ? AS team_id) AS source " +
                 "ON target.researcher_id_number = source.researcher_id_number " +
@@ -58,15 +109,16 @@ public class Query6_InsertReport {
                 "WHEN NOT MATCHED THEN " +
                 "    INSERT (researcher_id_number, team_id, date, summary) " +
                 "    VALUES (?, ?, ?, ?);";
-            
+
             // Executing
             connection.setAutoCommit(false);
-            
+            long transactionStart = TransactionMetrics.start();
+
             try (PreparedStatement pstmtReport = connection.prepareStatement(mergeReportSQL)) {
                 // Parameters for MERGE: source (2), update (2), insert (4)
                 pstmtReport.setString(1, researcherId);  // source researcher_id
                 pstmtReport.setString(2, teamId);        // source team_id
-                pstmtReport.setDate(3, java.sql.Date.valueOf(reportDate));  // update date
+                pstmtReport.setDate(3, params.reportDate);  // update date
                 if (summary != null) {
                     pstmtReport.setString(4, summary);    // update summary
                 } else {
@@ -74,19 +126,19 @@ public class Query6_InsertReport {
                 }
                 pstmtReport.setString(5, researcherId);  // insert researcher_id
                 pstmtReport.setString(6, teamId);        // insert team_id
-                pstmtReport.setDate(7, java.sql.Date.valueOf(reportDate));  // insert date
+                pstmtReport.setDate(7, params.reportDate);  // insert date
                 if (summary != null) {
                     pstmtReport.setString(8, summary);    // insert summary
                 } else {
                     pstmtReport.setNull(8, java.sql.Types.VARCHAR);
                 }
-                
+
                 int rowsAffected = pstmtReport.executeUpdate();
                 connection.commit();
-                
+
                 if (rowsAffected > 0) {
                     System.out.println("Report inserted/updated successfully! (Rows affected: " + rowsAffected + ")");
-                    
+
                     // Verify the report
                     String verifySQL = "SELECT researcher_id_number, team_id, date, summary " +
                                       "FROM Researcher_reports_ranger_team " +
@@ -96,7 +148,7 @@ public class Query6_InsertReport {
                         verifyStmt.setString(2, teamId);
                         try (ResultSet rs = verifyStmt.executeQuery()) {
                             if (rs.next()) {
-                                System.out.println("VERIFIED: Report for researcher " + researcherId + 
+                                System.out.println("VERIFIED: Report for researcher " + researcherId +
                                                  " and team " + teamId + " is in the database");
                                 System.out.println("  Date: " + rs.getDate("date"));
                                 System.out.println("  Summary: " + (rs.getString("summary") != null ? rs.getString("summary") : "NULL"));
@@ -106,29 +158,42 @@ public class Query6_InsertReport {
                 } else {
                     System.out.println("No rows affected. Report may not have been inserted/updated.");
                 }
-                
+
             } catch (SQLException e) {
                 connection.rollback();
                 throw e;
             } finally {
                 connection.setAutoCommit(true);
+                TransactionMetrics.record(getName(), transactionStart);
             }
-            
+
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (IllegalArgumentException e) {
-            System.err.println("Invalid date format: " + e.getMessage());
-            System.err.println("Please use YYYY-MM-DD format for dates.");
-            throw new SQLException("Invalid input: " + e.getMessage(), e);
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
             throw new SQLException("Unexpected error: " + e.getMessage(), e);
         }
     }
-}
 
+    /**
+     * Executes Query 6 as one call of sp_InsertReport
+     */
+    private void runProcedure(Connection connection, Params params) throws SQLException {
+        long transactionStart = TransactionMetrics.start();
+        try (CallableStatement cstmt = StoredProcedure.prepare(connection, "sp_InsertReport", 4)) {
+            cstmt.setString(1, params.researcherId);
+            cstmt.setString(2, params.teamId);
+            cstmt.setDate(3, params.reportDate);
+            cstmt.setString(4, params.summary);
+            int rows = StoredProcedure.execute(cstmt, 4);
+            System.out.println("Report inserted/updated successfully! (Rows affected: " + rows + ")");
+        } finally {
+            TransactionMetrics.record(getName(), transactionStart);
+        }
+    }
+}
@@ -1,31 +1,62 @@
 package com.npss.database.queries;
 
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+import com.npss.database.commands.TransactionMetrics;
 
 /**
  * Query 7: Insert a new park program into the database for a specific park
  * If the park doesn't exist, it will be created automatically
- * 
+ * With execution "procedure" the program (and park) are inserted by one call of
+ * sp_InsertParkProgram, which does its own park check (see StoredProcedure)
+ *
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query7_InsertParkProgram {
-    private Connection connection;
-    private Scanner scanner;
+public class Query7_InsertParkProgram implements Command<Query7_InsertParkProgram.Params> {
 
-    public Query7_InsertParkProgram(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Parameters of Query 7
+     * park is only used when the park does not exist yet
+     */
+    public static class Params {
+        public String programName;
+        public String programType;
+        public java.sql.Date startDate;
+        public int duration;
+        public String parkName;
+        public ParkDetails park;
+        public String execution = "inline";
+    }
+
+    /**
+     * Details of a park that has to be created
+     */
+    public static class ParkDetails {
+        public String street;
+        public String city;
+        public String state;
+        public String postalCode;
+        public java.sql.Date establishmentDate;
+        public int capacity;
+    }
+
+    @Override
+    public String getName() {
+        return "insertParkProgram";
     }
 
     /**
      * Checks if a park exists in the database
      */
-    private boolean parkExists(String parkName) throws SQLException {
+    private boolean parkExists(Connection connection, String parkName) throws SQLException {
         String checkSQL = "SELECT Name FROM National_parks WHERE Name = ?";
         try (PreparedStatement pstmt = connection.prepareStatement(checkSQL)) {
             pstmt.setString(1, parkName);
@@ -35,117 +66,174 @@ public class Query7_InsertParkProgram {
         }
     }
 
+    /**
+     * Prompts for the program details, and for the park's details if the park does not exist yet
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) throws SQLException {
+        System.out.println("\n[Query 7] Insert a new park program into the database for a specific park");
+
+        Params params = new Params();
+
+        // User's input
+        System.out.print("Enter program name: ");
+        params.programName = scanner.nextLine().trim();
+
+        System.out.print("Enter program type: ");
+        params.programType = scanner.nextLine().trim();
+
+        System.out.print("Enter start date (YYYY-MM-DD): ");
+        params.startDate = OperationArgs.parseDate(scanner.nextLine().trim(), "start date");
+
+        System.out.print("Enter duration (in days): ");
+        params.duration = OperationArgs.parseInt(scanner.nextLine().trim(), "duration");
+
+        System.out.print("Enter park name: ");
+        params.parkName = scanner.nextLine().trim();
+
+        // Look up the park on a short-lived connection, returned before any further prompts
+        boolean parkFound;
+        try (Connection connection = dataSource.getConnection()) {
+            parkFound = parkExists(connection, params.parkName);
+        }
+
+        // Create park if it does not exist
+        if (!parkFound) {
+            System.out.println("\nPark '" + params.parkName + "' does not exist. Creating new park...");
+            System.out.println("Please provide the following park information:");
+
+            ParkDetails park = new ParkDetails();
+
+            System.out.print("Enter street address: ");
+            park.street = scanner.nextLine().trim();
+
+            System.out.print("Enter city: ");
+            park.city = scanner.nextLine().trim();
+
+            System.out.print("Enter state: ");
+            park.state = scanner.nextLine().trim();
+
+            System.out.print("Enter postal code: ");
+            park.postalCode = scanner.nextLine().trim();
+
+            System.out.print("Enter establishment date (YYYY-MM-DD): ");
+            park.establishmentDate = OperationArgs.parseDate(scanner.nextLine().trim(), "establishment date");
+
+            System.out.print("Enter capacity: ");
+            park.capacity = OperationArgs.parseInt(scanner.nextLine().trim(), "capacity");
+
+            params.park = park;
+        } else {
+            System.out.println("Park '" + params.parkName + "' found in database.");
+        }
+
+        params.execution = StoredProcedure.prompt(scanner);
+        return params;
+    }
+
+    /**
+     * Fields: program_name, type, start_date, duration, park_name and, only if the park does
+     * not exist yet, park_street, park_city, park_state, park_postal_code, establishment_date, capacity;
+     * execution ("inline" or "procedure", default "inline")
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.programName = args.getString("program_name");
+        params.programType = args.getString("type");
+        params.startDate = args.getDate("start_date");
+        params.duration = args.getInt("duration");
+        params.parkName = args.getString("park_name");
+        if (args.has("park_street")) {
+            ParkDetails park = new ParkDetails();
+            park.street = args.getString("park_street");
+            park.city = args.getString("park_city");
+            park.state = args.getString("park_state");
+            park.postalCode = args.getString("park_postal_code");
+            park.establishmentDate = args.getDate("establishment_date");
+            park.capacity = args.getInt("capacity");
+            params.park = park;
+        }
+        params.execution = StoredProcedure.fromArgs(args);
+        return params;
+    }
 
     /**
      * Executes Query 7: Insert a new park program into the database for a specific park
      * If the park doesn't exist, it will be created automatically
-     * 
+     *
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 7] Insert a new park program into the database for a specific park");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // User's input
-            System.out.print("Enter program name: ");
-            String programName = scanner.nextLine().trim();
-            
-            System.out.print("Enter program type: ");
-            String programType = scanner.nextLine().trim();
-            
-            System.out.print("Enter start date (YYYY-MM-DD): ");
-            String startDate = scanner.nextLine().trim();
-            
-            System.out.print("Enter duration (in days): ");
-            String durationStr = scanner.nextLine().trim();
-            int duration = Integer.parseInt(durationStr);
-            
-            System.out.print("Enter park name: ");
-            String parkName = scanner.nextLine().trim();
-            
-            // Create park if it does not exist 
-            boolean parkNeedsCreation = !parkExists(parkName);
-            String street = null, city = null, state = null, postalCode = null, establishmentDate = null;
-            int capacity = 0;
-            
-            if (parkNeedsCreation) {
-                System.out.println("\nPark '" + parkName + "' does not exist. Creating new park...");
-                System.out.println("Please provide the following park information:");
-                
-                System.out.print("Enter street address: ");
-                street = scanner.nextLine().trim();
-                
-                System.out.print("Enter city: ");
-                city = scanner.nextLine().trim();
-                
-                System.out.print("Enter state: ");
-                state = scanner.nextLine().trim();
-                
-                System.out.print("Enter postal code: ");
-                postalCode = scanner.nextLine().trim();
-                
-                System.out.print("Enter establishment date (YYYY-MM-DD): ");
-                establishmentDate = scanner.nextLine().trim();
-                
-                System.out.print("Enter capacity: ");
-                String capacityStr = scanner.nextLine().trim();
-                capacity = Integer.parseInt(capacityStr);
-            } else {
-                System.out.println("Park '" + parkName + "' found in database.");
+            if (params.execution.equals("procedure")) {
+                runProcedure(connection, params);
+                return;
+            }
+
+            String programName = params.programName;
+            String parkName = params.parkName;
+
+            // Create park if it does not exist
+            boolean parkNeedsCreation = !parkExists(connection, parkName);
+            if (parkNeedsCreation && params.park == null) {
+                throw new SQLException("Park '" + parkName + "' does not exist and no park details were provided.");
             }
-            
+
             // SQL queries
-            String insertParkSQL = 
+            String insertParkSQL =
                 "INSERT INTO National_parks(Name, Street, City, State, Postal_code, Establishment_date, Capacity) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?)";
-            
-            String insertProgramSQL = 
+
+            String insertProgramSQL =
                 "INSERT INTO Program(program_name, type, start_date, duration) " +
                 "VALUES (?, ?, ?, ?)";
-            
-            String linkParkProgramSQL = 
+
+            String linkParkProgramSQL =
                 "INSERT INTO National_parks_offers_program(park_name, program_name) " +
                 "VALUES (?, ?)";
-            
+
             // Executing
             connection.setAutoCommit(false);
-            
+            long transactionStart = TransactionMetrics.start();
+
             try {
                 // Create park if it doesn't exist
                 if (parkNeedsCreation) {
                     try (PreparedStatement pstmtPark = connection.prepareStatement(insertParkSQL)) {
                         pstmtPark.setString(1, parkName);
-                        pstmtPark.setString(2, street);
-                        pstmtPark.setString(3, city);
-                        pstmtPark.setString(4, state);
-                        pstmtPark.setString(5, postalCode);
-                        pstmtPark.setDate(6, java.sql.Date.valueOf(establishmentDate));
-                        pstmtPark.setInt(7, capacity);
-                        
+                        pstmtPark.setString(2, params.park.street);
+                        pstmtPark.setString(3, params.park.city);
+                        pstmtPark.setString(4, params.park.state);
+                        pstmtPark.setString(5, params.park.postalCode);
+                        pstmtPark.setDate(6, params.park.establishmentDate);
+                        pstmtPark.setInt(7, params.park.capacity);
+
                         int parkRows = pstmtPark.executeUpdate();
                         System.out.println("Park '" + parkName + "' created successfully! (Rows affected: " + parkRows + ")");
                     }
                 }
-                
+
                 // Create program
                 try (PreparedStatement pstmtProgram = connection.prepareStatement(insertProgramSQL)) {
                     pstmtProgram.setString(1, programName);
-                    pstmtProgram.setString(2, programType);
-                    pstmtProgram.setDate(3, java.sql.Date.valueOf(startDate));
-                    pstmtProgram.setInt(4, duration);
-                    
+                    pstmtProgram.setString(2, params.programType);
+                    pstmtProgram.setDate(3, params.startDate);
+                    pstmtProgram.setInt(4, params.duration);
+
                     int rows1 = pstmtProgram.executeUpdate();
-                    
+
                     // Link program to park
                     try (PreparedStatement pstmtLink = connection.prepareStatement(linkParkProgramSQL)) {
                         pstmtLink.setString(1, parkName);
                         pstmtLink.setString(2, programName);
-                        
+
                         int rows2 = pstmtLink.executeUpdate();
-                        
+
                         connection.commit();
                         System.out.println("Park program inserted successfully! (Program rows: " + rows1 + ", Link rows: " + rows2 + ")");
-                        
+
                         // Verify the insert
                         String verifySQL = "SELECT p.program_name, p.type, np.name as park_name " +
                                           "FROM Program p " +
@@ -156,7 +244,7 @@ public class Query7_InsertParkProgram {
                             verifyStmt.setString(1, programName);
                             try (ResultSet rs = verifyStmt.executeQuery()) {
                                 if (rs.next()) {
-                                    System.out.println("VERIFIED: Program '" + programName + "' is now linked to park '" + 
+                                    System.out.println("VERIFIED: Program '" + programName + "' is now linked to park '" +
                                                      rs.getString("park_name") + "' in the database");
                                 } else {
                                     System.out.println("WARNING: Program '" + programName + "' not found after insert!");
@@ -165,29 +253,55 @@ public class Query7_InsertParkProgram {
                         }
                     }
                 }
-                
+
             } catch (SQLException e) {
                 connection.rollback();
                 throw e;
             } finally {
                 connection.setAutoCommit(true);
+                TransactionMetrics.record(getName(), transactionStart);
             }
-            
+
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (IllegalArgumentException e) {
-            System.err.println("Invalid date format: " + e.getMessage());
-            System.err.println("Please use YYYY-MM-DD format for dates.");
-            throw new SQLException("Invalid input: " + e.getMessage(), e);
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
             throw new SQLException("Unexpected error: " + e.getMessage(), e);
         }
     }
-}
 
+    /**
+     * Executes Query 7 as one call of sp_InsertParkProgram
+     */
+    private void runProcedure(Connection connection, Params params) throws SQLException {
+        long transactionStart = TransactionMetrics.start();
+        try (CallableStatement cstmt = StoredProcedure.prepare(connection, "sp_InsertParkProgram", 11)) {
+            cstmt.setString(1, params.programName);
+            cstmt.setString(2, params.programType);
+            cstmt.setDate(3, params.startDate);
+            cstmt.setInt(4, params.duration);
+            cstmt.setString(5, params.parkName);
+            // Park fields (6-11), only used by the procedure if the park does not exist
+            ParkDetails park = params.park != null ? params.park : new ParkDetails();
+            cstmt.setString(6, park.street);
+            cstmt.setString(7, park.city);
+            cstmt.setString(8, park.state);
+            cstmt.setString(9, park.postalCode);
+            cstmt.setDate(10, park.establishmentDate);
+            if (params.park != null) {
+                cstmt.setInt(11, park.capacity);
+            } else {
+                cstmt.setNull(11, java.sql.Types.INTEGER);
+            }
+            int rows = StoredProcedure.execute(cstmt, 11);
+            System.out.println("Park program inserted successfully! (Rows affected: " + rows + ")");
+        } finally {
+            TransactionMetrics.record(getName(), transactionStart);
+        }
+    }
+}
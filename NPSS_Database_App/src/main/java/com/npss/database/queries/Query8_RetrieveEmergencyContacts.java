@@ -5,6 +5,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
 
 /**
  * Query 8: Retrieve the names and contact information of all emergency contacts for a specific person
@@ -14,13 +17,47 @@ import java.util.Scanner;
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query8_RetrieveEmergencyContacts {
-    private Connection connection;
-    private Scanner scanner;
+public class Query8_RetrieveEmergencyContacts implements Command<Query8_RetrieveEmergencyContacts.Params> {
 
-    public Query8_RetrieveEmergencyContacts(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Parameters of Query 8
+     */
+    public static class Params {
+        public String idNumber;
+    }
+
+    @Override
+    public String getName() {
+        return "retrieveEmergencyContacts";
+    }
+
+    /**
+     * Prompts for the person's ID number
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 8] Retrieve the names and contact information of all emergency contacts for a specific person");
+
+        Params params = new Params();
+
+        // Get user input
+        System.out.print("Enter the person's ID number: ");
+        params.idNumber = scanner.nextLine().trim();
+
+        if (params.idNumber.isEmpty()) {
+            throw new IllegalArgumentException("ID number cannot be empty.");
+        }
+        return params;
+    }
+
+    /**
+     * Fields: id_number
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.idNumber = args.getString("id_number");
+        return params;
     }
 
     /**
@@ -28,18 +65,10 @@ public class Query8_RetrieveEmergencyContacts {
      * 
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 8] Retrieve the names and contact information of all emergency contacts for a specific person");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // Get user input
-            System.out.print("Enter the person's ID number: ");
-            String idNumber = scanner.nextLine().trim();
-            
-            if (idNumber.isEmpty()) {
-                System.out.println("Error: ID number cannot be empty.");
-                return;
-            }
+            String idNumber = params.idNumber;
             
             // SQL query - leverages IX_emergency_contact_id_number index
             // ec is table alias for Emergency_contact table 
@@ -91,8 +120,6 @@ public class Query8_RetrieveEmergencyContacts {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
         }
     }
 }
@@ -1,10 +1,15 @@
 package com.npss.database.queries;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
 
 /**
  * Query 9: Retrieve the list of visitors enrolled in a specific park program, including their accessibility needs
@@ -17,13 +22,47 @@ import java.util.Scanner;
  * @author Astra Nguyen
  * @version 1.0
  */
-public class Query9_RetrieveVisitorsInProgram {
-    private Connection connection;
-    private Scanner scanner;
+public class Query9_RetrieveVisitorsInProgram implements Command<Query9_RetrieveVisitorsInProgram.Params> {
 
-    public Query9_RetrieveVisitorsInProgram(Connection connection, Scanner scanner) {
-        this.connection = connection;
-        this.scanner = scanner;
+    /**
+     * Parameters of Query 9
+     */
+    public static class Params {
+        public String programName;
+        public QueryOutput output = new QueryOutput();
+    }
+
+    @Override
+    public String getName() {
+        return "retrieveVisitorsInProgram";
+    }
+
+    /**
+     * Prompts for the program name and the output
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Query 9] Retrieve the list of visitors enrolled in a specific park program, including their accessibility needs");
+
+        Params params = new Params();
+
+        // Get user input
+        System.out.print("Enter the program name: ");
+        params.programName = scanner.nextLine().trim();
+
+        params.output = QueryOutput.prompt(scanner);
+        return params;
+    }
+
+    /**
+     * Fields: program_name and the output fields (see QueryOutput)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.programName = args.getString("program_name");
+        params.output = QueryOutput.fromArgs(args);
+        return params;
     }
 
     /**
@@ -31,13 +70,10 @@ public class Query9_RetrieveVisitorsInProgram {
      * 
      * @throws SQLException if a database error occurs
      */
-    public void execute() throws SQLException {
-        System.out.println("\n[Query 9] Retrieve the list of visitors enrolled in a specific park program, including their accessibility needs");
-        
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
         try {
-            // Get user input
-            System.out.print("Enter the program name: ");
-            String programName = scanner.nextLine().trim();
+            String programName = params.programName;
             
             // SQL query - leverages indexes on Visitor_enrolls_program and joins with Visitor and Individual
             String SQL = 
@@ -54,54 +90,79 @@ public class Query9_RetrieveVisitorsInProgram {
                 "ORDER BY i.last_name, i.first_name"; // sort the results 
 
             // Fill in the variables & displaying 
-            PreparedStatement pstmt = connection.prepareStatement(SQL);
+            PreparedStatement pstmt = params.output.prepare(connection, SQL);
             pstmt.setString(1, programName);
             
             ResultSet rs = pstmt.executeQuery();
         
-            boolean hasResults = false;
-            
-            System.out.println("Visitors Enrolled in Program: " + programName);
-            
-            while (rs.next()) {
-                if (!hasResults) {
-                    hasResults = true;
-                }
-                
-                System.out.println("ID Number: " + rs.getString("id_number"));
-                System.out.println("Name: " + rs.getString("full_name"));
-                
-                String accessibilityNeeds = rs.getString("accessibility_needs");
-                if (accessibilityNeeds != null && !accessibilityNeeds.isEmpty()) {
-                    System.out.println("Accessibility Needs: " + accessibilityNeeds);
-                } else {
-                    System.out.println("Accessibility Needs: None ");
-                }
-                
-                java.sql.Date visitDate = rs.getDate("visit_date");
-                if (visitDate != null) {
-                    System.out.println("Visit Date: " + visitDate.toString());
-                } else {
-                    System.out.println("Visit Date: Not specified");
-                }
-            }
-            
-            if (!hasResults) {
-                System.out.println("No visitors found enrolled in program: " + programName);
+            try (ResultSink sink = params.output.open(new ConsoleSink(programName))) {
+                ResultSink.copy(rs, sink);
             }
             
             rs.close();
             pstmt.close();
             
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
         } catch (SQLException e) {
             System.err.println("Database error: " + e.getMessage());
             if (e.getSQLState() != null) {
                 System.err.println("SQL State: " + e.getSQLState());
             }
             throw e;
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
         }
     }
-}
 
+    /**
+     * Console display of Query 9
+     */
+    private static class ConsoleSink implements ResultSink {
+        private final String programName;
+        private int idNumber;
+        private int fullName;
+        private int accessibilityNeeds;
+        private int visitDate;
+
+        private ConsoleSink(String programName) {
+            this.programName = programName;
+        }
+
+        @Override
+        public void start(ResultSetMetaData metaData) throws SQLException {
+            idNumber = ResultSink.column(metaData, "id_number");
+            fullName = ResultSink.column(metaData, "full_name");
+            accessibilityNeeds = ResultSink.column(metaData, "accessibility_needs");
+            visitDate = ResultSink.column(metaData, "visit_date");
+
+            System.out.println("Visitors Enrolled in Program: " + programName);
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            System.out.println("ID Number: " + rs.getString(idNumber));
+            System.out.println("Name: " + rs.getString(fullName));
+
+            String needs = rs.getString(accessibilityNeeds);
+            if (needs != null && !needs.isEmpty()) {
+                System.out.println("Accessibility Needs: " + needs);
+            } else {
+                System.out.println("Accessibility Needs: None ");
+            }
+
+            java.sql.Date date = rs.getDate(visitDate);
+            if (date != null) {
+                System.out.println("Visit Date: " + date.toString());
+            } else {
+                System.out.println("Visit Date: Not specified");
+            }
+        }
+
+        @Override
+        public void finish(long rows) {
+            if (rows == 0) {
+                System.out.println("No visitors found enrolled in program: " + programName);
+            }
+        }
+    }
+}
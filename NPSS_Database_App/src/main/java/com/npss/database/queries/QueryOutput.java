@@ -0,0 +1,105 @@
+package com.npss.database.queries;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import com.npss.database.commands.OperationArgs;
+
+/**
+ * Where a retrieval query writes its rows, shared by queries 9 to 13
+ *
+ * - console: the display of the query (the default)
+ * - csv: every column to a CSV file with a header row (CsvResultSink)
+ * - jsonl: every column to a JSON Lines file (JsonLinesResultSink)
+ *
+ * File outputs fetch the rows ExportService.DEFAULT_FETCH_SIZE at a time with adaptive
+ * response buffering, like the streaming mailing-list export.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class QueryOutput {
+    public static final List<String> OUTPUTS = Arrays.asList("console", "csv", "jsonl");
+
+    public String output = "console";
+    public String fileName;
+
+    /**
+     * Prompts for the output and, for csv and jsonl, the file name
+     *
+     * @param scanner Scanner to read user input from
+     * @return The entered output
+     */
+    public static QueryOutput prompt(Scanner scanner) {
+        QueryOutput output = new QueryOutput();
+        System.out.print("Output - console, csv or jsonl (press Enter for console): ");
+        String value = scanner.nextLine().trim().toLowerCase();
+        if (!value.isEmpty()) {
+            output.output = value;
+        }
+        if (!output.output.equals("console")) {
+            System.out.print("Please enter the output file name: ");
+            output.fileName = scanner.nextLine().trim();
+        }
+        output.validate();
+        return output;
+    }
+
+    /**
+     * Reads the output from a batch operation
+     *
+     * Fields: output ("console", "csv" or "jsonl", optional, default "console"),
+     * file (required for csv and jsonl)
+     *
+     * @param args Fields of the batch operation
+     * @return The output
+     */
+    public static QueryOutput fromArgs(OperationArgs args) {
+        QueryOutput output = new QueryOutput();
+        if (args.has("output")) {
+            output.output = args.getString("output").toLowerCase();
+        }
+        if (!output.output.equals("console")) {
+            output.fileName = args.getString("file");
+        }
+        output.validate();
+        return output;
+    }
+
+    private void validate() {
+        if (!OUTPUTS.contains(output)) {
+            throw new IllegalArgumentException("Invalid output '" + output + "'. Please use one of " + OUTPUTS + ".");
+        }
+        if (!output.equals("console") && (fileName == null || fileName.isEmpty())) {
+            throw new IllegalArgumentException("File name cannot be empty.");
+        }
+    }
+
+    /**
+     * Prepares the query, streaming it for file outputs
+     */
+    PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        if (output.equals("console")) {
+            return connection.prepareStatement(sql);
+        }
+        return ExportService.prepareStreaming(connection, sql, ExportService.DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Creates the sink for this output
+     *
+     * @param console The display of the query, used for console output
+     * @return The sink (to close after use)
+     */
+    ResultSink open(ResultSink console) {
+        if (output.equals("console")) {
+            return console;
+        }
+        Path file = ExportService.findFile(fileName);
+        return output.equals("csv") ? new CsvResultSink(file) : new JsonLinesResultSink(file);
+    }
+}
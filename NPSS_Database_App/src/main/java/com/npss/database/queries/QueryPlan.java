@@ -0,0 +1,73 @@
+package com.npss.database.queries;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the estimated execution plan of a query (SET SHOWPLAN_XML), for the benchmarks that
+ * show how a rewrite changes the plan
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+final class QueryPlan {
+    private static final Pattern REL_OP = Pattern.compile("<RelOp [^>]*PhysicalOp=\"([^\"]+)\"");
+    private static final Pattern OBJECT = Pattern.compile("<Object [^>]*>");
+    private static final Pattern TABLE = Pattern.compile("Table=\"\\[([^\\]]+)\\]\"");
+    private static final Pattern INDEX = Pattern.compile("Index=\"\\[([^\\]]+)\\]\"");
+
+    private QueryPlan() {
+    }
+
+    /**
+     * Lists the physical operators of the plan, each with the index (or table) it reads
+     * if any, e.g. "Index Seek(IX_donation_date)"
+     *
+     * @param connection Connection to compile the query on (the query is not run)
+     * @param sql The query, without parameters
+     * @return The operators in plan order
+     * @throws SQLException if the query cannot be compiled
+     */
+    static List<String> operators(Connection connection, String sql) throws SQLException {
+        String xml;
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET SHOWPLAN_XML ON");
+            try {
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    rs.next();
+                    xml = rs.getString(1);
+                }
+            } finally {
+                stmt.execute("SET SHOWPLAN_XML OFF");
+            }
+        }
+
+        List<String> operators = new ArrayList<>();
+        Matcher relOp = REL_OP.matcher(xml);
+        int start = relOp.find() ? relOp.start() : -1;
+        while (start >= 0) {
+            String name = relOp.group(1);
+            int end = relOp.find() ? relOp.start() : xml.length();
+            // The first Object of an operator, before the next operator, is the one it reads
+            Matcher object = OBJECT.matcher(xml).region(start, end);
+            if (object.find()) {
+                Matcher index = INDEX.matcher(object.group());
+                Matcher table = TABLE.matcher(object.group());
+                if (index.find()) {
+                    name += "(" + index.group(1) + ")";
+                } else if (table.find()) {
+                    name += "(" + table.group(1) + ")";
+                }
+            }
+            operators.add(name);
+            start = end < xml.length() ? end : -1;
+        }
+        return operators;
+    }
+}
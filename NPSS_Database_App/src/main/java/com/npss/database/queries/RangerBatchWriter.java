@@ -0,0 +1,278 @@
+package com.npss.database.queries;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import com.microsoft.sqlserver.jdbc.ISQLServerPreparedStatement;
+import com.microsoft.sqlserver.jdbc.SQLServerDataTable;
+import com.npss.database.commands.TransactionMetrics;
+
+/**
+ * Inserts rangers (Individual, Ranger, team assignment and certifications) in multi-table
+ * JDBC batches, committing once per chunk
+ *
+ * One PreparedStatement per table is reused for the whole import, with the statements of
+ * Query 2. A chunk sends one batch per table in foreign key order, in one transaction. The
+ * certifications of the whole chunk are sent as one table-valued parameter of type
+ * dbo.RangerCertificationList (see Nguyen_Astra_IP_Task5a.sql) instead of one row per
+ * certification; without that type, they are sent as a JDBC batch.
+ *
+ * When a chunk fails it is rolled back and split in two halves that are retried separately,
+ * down to single rows, like TeamBatchWriter. A single ranger then runs the same statements
+ * in the same transaction as Query 2, so it is rejected with the same database error.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class RangerBatchWriter implements AutoCloseable {
+    static final String CERTIFICATION_TYPE = "dbo.RangerCertificationList";
+
+    private static final String INSERT_CERTS_TVP_SQL =
+        "INSERT INTO Ranger_certifications(id_number, certification) " +
+        "SELECT id_number, certification FROM ?";
+
+    private final Connection connection;
+    private final int batchSize;
+    private final String operation;
+    private final ImportErrors errors;
+    private final List<RosterRow<Query2_InsertRanger.Params>> pending;
+    private final boolean previousAutoCommit;
+    private final boolean tvp;
+    private final ResourceGroup resources = new ResourceGroup();
+
+    private final PreparedStatement individualStmt;
+    private final PreparedStatement rangerStmt;
+    private final PreparedStatement assignStmt;
+    private final PreparedStatement certStmt;
+
+    private int successCount = 0;
+    private int certificationCount = 0;
+
+    /**
+     * @param connection Connection to insert on; auto-commit is turned off until close()
+     *                   restores its previous value
+     * @param batchSize Number of rangers per chunk
+     * @param operation Operation name used for the transaction metrics
+     * @param errors Where failing rows are reported
+     * @throws SQLException if the statements cannot be prepared
+     */
+    RangerBatchWriter(Connection connection, int batchSize, String operation, ImportErrors errors) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.operation = operation;
+        this.errors = errors;
+        this.pending = new ArrayList<>(batchSize);
+        this.previousAutoCommit = connection.getAutoCommit();
+
+        try {
+            this.individualStmt = resources.add(connection.prepareStatement(IndividualDetails.INSERT_SQL));
+            this.rangerStmt = resources.add(connection.prepareStatement(Query2_InsertRanger.INSERT_RANGER_SQL));
+            this.assignStmt = resources.add(connection.prepareStatement(Query2_InsertRanger.ASSIGN_TEAM_SQL));
+            // Registered right away so a failing isWrapperFor() does not leak it; closing it
+            // again with the group is a no-op
+            PreparedStatement tvpStmt = typeExists(connection)
+                                        ? resources.add(connection.prepareStatement(INSERT_CERTS_TVP_SQL)) : null;
+            if (tvpStmt != null && !tvpStmt.isWrapperFor(ISQLServerPreparedStatement.class)) {
+                tvpStmt.close();
+                tvpStmt = null;
+            }
+            this.tvp = tvpStmt != null;
+            this.certStmt = tvp ? tvpStmt : resources.add(connection.prepareStatement(Query2_InsertRanger.INSERT_CERT_SQL));
+
+            connection.setAutoCommit(false);
+        } catch (SQLException | RuntimeException e) {
+            // Nothing opened so far outlives a writer that could not be created
+            resources.closeAfter(e);
+            try {
+                connection.setAutoCommit(previousAutoCommit);
+            } catch (SQLException restoreError) {
+                e.addSuppressed(restoreError);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a ranger, inserting the current chunk once it is full
+     *
+     * @return true if this ranger completed a chunk, which has now been committed
+     * @throws SQLException if the connection fails (failing rows are reported, not thrown)
+     */
+    boolean add(RosterRow<Query2_InsertRanger.Params> row) throws SQLException {
+        pending.add(row);
+        if (pending.size() >= batchSize) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Inserts and commits the rangers added since the last chunk
+     *
+     * @throws SQLException if the connection fails
+     */
+    void flush() throws SQLException {
+        if (!pending.isEmpty()) {
+            insertChunk(pending, 0, pending.size());
+            pending.clear();
+        }
+    }
+
+    /**
+     * @return Number of imported rangers
+     */
+    int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * @return Number of certifications of the imported rangers
+     */
+    int getCertificationCount() {
+        return certificationCount;
+    }
+
+    /**
+     * @return Whether the certifications are sent as a table-valued parameter
+     */
+    boolean usesTableValuedParameter() {
+        return tvp;
+    }
+
+    /**
+     * Inserts rows[from, to) in one transaction; on failure, bisects
+     */
+    private void insertChunk(List<RosterRow<Query2_InsertRanger.Params>> rows, int from, int to) throws SQLException {
+        SQLException failure = null;
+        int certifications = 0;
+        long transactionStart = TransactionMetrics.start();
+        try {
+            SQLServerDataTable certTable = tvp ? newCertificationTable() : null;
+            for (int i = from; i < to; i++) {
+                Query2_InsertRanger.Params params = rows.get(i).params;
+                String idNumber = params.individual.idNumber;
+
+                params.individual.bind(individualStmt);
+                individualStmt.addBatch();
+
+                rangerStmt.setString(1, idNumber);
+                rangerStmt.addBatch();
+
+                assignStmt.setString(1, idNumber);
+                assignStmt.setString(2, params.teamId);
+                assignStmt.setDate(3, params.startDate);
+                assignStmt.setString(4, params.status);
+                assignStmt.addBatch();
+
+                for (String certification : params.certifications) {
+                    if (tvp) {
+                        certTable.addRow(idNumber, certification);
+                    } else {
+                        certStmt.setString(1, idNumber);
+                        certStmt.setString(2, certification);
+                        certStmt.addBatch();
+                    }
+                    certifications++;
+                }
+            }
+
+            individualStmt.executeBatch();
+            rangerStmt.executeBatch();
+            assignStmt.executeBatch();
+            if (certifications > 0) {
+                if (tvp) {
+                    certStmt.unwrap(ISQLServerPreparedStatement.class).setStructured(1, CERTIFICATION_TYPE, certTable);
+                    certStmt.executeUpdate();
+                } else {
+                    certStmt.executeBatch();
+                }
+            }
+            connection.commit();
+            successCount += to - from;
+            certificationCount += certifications;
+        } catch (SQLException e) {
+            failure = e;
+            clearBatches();
+            connection.rollback();
+        } finally {
+            TransactionMetrics.record(operation, transactionStart);
+        }
+
+        if (failure == null) {
+            return;
+        }
+        if (connection.isClosed()) {
+            throw failure;
+        }
+        if (to - from == 1) {
+            // Reported like Query 2 reports a database error
+            RosterRow<Query2_InsertRanger.Params> row = rows.get(from);
+            String message = "Failed to import ranger '" + row.params.individual.idNumber + "'. Database error: " +
+                             failure.getMessage();
+            if (failure.getSQLState() != null) {
+                errors.report(row.lineNumber, message, "SQL State: " + failure.getSQLState());
+            } else {
+                errors.report(row.lineNumber, message);
+            }
+        } else {
+            // Retry each half on its own so the good rows still get in
+            int middle = (from + to) >>> 1;
+            insertChunk(rows, from, middle);
+            insertChunk(rows, middle, to);
+        }
+    }
+
+    private static SQLServerDataTable newCertificationTable() throws SQLException {
+        SQLServerDataTable table = new SQLServerDataTable();
+        table.addColumnMetadata("id_number", Types.VARCHAR);
+        table.addColumnMetadata("certification", Types.VARCHAR);
+        return table;
+    }
+
+    /**
+     * @return Whether the certification table type exists
+     */
+    private static boolean typeExists(Connection connection) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement("SELECT TYPE_ID(?)")) {
+            pstmt.setString(1, CERTIFICATION_TYPE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                rs.getInt(1);
+                return !rs.wasNull();
+            }
+        }
+    }
+
+    private void clearBatches() throws SQLException {
+        individualStmt.clearBatch();
+        rangerStmt.clearBatch();
+        assignStmt.clearBatch();
+        if (!tvp) {
+            certStmt.clearBatch();
+        }
+    }
+
+    /**
+     * Inserts the remaining rangers, closes the statements and restores auto-commit
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            try {
+                resources.close();
+            } finally {
+                connection.setAutoCommit(previousAutoCommit);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+
+/**
+ * Ranger Import: Onboard the rangers of a roster file (e.g. a seasonal crew) until the file
+ * is empty
+ *
+ * The roster is CSV or JSON lines (see RosterReader); every ranger is validated like an
+ * insertRanger operation (Query 2). Rangers are written with their Individual row, team
+ * assignment and certifications in multi-table JDBC batches committed once per chunk, with
+ * the certifications of a chunk in one table-valued parameter (see RangerBatchWriter).
+ * Rejected rangers are reported with their line number; the rest of the chunk is imported.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class RangerImportService implements Command<RangerImportService.Params> {
+
+    public static final List<String> FORMATS = Arrays.asList("csv", "json");
+
+    // Rangers per chunk when none is given
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Parameters of the ranger import
+     * format is "csv" or "json", by default from the file extension (.json and .jsonl are JSON)
+     */
+    public static class Params {
+        public String fileName;
+        public String format;
+        public int batchSize = DEFAULT_BATCH_SIZE;
+    }
+
+    @Override
+    public String getName() {
+        return "importRangers";
+    }
+
+    /**
+     * Prompts for the roster file name and the batch size
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Import] Onboard the rangers of a roster file until the file is empty");
+        System.out.print("Please enter the roster file name (CSV or JSON lines): ");
+
+        Params params = new Params();
+        params.fileName = scanner.nextLine().trim();
+        params.format = defaultFormat(params.fileName);
+
+        System.out.print("Batch size (press Enter for " + DEFAULT_BATCH_SIZE + "): ");
+        String batchSize = scanner.nextLine().trim();
+        if (!batchSize.isEmpty()) {
+            params.batchSize = OperationArgs.parseInt(batchSize, "batch size");
+        }
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: file, optional format ("csv" or "json", default from the file extension) and
+     * batch_size (default 500)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.fileName = args.getString("file");
+        params.format = args.has("format") ? args.getString("format").toLowerCase() : defaultFormat(params.fileName);
+        params.batchSize = args.getInt("batch_size", DEFAULT_BATCH_SIZE);
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (params.fileName.isEmpty()) {
+            throw new IllegalArgumentException("File name cannot be empty.");
+        }
+        if (!FORMATS.contains(params.format)) {
+            throw new IllegalArgumentException("Invalid format '" + params.format + "'. Please use one of " + FORMATS + ".");
+        }
+        if (params.batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+    }
+
+    private static String defaultFormat(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".json") || name.endsWith(".jsonl") ? "json" : "csv";
+    }
+
+    /**
+     * Executes the ranger import
+     *
+     * @throws SQLException if a database error occurs
+     */
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
+        Path filePath = ExportService.findFile(params.fileName);
+
+        if (filePath == null || !Files.exists(filePath)) {
+            System.err.println("Error: File '" + params.fileName + "' not found.");
+            System.err.println("Please ensure the file exists in the current directory or project root.");
+            return;
+        }
+
+        System.out.println("Reading from file: " + filePath.toAbsolutePath());
+
+        long start = System.nanoTime();
+        int totalLines;
+        ImportErrors errors = ImportErrors.immediate();
+        RangerBatchWriter writer;
+
+        try (RosterReader<Query2_InsertRanger.Params> reader =
+                 new RosterReader<>(filePath, params.format.equals("json"), RosterReader.RANGER_COLUMNS,
+                                    new Query2_InsertRanger(), "ranger", errors)) {
+            writer = new RangerBatchWriter(connection, params.batchSize, getName(), errors);
+            System.out.println("Batch mode: " + params.batchSize + " rangers per chunk (certifications as " +
+                               (writer.usesTableValuedParameter() ? "a table-valued parameter" : "a JDBC batch") + ")");
+            try {
+                RosterRow<Query2_InsertRanger.Params> row;
+                while ((row = reader.next()) != null) {
+                    writer.add(row);
+                }
+            } finally {
+                writer.close();
+            }
+            totalLines = reader.getTotalLines();
+
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        int successCount = writer.getSuccessCount();
+
+        // Display summary result
+        System.out.println("Total lines processed: " + totalLines);
+        System.out.println("Successfully imported: " + successCount +
+                           " (certifications: " + writer.getCertificationCount() + ")");
+        System.out.println("Errors: " + errors.getCount());
+        System.out.println(String.format("Elapsed: %.2f s (%.1f rows/sec)", seconds,
+            seconds > 0 ? successCount / seconds : 0.0));
+
+        if (successCount > 0) {
+            System.out.println("\nImport completed successfully!");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.npss.database.queries;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The statements and key sets of a batch writer, closed together
+ *
+ * Resources are closed in the reverse order they were added. Every one of them is closed even
+ * if another fails; the first failure is thrown with the others added as suppressed.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class ResourceGroup implements AutoCloseable {
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    /**
+     * @param resource Resource to close with the group (null is ignored)
+     * @return The resource
+     */
+    <T extends AutoCloseable> T add(T resource) {
+        if (resource != null) {
+            resources.add(resource);
+        }
+        return resource;
+    }
+
+    /**
+     * Closes every resource of the group after a failure, e.g. when the owner could not be
+     * created; a resource that cannot be closed is added to the failure as suppressed
+     *
+     * @param failure The failure that is about to be thrown
+     */
+    void closeAfter(Throwable failure) {
+        try {
+            close();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Closes every resource of the group
+     *
+     * @throws SQLException if a resource cannot be closed
+     */
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            try {
+                resources.get(i).close();
+            } catch (Exception e) {
+                SQLException error = e instanceof SQLException ? (SQLException) e : new SQLException(e.getMessage(), e);
+                if (failure == null) {
+                    failure = error;
+                } else {
+                    failure.addSuppressed(error);
+                }
+            }
+        }
+        resources.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
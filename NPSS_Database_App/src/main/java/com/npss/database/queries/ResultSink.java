@@ -0,0 +1,81 @@
+package com.npss.database.queries;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Destination of the rows of a retrieval query: the console display of the query, a CSV file
+ * (CsvResultSink) or a JSON Lines file (JsonLinesResultSink)
+ *
+ * A sink looks up the columns it needs in start(), once, and then reads every row by column
+ * index, so nothing is looked up by name per row.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+interface ResultSink extends Closeable {
+
+    /**
+     * Called once before the first row
+     *
+     * @param metaData Columns of the result set
+     * @throws SQLException if the columns cannot be read
+     * @throws IOException if the output cannot be written
+     */
+    void start(ResultSetMetaData metaData) throws SQLException, IOException;
+
+    /**
+     * Writes the current row
+     *
+     * @param rs Result set positioned on the row
+     * @throws SQLException if the row cannot be read
+     * @throws IOException if the output cannot be written
+     */
+    void row(ResultSet rs) throws SQLException, IOException;
+
+    /**
+     * Called once after the last row
+     *
+     * @param rows Number of rows written
+     * @throws IOException if the output cannot be written
+     */
+    void finish(long rows) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Writes every remaining row of a result set to a sink
+     *
+     * @return Number of rows written
+     */
+    static long copy(ResultSet rs, ResultSink sink) throws SQLException, IOException {
+        sink.start(rs.getMetaData());
+        long rows = 0;
+        while (rs.next()) {
+            sink.row(rs);
+            rows++;
+        }
+        sink.finish(rows);
+        return rows;
+    }
+
+    /**
+     * Finds a column by its label
+     *
+     * @return Index of the column (1-based)
+     * @throws SQLException if the result set has no such column
+     */
+    static int column(ResultSetMetaData metaData, String label) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (metaData.getColumnLabel(i).equalsIgnoreCase(label)) {
+                return i;
+            }
+        }
+        throw new SQLException("The result set has no column '" + label + "'");
+    }
+}
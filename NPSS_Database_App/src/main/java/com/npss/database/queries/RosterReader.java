@@ -0,0 +1,167 @@
+package com.npss.database.queries;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.JsonParser;
+import com.npss.database.commands.OperationArgs;
+
+/**
+ * Reads the records of a roster file (e.g. rangers or visitors), one record at a time
+ *
+ * CSV format: one record per line, with the fields of the batch operation in the given column
+ * order and an optional header; the last column is a list separated by semicolons
+ * (e.g. "First Aid;Wildfire").
+ *
+ * JSON format: one object per line with the fields of the batch operation (the list as a
+ * list); empty lines and lines starting with # are skipped.
+ *
+ * Every record is validated by the parseParams method of the operation's command, so a roster
+ * line is accepted or rejected exactly like the operation. Invalid lines are reported to
+ * ImportErrors with their line number and skipped.
+ *
+ * @param <P> Parameters of the command
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class RosterReader<P> implements Closeable {
+    static final String[] RANGER_COLUMNS = {
+        "id_number", "first_name", "last_name", "gender", "street", "city", "state", "postal_code",
+        "date_of_birth", "newsletter_status", "team_id", "start_date", "status", "certifications"
+    };
+
+    static final String[] VISITOR_COLUMNS = {
+        "id_number", "first_name", "last_name", "gender", "street", "city", "state", "postal_code",
+        "date_of_birth", "newsletter_status", "visit_date", "accessibility_needs", "program_names"
+    };
+
+    private final Command<P> command;
+    private final String[] columns;
+    private final String entity;
+    private final ImportErrors errors;
+    private final CsvTokenizer tokenizer;       // CSV rosters
+    private final BufferedReader lines;         // JSON rosters
+    private int lineNumber = 0;
+    private boolean isFirstLine = true;
+
+    /**
+     * @param file The roster
+     * @param json Whether the roster is JSON lines rather than CSV
+     * @param columns Field names of the CSV columns, the list last
+     * @param command Command whose parseParams validates the records
+     * @param entity What a record is, for error messages (e.g. "ranger")
+     * @param errors Where invalid lines are reported
+     * @throws IOException if the file cannot be opened
+     */
+    RosterReader(Path file, boolean json, String[] columns, Command<P> command, String entity, ImportErrors errors)
+            throws IOException {
+        this.columns = columns;
+        this.command = command;
+        this.entity = entity;
+        this.errors = errors;
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        this.lines = json ? reader : null;
+        this.tokenizer = json ? null : new CsvTokenizer(reader);
+    }
+
+    /**
+     * Reads up to the next valid record
+     *
+     * @return The next valid record, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    RosterRow<P> next() throws IOException {
+        while (true) {
+            Map<String, Object> fields = lines != null ? nextObject() : nextRecord();
+            if (fields == null) {
+                return null;
+            }
+            int line = lines != null ? lineNumber : tokenizer.getRecord().lineNumber;
+            try {
+                return new RosterRow<>(line, command.parseParams(new OperationArgs(fields)));
+            } catch (IllegalArgumentException e) {
+                errors.report(line, "Invalid " + entity + ". Skipping: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return Number of lines read so far (including empty, comment and header lines)
+     */
+    int getTotalLines() {
+        return lines != null ? lineNumber : tokenizer.getLinesRead();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (lines != null) {
+            lines.close();
+        } else {
+            tokenizer.close();
+        }
+    }
+
+    /**
+     * @return The fields of the next JSON object, or null at the end of the file
+     */
+    private Map<String, Object> nextObject() throws IOException {
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                return JsonParser.parseObject(line);
+            } catch (IllegalArgumentException e) {
+                errors.report(lineNumber, "Invalid JSON. Skipping: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The fields of the next CSV record, by column name, or null at the end of the file
+     */
+    private Map<String, Object> nextRecord() throws IOException {
+        while (tokenizer.next()) {
+            CsvRecord record = tokenizer.getRecord();
+
+            // Skip empty lines
+            if (record.isBlank()) {
+                continue;
+            }
+
+            // Skip header line if present
+            if (isFirstLine && record.startsWithIgnoreCase(0, columns[0])) {
+                isFirstLine = false;
+                continue;
+            }
+            isFirstLine = false;
+
+            Map<String, Object> fields = new HashMap<>();
+            for (int i = 0; i < columns.length - 1; i++) {
+                fields.put(columns[i], record.getString(i));
+            }
+            List<String> items = new ArrayList<>();
+            String list = record.getString(columns.length - 1);
+            if (list != null) {
+                for (String item : list.split(";")) {
+                    items.add(item);
+                }
+            }
+            fields.put(columns[columns.length - 1], items);
+            return fields;
+        }
+        return null;
+    }
+}
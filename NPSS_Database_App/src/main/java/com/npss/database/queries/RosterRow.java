@@ -0,0 +1,19 @@
+package com.npss.database.queries;
+
+/**
+ * One record read from a roster file: the parameters of the query that inserts it and the
+ * line they came from
+ *
+ * @param <P> Parameters of the query (e.g. Query2_InsertRanger.Params)
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class RosterRow<P> {
+    int lineNumber;
+    P params;
+
+    RosterRow(int lineNumber, P params) {
+        this.lineNumber = lineNumber;
+        this.params = params;
+    }
+}
@@ -0,0 +1,28 @@
+package com.npss.database.queries;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Output of an export, written one field at a time (see ExportFormat)
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+interface RowWriter extends Closeable {
+
+    /**
+     * Writes the next field of the current row
+     *
+     * @param value Field value (null for none)
+     * @throws IOException if the output cannot be written
+     */
+    void field(String value) throws IOException;
+
+    /**
+     * Ends the current row
+     *
+     * @throws IOException if the output cannot be written
+     */
+    void endRow() throws IOException;
+}
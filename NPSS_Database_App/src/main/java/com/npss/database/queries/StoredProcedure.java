@@ -0,0 +1,170 @@
+package com.npss.database.queries;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import com.microsoft.sqlserver.jdbc.ISQLServerPreparedStatement;
+import com.microsoft.sqlserver.jdbc.SQLServerDataTable;
+import com.npss.database.commands.OperationArgs;
+
+/**
+ * Execution of a write query through its stored procedure in Nguyen_Astra_IP_Task5a.sql
+ * (execution "procedure") instead of its inline statements (execution "inline", the default)
+ *
+ * Every procedure of the script takes its inputs followed by two OUTPUT parameters,
+ * @rows_affected INT and @error_message NVARCHAR(500), and runs its own transaction. A
+ * procedure call is one round trip however many statements the procedure runs, where the
+ * inline execution sends each existence check, insert and verification separately.
+ *
+ * The procedures take lists (e.g. program names) as one comma-separated string, so list
+ * items cannot contain a comma in this mode. Queries 1, 2 and 5 also have execution "tvp",
+ * which calls the table-valued parameter version of their procedure (sp_InsertVisitorTvp,
+ * ...): the list is sent as a SQLServerDataTable and inserted in one statement.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+final class StoredProcedure {
+    static final List<String> EXECUTIONS = Arrays.asList("inline", "procedure");
+
+    // Executions of the queries whose procedure has a table-valued parameter version
+    static final List<String> TVP_EXECUTIONS = Arrays.asList("inline", "procedure", "tvp");
+
+    private StoredProcedure() {
+    }
+
+    /**
+     * Prompts for the execution
+     *
+     * @return "inline" or "procedure"
+     */
+    static String prompt(Scanner scanner) {
+        return prompt(scanner, EXECUTIONS);
+    }
+
+    /**
+     * Prompts for the execution of a query with more executions than EXECUTIONS
+     *
+     * @param executions The executions of the query, the default first
+     * @return One of the executions
+     */
+    static String prompt(Scanner scanner, List<String> executions) {
+        String choices = String.join(", ", executions.subList(0, executions.size() - 1)) +
+                         " or " + executions.get(executions.size() - 1);
+        System.out.print("Execution - " + choices + " (press Enter for " + executions.get(0) + "): ");
+        String execution = scanner.nextLine().trim().toLowerCase();
+        return validate(execution.isEmpty() ? executions.get(0) : execution, executions);
+    }
+
+    /**
+     * Reads the optional execution field of a batch operation ("inline" by default)
+     */
+    static String fromArgs(OperationArgs args) {
+        return fromArgs(args, EXECUTIONS);
+    }
+
+    /**
+     * Reads the optional execution field of a batch operation (the first execution by default)
+     */
+    static String fromArgs(OperationArgs args, List<String> executions) {
+        return validate(args.has("execution") ? args.getString("execution").toLowerCase() : executions.get(0), executions);
+    }
+
+    private static String validate(String execution, List<String> executions) {
+        if (!executions.contains(execution)) {
+            throw new IllegalArgumentException("Invalid execution '" + execution + "'. Please use one of " + executions + ".");
+        }
+        return execution;
+    }
+
+    /**
+     * Prepares a call with the given number of inputs, followed by the two registered
+     * OUTPUT parameters
+     *
+     * @param connection Connection to call the procedure on
+     * @param procedure Name of the procedure (a constant of the caller)
+     * @param inputs Number of input parameters, set by the caller from index 1
+     * @return The prepared call
+     * @throws SQLException if the call cannot be prepared
+     */
+    static CallableStatement prepare(Connection connection, String procedure, int inputs) throws SQLException {
+        StringBuilder call = new StringBuilder("{call ").append(procedure).append("(");
+        for (int i = 0; i < inputs + 2; i++) {
+            call.append(i == 0 ? "?" : ", ?");
+        }
+        CallableStatement cstmt = connection.prepareCall(call.append(")}").toString());
+        cstmt.registerOutParameter(inputs + 1, Types.INTEGER);
+        cstmt.registerOutParameter(inputs + 2, Types.NVARCHAR);
+        return cstmt;
+    }
+
+    /**
+     * Runs a call prepared by prepare()
+     *
+     * @param cstmt The call, with its inputs set
+     * @param inputs Number of input parameters it was prepared with
+     * @return The procedure's @rows_affected
+     * @throws SQLException if the call fails or the procedure returns an @error_message
+     */
+    static int execute(CallableStatement cstmt, int inputs) throws SQLException {
+        cstmt.execute();
+        String errorMessage = cstmt.getString(inputs + 2);
+        if (errorMessage != null) {
+            throw new SQLException(errorMessage);
+        }
+        return cstmt.getInt(inputs + 1);
+    }
+
+    /**
+     * Builds the table-valued parameter of a one-column list type (e.g. dbo.ProgramNameList)
+     *
+     * @param column Name of the VARCHAR column of the type
+     * @param values The items, one row each
+     * @return The table
+     * @throws SQLException if a row cannot be added
+     */
+    static SQLServerDataTable table(String column, List<String> values) throws SQLException {
+        SQLServerDataTable table = new SQLServerDataTable();
+        table.addColumnMetadata(column, Types.VARCHAR);
+        for (String value : values) {
+            table.addRow(value);
+        }
+        return table;
+    }
+
+    /**
+     * Sets a table-valued parameter of a call prepared by prepare()
+     *
+     * @param cstmt The call (a pooled statement is unwrapped)
+     * @param index Index of the parameter
+     * @param typeName Table type of the parameter, e.g. dbo.ProgramNameList
+     * @param table The rows
+     * @throws SQLException if the statement is not a SQL Server statement
+     */
+    static void setTable(CallableStatement cstmt, int index, String typeName, SQLServerDataTable table)
+            throws SQLException {
+        cstmt.unwrap(ISQLServerPreparedStatement.class).setStructured(index, typeName, table);
+    }
+
+    /**
+     * Joins list items into the comma-separated form the procedures split
+     *
+     * @param values The items
+     * @param fieldName Name of the list in error messages
+     * @return The joined items, or null if there are none
+     * @throws IllegalArgumentException if an item contains a comma
+     */
+    static String join(List<String> values, String fieldName) {
+        for (String value : values) {
+            if (value != null && value.indexOf(',') >= 0) {
+                throw new IllegalArgumentException("'" + value + "' contains a comma, which " + fieldName +
+                                                   " cannot contain with execution procedure.");
+            }
+        }
+        return values.isEmpty() ? null : String.join(",", values);
+    }
+}
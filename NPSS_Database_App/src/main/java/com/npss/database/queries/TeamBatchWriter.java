@@ -0,0 +1,139 @@
+package com.npss.database.queries;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import com.npss.database.commands.TransactionMetrics;
+
+/**
+ * Inserts Ranger_team rows in JDBC batches, committing once per chunk
+ *
+ * A single PreparedStatement is reused for the whole import. When a chunk fails it is
+ * rolled back and split in two halves that are retried separately, down to single rows,
+ * so only the rows that really fail are rejected (and reported with their line number).
+ *
+ * Rows are only inserted by add() (when a chunk is full) and flush(). close() drops the
+ * rows added since then, so an import that stops on an exception never commits a partial
+ * chunk that its checkpoint does not cover.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class TeamBatchWriter implements AutoCloseable {
+    private final Connection connection;
+    private final PreparedStatement pstmt;
+    private final int batchSize;
+    private final String operation;
+    private final ImportErrors errors;
+    private final List<TeamRow> pending;
+    private final boolean previousAutoCommit;
+    private int successCount = 0;
+
+    /**
+     * @param connection Connection to insert on; auto-commit is turned off until close()
+     *                   restores its previous value
+     * @param batchSize Number of rows per chunk
+     * @param operation Operation name used for the transaction metrics
+     * @param errors Where failing rows are reported
+     * @throws SQLException if the statement cannot be prepared
+     */
+    TeamBatchWriter(Connection connection, int batchSize, String operation, ImportErrors errors) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.operation = operation;
+        this.errors = errors;
+        this.pending = new ArrayList<>(batchSize);
+        this.pstmt = connection.prepareStatement(TeamRow.INSERT_SQL);
+        this.previousAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * Adds a row, inserting the current chunk once it is full
+     *
+     * @return true if this row completed a chunk, which has now been committed
+     * @throws SQLException if the connection fails (failing rows are reported, not thrown)
+     */
+    boolean add(TeamRow row) throws SQLException {
+        pending.add(row);
+        if (pending.size() >= batchSize) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Inserts and commits the rows added since the last chunk
+     *
+     * @throws SQLException if the connection fails
+     */
+    void flush() throws SQLException {
+        if (!pending.isEmpty()) {
+            insertChunk(pending, 0, pending.size());
+            pending.clear();
+        }
+    }
+
+    int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * Inserts rows[from, to) in one batch and one transaction; on failure, bisects
+     */
+    private void insertChunk(List<TeamRow> rows, int from, int to) throws SQLException {
+        SQLException failure = null;
+        long transactionStart = TransactionMetrics.start();
+        try {
+            for (int i = from; i < to; i++) {
+                rows.get(i).bind(pstmt);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            connection.commit();
+            successCount += to - from;
+        } catch (SQLException e) {
+            failure = e;
+            pstmt.clearBatch();
+            connection.rollback();
+        } finally {
+            TransactionMetrics.record(operation, transactionStart);
+        }
+
+        if (failure == null) {
+            return;
+        }
+        if (connection.isClosed()) {
+            throw failure;
+        }
+        if (to - from == 1) {
+            TeamRow row = rows.get(from);
+            errors.report(row.lineNumber, "Failed to import team '" + row.teamId + "': " + failure.getMessage());
+        } else {
+            // Retry each half on its own so the good rows still get in
+            int middle = (from + to) >>> 1;
+            insertChunk(rows, from, middle);
+            insertChunk(rows, middle, to);
+        }
+    }
+
+    /**
+     * Drops the rows not inserted yet (call flush() first to keep them), closes the
+     * statement and restores auto-commit
+     */
+    @Override
+    public void close() throws SQLException {
+        pending.clear();
+        try {
+            pstmt.close();
+        } finally {
+            connection.setAutoCommit(previousAutoCommit);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+import com.npss.database.commands.TransactionMetrics;
+
+/**
+ * Loads Ranger_team rows with the SQL Server bulk-copy API
+ *
+ * Rows are streamed from the file straight into SQLServerBulkCopy, one chunk of batchSize
+ * rows per bulk copy and per transaction, so memory use only depends on the batch size.
+ * A chunk rejected by the server is rolled back and re-inserted through TeamBatchWriter,
+ * which isolates and reports the failing lines.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class TeamBulkLoader {
+    private static final String[] COLUMNS = {"team_id", "formation_date", "focus_date", "team_leader"};
+
+    private final Connection connection;
+    private final int batchSize;
+    private final SQLServerBulkCopyOptions options;
+    private final String operation;
+    private final ImportErrors errors;
+    private int successCount = 0;
+
+    /**
+     * @param connection Connection to load on (a pooled connection is unwrapped)
+     * @param batchSize Number of rows per bulk copy and per transaction
+     * @param tableLock Take a table lock for the duration of each bulk copy
+     * @param checkConstraints Check constraints (including the team_leader foreign key) while loading
+     * @param operation Operation name used for the transaction metrics
+     * @param errors Where failing rows are reported
+     * @throws SQLException if the options are invalid
+     */
+    TeamBulkLoader(Connection connection, int batchSize, boolean tableLock, boolean checkConstraints,
+                   String operation, ImportErrors errors) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.operation = operation;
+        this.errors = errors;
+
+        options = new SQLServerBulkCopyOptions();
+        options.setBatchSize(batchSize);
+        options.setTableLock(tableLock);
+        options.setCheckConstraints(checkConstraints);
+        // Empty focus_date / team_leader are sent as NULL, like the row-by-row import
+        options.setKeepNulls(true);
+    }
+
+    /**
+     * Loads every valid row of the file
+     *
+     * @param reader File to load
+     * @param checkpoint Saved after each committed chunk (null for none)
+     * @throws SQLException if the connection fails
+     * @throws IOException if the file cannot be read or the checkpoint cannot be saved
+     */
+    void load(TeamFileReader reader, ImportCheckpoint checkpoint) throws SQLException, IOException {
+        SQLServerConnection sqlConnection = connection.unwrap(SQLServerConnection.class);
+        TeamChunk chunk = new TeamChunk(reader, batchSize);
+
+        connection.setAutoCommit(false);
+        try {
+            while (chunk.startNext()) {
+                SQLException failure = null;
+                long transactionStart = TransactionMetrics.start();
+                try (SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy(sqlConnection)) {
+                    bulkCopy.setDestinationTableName("Ranger_team");
+                    bulkCopy.setBulkCopyOptions(options);
+                    for (int i = 0; i < COLUMNS.length; i++) {
+                        bulkCopy.addColumnMapping(i + 1, COLUMNS[i]);
+                    }
+                    bulkCopy.writeToServer(chunk);
+                    if (chunk.readError != null) {
+                        // The chunk is cut short by the read error; the checkpoint is still before it
+                        connection.rollback();
+                    } else {
+                        connection.commit();
+                        successCount += chunk.rows.size();
+                    }
+                } catch (SQLException e) {
+                    failure = e;
+                    connection.rollback();
+                } finally {
+                    TransactionMetrics.record(operation, transactionStart);
+                }
+
+                if (chunk.readError != null) {
+                    throw chunk.readError;
+                }
+                if (failure != null) {
+                    if (connection.isClosed()) {
+                        throw failure;
+                    }
+                    System.err.println("Lines " + chunk.firstLine() + "-" + chunk.lastLine() + ": Bulk copy failed (" +
+                                       failure.getMessage() + "). Retrying these rows with batched inserts...");
+                    retry(chunk.rows);
+                }
+                if (checkpoint != null) {
+                    checkpoint.save(reader.getBytePosition(), reader.getLinePosition());
+                }
+                System.out.println("Loaded " + successCount + " rows (up to line " + chunk.lastLine() + ")");
+            }
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * Re-inserts a rejected chunk through JDBC batches to isolate the bad rows
+     */
+    private void retry(List<TeamRow> rows) throws SQLException {
+        try (TeamBatchWriter writer = new TeamBatchWriter(connection, batchSize, operation, errors)) {
+            for (TeamRow row : rows) {
+                writer.add(row);
+            }
+            writer.flush();
+            successCount += writer.getSuccessCount();
+        }
+    }
+
+    /**
+     * Bulk-copy source returning at most batchSize rows of the file per bulk copy
+     * The rows of the current chunk are kept so a rejected chunk can be retried.
+     */
+    private static final class TeamChunk implements ISQLServerBulkData {
+        private static final long serialVersionUID = 1L;
+
+        private final transient TeamFileReader reader;
+        private final int batchSize;
+        private final transient List<TeamRow> rows;
+        private transient TeamRow nextRow;
+        private transient TeamRow current;
+        private transient IOException readError;
+
+        private TeamChunk(TeamFileReader reader, int batchSize) {
+            this.reader = reader;
+            this.batchSize = batchSize;
+            this.rows = new ArrayList<>(batchSize);
+        }
+
+        /**
+         * Starts a new chunk
+         *
+         * @return false at the end of the file
+         */
+        private boolean startNext() throws IOException {
+            rows.clear();
+            current = null;
+            nextRow = reader.next();
+            return nextRow != null;
+        }
+
+        private int firstLine() {
+            return rows.isEmpty() ? 0 : rows.get(0).lineNumber;
+        }
+
+        private int lastLine() {
+            return rows.isEmpty() ? 0 : rows.get(rows.size() - 1).lineNumber;
+        }
+
+        @Override
+        public boolean next() throws SQLException {
+            if (nextRow != null) {
+                current = nextRow;
+                nextRow = null;
+            } else {
+                if (rows.size() >= batchSize) {
+                    return false;
+                }
+                try {
+                    current = reader.next();
+                } catch (IOException e) {
+                    readError = e;
+                    throw new SQLException("File I/O error: " + e.getMessage(), e);
+                }
+                if (current == null) {
+                    return false;
+                }
+            }
+            rows.add(current);
+            return true;
+        }
+
+        @Override
+        public Object[] getRowData() {
+            return new Object[] {current.teamId, current.formationDate, current.focusDate, current.teamLeader};
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            return new LinkedHashSet<>(Arrays.asList(1, 2, 3, 4));
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column - 1];
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return (column == 2 || column == 3) ? Types.DATE : Types.VARCHAR;
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return (column == 2 || column == 3) ? 10 : 50;
+        }
+
+        @Override
+        public int getScale(int column) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.npss.database.queries;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Reads Ranger_team rows from an import file, one record at a time
+ *
+ * Expected file format (CSV, one team per line, optional header):
+ * team_id,formation_date,focus_date,team_leader
+ *
+ * Lines are tokenized by CsvTokenizer, so quoted fields may contain commas, quotes and
+ * line breaks. Empty and header lines are skipped. Invalid lines are reported to
+ * ImportErrors with their line number and skipped, and so are the lines rejected by a
+ * pre-flight check (see skipLines).
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class TeamFileReader implements Closeable {
+    private final CsvTokenizer tokenizer;
+    private final ImportErrors errors;
+    private final int startLine;
+    private boolean isFirstLine;
+    private BitSet skippedLines;
+
+    TeamFileReader(Reader reader, ImportErrors errors) {
+        this(reader, 0, 0, errors);
+    }
+
+    /**
+     * @param reader Input, already positioned at startOffset
+     * @param startOffset UTF-8 byte offset of the input in the file
+     * @param startLine Number of lines of the file before startOffset
+     * @param errors Where invalid lines are reported
+     */
+    TeamFileReader(Reader reader, long startOffset, int startLine, ImportErrors errors) {
+        this.tokenizer = new CsvTokenizer(reader, startOffset, startLine);
+        this.errors = errors;
+        this.startLine = startLine;
+        this.isFirstLine = startOffset == 0;
+    }
+
+    /**
+     * Opens a UTF-8 file, seeking directly to the given position
+     *
+     * Malformed UTF-8 is reported rather than replaced, so the byte positions of the
+     * tokenizer (and the checkpoints saved from them) stay exact
+     *
+     * @param file The file to read
+     * @param offset UTF-8 byte offset to start reading at (0 for the whole file)
+     * @param line Number of lines before offset
+     * @param errors Where invalid lines are reported
+     * @return The reader
+     * @throws IOException if the file cannot be opened
+     */
+    static TeamFileReader open(Path file, long offset, int line, ImportErrors errors) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        Reader reader = new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8.newDecoder());
+        return new TeamFileReader(reader, offset, line, errors);
+    }
+
+    /**
+     * Skips lines that have already been rejected (and reported) elsewhere
+     *
+     * @param lines Line numbers to skip, or null for none; must not change while reading
+     */
+    void skipLines(BitSet lines) {
+        this.skippedLines = lines;
+    }
+
+    /**
+     * Reads up to the next valid row
+     *
+     * @return The next valid row, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    TeamRow next() throws IOException {
+        CsvRecord record;
+        while ((record = nextRecord()) != null) {
+            TeamRow row = parseRecord(record);
+            if (row != null) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads up to the next record holding data, without validating it
+     *
+     * @return The record (reused by the next call), or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    CsvRecord nextRecord() throws IOException {
+        while (tokenizer.next()) {
+            CsvRecord record = tokenizer.getRecord();
+
+            // Skip empty lines
+            if (record.isBlank()) {
+                continue;
+            }
+
+            // Skip header line if present
+            if (isFirstLine && record.startsWithIgnoreCase(0, "team_id")) {
+                isFirstLine = false;
+                continue;
+            }
+            isFirstLine = false;
+            return record;
+        }
+        return null;
+    }
+
+    /**
+     * @return Number of lines read so far by this reader (including empty and header lines)
+     */
+    int getTotalLines() {
+        return tokenizer.getLinesRead() - startLine;
+    }
+
+    /**
+     * @return Number of lines of the file before the current position
+     */
+    int getLinePosition() {
+        return tokenizer.getLinesRead();
+    }
+
+    /**
+     * @return UTF-8 byte offset in the file right after the last record read
+     */
+    long getBytePosition() {
+        return tokenizer.getBytePosition();
+    }
+
+    @Override
+    public void close() throws IOException {
+        tokenizer.close();
+    }
+
+    /**
+     * Validates one record, unless its line is skipped (safe to call from several threads)
+     *
+     * @return The row, or null if the record is invalid or skipped
+     */
+    TeamRow parseRecord(CsvRecord record) {
+        if (skippedLines != null && skippedLines.get(record.lineNumber)) {
+            return null;
+        }
+        return parse(record, errors);
+    }
+
+    /**
+     * Validates one record
+     *
+     * @return The row, or null if the record is invalid (the error has been reported)
+     */
+    static TeamRow parse(CsvRecord record, ImportErrors errors) {
+        int lineNumber = record.lineNumber;
+
+        if (record.getFieldCount() < 2) {
+            errors.report(lineNumber, "Invalid format (expected at least 2 fields). Skipping: " + record.getText());
+            return null;
+        }
+
+        TeamRow row = new TeamRow();
+        row.lineNumber = lineNumber;
+        row.teamId = record.getString(0);
+        row.teamLeader = record.getString(3);
+
+        // Validate required fields
+        if (row.teamId == null || record.isEmpty(1)) {
+            errors.report(lineNumber, "Missing required fields (team_id or formation_date). Skipping: " + record.getText());
+            return null;
+        }
+
+        try {
+            row.formationDate = record.getDate(1);
+            row.focusDate = record.getDate(2);
+        } catch (IllegalArgumentException e) {
+            errors.report(lineNumber, "Invalid date format for team '" + row.teamId + "': " + e.getMessage(),
+                          "   Expected format: YYYY-MM-DD");
+            return null;
+        }
+        return row;
+    }
+}
@@ -0,0 +1,312 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * Pipelined team import: reader -> parser/validator workers -> writer workers
+ *
+ * The calling thread tokenizes the file and hands blocks of batchSize records to the parser
+ * workers, which validate them and hand the valid rows of each block to the writer workers.
+ * Each writer owns a connection and a TeamBatchWriter and commits every block as one chunk.
+ * All queues are bounded, so a slow stage holds back the stages before it instead of
+ * buffering the file in memory. Errors are collected in an ordered ImportErrors and printed
+ * by line number once the import is done.
+ *
+ * Blocks are numbered in file order but writers finish them out of order, so the checkpoint
+ * only moves past a block once it and every block before it have been committed.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class TeamImportPipeline {
+    // Blocks waiting between two stages, per worker of the next stage
+    private static final int QUEUE_BLOCKS_PER_WORKER = 4;
+
+    private static final Block END = new Block(-1, null, 0, 0);
+
+    private final Connection connection;
+    private final DataSource dataSource;
+    private final int writers;
+    private final int parsers;
+    private final int batchSize;
+    private final String operation;
+    private final ImportErrors errors;
+    private final ImportCheckpoint checkpoint;
+
+    private final BlockingQueue<Block> recordQueue;
+    private final BlockingQueue<Block> rowQueue;
+    private final AtomicInteger successCount = new AtomicInteger();
+    private volatile Exception failure;
+
+    // Blocks finished ahead of the first unfinished one (guarded by this)
+    private final Map<Long, Block> finishedBlocks = new HashMap<>();
+    private long firstUnfinished = 0;
+
+    /**
+     * @param connection Connection used by the first writer
+     * @param dataSource Pool the other writers borrow their connection from
+     * @param writers Number of writer workers (one connection each)
+     * @param batchSize Records per block, and so at most rows per chunk of a writer
+     * @param operation Operation name used for the transaction metrics
+     * @param errors Ordered error collector
+     * @param checkpoint Saved as the committed part of the file grows (null for none)
+     */
+    TeamImportPipeline(Connection connection, DataSource dataSource, int writers, int batchSize,
+                       String operation, ImportErrors errors, ImportCheckpoint checkpoint) {
+        this.connection = connection;
+        this.dataSource = dataSource;
+        this.writers = Math.max(1, writers);
+        this.parsers = Math.max(1, Math.min(this.writers, Runtime.getRuntime().availableProcessors() - 1));
+        this.batchSize = batchSize;
+        this.operation = operation;
+        this.errors = errors;
+        this.checkpoint = checkpoint;
+        this.recordQueue = new ArrayBlockingQueue<>(parsers * QUEUE_BLOCKS_PER_WORKER);
+        this.rowQueue = new ArrayBlockingQueue<>(this.writers * QUEUE_BLOCKS_PER_WORKER);
+    }
+
+    /**
+     * Imports every valid row of the file
+     *
+     * @param reader File to import (read on the calling thread)
+     * @return Number of imported rows
+     * @throws SQLException if a writer loses its connection
+     * @throws IOException if the file cannot be read or the checkpoint cannot be saved
+     */
+    int run(TeamFileReader reader) throws SQLException, IOException {
+        System.out.println("Pipeline: " + parsers + " parser(s), " + writers + " writer(s), " +
+                           batchSize + " rows per chunk");
+
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger parsersLeft = new AtomicInteger(parsers);
+        for (int i = 1; i <= parsers; i++) {
+            threads.add(start("npss-import-parser-" + i, () -> parse(reader, parsersLeft)));
+        }
+        for (int i = 1; i <= writers; i++) {
+            final boolean ownsConnection = i > 1;
+            threads.add(start("npss-import-writer-" + i, () -> write(ownsConnection)));
+        }
+
+        try {
+            long sequence = 0;
+            List<CsvRecord> records = new ArrayList<>(batchSize);
+            CsvRecord record;
+            while (failure == null && (record = reader.nextRecord()) != null) {
+                // The tokenizer reuses its record, so each one is copied into the block
+                records.add(record.copy());
+                if (records.size() == batchSize) {
+                    put(recordQueue, new Block(sequence++, records, reader.getBytePosition(), reader.getLinePosition()));
+                    records = new ArrayList<>(batchSize);
+                }
+            }
+            if (!records.isEmpty()) {
+                put(recordQueue, new Block(sequence, records, reader.getBytePosition(), reader.getLinePosition()));
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } finally {
+            // One end marker per parser; the last parser passes one on to every writer
+            for (int i = 0; i < parsers; i++) {
+                putEnd(recordQueue);
+            }
+            for (Thread thread : threads) {
+                join(thread);
+            }
+        }
+
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        }
+        if (failure != null) {
+            throw new SQLException("Import pipeline failed: " + failure.getMessage(), failure);
+        }
+        return successCount.get();
+    }
+
+    /**
+     * Parser worker: turns blocks of records into blocks of valid rows
+     */
+    private void parse(TeamFileReader reader, AtomicInteger parsersLeft) {
+        try {
+            Block block;
+            while ((block = take(recordQueue)) != END && block != null) {
+                List<TeamRow> rows = new ArrayList<>(block.records.size());
+                for (CsvRecord record : block.records) {
+                    TeamRow row = reader.parseRecord(record);
+                    if (row != null) {
+                        rows.add(row);
+                    }
+                }
+                block.records = null;
+                block.rows = rows;
+                if (rows.isEmpty()) {
+                    // Nothing to write: the block is done as soon as it is parsed
+                    finished(block);
+                } else {
+                    put(rowQueue, block);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            if (parsersLeft.decrementAndGet() == 0) {
+                for (int i = 0; i < writers; i++) {
+                    putEnd(rowQueue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writer worker: inserts each block of rows as one chunk on its own connection
+     */
+    private void write(boolean ownsConnection) {
+        Connection writerConnection = null;
+        try {
+            writerConnection = ownsConnection ? dataSource.getConnection() : connection;
+            try (TeamBatchWriter writer = new TeamBatchWriter(writerConnection, batchSize, operation, errors)) {
+                Block block;
+                while ((block = take(rowQueue)) != END && block != null) {
+                    for (TeamRow row : block.rows) {
+                        writer.add(row);
+                    }
+                    writer.flush();
+                    finished(block);
+                }
+                successCount.addAndGet(writer.getSuccessCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (SQLException | RuntimeException e) {
+            fail(e);
+        } finally {
+            if (ownsConnection && writerConnection != null) {
+                try {
+                    writerConnection.close();
+                } catch (SQLException e) {
+                    fail(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks a block as committed and moves the checkpoint past the blocks finished in order
+     */
+    private synchronized void finished(Block block) {
+        block.rows = null;
+        finishedBlocks.put(block.sequence, block);
+
+        Block last = null;
+        Block next;
+        while ((next = finishedBlocks.remove(firstUnfinished)) != null) {
+            last = next;
+            firstUnfinished++;
+        }
+        if (last == null || checkpoint == null || failure != null) {
+            return;
+        }
+        try {
+            checkpoint.save(last.endOffset, last.endLine);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Exception e) {
+        if (failure == null) {
+            failure = e;
+        }
+        // The other stages stop at their next put/take; drop what they will never use
+        recordQueue.clear();
+        rowQueue.clear();
+    }
+
+    /**
+     * Takes the next block
+     *
+     * @return The block, or null once another stage has failed
+     */
+    private Block take(BlockingQueue<Block> queue) throws InterruptedException {
+        Block block = null;
+        while (failure == null && block == null) {
+            block = queue.poll(100, TimeUnit.MILLISECONDS);
+        }
+        return failure == null ? block : null;
+    }
+
+    /**
+     * Puts a block, giving up when another stage has failed
+     */
+    private void put(BlockingQueue<Block> queue, Block block) throws InterruptedException {
+        while (failure == null && !queue.offer(block, 100, TimeUnit.MILLISECONDS)) {
+            // Back-pressure: wait for the next stage to catch up
+        }
+    }
+
+    /**
+     * Puts an end marker (not needed any more once a stage has failed)
+     */
+    private void putEnd(BlockingQueue<Block> queue) {
+        try {
+            put(queue, END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Consecutive records of the file, replaced by their valid rows once parsed
+     */
+    private static final class Block {
+        private final long sequence;
+        private final long endOffset;   // File position right after the last record
+        private final int endLine;
+        private List<CsvRecord> records;
+        private List<TeamRow> rows;
+
+        private Block(long sequence, List<CsvRecord> records, long endOffset, int endLine) {
+            this.sequence = sequence;
+            this.records = records;
+            this.endOffset = endOffset;
+            this.endLine = endLine;
+        }
+    }
+}
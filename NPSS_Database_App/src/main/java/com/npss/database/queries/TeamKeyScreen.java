@@ -0,0 +1,114 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+/**
+ * Pre-flight key check of a team import
+ *
+ * Loads the existing Ranger_team.team_id and Ranger.id_number keys once, then classifies
+ * every row of the file before anything is written:
+ * - insert: new team_id, and team_leader empty or an existing ranger
+ * - duplicate: team_id already in Ranger_team, or already used on an earlier line of the file
+ * - dangling: team_leader is not in Ranger
+ * Duplicates and dangling rows are reported with the messages of sp_CheckPrimaryKeyViolations
+ * and sp_CheckForeignKeyViolations, and their lines are returned so the import skips them.
+ *
+ * Rows written by someone else between the check and the import are still rejected by the
+ * server and handled by the import as before.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class TeamKeyScreen implements AutoCloseable {
+    // Tables with more keys are checked through a Bloom filter (see KeySet)
+    static final int EXACT_KEY_LIMIT = 1_000_000;
+
+    private final KeySet teamIds;
+    private final KeySet rangerIds;
+    private final BitSet rejectedLines = new BitSet();
+    private int insertCount = 0;
+    private int duplicateCount = 0;
+    private int danglingCount = 0;
+
+    private TeamKeyScreen(KeySet teamIds, KeySet rangerIds) {
+        this.teamIds = teamIds;
+        this.rangerIds = rangerIds;
+    }
+
+    /**
+     * Loads the existing keys
+     *
+     * @param connection Connection to read the keys with
+     * @return The screen
+     * @throws SQLException if the keys cannot be read
+     */
+    static TeamKeyScreen load(Connection connection) throws SQLException {
+        KeySet teamIds = KeySet.load(connection, "Ranger_team", "team_id", EXACT_KEY_LIMIT);
+        try {
+            return new TeamKeyScreen(teamIds, KeySet.load(connection, "Ranger", "id_number", EXACT_KEY_LIMIT));
+        } catch (SQLException e) {
+            teamIds.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Classifies every valid row of the file
+     *
+     * @param reader File to check (its format errors are left to the import)
+     * @param errors Where duplicate and dangling rows are reported
+     * @throws IOException if the file cannot be read
+     * @throws SQLException if a key cannot be checked
+     */
+    void screen(TeamFileReader reader, ImportErrors errors) throws IOException, SQLException {
+        TeamRow row;
+        while ((row = reader.next()) != null) {
+            if (teamIds.contains(row.teamId)) {
+                errors.report(row.lineNumber, "Primary key violation: " + row.teamId +
+                              " already exists in Ranger_team.team_id");
+                rejectedLines.set(row.lineNumber);
+                duplicateCount++;
+            } else if (row.teamLeader != null && !rangerIds.contains(row.teamLeader)) {
+                errors.report(row.lineNumber, "Foreign key violation: " + row.teamLeader +
+                              " does not exist in Ranger.id_number");
+                rejectedLines.set(row.lineNumber);
+                danglingCount++;
+            } else {
+                // Later lines with the same team_id would violate the primary key
+                teamIds.add(row.teamId);
+                insertCount++;
+            }
+        }
+    }
+
+    /**
+     * @return Lines of rows that would be rejected by the server
+     */
+    BitSet getRejectedLines() {
+        return rejectedLines;
+    }
+
+    /**
+     * Prints the number of rows in each class
+     */
+    void printSummary() {
+        System.out.println("Pre-flight check: " + teamIds.getLoadedCount() + " existing teams, " +
+                           rangerIds.getLoadedCount() + " existing rangers" +
+                           (teamIds.isApproximate() || rangerIds.isApproximate() ? " (Bloom filter)" : ""));
+        System.out.println("  To insert: " + insertCount);
+        System.out.println("  Duplicate team_id: " + duplicateCount);
+        System.out.println("  Unknown team_leader: " + danglingCount);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            teamIds.close();
+        } finally {
+            rangerIds.close();
+        }
+    }
+}
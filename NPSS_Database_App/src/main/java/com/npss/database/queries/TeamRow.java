@@ -0,0 +1,45 @@
+package com.npss.database.queries;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * One Ranger_team row read from an import file
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class TeamRow {
+    public static final String INSERT_SQL =
+        "INSERT INTO Ranger_team(team_id, formation_date, focus_date, team_leader) " +
+        "VALUES (?, ?, ?, ?)";
+
+    public int lineNumber;
+    public String teamId;
+    public java.sql.Date formationDate;
+    public java.sql.Date focusDate;   // null when empty in the file
+    public String teamLeader;         // null when empty in the file
+
+    /**
+     * Binds this row to the 4 parameters of INSERT_SQL
+     *
+     * @param pstmt Statement prepared from INSERT_SQL
+     * @throws SQLException if a parameter cannot be set
+     */
+    public void bind(PreparedStatement pstmt) throws SQLException {
+        pstmt.setString(1, teamId);
+        pstmt.setDate(2, formationDate);
+
+        if (focusDate != null) {
+            pstmt.setDate(3, focusDate);
+        } else {
+            pstmt.setNull(3, java.sql.Types.DATE);
+        }
+
+        if (teamLeader != null) {
+            pstmt.setString(4, teamLeader);
+        } else {
+            pstmt.setNull(4, java.sql.Types.VARCHAR);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.npss.database.queries;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import com.npss.database.commands.TransactionMetrics;
+
+/**
+ * Inserts visitors (Individual, Visitor and program enrollments) in multi-table JDBC
+ * batches, committing once per chunk
+ *
+ * One PreparedStatement per table is reused for the whole import, with the statements of
+ * Query 1. A chunk sends one batch per table in foreign key order, in one transaction.
+ * When a chunk fails it is rolled back and split in two halves that are retried separately,
+ * down to single rows, like TeamBatchWriter.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class VisitorBatchWriter implements AutoCloseable {
+    private final Connection connection;
+    private final int batchSize;
+    private final String operation;
+    private final ImportErrors errors;
+    private final List<RosterRow<Query1_InsertVisitor.Params>> pending;
+    private final boolean previousAutoCommit;
+    private final ResourceGroup resources = new ResourceGroup();
+
+    private final PreparedStatement individualStmt;
+    private final PreparedStatement visitorStmt;
+    private final PreparedStatement enrollStmt;
+
+    private int successCount = 0;
+    private int enrollmentCount = 0;
+
+    /**
+     * @param connection Connection to insert on; auto-commit is turned off until close()
+     *                   restores its previous value
+     * @param batchSize Number of visitors per chunk
+     * @param operation Operation name used for the transaction metrics
+     * @param errors Where failing rows are reported
+     * @throws SQLException if the statements cannot be prepared
+     */
+    VisitorBatchWriter(Connection connection, int batchSize, String operation, ImportErrors errors) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.operation = operation;
+        this.errors = errors;
+        this.pending = new ArrayList<>(batchSize);
+        this.previousAutoCommit = connection.getAutoCommit();
+
+        try {
+            this.individualStmt = resources.add(connection.prepareStatement(IndividualDetails.INSERT_SQL));
+            this.visitorStmt = resources.add(connection.prepareStatement(Query1_InsertVisitor.INSERT_VISITOR_SQL));
+            this.enrollStmt = resources.add(connection.prepareStatement(Query1_InsertVisitor.ENROLL_PROGRAM_SQL));
+
+            connection.setAutoCommit(false);
+        } catch (SQLException | RuntimeException e) {
+            // Nothing opened so far outlives a writer that could not be created
+            resources.closeAfter(e);
+            try {
+                connection.setAutoCommit(previousAutoCommit);
+            } catch (SQLException restoreError) {
+                e.addSuppressed(restoreError);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a visitor, inserting the current chunk once it is full
+     *
+     * @return true if this visitor completed a chunk, which has now been committed
+     * @throws SQLException if the connection fails (failing rows are reported, not thrown)
+     */
+    boolean add(RosterRow<Query1_InsertVisitor.Params> row) throws SQLException {
+        pending.add(row);
+        if (pending.size() >= batchSize) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Inserts and commits the visitors added since the last chunk
+     *
+     * @throws SQLException if the connection fails
+     */
+    void flush() throws SQLException {
+        if (!pending.isEmpty()) {
+            insertChunk(pending, 0, pending.size());
+            pending.clear();
+        }
+    }
+
+    /**
+     * @return Number of imported visitors
+     */
+    int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * @return Number of program enrollments of the imported visitors
+     */
+    int getEnrollmentCount() {
+        return enrollmentCount;
+    }
+
+    /**
+     * Inserts rows[from, to) in one transaction; on failure, bisects
+     */
+    private void insertChunk(List<RosterRow<Query1_InsertVisitor.Params>> rows, int from, int to) throws SQLException {
+        SQLException failure = null;
+        int enrollments = 0;
+        long transactionStart = TransactionMetrics.start();
+        try {
+            for (int i = from; i < to; i++) {
+                Query1_InsertVisitor.Params params = rows.get(i).params;
+                String idNumber = params.individual.idNumber;
+
+                params.individual.bind(individualStmt);
+                individualStmt.addBatch();
+
+                visitorStmt.setString(1, idNumber);
+                if (params.visitDate != null) {
+                    visitorStmt.setDate(2, params.visitDate);
+                } else {
+                    visitorStmt.setNull(2, java.sql.Types.DATE);
+                }
+                visitorStmt.setString(3, params.accessibilityNeeds);
+                visitorStmt.addBatch();
+
+                for (String programName : params.programNames) {
+                    enrollStmt.setString(1, idNumber);
+                    enrollStmt.setString(2, programName);
+                    enrollStmt.addBatch();
+                    enrollments++;
+                }
+            }
+
+            individualStmt.executeBatch();
+            visitorStmt.executeBatch();
+            if (enrollments > 0) {
+                enrollStmt.executeBatch();
+            }
+            connection.commit();
+            successCount += to - from;
+            enrollmentCount += enrollments;
+        } catch (SQLException e) {
+            failure = e;
+            individualStmt.clearBatch();
+            visitorStmt.clearBatch();
+            enrollStmt.clearBatch();
+            connection.rollback();
+        } finally {
+            TransactionMetrics.record(operation, transactionStart);
+        }
+
+        if (failure == null) {
+            return;
+        }
+        if (connection.isClosed()) {
+            throw failure;
+        }
+        if (to - from == 1) {
+            RosterRow<Query1_InsertVisitor.Params> row = rows.get(from);
+            errors.report(row.lineNumber, "Failed to import visitor '" + row.params.individual.idNumber + "': " +
+                          failure.getMessage());
+        } else {
+            // Retry each half on its own so the good rows still get in
+            int middle = (from + to) >>> 1;
+            insertChunk(rows, from, middle);
+            insertChunk(rows, middle, to);
+        }
+    }
+
+    /**
+     * Inserts the remaining visitors, closes the statements and restores auto-commit
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            try {
+                resources.close();
+            } finally {
+                connection.setAutoCommit(previousAutoCommit);
+            }
+        }
+    }
+}
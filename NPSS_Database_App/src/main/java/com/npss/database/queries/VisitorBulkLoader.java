@@ -0,0 +1,263 @@
+package com.npss.database.queries;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import com.microsoft.sqlserver.jdbc.SQLServerConnection;
+import com.npss.database.commands.TransactionMetrics;
+
+/**
+ * Loads visitors (Individual, Visitor and program enrollments) with the SQL Server bulk-copy
+ * API
+ *
+ * Visitors are collected in chunks of batchSize; each chunk is one bulk copy per table, in
+ * foreign key order, in one transaction. Constraints are checked during the copy, so the
+ * foreign keys stay trusted. A chunk rejected by the server is rolled back and re-inserted
+ * through VisitorBatchWriter, which isolates and reports the failing lines, like
+ * TeamBulkLoader.
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+class VisitorBulkLoader implements AutoCloseable {
+    private static final Column[] INDIVIDUAL_COLUMNS = {
+        new Column("id_number", Types.VARCHAR, 50), new Column("first_name", Types.VARCHAR, 100),
+        new Column("last_name", Types.VARCHAR, 100), new Column("gender", Types.CHAR, 1),
+        new Column("street", Types.VARCHAR, 200), new Column("city", Types.VARCHAR, 100),
+        new Column("state", Types.VARCHAR, 50), new Column("postal_code", Types.VARCHAR, 20),
+        new Column("date_of_birth", Types.DATE, 10), new Column("newsletter_status", Types.BIT, 1)
+    };
+    private static final Column[] VISITOR_COLUMNS = {
+        new Column("id_number", Types.VARCHAR, 50), new Column("visit_date", Types.DATE, 10),
+        new Column("accessibility_needs", Types.VARCHAR, 500)
+    };
+    private static final Column[] ENROLLMENT_COLUMNS = {
+        new Column("visitor_id_number", Types.VARCHAR, 50), new Column("program_name", Types.VARCHAR, 200)
+    };
+
+    private final Connection connection;
+    private final SQLServerConnection sqlConnection;
+    private final int batchSize;
+    private final SQLServerBulkCopyOptions options;
+    private final String operation;
+    private final ImportErrors errors;
+    private final List<RosterRow<Query1_InsertVisitor.Params>> pending;
+    private final boolean previousAutoCommit;
+    private int successCount = 0;
+    private int enrollmentCount = 0;
+
+    /**
+     * A destination column of a bulk copy
+     */
+    private static final class Column {
+        private final String name;
+        private final int type;
+        private final int precision;
+
+        private Column(String name, int type, int precision) {
+            this.name = name;
+            this.type = type;
+            this.precision = precision;
+        }
+    }
+
+    /**
+     * @param connection Connection to load on (a pooled connection is unwrapped); auto-commit
+     *                   is turned off until close() restores its previous value
+     * @param batchSize Number of visitors per chunk
+     * @param operation Operation name used for the transaction metrics
+     * @param errors Where failing rows are reported
+     * @throws SQLException if the connection is not a SQL Server connection
+     */
+    VisitorBulkLoader(Connection connection, int batchSize, String operation, ImportErrors errors) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.connection = connection;
+        this.sqlConnection = connection.unwrap(SQLServerConnection.class);
+        this.batchSize = batchSize;
+        this.operation = operation;
+        this.errors = errors;
+        this.pending = new ArrayList<>(batchSize);
+
+        options = new SQLServerBulkCopyOptions();
+        options.setBatchSize(batchSize);
+        options.setCheckConstraints(true);
+        // Empty visit_date / accessibility_needs are sent as NULL, like Query 1
+        options.setKeepNulls(true);
+
+        this.previousAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * Adds a visitor, loading the current chunk once it is full
+     *
+     * @throws SQLException if the connection fails (failing rows are reported, not thrown)
+     */
+    void add(RosterRow<Query1_InsertVisitor.Params> row) throws SQLException {
+        pending.add(row);
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Loads and commits the visitors added since the last chunk
+     *
+     * @throws SQLException if the connection fails
+     */
+    void flush() throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Object[]> individuals = new ArrayList<>(pending.size());
+        List<Object[]> visitors = new ArrayList<>(pending.size());
+        List<Object[]> enrollments = new ArrayList<>();
+        for (RosterRow<Query1_InsertVisitor.Params> row : pending) {
+            IndividualDetails individual = row.params.individual;
+            individuals.add(new Object[] {individual.idNumber, individual.firstName, individual.lastName,
+                                          individual.gender, individual.street, individual.city, individual.state,
+                                          individual.postalCode, individual.dateOfBirth, individual.newsletterStatus});
+            visitors.add(new Object[] {individual.idNumber, row.params.visitDate, row.params.accessibilityNeeds});
+            for (String programName : row.params.programNames) {
+                enrollments.add(new Object[] {individual.idNumber, programName});
+            }
+        }
+
+        SQLException failure = null;
+        long transactionStart = TransactionMetrics.start();
+        try {
+            copy("Individual", INDIVIDUAL_COLUMNS, individuals);
+            copy("Visitor", VISITOR_COLUMNS, visitors);
+            if (!enrollments.isEmpty()) {
+                copy("Visitor_enrolls_program", ENROLLMENT_COLUMNS, enrollments);
+            }
+            connection.commit();
+            successCount += pending.size();
+            enrollmentCount += enrollments.size();
+        } catch (SQLException e) {
+            failure = e;
+            connection.rollback();
+        } finally {
+            TransactionMetrics.record(operation, transactionStart);
+        }
+
+        if (failure != null) {
+            if (connection.isClosed()) {
+                throw failure;
+            }
+            System.err.println("Lines " + pending.get(0).lineNumber + "-" + pending.get(pending.size() - 1).lineNumber +
+                               ": Bulk copy failed (" + failure.getMessage() + "). Retrying these rows with batched inserts...");
+            retry(pending);
+        }
+        pending.clear();
+    }
+
+    int getSuccessCount() {
+        return successCount;
+    }
+
+    int getEnrollmentCount() {
+        return enrollmentCount;
+    }
+
+    private void copy(String table, Column[] columns, List<Object[]> rows) throws SQLException {
+        try (SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy(sqlConnection)) {
+            bulkCopy.setDestinationTableName(table);
+            bulkCopy.setBulkCopyOptions(options);
+            for (int i = 0; i < columns.length; i++) {
+                bulkCopy.addColumnMapping(i + 1, columns[i].name);
+            }
+            bulkCopy.writeToServer(new RowsBulkData(columns, rows));
+        }
+    }
+
+    /**
+     * Re-inserts a rejected chunk through JDBC batches to isolate the bad rows
+     */
+    private void retry(List<RosterRow<Query1_InsertVisitor.Params>> rows) throws SQLException {
+        try (VisitorBatchWriter writer = new VisitorBatchWriter(connection, batchSize, operation, errors)) {
+            for (RosterRow<Query1_InsertVisitor.Params> row : rows) {
+                writer.add(row);
+            }
+            writer.flush();
+            successCount += writer.getSuccessCount();
+            enrollmentCount += writer.getEnrollmentCount();
+        }
+    }
+
+    /**
+     * Loads the remaining visitors and restores auto-commit
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            connection.setAutoCommit(previousAutoCommit);
+        }
+    }
+
+    /**
+     * Bulk-copy source over the rows of one table of a chunk
+     */
+    private static final class RowsBulkData implements ISQLServerBulkData {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Column[] columns;
+        private final transient List<Object[]> rows;
+        private int position = -1;
+
+        private RowsBulkData(Column[] columns, List<Object[]> rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean next() {
+            return ++position < rows.size();
+        }
+
+        @Override
+        public Object[] getRowData() {
+            return rows.get(position);
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            Set<Integer> ordinals = new LinkedHashSet<>();
+            for (int i = 1; i <= columns.length; i++) {
+                ordinals.add(i);
+            }
+            return ordinals;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column - 1].name;
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            return columns[column - 1].type;
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            return columns[column - 1].precision;
+        }
+
+        @Override
+        public int getScale(int column) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.npss.database.queries;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import javax.sql.DataSource;
+import com.npss.database.commands.Command;
+import com.npss.database.commands.OperationArgs;
+
+/**
+ * Visitor Import: Register the visitors of a booking-system file, with their program
+ * enrollments, until the file is empty
+ *
+ * The file is CSV or JSON lines (see RosterReader); every visitor is validated like an
+ * insertVisitor operation (Query 1). The program names are checked against the Program
+ * names, loaded once (see KeySet): visitors with an unknown program are not sent to the
+ * server and are written to a rejected-row file (&lt;file&gt;.rejected.csv by default) with
+ * the unknown names.
+ *
+ * Modes:
+ * - batch: multi-table JDBC batches committed once per chunk (see VisitorBatchWriter)
+ * - bulk: one SQLServerBulkCopy per table and chunk (see VisitorBulkLoader)
+ * - auto: bulk for files of at least bulkThresholdKb, batch for smaller ones, where the
+ *   round trips of the bulk copies would cost more than they save
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class VisitorImportService implements Command<VisitorImportService.Params> {
+
+    public static final List<String> MODES = Arrays.asList("auto", "batch", "bulk");
+
+    // Files of at least this size are bulk copied in auto mode
+    public static final int DEFAULT_BULK_THRESHOLD_KB = 1024;
+
+    /**
+     * Parameters of the visitor import
+     * format is "csv" or "json", by default from the file extension (.json and .jsonl are JSON);
+     * rejectedFile is where visitors with unknown programs go (default &lt;file&gt;.rejected.csv)
+     */
+    public static class Params {
+        public String fileName;
+        public String format;
+        public String mode = "auto";
+        public int batchSize = 0;   // 0 = default of the mode
+        public int bulkThresholdKb = DEFAULT_BULK_THRESHOLD_KB;
+        public String rejectedFile;
+    }
+
+    @Override
+    public String getName() {
+        return "importVisitors";
+    }
+
+    /**
+     * Prompts for the input file name and the import mode
+     */
+    @Override
+    public Params readParams(Scanner scanner, DataSource dataSource) {
+        System.out.println("\n[Import] Register the visitors of a booking-system file until the file is empty");
+        System.out.print("Please enter the input file name (CSV or JSON lines): ");
+
+        Params params = new Params();
+        params.fileName = scanner.nextLine().trim();
+        params.format = defaultFormat(params.fileName);
+
+        System.out.print("Import mode - auto, batch or bulk (press Enter for auto): ");
+        String mode = scanner.nextLine().trim().toLowerCase();
+        if (!mode.isEmpty()) {
+            params.mode = mode;
+        }
+        validate(params);
+        return params;
+    }
+
+    /**
+     * Fields: file, optional format ("csv" or "json", default from the file extension), mode
+     * ("auto", "batch" or "bulk", default "auto"), batch_size, bulk_threshold_kb (default 1024)
+     * and rejected_file (default &lt;file&gt;.rejected.csv)
+     */
+    @Override
+    public Params parseParams(OperationArgs args) {
+        Params params = new Params();
+        params.fileName = args.getString("file");
+        params.format = args.has("format") ? args.getString("format").toLowerCase() : defaultFormat(params.fileName);
+        if (args.has("mode")) {
+            params.mode = args.getString("mode").toLowerCase();
+        }
+        params.batchSize = args.getInt("batch_size", 0);
+        params.bulkThresholdKb = args.getInt("bulk_threshold_kb", DEFAULT_BULK_THRESHOLD_KB);
+        params.rejectedFile = args.getOptionalString("rejected_file");
+        validate(params);
+        return params;
+    }
+
+    private static void validate(Params params) {
+        if (params.fileName.isEmpty()) {
+            throw new IllegalArgumentException("File name cannot be empty.");
+        }
+        if (!RangerImportService.FORMATS.contains(params.format)) {
+            throw new IllegalArgumentException("Invalid format '" + params.format + "'. Please use one of " +
+                                               RangerImportService.FORMATS + ".");
+        }
+        if (!MODES.contains(params.mode)) {
+            throw new IllegalArgumentException("Invalid import mode '" + params.mode + "'. Please use one of " + MODES + ".");
+        }
+        if (params.batchSize < 0) {
+            throw new IllegalArgumentException("Batch size cannot be negative (0 uses the default).");
+        }
+        if (params.bulkThresholdKb < 0) {
+            throw new IllegalArgumentException("Bulk threshold cannot be negative.");
+        }
+    }
+
+    private static String defaultFormat(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".json") || name.endsWith(".jsonl") ? "json" : "csv";
+    }
+
+    /**
+     * Executes the visitor import
+     *
+     * @throws SQLException if a database error occurs
+     */
+    @Override
+    public void run(Connection connection, Params params) throws SQLException {
+        Path filePath = ExportService.findFile(params.fileName);
+
+        if (filePath == null || !Files.exists(filePath)) {
+            System.err.println("Error: File '" + params.fileName + "' not found.");
+            System.err.println("Please ensure the file exists in the current directory or project root.");
+            return;
+        }
+
+        System.out.println("Reading from file: " + filePath.toAbsolutePath());
+
+        long start = System.nanoTime();
+        int totalLines;
+        int rejectedCount = 0;
+        ImportErrors errors = ImportErrors.immediate();
+        Path rejectedPath = params.rejectedFile != null ? ExportService.findFile(params.rejectedFile)
+                                                        : Paths.get(filePath + ".rejected.csv");
+        CsvChannelWriter rejected = null;
+        VisitorBatchWriter batchWriter = null;
+        VisitorBulkLoader bulkLoader = null;
+
+        try (RosterReader<Query1_InsertVisitor.Params> reader =
+                 new RosterReader<>(filePath, params.format.equals("json"), RosterReader.VISITOR_COLUMNS,
+                                    new Query1_InsertVisitor(), "visitor", errors);
+             KeySet programs = KeySet.load(connection, "Program", "program_name", TeamKeyScreen.EXACT_KEY_LIMIT)) {
+
+            String mode = params.mode;
+            if (mode.equals("auto")) {
+                mode = Files.size(filePath) >= params.bulkThresholdKb * 1024L ? "bulk" : "batch";
+            }
+            int batchSize = params.batchSize > 0 ? params.batchSize
+                          : mode.equals("bulk") ? ImportService.DEFAULT_BULK_BATCH_SIZE : ImportService.DEFAULT_BATCH_SIZE;
+            System.out.println((mode.equals("bulk") ? "Bulk" : "Batch") + " mode: " + batchSize + " visitors per chunk (" +
+                               programs.getLoadedCount() + " program names loaded)");
+
+            try {
+                if (mode.equals("bulk")) {
+                    bulkLoader = new VisitorBulkLoader(connection, batchSize, getName(), errors);
+                } else {
+                    batchWriter = new VisitorBatchWriter(connection, batchSize, getName(), errors);
+                }
+
+                RosterRow<Query1_InsertVisitor.Params> row;
+                while ((row = reader.next()) != null) {
+                    // Program names are checked here, so only visitors with known programs reach the server
+                    List<String> unknown = new ArrayList<>();
+                    for (String programName : row.params.programNames) {
+                        if (!programs.contains(programName)) {
+                            unknown.add(programName);
+                        }
+                    }
+                    if (!unknown.isEmpty()) {
+                        if (rejected == null) {
+                            rejected = CsvChannelWriter.create(rejectedPath, CsvChannelWriter.DEFAULT_BUFFER_SIZE);
+                            rejected.row("line_number", "id_number", "program_name", "reason");
+                        }
+                        for (String programName : unknown) {
+                            rejected.row(String.valueOf(row.lineNumber), row.params.individual.idNumber, programName,
+                                         "Program does not exist");
+                        }
+                        errors.report(row.lineNumber, "Unknown program(s) " + unknown + " for visitor '" +
+                                      row.params.individual.idNumber + "'. Skipping.");
+                        rejectedCount++;
+                        continue;
+                    }
+
+                    if (bulkLoader != null) {
+                        bulkLoader.add(row);
+                    } else {
+                        batchWriter.add(row);
+                    }
+                }
+            } finally {
+                // The rejected-row file is closed even if the last chunk fails
+                try {
+                    if (bulkLoader != null) {
+                        bulkLoader.close();
+                    }
+                    if (batchWriter != null) {
+                        batchWriter.close();
+                    }
+                } finally {
+                    if (rejected != null) {
+                        rejected.close();
+                    }
+                }
+            }
+            totalLines = reader.getTotalLines();
+
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            throw new SQLException("File I/O error: " + e.getMessage(), e);
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            if (e.getSQLState() != null) {
+                System.err.println("SQL State: " + e.getSQLState());
+            }
+            throw e;
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        int successCount = bulkLoader != null ? bulkLoader.getSuccessCount() : batchWriter.getSuccessCount();
+        int enrollmentCount = bulkLoader != null ? bulkLoader.getEnrollmentCount() : batchWriter.getEnrollmentCount();
+
+        // Display summary result
+        System.out.println("Total lines processed: " + totalLines);
+        System.out.println("Successfully imported: " + successCount + " (enrollments: " + enrollmentCount + ")");
+        System.out.println("Unknown programs: " + rejectedCount +
+                           (rejectedCount > 0 ? " (written to " + rejectedPath + ")" : ""));
+        System.out.println("Errors: " + errors.getCount());
+        System.out.println(String.format("Elapsed: %.2f s (%.1f rows/sec)", seconds,
+            seconds > 0 ? successCount / seconds : 0.0));
+
+        if (successCount > 0) {
+            System.out.println("\nImport completed successfully!");
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.npss.database.queries;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import com.npss.database.commands.TransactionMetrics;
+
+/**
+ * Chunked purge of expired visitors (Query 15, mode "chunked")
+ *
+ * Deletes at most chunkSize visitors per statement (DELETE TOP (n) ... OUTPUT
+ * deleted.id_number), each chunk its own short transaction, with a pause between chunks.
+ * Chunks stay below SQL Server's lock escalation threshold (5000 locks; Query 15 caps the
+ * chunk size at its MAX_CHUNK_SIZE), so the purge only ever locks the rows it deletes, and
+ * the log can be truncated between chunks. The purge
+ * runs at low deadlock priority with a lock timeout: when it would have to wait for (and so
+ * queue in front of) another session's locks, the chunk gives up and is retried after the
+ * pause. Interactive sessions are never made to wait for it.
+ *
+ * A purge can wait for a start time and stop at the end of a time window (e.g. 22:00 to
+ * 06:00), and can be cancelled at any time; a cancelled purge stops after its current chunk.
+ * In the menu it runs on a background thread that borrows a pooled connection per chunk
+ * (at most one background purge at a time).
+ *
+ * @author Astra Nguyen
+ * @version 1.0
+ */
+public class VisitorPurge {
+    // Lock waits longer than this make the chunk yield (error 1222) and retry after the pause
+    private static final int LOCK_TIMEOUT_MILLIS = 2000;
+    private static final int LOCK_TIMEOUT_ERROR = 1222;
+    private static final int DEADLOCK_ERROR = 1205;
+    // How long quitting waits for the current chunk of a cancelled purge
+    private static final long STOP_WAIT_MILLIS = 30000;
+
+    // Visitors with an expired pass and no program enrollment, NULL-safe unlike NOT IN
+    static final String ELIGIBLE =
+        "EXISTS (SELECT 1 FROM Visitor_holds_park_passes vhpp " +
+        "        INNER JOIN Park_passes pp ON vhpp.pass_id = pp.pass_id " +
+        "        WHERE vhpp.visitor_id_number = Visitor.id_number AND pp.expiration_date < GETDATE()) " +
+        "AND NOT EXISTS (SELECT 1 FROM Visitor_enrolls_program vep " +
+        "                WHERE vep.visitor_id_number = Visitor.id_number)";
+
+    private static final String CHUNK_SQL =
+        "DELETE TOP (?) FROM Visitor " +
+        "OUTPUT deleted.id_number " +
+        "WHERE " + ELIGIBLE;
+
+    private static VisitorPurge background;
+
+    private final Query15_DeleteExpiredVisitors.Params params;
+    private final Connection connection;
+    private final DataSource dataSource;
+    private final boolean quiet;
+    // Counted down by cancel(); the pauses wait on it so that a cancel ends them at once
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile String state = "starting";
+    private volatile long deleted = 0;
+    private volatile int chunks = 0;
+    private volatile String lastDeleted;
+    private volatile long runningSince;
+
+    /**
+     * @param params The chunk size, pause, window and audit file
+     * @param connection Connection to run every chunk on, or null to borrow one per chunk
+     * @param dataSource Pool to borrow from when connection is null
+     * @param quiet Whether to only print the start and end of the purge, not every chunk
+     */
+    private VisitorPurge(Query15_DeleteExpiredVisitors.Params params, Connection connection,
+                         DataSource dataSource, boolean quiet) {
+        this.params = params;
+        this.connection = connection;
+        this.dataSource = dataSource;
+        this.quiet = quiet;
+    }
+
+    /**
+     * Runs a purge on the caller's thread and connection, printing every chunk
+     * Interrupting the JVM (Ctrl+C) cancels it and waits for the current chunk to finish.
+     *
+     * @return Number of visitors deleted
+     * @throws SQLException if a chunk fails for another reason than a lock timeout or deadlock
+     * @throws IOException if the audit file cannot be written
+     */
+    static long runForeground(Connection connection, Query15_DeleteExpiredVisitors.Params params)
+            throws SQLException, IOException {
+        VisitorPurge purge = new VisitorPurge(params, connection, null, false);
+        Thread hook = new Thread(purge::stop, "npss-visitor-purge-stop");
+        Runtime.getRuntime().addShutdownHook(hook);
+        try {
+            return purge.run();
+        } finally {
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException e) {
+                // The JVM is shutting down; the hook is waiting for this purge
+            }
+        }
+    }
+
+    /**
+     * Starts a purge on a background thread, which borrows a pooled connection per chunk
+     *
+     * @throws IllegalArgumentException if a background purge is already running
+     */
+    public static synchronized void startBackground(DataSource dataSource, Query15_DeleteExpiredVisitors.Params params) {
+        if (background != null) {
+            throw new IllegalArgumentException("A purge is already running: " + background.status());
+        }
+        VisitorPurge purge = new VisitorPurge(params, null, dataSource, true);
+        Thread thread = new Thread(() -> {
+            try {
+                purge.run();
+            } catch (SQLException e) {
+                System.err.println("\nVisitor purge stopped after " + purge.deleted + " deletion(s). Database error: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("\nVisitor purge stopped after " + purge.deleted + " deletion(s). Error writing to file: " + e.getMessage());
+            } finally {
+                synchronized (VisitorPurge.class) {
+                    background = null;
+                }
+            }
+        }, "npss-visitor-purge");
+        thread.setDaemon(true);
+        background = purge;
+        thread.start();
+    }
+
+    /**
+     * @return The running (or waiting) background purge, or null if there is none
+     */
+    public static synchronized VisitorPurge getBackground() {
+        return background;
+    }
+
+    /**
+     * Cancels the background purge, if any, and waits for its current chunk to finish
+     */
+    public static void stopBackground() {
+        VisitorPurge purge = getBackground();
+        if (purge != null) {
+            purge.stop();
+        }
+    }
+
+    /**
+     * Asks the purge to stop after its current chunk (or at once if it is waiting or pausing)
+     */
+    public void cancel() {
+        cancelled.countDown();
+    }
+
+    /**
+     * @return What the purge is doing and how far it got
+     */
+    public String status() {
+        String status = "Visitor purge " + state + ": " + deleted + " visitor(s) deleted in " + chunks + " chunk(s)";
+        if (deleted > 0) {
+            double seconds = (System.nanoTime() - runningSince) / 1_000_000_000.0;
+            status += String.format(" (%.0f/s, last %s)", deleted / Math.max(seconds, 0.001), lastDeleted);
+        }
+        return status;
+    }
+
+    private void stop() {
+        cancel();
+        try {
+            finished.await(STOP_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isCancelled() {
+        return cancelled.getCount() == 0;
+    }
+
+    /**
+     * Waits for the window, then deletes chunks until none is left, the window ends or the
+     * purge is cancelled
+     */
+    private long run() throws SQLException, IOException {
+        try (BufferedWriter audit = params.fileName == null ? null
+                 : Files.newBufferedWriter(ExportService.findFile(params.fileName), StandardCharsets.UTF_8)) {
+            LocalDateTime start = LocalDateTime.now();
+            if (params.startAt != null && !inWindow(start.toLocalTime())) {
+                start = next(start, params.startAt);
+                state = "waiting until " + start;
+                System.out.println("Visitor purge scheduled for " + start + ".");
+                if (await(start)) {
+                    System.out.println("Visitor purge cancelled before it started.");
+                    return 0;
+                }
+            }
+            LocalDateTime end = params.stopAt == null ? null : next(LocalDateTime.now(), params.stopAt);
+
+            System.out.println("Visitor purge started: chunks of " + params.chunkSize + ", " +
+                               params.pauseMillis + " ms apart" + (end == null ? "" : ", until " + end) + ".");
+            runningSince = System.nanoTime();
+            String outcome = "finished";
+            while (true) {
+                if (isCancelled()) {
+                    outcome = "cancelled";
+                    break;
+                }
+                if (end != null && !LocalDateTime.now().isBefore(end)) {
+                    outcome = "stopped at the end of its window";
+                    break;
+                }
+                state = "running";
+                int rows = deleteChunk(audit);
+                if (rows == 0) {
+                    break;
+                }
+                if (rows > 0 && !quiet) {
+                    System.out.println(status());
+                }
+                state = "pausing";
+                if (cancelled.await(params.pauseMillis, TimeUnit.MILLISECONDS)) {
+                    outcome = "cancelled";
+                    break;
+                }
+            }
+            state = outcome;
+            System.out.println((quiet ? "\n" : "") + status() + ".");
+            return deleted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = "interrupted";
+            return deleted;
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Deletes one chunk in its own transaction and records the deleted IDs
+     * The IDs are written to the audit file only once the whole chunk has been read, so a chunk
+     * that yields (and is rolled back) leaves nothing in the file
+     *
+     * @return Number of visitors deleted, or -1 if the chunk yielded to other sessions
+     */
+    private int deleteChunk(BufferedWriter audit) throws SQLException, IOException {
+        Connection chunkConnection = connection != null ? connection : dataSource.getConnection();
+        try (Statement settings = chunkConnection.createStatement()) {
+            settings.execute("SET DEADLOCK_PRIORITY LOW; SET LOCK_TIMEOUT " + LOCK_TIMEOUT_MILLIS);
+            long transactionStart = TransactionMetrics.start();
+            List<String> ids = new ArrayList<>(params.chunkSize);
+            try (PreparedStatement pstmt = chunkConnection.prepareStatement(CHUNK_SQL)) {
+                pstmt.setInt(1, params.chunkSize);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getString(1));
+                    }
+                }
+            } catch (SQLException e) {
+                if (e.getErrorCode() != LOCK_TIMEOUT_ERROR && e.getErrorCode() != DEADLOCK_ERROR) {
+                    throw e;
+                }
+                if (!quiet) {
+                    System.out.println("Chunk yielded to other sessions (" + e.getMessage() + "); retrying after the pause.");
+                }
+                return -1;
+            } finally {
+                TransactionMetrics.record("deleteExpiredVisitors", transactionStart);
+                // The connection goes back to the pool (or the caller) with the default settings
+                settings.execute("SET DEADLOCK_PRIORITY NORMAL; SET LOCK_TIMEOUT -1");
+            }
+            int rows = ids.size();
+            if (audit != null) {
+                for (String id : ids) {
+                    audit.write(id);
+                    audit.newLine();
+                }
+                audit.flush();
+            }
+            if (rows > 0) {
+                lastDeleted = ids.get(rows - 1);
+                deleted += rows;
+                chunks++;
+            }
+            return rows;
+        } finally {
+            if (connection == null) {
+                chunkConnection.close();
+            }
+        }
+    }
+
+    /**
+     * @return Whether a time is inside the window from startAt to stopAt (which may span
+     *         midnight); without stopAt, the purge always waits for the next startAt
+     */
+    private boolean inWindow(LocalTime time) {
+        if (params.stopAt == null) {
+            return false;
+        }
+        if (params.startAt.isBefore(params.stopAt)) {
+            return !time.isBefore(params.startAt) && time.isBefore(params.stopAt);
+        }
+        return !time.isBefore(params.startAt) || time.isBefore(params.stopAt);
+    }
+
+    /**
+     * @return The next time of day after a moment
+     */
+    private static LocalDateTime next(LocalDateTime after, LocalTime time) {
+        LocalDateTime next = after.toLocalDate().atTime(time);
+        return next.isAfter(after) ? next : next.plusDays(1);
+    }
+
+    /**
+     * Waits until a moment
+     *
+     * @return Whether the purge was cancelled while waiting
+     */
+    private boolean await(LocalDateTime moment) throws InterruptedException {
+        long millis;
+        while ((millis = Duration.between(LocalDateTime.now(), moment).toMillis()) > 0) {
+            if (cancelled.await(millis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return isCancelled();
+    }
+}
@@ -321,6 +321,20 @@ BEGIN
         
         SET @rows_affected = @rows_affected + @@ROWCOUNT;
         
+        -- Keep the monthly donation rollup up to date, if it is enabled
+        IF OBJECT_ID('Donation_monthly_rollup', 'U') IS NOT NULL
+        BEGIN
+            DECLARE @month_start DATE = DATEFROMPARTS(YEAR(@donation_date), MONTH(@donation_date), 1);
+            
+            UPDATE Donation_monthly_rollup WITH (UPDLOCK, SERIALIZABLE)
+            SET total_amount = total_amount + @amount, donation_count = donation_count + 1
+            WHERE month_start = @month_start AND donor_id_number = @donor_id_number;
+            
+            IF @@ROWCOUNT = 0
+                INSERT INTO Donation_monthly_rollup(month_start, donor_id_number, total_amount, donation_count)
+                VALUES (@month_start, @donor_id_number, @amount, 1);
+        END
+        
         -- Insert payment method
         IF @payment_method = 'check'
         BEGIN
@@ -743,6 +757,10 @@ BEGIN
             RETURN;
         END
         
+        -- Half-open range instead of YEAR()/MONTH(), so IX_donation_date can be seeked
+        DECLARE @from DATE = DATEFROMPARTS(@year, @month, 1);
+        DECLARE @to DATE = DATEADD(MONTH, 1, @from);
+        
         SELECT 
             dr.id_number AS donor_id,
             SUM(d.amount) AS total_amount,
@@ -750,8 +768,8 @@ BEGIN
             COUNT(d.donation_id) AS donation_count
         FROM Donation d
         INNER JOIN Donor dr ON d.donor_id_number = dr.id_number
-        WHERE YEAR(d.date) = @year
-          AND MONTH(d.date) = @month
+        WHERE d.date >= @from
+          AND d.date < @to
           AND (dr.preference IS NULL OR dr.preference = 'Anonymous')
         GROUP BY dr.id_number
         ORDER BY SUM(d.amount) DESC;
@@ -954,3 +972,351 @@ BEGIN
 END;
 GO
 
+
+-- Change tracking for the incremental mailing-list export
+-- (ExportService mode "incremental" reads CHANGETABLE(CHANGES Individual, ...))
+IF NOT EXISTS (SELECT 1 FROM sys.change_tracking_databases WHERE database_id = DB_ID())
+    ALTER DATABASE CURRENT SET CHANGE_TRACKING = ON (CHANGE_RETENTION = 14 DAYS, AUTO_CLEANUP = ON);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.change_tracking_tables WHERE object_id = OBJECT_ID('Individual'))
+    ALTER TABLE Individual ENABLE CHANGE_TRACKING;
+GO
+
+
+-- Index for the keyset pagination of Query 13 (retrieveAllIndividuals with page_size):
+-- each page is one seek on (last_name, first_name, id_number)
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_individual_last_name_first_name'
+               AND object_id = OBJECT_ID('Individual'))
+    CREATE NONCLUSTERED INDEX IX_individual_last_name_first_name
+        ON Individual(last_name, first_name, id_number) INCLUDE (newsletter_status);
+GO
+
+
+-- Index for the month range of Query 11 (d.date >= @from AND d.date < @to) and the date
+-- range scan of donationAnalytics (which also reads campaign_name). An index created before
+-- campaign_name was included is recreated with it.
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'IX_donation_date'
+               AND object_id = OBJECT_ID('Donation'))
+    CREATE NONCLUSTERED INDEX IX_donation_date
+        ON Donation(date) INCLUDE (donor_id_number, amount, campaign_name);
+ELSE IF NOT EXISTS (SELECT 1 FROM sys.indexes i
+                    JOIN sys.index_columns ic ON ic.object_id = i.object_id AND ic.index_id = i.index_id
+                    WHERE i.name = 'IX_donation_date' AND i.object_id = OBJECT_ID('Donation')
+                      AND ic.is_included_column = 1
+                      AND ic.column_id = COLUMNPROPERTY(OBJECT_ID('Donation'), 'campaign_name', 'ColumnId'))
+    CREATE NONCLUSTERED INDEX IX_donation_date
+        ON Donation(date) INCLUDE (donor_id_number, amount, campaign_name)
+        WITH (DROP_EXISTING = ON);
+GO
+
+
+-- Monthly donation rollup (optional): total and number of donations per donor and month,
+-- clustered by month so that Query 11 with source "rollup" reads one row per donor of the month.
+-- Query 4 and sp_InsertDonation maintain it once it exists. It is filled from Donation when
+-- it is created, in one transaction that holds a shared lock on Donation until the table is
+-- complete, so no donation is missed or counted twice; rebuildDonationRollup refills it.
+IF OBJECT_ID('Donation_monthly_rollup', 'U') IS NULL
+BEGIN
+    BEGIN TRANSACTION;
+
+    CREATE TABLE Donation_monthly_rollup (
+        month_start DATE NOT NULL,
+        donor_id_number VARCHAR(50) NOT NULL REFERENCES Donor(id_number),
+        total_amount DECIMAL(18, 2) NOT NULL,
+        donation_count INT NOT NULL,
+        CONSTRAINT PK_donation_monthly_rollup PRIMARY KEY (month_start, donor_id_number)
+    );
+
+    INSERT INTO Donation_monthly_rollup(month_start, donor_id_number, total_amount, donation_count)
+    SELECT DATEFROMPARTS(YEAR(d.date), MONTH(d.date), 1), d.donor_id_number, SUM(d.amount), COUNT(*)
+    FROM Donation d WITH (TABLOCK, HOLDLOCK)
+    GROUP BY DATEFROMPARTS(YEAR(d.date), MONTH(d.date), 1), d.donor_id_number;
+
+    COMMIT TRANSACTION;
+END
+GO
+
+
+-- Table type for the certifications of the ranger import (importRangers): the certifications
+-- of a whole chunk of rangers are sent as one table-valued parameter
+IF TYPE_ID('dbo.RangerCertificationList') IS NULL
+    CREATE TYPE dbo.RangerCertificationList AS TABLE (
+        id_number VARCHAR(50) NOT NULL,
+        certification VARCHAR(200) NOT NULL
+    );
+GO
+
+
+-- Table types of the table-valued parameter versions of the procedures of Queries 1, 2 and 5
+-- (execution "tvp"): the program names, certifications and researcher teams are sent as a
+-- table and inserted by one set-based statement, instead of a comma-separated string split
+-- in a WHILE/CHARINDEX loop with one INSERT per item
+IF TYPE_ID('dbo.ProgramNameList') IS NULL
+    CREATE TYPE dbo.ProgramNameList AS TABLE (
+        program_name VARCHAR(200) NOT NULL
+    );
+GO
+
+IF TYPE_ID('dbo.CertificationList') IS NULL
+    CREATE TYPE dbo.CertificationList AS TABLE (
+        certification VARCHAR(200) NOT NULL
+    );
+GO
+
+IF TYPE_ID('dbo.ResearcherTeamList') IS NULL
+    CREATE TYPE dbo.ResearcherTeamList AS TABLE (
+        team_id VARCHAR(50) NOT NULL,
+        report_date DATE NULL,
+        summary VARCHAR(MAX) NULL
+    );
+GO
+
+-- QUERY 1 (table-valued parameter): Insert a new visitor and associate with park programs
+CREATE OR ALTER PROCEDURE sp_InsertVisitorTvp
+    @id_number VARCHAR(50),
+    @first_name VARCHAR(100),
+    @last_name VARCHAR(100),
+    @gender CHAR(1),
+    @street VARCHAR(200),
+    @city VARCHAR(100),
+    @state VARCHAR(50),
+    @postal_code VARCHAR(20),
+    @date_of_birth DATE,
+    @newsletter_status BIT,
+    @visit_date DATE = NULL,
+    @accessibility_needs VARCHAR(500) = NULL,
+    @program_names dbo.ProgramNameList READONLY,
+    @rows_affected INT OUTPUT,
+    @error_message NVARCHAR(500) OUTPUT
+AS
+BEGIN
+    SET NOCOUNT ON;
+    SET @rows_affected = 0;
+    SET @error_message = NULL;
+    
+    BEGIN TRY
+        BEGIN TRANSACTION;
+        
+        -- Validate gender
+        IF @gender NOT IN ('M', 'F', 'O')
+        BEGIN
+            SET @error_message = 'Invalid gender. Must be M, F, or O.';
+            ROLLBACK TRANSACTION;
+            RETURN;
+        END
+        
+        INSERT INTO Individual(id_number, first_name, last_name, gender, street, city, state, 
+                               postal_code, date_of_birth, newsletter_status)
+        VALUES (@id_number, @first_name, @last_name, @gender, @street, @city, @state, 
+                @postal_code, @date_of_birth, @newsletter_status);
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        INSERT INTO Visitor(id_number, visit_date, accessibility_needs)
+        VALUES (@id_number, @visit_date, @accessibility_needs);
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        -- Associate with park programs, all in one statement
+        INSERT INTO Visitor_enrolls_program(visitor_id_number, program_name)
+        SELECT @id_number, LTRIM(RTRIM(program_name))
+        FROM @program_names
+        WHERE LEN(program_name) > 0;
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        COMMIT TRANSACTION;
+        
+    END TRY
+    BEGIN CATCH
+        IF @@TRANCOUNT > 0
+            ROLLBACK TRANSACTION;
+        
+        SET @error_message = ERROR_MESSAGE();
+        SET @rows_affected = 0;
+    END CATCH
+END;
+GO
+
+-- QUERY 2 (table-valued parameter): Insert a new ranger and assign to a team
+CREATE OR ALTER PROCEDURE sp_InsertRangerTvp
+    @id_number VARCHAR(50),
+    @first_name VARCHAR(100),
+    @last_name VARCHAR(100),
+    @gender CHAR(1),
+    @street VARCHAR(200),
+    @city VARCHAR(100),
+    @state VARCHAR(50),
+    @postal_code VARCHAR(20),
+    @date_of_birth DATE,
+    @newsletter_status BIT,
+    @team_id VARCHAR(50),
+    @start_date DATE,
+    @status VARCHAR(50),
+    @certifications dbo.CertificationList READONLY,
+    @rows_affected INT OUTPUT,
+    @error_message NVARCHAR(500) OUTPUT
+AS
+BEGIN
+    SET NOCOUNT ON;
+    SET @rows_affected = 0;
+    SET @error_message = NULL;
+    
+    BEGIN TRY
+        BEGIN TRANSACTION;
+        
+        -- Validate gender
+        IF @gender NOT IN ('M', 'F', 'O')
+        BEGIN
+            SET @error_message = 'Invalid gender. Must be M, F, or O.';
+            ROLLBACK TRANSACTION;
+            RETURN;
+        END
+        
+        -- Validate status
+        IF @status NOT IN ('active', 'inactive', 'on_leave', 'terminated')
+        BEGIN
+            SET @error_message = 'Invalid status. Must be active, inactive, on_leave, or terminated.';
+            ROLLBACK TRANSACTION;
+            RETURN;
+        END
+        
+        -- Check if team exists
+        IF NOT EXISTS (SELECT 1 FROM Ranger_team WHERE team_id = @team_id)
+        BEGIN
+            SET @error_message = 'Team ' + @team_id + ' does not exist.';
+            ROLLBACK TRANSACTION;
+            RETURN;
+        END
+        
+        INSERT INTO Individual(id_number, first_name, last_name, gender, street, city, state, 
+                               postal_code, date_of_birth, newsletter_status)
+        VALUES (@id_number, @first_name, @last_name, @gender, @street, @city, @state, 
+                @postal_code, @date_of_birth, @newsletter_status);
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        INSERT INTO Ranger(id_number)
+        VALUES (@id_number);
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        INSERT INTO Ranger_assigned_ranger_team(ranger_id_number, team_id, start_date, status)
+        VALUES (@id_number, @team_id, @start_date, @status);
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        -- Certifications, all in one statement
+        INSERT INTO Ranger_certifications(id_number, certification)
+        SELECT @id_number, LTRIM(RTRIM(certification))
+        FROM @certifications
+        WHERE LEN(certification) > 0;
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        COMMIT TRANSACTION;
+        
+    END TRY
+    BEGIN CATCH
+        IF @@TRANCOUNT > 0
+            ROLLBACK TRANSACTION;
+        
+        SET @error_message = ERROR_MESSAGE();
+        SET @rows_affected = 0;
+    END CATCH
+END;
+GO
+
+-- QUERY 5 (table-valued parameter): Insert a new researcher and associate with ranger teams
+-- (a NULL report_date is today, an empty summary is NULL, like sp_InsertResearcher)
+CREATE OR ALTER PROCEDURE sp_InsertResearcherTvp
+    @id_number VARCHAR(50),
+    @first_name VARCHAR(100),
+    @last_name VARCHAR(100),
+    @gender CHAR(1),
+    @street VARCHAR(200),
+    @city VARCHAR(100),
+    @state VARCHAR(50),
+    @postal_code VARCHAR(20),
+    @date_of_birth DATE,
+    @newsletter_status BIT,
+    @research_field VARCHAR(200),
+    @hire_date DATE,
+    @salary DECIMAL(18, 2),
+    @teams dbo.ResearcherTeamList READONLY,
+    @rows_affected INT OUTPUT,
+    @error_message NVARCHAR(500) OUTPUT
+AS
+BEGIN
+    SET NOCOUNT ON;
+    SET @rows_affected = 0;
+    SET @error_message = NULL;
+    
+    BEGIN TRY
+        BEGIN TRANSACTION;
+        
+        -- Validate gender
+        IF @gender NOT IN ('M', 'F', 'O')
+        BEGIN
+            SET @error_message = 'Invalid gender. Must be M, F, or O.';
+            ROLLBACK TRANSACTION;
+            RETURN;
+        END
+        
+        -- Validate salary
+        IF @salary <= 0
+        BEGIN
+            SET @error_message = 'Salary must be greater than 0.';
+            ROLLBACK TRANSACTION;
+            RETURN;
+        END
+        
+        -- Check that every team exists
+        DECLARE @missing_team VARCHAR(50);
+        
+        SELECT TOP 1 @missing_team = LTRIM(RTRIM(t.team_id))
+        FROM @teams t
+        WHERE LEN(t.team_id) > 0
+          AND NOT EXISTS (SELECT 1 FROM Ranger_team rt WHERE rt.team_id = LTRIM(RTRIM(t.team_id)));
+        
+        IF @missing_team IS NOT NULL
+        BEGIN
+            SET @error_message = 'Team ' + @missing_team + ' does not exist.';
+            ROLLBACK TRANSACTION;
+            RETURN;
+        END
+        
+        INSERT INTO Individual(id_number, first_name, last_name, gender, street, city, state, 
+                               postal_code, date_of_birth, newsletter_status)
+        VALUES (@id_number, @first_name, @last_name, @gender, @street, @city, @state, 
+                @postal_code, @date_of_birth, @newsletter_status);
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        INSERT INTO Researcher(id_number, research_field, hire_date, salary)
+        VALUES (@id_number, @research_field, @hire_date, @salary);
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        -- Associate with ranger teams, all in one statement
+        INSERT INTO Researcher_reports_ranger_team(researcher_id_number, team_id, date, summary)
+        SELECT @id_number, LTRIM(RTRIM(team_id)), ISNULL(report_date, CAST(GETDATE() AS DATE)),
+               NULLIF(LTRIM(RTRIM(summary)), '')
+        FROM @teams
+        WHERE LEN(team_id) > 0;
+        
+        SET @rows_affected = @rows_affected + @@ROWCOUNT;
+        
+        COMMIT TRANSACTION;
+        
+    END TRY
+    BEGIN CATCH
+        IF @@TRANCOUNT > 0
+            ROLLBACK TRANSACTION;
+        
+        SET @error_message = ERROR_MESSAGE();
+        SET @rows_affected = 0;
+    END CATCH
+END;
+GO